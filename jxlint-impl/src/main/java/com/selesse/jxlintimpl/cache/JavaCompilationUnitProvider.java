@@ -0,0 +1,70 @@
+package com.selesse.jxlintimpl.cache;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Providers;
+import com.github.javaparser.ast.CompilationUnit;
+import com.selesse.jxlint.cache.ArtifactProvider;
+import com.selesse.jxlint.model.rules.RuleContext;
+import com.selesse.jxlint.model.rules.SourceFile;
+
+import java.io.IOException;
+
+/**
+ * Parses Java files into JavaParser {@link CompilationUnit}s, so that every rule that looks at a Java file shares
+ * a single parse.
+ *
+ * <pre>{@code
+ *      CompilationUnit compilationUnit = sourceFile.getArtifact(JavaCompilationUnitProvider.getInstance());
+ * }</pre>
+ *
+ * <p>
+ *     Rules that never look at comments share a cheaper parse (see {@link #withoutComments()}). The parsers are
+ *     reused from one file to the next, one per {@link RuleContext}.
+ * </p>
+ */
+public class JavaCompilationUnitProvider implements ArtifactProvider<CompilationUnit, ParseProblemException> {
+    private static final JavaCompilationUnitProvider instance =
+            new JavaCompilationUnitProvider("javaparser-compilation-unit", true);
+    private static final JavaCompilationUnitProvider withoutCommentsInstance =
+            new JavaCompilationUnitProvider("javaparser-compilation-unit-without-comments", false);
+
+    private final String id;
+    private final RuleContext.Resource<JavaParser> javaParser;
+
+    private JavaCompilationUnitProvider(String id, boolean attributeComments) {
+        this.id = id;
+        this.javaParser = RuleContext.newResource(() ->
+                new JavaParser(new ParserConfiguration().setAttributeComments(attributeComments)));
+    }
+
+    public static JavaCompilationUnitProvider getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a provider of compilation units without their comments, which aren't attributed to the nodes they are
+     * next to. Javadoc and comments are nowhere in the tree.
+     */
+    public static JavaCompilationUnitProvider withoutComments() {
+        return withoutCommentsInstance;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public CompilationUnit parse(SourceFile sourceFile) throws IOException, ParseProblemException {
+        ParseResult<CompilationUnit> parseResult = RuleContext.current().get(javaParser)
+                .parse(ParseStart.COMPILATION_UNIT, Providers.provider(sourceFile.getContents()));
+        if (!parseResult.isSuccessful()) {
+            throw new ParseProblemException(parseResult.getProblems());
+        }
+        return parseResult.getResult().get();
+    }
+}
@@ -1,6 +1,5 @@
 package com.selesse.jxlintimpl.rules.impl;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
@@ -10,17 +9,19 @@ import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.type.VoidType;
 import com.google.common.collect.Lists;
 import com.selesse.jxlint.model.rules.LintError;
-import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.model.rules.Severity;
-import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.SourceFileLintRule;
+import com.selesse.jxlint.utils.FileSelector;
 import com.selesse.jxlintimpl.CustomCategories;
+import com.selesse.jxlintimpl.cache.JavaCompilationUnitProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.List;
 
-public class FunctionsStartingWithTestAreTests extends LintRule {
+public class FunctionsStartingWithTestAreTests extends SourceFileLintRule {
     private static final Logger LOGGER = LoggerFactory.getLogger(FunctionsStartingWithTestAreTests.class);
 
     private static final String name = "Functions starting with 'test' are tests";
@@ -32,17 +33,18 @@ public class FunctionsStartingWithTestAreTests extends LintRule {
     }
 
     @Override
-    public List<File> getFilesToValidate() {
-        return FileUtils.allFilesMatching(getSourceDirectory(), ".*Test\\.java");
+    public FileSelector getFileSelector() {
+        return FileSelector.matching(".*Test\\.java");
     }
 
     @Override
-    public List<LintError> getLintErrors(File file) {
+    public List<LintError> getLintErrors(SourceFile sourceFile) {
+        File file = sourceFile.getFile();
         List<LintError> lintErrors = Lists.newArrayList();
         LOGGER.info("Validating {}", file.getAbsolutePath());
 
         try {
-            CompilationUnit compilationUnit = JavaParser.parse(file);
+            CompilationUnit compilationUnit = sourceFile.getArtifact(JavaCompilationUnitProvider.withoutComments());
             NodeList<TypeDeclaration<?>> compilationUnitTypes = compilationUnit.getTypes();
             for (TypeDeclaration typeDeclaration : compilationUnitTypes) {
                 for (Node node : typeDeclaration.getChildNodes()) {
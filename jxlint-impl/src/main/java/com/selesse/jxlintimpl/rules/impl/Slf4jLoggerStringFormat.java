@@ -1,6 +1,5 @@
 package com.selesse.jxlintimpl.rules.impl;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.Range;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.FieldDeclaration;
@@ -11,18 +10,20 @@ import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.SimpleName;
 import com.google.common.collect.Lists;
 import com.selesse.jxlint.model.rules.LintError;
-import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.model.rules.Severity;
-import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.SourceFileLintRule;
+import com.selesse.jxlint.utils.FileSelector;
 import com.selesse.jxlintimpl.CustomCategories;
+import com.selesse.jxlintimpl.cache.JavaCompilationUnitProvider;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-public class Slf4jLoggerStringFormat extends LintRule {
+public class Slf4jLoggerStringFormat extends SourceFileLintRule {
     private static final String name = "SLF4J loggers should not use String.format";
     private static final String summary = "SLF4J loggers should use parametrized logging, not String.format";
 
@@ -32,15 +33,16 @@ public class Slf4jLoggerStringFormat extends LintRule {
     }
 
     @Override
-    public List<File> getFilesToValidate() {
-        return FileUtils.allFilesWithExtension(getSourceDirectory(), "java");
+    public FileSelector getFileSelector() {
+        return FileSelector.withExtension("java");
     }
 
     @Override
-    public List<LintError> getLintErrors(File file) {
+    public List<LintError> getLintErrors(SourceFile sourceFile) {
+        File file = sourceFile.getFile();
         List<LintError> lintErrors = Lists.newArrayList();
         try {
-            CompilationUnit compilationUnit = JavaParser.parse(file);
+            CompilationUnit compilationUnit = sourceFile.getArtifact(JavaCompilationUnitProvider.withoutComments());
             boolean importsSlf4j = compilationUnit.getImports()
                     .stream()
                     .anyMatch(importDeclaration -> importDeclaration.getNameAsString().startsWith("org.slf4j"));
@@ -82,7 +84,7 @@ public class Slf4jLoggerStringFormat extends LintRule {
 
             }
         }
-        catch (FileNotFoundException e) {
+        catch (IOException e) {
             throw new RuntimeException(e);
         }
         return lintErrors;
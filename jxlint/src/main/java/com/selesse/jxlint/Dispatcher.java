@@ -1,21 +1,28 @@
 package com.selesse.jxlint;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.selesse.jxlint.actions.JettyWebRunner;
 import com.selesse.jxlint.actions.LintHandler;
 import com.selesse.jxlint.actions.LintRuleInformationDisplayer;
 import com.selesse.jxlint.cli.CommandLineOptions;
+import com.selesse.jxlint.daemon.JxlintDaemon;
+import com.selesse.jxlint.git.GitRepository;
+import com.selesse.jxlint.linter.Shard;
 import com.selesse.jxlint.model.ExitType;
 import com.selesse.jxlint.model.JxlintOption;
 import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.*;
 import com.selesse.jxlint.settings.Profiler;
 import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,6 +34,9 @@ import java.util.stream.Collectors;
  */
 public class Dispatcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(Dispatcher.class);
+    // Options that need the rules to run in this process, rather than in workers
+    private static final List<JxlintOption> IN_PROCESS_OPTIONS = ImmutableList.of(JxlintOption.FILE_MAJOR,
+            JxlintOption.VIRTUAL_THREADS, JxlintOption.INCREMENTAL, JxlintOption.STAGED, JxlintOption.RULE_TIMEOUT);
     private final ProgramOptions programOptions;
     private final ProgramSettings programSettings;
 
@@ -39,12 +49,13 @@ public class Dispatcher {
      * The order for the dispatcher is as such:
      *
      * <ol>
-     * <li> First, look for the mutually exclusive options ("help", "version", "list", "show").
+     * <li> First, look for the mutually exclusive options ("help", "version", "list", "web", "daemon", "show").
      * These are first-come, first-serve. If enabled, branch out to those options. </li>
      *
      * <li> Second, check to see if warnings are errors and keep note of it. </li>
      *
-     * <li> Thirdly, check to see if the source directory exists. Exit if it doesn't. </li>
+     * <li> Thirdly, check to see if the source directory exists. Exit if it doesn't. If only files that changed in
+     * Git should be validated, make sure the directory is in a Git repository. </li>
      *
      * <li> Fourthly, check to see if "check" was called. Branch out if it is. </li>
      *
@@ -79,6 +90,10 @@ public class Dispatcher {
             jettyWebRunner.start();
             return;
         }
+        else if (programOptions.hasOption(JxlintOption.DAEMON)) {
+            runDaemon(programOptions.getOption(JxlintOption.DAEMON), lintRules);
+            return;
+        }
         else if (programOptions.hasOption(JxlintOption.SHOW)) {
             LintRuleInformationDisplayer.showRules(programOptions);
         }
@@ -114,6 +129,38 @@ public class Dispatcher {
                     ExitType.COMMAND_LINE_ERROR);
         }
 
+        if (programOptions.hasOption(JxlintOption.CACHE_SIZE)) {
+            try {
+                ProgramOptions.getByteSizeFromOptionString(programOptions.getOption(JxlintOption.CACHE_SIZE));
+            }
+            catch (IllegalArgumentException e) {
+                ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+
+        validateThreadCountOption(programOptions, JxlintOption.THREADS, 1);
+        validateThreadCountOption(programOptions, JxlintOption.IO_THREADS, 0);
+        if (programOptions.hasOption(JxlintOption.VIRTUAL_THREADS) && !VirtualThreads.isSupported()) {
+            ProgramExitter.exitProgramWithMessage("Virtual threads need Java 21 or later, this is Java " +
+                    System.getProperty("java.version") + ".", ExitType.COMMAND_LINE_ERROR);
+        }
+        validateShardOptions(programOptions);
+        validateWorkerOptions(programOptions, lintRules);
+        if (programOptions.hasOption(JxlintOption.SPILL_AFTER)) {
+            try {
+                ProgramOptions.getErrorCountFromOptionString(programOptions.getOption(JxlintOption.SPILL_AFTER));
+            }
+            catch (IllegalArgumentException e) {
+                ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+        validateDurationOption(programOptions, JxlintOption.FILE_TIMEOUT);
+        validateDurationOption(programOptions, JxlintOption.RULE_TIMEOUT);
+
+        if (programOptions.hasOption(JxlintOption.CHANGED_SINCE) || programOptions.hasOption(JxlintOption.STAGED)) {
+            validateGitOptions(programOptions, lintRules.getSourceDirectory());
+        }
+
         if (programOptions.hasOption(JxlintOption.CHECK)) {
             String checkRules = programOptions.getOption(JxlintOption.CHECK);
             List<String> checkRulesList = null;
@@ -184,6 +231,25 @@ public class Dispatcher {
         return new JettyWebRunner(programSettings, port);
     }
 
+    @VisibleForTesting
+    JxlintDaemon getJxlintDaemon(int port, LintRules lintRules) throws IOException {
+        return JxlintDaemon.create(lintRules, programSettings, port);
+    }
+
+    private void runDaemon(String port, LintRules lintRules) {
+        try (JxlintDaemon jxlintDaemon = getJxlintDaemon(Integer.parseInt(port), lintRules)) {
+            jxlintDaemon.run();
+        }
+        catch (NumberFormatException e) {
+            ProgramExitter.exitProgramWithMessage("Error: invalid port \"" + port + "\".",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+        catch (IOException e) {
+            ProgramExitter.exitProgramWithMessage("Error: could not start the daemon: " + e.getMessage(),
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+    }
+
     private void handleLint(List<LintRule> lintRules, boolean warningsAreErrors, ProgramOptions options,
                                    ProgramSettings settings) {
         LintHandler lintHandler = new LintHandler(lintRules, warningsAreErrors, options, settings);
@@ -199,6 +265,111 @@ public class Dispatcher {
                 programSettings.getProgramVersion(), ExitType.SUCCESS);
     }
 
+    private void validateThreadCountOption(ProgramOptions programOptions, JxlintOption threadCountOption,
+                                           int minimum) {
+        if (programOptions.hasOption(threadCountOption)) {
+            try {
+                ProgramOptions.getThreadCountFromOptionString(programOptions.getOption(threadCountOption), minimum);
+            }
+            catch (IllegalArgumentException e) {
+                ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+    }
+
+    private void validateDurationOption(ProgramOptions programOptions, JxlintOption durationOption) {
+        if (programOptions.hasOption(durationOption)) {
+            try {
+                ProgramOptions.getDurationFromOptionString(programOptions.getOption(durationOption));
+            }
+            catch (IllegalArgumentException e) {
+                ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+    }
+
+    private void validateShardOptions(ProgramOptions programOptions) {
+        if (programOptions.hasOption(JxlintOption.SHARD)) {
+            try {
+                Shard.parse(programOptions.getOption(JxlintOption.SHARD));
+            }
+            catch (IllegalArgumentException e) {
+                ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+        if (programOptions.hasOption(JxlintOption.SHARD) && !programOptions.hasOption(JxlintOption.PARTIAL)) {
+            ProgramExitter.exitProgramWithMessage("Error: \"shard\" needs \"partial\", the file to write the " +
+                    "shard's errors to.", ExitType.COMMAND_LINE_ERROR);
+        }
+        if (programOptions.hasOption(JxlintOption.PARTIAL) && !programOptions.hasOption(JxlintOption.SHARD)) {
+            ProgramExitter.exitProgramWithMessage("Error: \"partial\" only works with \"shard\".",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+        if (programOptions.hasOption(JxlintOption.SHARD) && programOptions.hasOption(JxlintOption.MERGE)) {
+            ProgramExitter.exitProgramWithMessage("Error: \"shard\" and \"merge\" can't be used together.",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+    }
+
+    /**
+     * Makes sure every worker will be able to create the rules, and that the options don't need the rules to run in
+     * this process.
+     */
+    private void validateWorkerOptions(ProgramOptions programOptions, LintRules lintRules) {
+        if (!programOptions.hasOption(JxlintOption.WORKERS)) {
+            return;
+        }
+        try {
+            ProgramOptions.getWorkerCountFromOptionString(programOptions.getOption(JxlintOption.WORKERS));
+        }
+        catch (IllegalArgumentException e) {
+            ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+        }
+        for (JxlintOption inProcessOption : IN_PROCESS_OPTIONS) {
+            if (programOptions.hasOption(inProcessOption)) {
+                ProgramExitter.exitProgramWithMessage("Error: \"workers\" and \"" +
+                        inProcessOption.getOptionString() + "\" can't be used together.",
+                        ExitType.COMMAND_LINE_ERROR);
+            }
+        }
+        Class<?> lintRulesClass = lintRules.getClass();
+        boolean hasPublicConstructor = Modifier.isPublic(lintRulesClass.getModifiers());
+        try {
+            lintRulesClass.getConstructor();
+        }
+        catch (NoSuchMethodException e) {
+            hasPublicConstructor = false;
+        }
+        if (!hasPublicConstructor) {
+            ProgramExitter.exitProgramWithMessage("Error: \"workers\" needs " + lintRulesClass.getName() +
+                    " to be public, with a public no-argument constructor, to create the rules in every worker.",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+    }
+
+    /**
+     * Makes sure the source directory is in a Git repository, and that the revision for "changed-since" exists, so
+     * that mistakes are reported as command line errors rather than in the middle of the run.
+     */
+    private void validateGitOptions(ProgramOptions programOptions, File sourceDirectory) {
+        if (programOptions.hasOption(JxlintOption.CHANGED_SINCE) && programOptions.hasOption(JxlintOption.STAGED)) {
+            ProgramExitter.exitProgramWithMessage("Error: \"changed-since\" and \"staged\" can't be used together.",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+        if (programOptions.hasOption(JxlintOption.STAGED) && programOptions.hasOption(JxlintOption.WATCH)) {
+            ProgramExitter.exitProgramWithMessage("Error: \"staged\" and \"watch\" can't be used together.",
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+        try (GitRepository gitRepository = GitRepository.find(sourceDirectory)) {
+            if (programOptions.hasOption(JxlintOption.CHANGED_SINCE)) {
+                gitRepository.resolve(programOptions.getOption(JxlintOption.CHANGED_SINCE));
+            }
+        }
+        catch (IOException e) {
+            ProgramExitter.exitProgramWithMessage("Error: " + e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+        }
+    }
+
     private boolean isInvalidSourceDirectory(String sourceDirectoryString) {
         File sourceDirectory = new File(sourceDirectoryString);
 
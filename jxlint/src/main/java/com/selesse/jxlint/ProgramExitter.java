@@ -2,12 +2,16 @@ package com.selesse.jxlint;
 
 import com.selesse.jxlint.model.ExitType;
 import com.selesse.jxlint.settings.Profiler;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.util.function.IntConsumer;
 
 /**
  * Exits the program with provided {@link ExitType}s.
  */
 public class ProgramExitter {
-    private static String outputMessage;
+    private static final RunContext.Slot<String> outputMessage = RunContext.newSlot();
+    private static final RunContext.Slot<IntConsumer> exitHandler = RunContext.newSlot(() -> System::exit);
 
     /**
      * Exits the program without displaying anything. Calls System.exit on {@link com.selesse.jxlint.model.ExitType}'s
@@ -29,15 +33,24 @@ public class ProgramExitter {
             outputMessage += Profiler.getGeneratedProfileReport();
         }
 
-        ProgramExitter.outputMessage = outputMessage;
+        ProgramExitter.outputMessage.set(outputMessage);
 
         if (outputMessage.trim().length() > 0) {
             System.out.println(outputMessage);
         }
-        System.exit(exitType.getErrorCode());
+        exitHandler.get().accept(exitType.getErrorCode());
     }
 
     public static String getOutputMessage() {
-        return outputMessage;
+        return outputMessage.get();
+    }
+
+    /**
+     * Replaces System.exit, in the current {@link RunContext}, by something that gets the exit code instead. The
+     * daemon uses this to end a request without ending the program. The handler is expected not to return normally,
+     * since nothing after a call to {@link #exitProgram(ExitType)} is supposed to run.
+     */
+    public static void setExitHandler(IntConsumer exitHandler) {
+        ProgramExitter.exitHandler.set(exitHandler);
     }
 }
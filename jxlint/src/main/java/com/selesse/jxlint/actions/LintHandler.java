@@ -1,13 +1,22 @@
 package com.selesse.jxlint.actions;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import com.selesse.jxlint.ProgramExitter;
 import com.selesse.jxlint.linter.Linter;
 import com.selesse.jxlint.linter.LinterFactory;
+import com.selesse.jxlint.linter.ShardResult;
 import com.selesse.jxlint.model.ExitType;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.LintErrorOrderings;
 import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
 import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRules;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
 import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.report.LintErrorStore;
 import com.selesse.jxlint.report.Reporter;
 import com.selesse.jxlint.report.Reporters;
 import com.selesse.jxlint.report.UnableToCreateReportException;
@@ -15,11 +24,22 @@ import com.selesse.jxlint.settings.ProgramSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Handler of action-based logic relating to linting. This particular LintHandler's core logic is in
- * {@link #lintAndReportAndExit(boolean)}.
+ * {@link #lintAndReportAndExit(boolean)}. With the "stream" option, the reporter gets the errors as they are found,
+ * so that they don't all have to be kept in memory. With the "spill-after" option, the errors that don't fit in
+ * memory are spilled to temporary files until the report is written (see {@link LintErrorStore}). With the "plan"
+ * option, nothing is validated: the rules are listed in the order they would run instead (see
+ * {@link com.selesse.jxlint.linter.LintPlan}). In "watch" mode, files keep getting validated as they change (see
+ * {@link WatchHandler}) before exiting. With the "shard" option, the errors are also written to a partial result,
+ * and with the "merge" option, the partial results of every shard are reported instead of validating anything (see
+ * {@link ShardResult}).
  */
 public class LintHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(LintHandler.class);
@@ -44,15 +64,147 @@ public class LintHandler {
      * {@link com.selesse.jxlint.model.ProgramOptions} passed in the constructor.
      */
     public void lintAndReportAndExit(boolean exitAfterReport) {
+        if (options.hasOption(JxlintOption.MERGE)) {
+            mergeAndReport(exitAfterReport);
+            return;
+        }
+
         LOGGER.debug("Performing validations against these lint rules: {}", lintRules);
-        Linter linter = LinterFactory.createNewLinter(lintRules);
-        linter.performLintValidations();
-        List<LintError> lintErrors = linter.getLintErrors();
+        Linter linter = LinterFactory.createNewLinter(lintRules, options, settings);
 
-        reportLintErrors(lintErrors, settings, options);
+        if (options.hasOption(JxlintOption.PLAN)) {
+            String planReport = linter.planLintValidations().getReport();
+            if (exitAfterReport) {
+                ProgramExitter.exitProgramWithMessage(planReport, ExitType.SUCCESS);
+            }
+            else {
+                System.out.println(planReport);
+            }
+            return;
+        }
+
+        ErrorTally errorTally;
+        // A shard keeps its errors, to write them to its partial result
+        boolean useSink = options.hasOption(JxlintOption.STREAM) || options.hasOption(JxlintOption.SPILL_AFTER);
+        if (useSink && !options.hasOption(JxlintOption.WATCH) && !options.hasOption(JxlintOption.SHARD)) {
+            errorTally = lintAndStreamReport(linter);
+        }
+        else {
+            linter.performLintValidations();
+            List<LintError> lintErrors = linter.getLintErrors();
+            if (options.hasOption(JxlintOption.SHARD)) {
+                savePartialResult(linter.getShardResult());
+            }
+
+            reportLintErrors(lintErrors, settings, options);
+            if (options.hasOption(JxlintOption.WATCH)) {
+                lintErrors = watch(linter, lintErrors);
+            }
+            errorTally = new ErrorTally(null);
+            errorTally.acceptAll(lintErrors);
+        }
         LOGGER.debug("Exiting? {}", exitAfterReport);
         if (exitAfterReport) {
-            exitWithAppropriateStatus(lintErrors);
+            exitWithAppropriateStatus(errorTally);
+        }
+    }
+
+    /**
+     * Hands the errors to the reporter's sink (see {@link Reporter#createSink()}) as they are found, if the reporter
+     * supports it or if they may be spilled to disk, keeping only what is needed to exit with the right status. The
+     * report is therefore created before the files are validated.
+     */
+    private ErrorTally lintAndStreamReport(Linter linter) {
+        LintErrorStore lintErrorStore = null;
+        if (options.hasOption(JxlintOption.SPILL_AFTER)) {
+            lintErrorStore = new LintErrorStore(
+                    ProgramOptions.getErrorCountFromOptionString(options.getOption(JxlintOption.SPILL_AFTER)), null,
+                    LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+        }
+
+        Reporter reporter;
+        try {
+            reporter = Reporters.createReporter(lintErrorStore != null ? lintErrorStore : Lists.newArrayList(),
+                    settings, options);
+        }
+        catch (UnableToCreateReportException e) {
+            ProgramExitter.exitProgramWithMessage(e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+            return new ErrorTally(null);
+        }
+
+        ErrorTally errorTally = new ErrorTally(reporter.createSink());
+        try {
+            if (reporter.isStreaming() || lintErrorStore != null) {
+                linter.performLintValidations(null, errorTally);
+            }
+            else {
+                linter.performLintValidations();
+                errorTally.acceptAll(linter.getLintErrors());
+            }
+            errorTally.close();
+        }
+        finally {
+            if (lintErrorStore != null) {
+                LOGGER.debug("Spilled errors to {} temporary files", lintErrorStore.getNumberOfRuns());
+                lintErrorStore.close();
+            }
+        }
+        return errorTally;
+    }
+
+    private void savePartialResult(ShardResult shardResult) {
+        File partialResultFile = new File(options.getOption(JxlintOption.PARTIAL));
+        try {
+            shardResult.save(partialResultFile, LintRulesImpl.getInstance().getSourceDirectory());
+            LOGGER.info("Wrote the {} errors of shard {} to {}", shardResult.getLintErrors().size(),
+                    shardResult.getShard(), partialResultFile);
+        }
+        catch (IOException e) {
+            ProgramExitter.exitProgramWithMessage("Error: could not write the partial result to " +
+                    partialResultFile + ": " + e.getMessage(), ExitType.COMMAND_LINE_ERROR);
+        }
+    }
+
+    /**
+     * Reads the partial results of every shard, and reports all of their errors as if they had been found by a
+     * single run.
+     */
+    private void mergeAndReport(boolean exitAfterReport) {
+        LintRules allLintRules = LintRulesImpl.getInstance();
+        List<ShardResult> shardResults = Lists.newArrayList();
+        List<LintError> lintErrors = Lists.newArrayList();
+        try {
+            for (String partialResult : Splitter.on(',').trimResults().omitEmptyStrings()
+                    .split(options.getOption(JxlintOption.MERGE))) {
+                shardResults.add(ShardResult.load(new File(partialResult), allLintRules,
+                        allLintRules.getSourceDirectory()));
+            }
+            lintErrors = ShardResult.merge(shardResults);
+        }
+        catch (IOException e) {
+            ProgramExitter.exitProgramWithMessage("Error: could not merge the partial results: " + e.getMessage(),
+                    ExitType.COMMAND_LINE_ERROR);
+        }
+
+        reportLintErrors(lintErrors, settings, options);
+        if (exitAfterReport) {
+            ErrorTally errorTally = new ErrorTally(null);
+            errorTally.acceptAll(lintErrors);
+            exitWithAppropriateStatus(errorTally);
+        }
+    }
+
+    /**
+     * Validates files again as they change, until the thread gets interrupted. Returns the errors of the last run.
+     */
+    private List<LintError> watch(Linter linter, List<LintError> lintErrors) {
+        try (WatchHandler watchHandler = new WatchHandler(linter, lintErrors, settings, options)) {
+            watchHandler.watch();
+            return watchHandler.getLintErrors();
+        }
+        catch (IOException e) {
+            LOGGER.error("Could not watch the source directory for changes", e);
+            return lintErrors;
         }
     }
 
@@ -66,18 +218,57 @@ public class LintHandler {
         }
     }
 
-    private void exitWithAppropriateStatus(List<LintError> lintErrors) {
-        if (warningsAreErrors && lintErrors.size() > 0) {
+    private void exitWithAppropriateStatus(ErrorTally errorTally) {
+        if (warningsAreErrors && errorTally.numberOfErrors.sum() > 0) {
             ProgramExitter.exitProgram(ExitType.FAILED);
         }
 
-        if (lintErrors.size() > 0) {
-            for (LintError error : lintErrors) {
-                if (error.getSeverity().ordinal() >= Severity.ERROR.ordinal()) {
-                    ProgramExitter.exitProgram(ExitType.FAILED);
-                }
-            }
+        if (errorTally.hasErrorSeverity) {
+            ProgramExitter.exitProgram(ExitType.FAILED);
         }
         ProgramExitter.exitProgram(ExitType.SUCCESS);
     }
+
+    /**
+     * Passes the errors on to another sink, if there is one, counting them on the way.
+     */
+    private static class ErrorTally implements LintErrorSink {
+        private final LintErrorSink lintErrorSink;
+        private final LongAdder numberOfErrors = new LongAdder();
+        private volatile boolean hasErrorSeverity = false;
+
+        ErrorTally(LintErrorSink lintErrorSink) {
+            this.lintErrorSink = lintErrorSink;
+        }
+
+        @Override
+        public void accept(LintError lintError) {
+            count(lintError);
+            if (lintErrorSink != null) {
+                lintErrorSink.accept(lintError);
+            }
+        }
+
+        @Override
+        public void acceptAll(Collection<LintError> lintErrors) {
+            lintErrors.forEach(this::count);
+            if (lintErrorSink != null) {
+                lintErrorSink.acceptAll(lintErrors);
+            }
+        }
+
+        private void count(LintError lintError) {
+            numberOfErrors.increment();
+            if (lintError.getSeverity().ordinal() >= Severity.ERROR.ordinal()) {
+                hasErrorSeverity = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (lintErrorSink != null) {
+                lintErrorSink.close();
+            }
+        }
+    }
 }
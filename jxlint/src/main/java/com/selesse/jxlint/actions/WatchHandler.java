@@ -0,0 +1,315 @@
+package com.selesse.jxlint.actions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+import com.google.common.collect.Sets;
+import com.selesse.jxlint.linter.Linter;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.OutputType;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.report.Reporter;
+import com.selesse.jxlint.report.Reporters;
+import com.selesse.jxlint.report.UnableToCreateReportException;
+import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.utils.FileWalker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps validating the source directory after the first run: every time files change, only those files are
+ * validated again, and only by the rules that validate them. Every directory of the source tree is registered with a
+ * {@link WatchService}, including the ones that get created later on, except for the ones the linter's
+ * {@link FileWalker} skips: ".git", what ".gitignore" files ignore and what is excluded. Changes to the files it skips
+ * are ignored too, so that Git operations and builds don't lead to validations.
+ *
+ * <p>
+ *     Changes are coalesced: once something changes, the handler waits until nothing has changed for a little while
+ *     (or until it has waited long enough) before validating anything, so that saving a bunch of files at once only
+ *     leads to one run. The errors for the changed files are then reported with the usual
+ *     {@link com.selesse.jxlint.report.Reporter}, preceded by a summary of what got fixed and what is new. Reports
+ *     that are written to a file are rewritten with every error instead, since they replace the previous report.
+ * </p>
+ */
+public class WatchHandler implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchHandler.class);
+    private static final long QUIET_PERIOD_MILLISECONDS = 200;
+    private static final long MAXIMUM_DELAY_MILLISECONDS = 2000;
+
+    private final Linter linter;
+    private final ProgramSettings settings;
+    private final ProgramOptions options;
+    private final Path rootDirectory;
+    private final File reportFile;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories;
+    private List<LintError> lintErrors;
+
+    /**
+     * @param lintErrors The errors found by the first run
+     */
+    public WatchHandler(Linter linter, List<LintError> lintErrors, ProgramSettings settings, ProgramOptions options)
+            throws IOException {
+        this.linter = linter;
+        this.lintErrors = Lists.newArrayList(lintErrors);
+        this.settings = settings;
+        this.options = options;
+        this.rootDirectory = FileUtils.normalizeFile(LintRulesImpl.getInstance().getSourceDirectory()).toPath();
+        String reportPath = options.getOption(JxlintOption.OUTPUT_TYPE_PATH);
+        this.reportFile = reportPath == null ? null : FileUtils.normalizeFile(new File(reportPath));
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.watchedDirectories = Maps.newHashMap();
+
+        registerAll(rootDirectory);
+        LOGGER.debug("Watching {} directories in {}", watchedDirectories.size(), rootDirectory);
+    }
+
+    /**
+     * Validates files as they change, until the thread is interrupted or the handler is closed.
+     */
+    public void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                processChanges(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.debug("Stopped watching {}", rootDirectory);
+        }
+    }
+
+    /**
+     * Waits for files to change, then validates them and reports the new errors.
+     *
+     * @return false if nothing changed before the timeout
+     */
+    public boolean processChanges(long timeout, TimeUnit unit) throws InterruptedException {
+        WatchKey watchKey = watchService.poll(timeout, unit);
+        if (watchKey == null) {
+            return false;
+        }
+
+        Set<Path> changedPaths = Sets.newLinkedHashSet();
+        boolean hasOverflowed = collectChanges(watchKey, changedPaths);
+        long deadline = System.currentTimeMillis() + MAXIMUM_DELAY_MILLISECONDS;
+        while (System.currentTimeMillis() < deadline &&
+                (watchKey = watchService.poll(QUIET_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS)) != null) {
+            hasOverflowed |= collectChanges(watchKey, changedPaths);
+        }
+
+        if (reportFile != null) {
+            changedPaths.remove(reportFile.toPath());
+        }
+        if (hasOverflowed) {
+            LOGGER.info("Too many changes to keep track of, validating every file");
+            revalidateEverything();
+        }
+        else if (!changedPaths.isEmpty()) {
+            revalidate(changedPaths);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the paths that changed according to the key's events, and returns true if some events were lost.
+     */
+    private boolean collectChanges(WatchKey watchKey, Set<Path> changedPaths) {
+        Path directory = watchedDirectories.get(watchKey);
+        boolean hasOverflowed = false;
+        // A new filter every time, since ignore files may have changed
+        FileWalker.Filter filter = newFilter();
+
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                hasOverflowed = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            boolean isDirectory = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+            if (!filter.isIncluded(path, isDirectory)) {
+                continue;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && isDirectory) {
+                // Files may have been created in the directory before it got registered, so they count as changed
+                try {
+                    changedPaths.addAll(registerAll(path));
+                }
+                catch (IOException e) {
+                    LOGGER.warn("Could not watch {}", path, e);
+                }
+            }
+            else if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY || !isDirectory) {
+                changedPaths.add(path);
+            }
+        }
+
+        if (!watchKey.reset()) {
+            // The directory is gone, along with everything that was in it
+            watchedDirectories.remove(watchKey);
+            if (directory != null) {
+                changedPaths.add(directory);
+            }
+        }
+        return hasOverflowed;
+    }
+
+    /**
+     * Registers a directory and all its subdirectories, and returns the files that are in them.
+     */
+    private List<Path> registerAll(Path directory) throws IOException {
+        List<Path> files = Lists.newArrayList();
+        FileWalker.Filter filter = newFilter();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if (!filter.isIncluded(dir, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey watchKey = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(watchKey, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (filter.isIncluded(file, false)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // It was probably deleted in the meantime
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private FileWalker.Filter newFilter() {
+        return linter.getFileWalker().newFilter(rootDirectory.toFile());
+    }
+
+    @VisibleForTesting
+    Collection<Path> getWatchedDirectories() {
+        return watchedDirectories.values();
+    }
+
+    private void revalidate(Set<Path> changedPaths) {
+        List<File> changedFiles = changedPaths.stream()
+                .map(path -> FileUtils.normalizeFile(path.toFile()))
+                .collect(Collectors.toList());
+        List<File> existingFiles = changedFiles.stream()
+                .filter(File::isFile)
+                .collect(Collectors.toList());
+        LOGGER.info("Validating {} changed files", existingFiles.size());
+
+        linter.performLintValidations(existingFiles);
+
+        List<LintError> previousErrors = Lists.newArrayList();
+        List<LintError> unchangedErrors = Lists.newArrayList();
+        for (LintError lintError : lintErrors) {
+            if (isInAny(FileUtils.normalizeFile(lintError.getFile()), changedFiles)) {
+                previousErrors.add(lintError);
+            }
+            else {
+                unchangedErrors.add(lintError);
+            }
+        }
+
+        List<LintError> newErrors = linter.getLintErrors();
+        unchangedErrors.addAll(newErrors);
+        lintErrors = unchangedErrors;
+        report(changedFiles.size(), previousErrors, newErrors);
+    }
+
+    private void revalidateEverything() {
+        List<LintError> previousErrors = lintErrors;
+        linter.performLintValidations();
+        lintErrors = Lists.newArrayList(linter.getLintErrors());
+        report(0, previousErrors, lintErrors);
+    }
+
+    /**
+     * Whether the file is one of the changed files, or is in one of them (i.e. in a deleted directory).
+     */
+    private static boolean isInAny(File file, Collection<File> changedFiles) {
+        for (File changedFile : changedFiles) {
+            if (file.equals(changedFile) || file.getPath().startsWith(changedFile.getPath() + File.separator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void report(int numberOfChangedFiles, List<LintError> previousErrors, List<LintError> newErrors) {
+        Multiset<String> previousDescriptions = HashMultiset.create(Lists.transform(previousErrors, this::describe));
+        Multiset<String> newDescriptions = HashMultiset.create(Lists.transform(newErrors, this::describe));
+        int numberOfFixedErrors = Multisets.difference(previousDescriptions, newDescriptions).size();
+        int numberOfNewErrors = Multisets.difference(newDescriptions, previousDescriptions).size();
+
+        if (options.getOutputType() != OutputType.QUIET) {
+            System.out.println(String.format("%s changed: %d fixed, %d new, %d in total.",
+                    numberOfChangedFiles == 0 ? "Files" : numberOfChangedFiles + " file(s)", numberOfFixedErrors,
+                    numberOfNewErrors, lintErrors.size()));
+        }
+
+        try {
+            // A report file replaces the previous one, so it needs every error, not just the new ones
+            List<LintError> reportedErrors = Lists.newArrayList(reportFile == null ? newErrors : lintErrors);
+            Reporter reporter = Reporters.createReporter(reportedErrors, settings, options);
+            reporter.writeReport();
+        }
+        catch (UnableToCreateReportException e) {
+            LOGGER.error("Could not write the report", e);
+        }
+    }
+
+    private String describe(LintError lintError) {
+        return String.join("|", lintError.getViolatedRule().getName(), lintError.getFile().getPath(),
+                String.valueOf(lintError.getLineNumber()), String.valueOf(lintError.getMessage()));
+    }
+
+    /**
+     * All the errors in the source directory, as of the last validation.
+     */
+    public List<LintError> getLintErrors() {
+        return lintErrors;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,238 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.ValidationTimeoutException;
+import com.selesse.jxlint.utils.RunContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A cache of artifacts derived from files, like syntax trees, shared by every rule during a lint run. Artifacts are
+ * keyed by file and {@link ArtifactProvider#getId()}, so a file is parsed at most once per provider, as long as its
+ * artifact hasn't been evicted in the meantime. Concurrent requests for the same artifact wait for a single parse.
+ * Failed parses are cached too: every rule that asks for the artifact gets the same exception. Parses that failed
+ * because their rule timed out are the exception, since the file itself may well be fine: the next rule that asks
+ * for the artifact parses it again.
+ *
+ * <p>
+ *     The cache is bounded by the (estimated, see {@link ArtifactProvider#getWeight(File, Object)}) number of bytes
+ *     taken by the artifacts. When it is full, the least recently used artifacts are evicted first.
+ * </p>
+ *
+ * <p>
+ *     Like the {@link ContentCache}, the {@link com.selesse.jxlint.linter.Linter} activates a cache at the beginning
+ *     of every run, and rules go through {@link SourceFile#getArtifact(ArtifactProvider)}.
+ * </p>
+ */
+public class ArtifactCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    private static final RunContext.Slot<ArtifactCache> activeCache = RunContext.newSlot();
+
+    private final Cache<ArtifactKey, Artifact> cache;
+    private final ConcurrentMap<ArtifactKey, SettableFuture<Artifact>> loadingArtifacts = new ConcurrentHashMap<>();
+
+    private ArtifactCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((ArtifactKey key, Artifact artifact) -> artifact.weight)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Creates a cache that holds at most maximumSize bytes of artifacts.
+     */
+    public static ArtifactCache create(long maximumSize) {
+        return new ArtifactCache(maximumSize);
+    }
+
+    /**
+     * Makes a fresh cache the active one, and returns it. Until {@link #deactivate()} is called, artifacts will be
+     * shared through it. A maximum size of 0 disables caching, in which case this returns null.
+     */
+    public static ArtifactCache activate(long maximumSize) {
+        ArtifactCache artifactCache = maximumSize > 0 ? new ArtifactCache(maximumSize) : null;
+        activeCache.set(artifactCache);
+        if (artifactCache != null) {
+            LOGGER.debug("Caching up to {} bytes of parsed files", maximumSize);
+        }
+        return artifactCache;
+    }
+
+    public static void deactivate() {
+        activeCache.set(null);
+    }
+
+    /**
+     * Returns the artifact for this file. The active cache is used if there is one, otherwise the file is parsed.
+     */
+    public static <T, X extends Exception> T readArtifact(SourceFile sourceFile, ArtifactProvider<T, X> provider)
+            throws IOException, X {
+        ArtifactCache artifactCache = activeCache.get();
+        if (artifactCache == null) {
+            return provider.parse(sourceFile);
+        }
+        return artifactCache.getArtifact(sourceFile, provider);
+    }
+
+    /**
+     * Returns the artifact for this file, parsing the file if the artifact isn't in the cache. If the file couldn't
+     * be parsed, the exception that was thrown by the provider is thrown again.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, X extends Exception> T getArtifact(SourceFile sourceFile, ArtifactProvider<T, X> provider)
+            throws IOException, X {
+        ArtifactKey key = new ArtifactKey(sourceFile.getFile(), provider.getId());
+        Artifact artifact = cache.getIfPresent(key);
+        while (artifact == null) {
+            // Like the ContentCache, this doesn't use Cache.get(key, loader), which parses while holding a monitor
+            SettableFuture<Artifact> loadingArtifact = SettableFuture.create();
+            SettableFuture<Artifact> otherLoadingArtifact = loadingArtifacts.putIfAbsent(key, loadingArtifact);
+            if (otherLoadingArtifact != null) {
+                // Null if the thread that was parsing the file timed out, in which case it is parsed again
+                artifact = getLoadedArtifact(otherLoadingArtifact);
+                continue;
+            }
+            try {
+                artifact = load(sourceFile, provider);
+                if (artifact.failure != null && isInterruption(artifact.failure)) {
+                    // Only the rule that timed out fails, the others parse the file again
+                    loadingArtifact.cancel(false);
+                }
+                else {
+                    cache.put(key, artifact);
+                    loadingArtifact.set(artifact);
+                }
+            }
+            catch (RuntimeException | Error e) {
+                loadingArtifact.cancel(false);
+                throw e;
+            }
+            finally {
+                loadingArtifacts.remove(key, loadingArtifact);
+            }
+        }
+
+        if (artifact.failure != null) {
+            Throwables.propagateIfPossible(artifact.failure, IOException.class);
+            // The provider can only throw an IOException, an X, or an unchecked exception
+            throw (X) artifact.failure;
+        }
+        return (T) artifact.value;
+    }
+
+    private static Artifact getLoadedArtifact(Future<Artifact> loadingArtifact) {
+        try {
+            return Uninterruptibles.getUninterruptibly(loadingArtifact);
+        }
+        catch (CancellationException e) {
+            return null;
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static <T> Artifact load(SourceFile sourceFile, ArtifactProvider<T, ?> provider) {
+        File file = sourceFile.getFile();
+        try {
+            T value = provider.parse(sourceFile);
+            return new Artifact(value, null, provider.getWeight(file, value));
+        }
+        catch (Exception e) {
+            LOGGER.debug("[{}]: Could not parse with {}", file.getAbsolutePath(), provider.getId(), e);
+            return new Artifact(null, e, Ints.saturatedCast(file.length()));
+        }
+    }
+
+    /**
+     * Whether a parse failed because the rule that asked for it ran out of time (or its thread was interrupted),
+     * rather than because of the file. Such failures belong to that rule only, and aren't cached.
+     */
+    private static boolean isInterruption(Exception failure) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause : Throwables.getCausalChain(failure)) {
+            if (cause instanceof ValidationTimeoutException || cause instanceof InterruptedException ||
+                    cause instanceof InterruptedIOException || cause instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The number of hits, misses and evictions since this cache was created.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private static class ArtifactKey {
+        private final File file;
+        private final String providerId;
+
+        ArtifactKey(File file, String providerId) {
+            this.file = file;
+            this.providerId = providerId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ArtifactKey that = (ArtifactKey) o;
+            return Objects.equals(file, that.file) && Objects.equals(providerId, that.providerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, providerId);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("file", file).add("providerId", providerId).toString();
+        }
+    }
+
+    /**
+     * Either a successfully parsed artifact, or the exception that was thrown while parsing it.
+     */
+    private static class Artifact {
+        private final Object value;
+        private final Exception failure;
+        private final int weight;
+
+        Artifact(Object value, Exception failure, int weight) {
+            this.value = value;
+            this.failure = failure;
+            this.weight = weight;
+        }
+    }
+}
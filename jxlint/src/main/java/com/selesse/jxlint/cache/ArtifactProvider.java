@@ -0,0 +1,39 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.primitives.Ints;
+import com.selesse.jxlint.model.rules.SourceFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Turns a {@link SourceFile} into something that is expensive to compute, and that several rules may want, like a
+ * parsed syntax tree. Artifacts are shared through the {@link ArtifactCache}, so a file is parsed at most once per
+ * provider, no matter how many rules ask for the result (see {@link SourceFile#getArtifact(ArtifactProvider)}).
+ *
+ * <p>
+ *     Artifacts are shared between rules, possibly on different threads, so rules must treat them as read-only.
+ * </p>
+ *
+ * @param <T> The type of artifact, i.e. {@link org.w3c.dom.Document}
+ * @param <X> The type of exception thrown when the file can't be parsed
+ */
+public interface ArtifactProvider<T, X extends Exception> {
+    /**
+     * A unique identifier for this provider, i.e. "w3c-dom". Together with the file, it is used as the cache key.
+     */
+    String getId();
+
+    /**
+     * Parses the file. This is only called when the artifact isn't already in the cache.
+     */
+    T parse(SourceFile sourceFile) throws IOException, X;
+
+    /**
+     * Roughly how many bytes the artifact takes in memory. By default, this is ten times the size of the file, which
+     * is about what a syntax tree takes.
+     */
+    default int getWeight(File file, T artifact) {
+        return Ints.saturatedCast(10 * file.length());
+    }
+}
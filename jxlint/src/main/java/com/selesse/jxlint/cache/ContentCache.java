@@ -0,0 +1,317 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.RunContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A cache of file contents, shared by every rule during a lint run. Each file is read and decoded at most once, as
+ * long as it hasn't been evicted in the meantime.
+ *
+ * <p>
+ *     The cache is bounded by a number of bytes. When it is full, the least recently used files are evicted first.
+ *     Contents are kept on the heap as decoded {@link String}s by default. With an off-heap cache, the raw bytes are
+ *     kept in direct {@link ByteBuffer}s instead, which keeps big source trees out of the garbage collector's way,
+ *     at the cost of decoding the bytes every time they are asked for. Large files are decoded straight from a
+ *     memory-mapped {@link FileChannel} rather than copied to the heap first (see {@link #MAPPED_READ_SIZE}).
+ * </p>
+ *
+ * <p>
+ *     The {@link com.selesse.jxlint.linter.Linter} activates a cache at the beginning of every run (see
+ *     {@link #activate(long, boolean)}), and records its statistics in the
+ *     {@link com.selesse.jxlint.settings.Profiler} at the end. Rules don't use this class directly: they get the
+ *     contents of their files from {@link com.selesse.jxlint.model.rules.SourceFile}.
+ * </p>
+ */
+public class ContentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentCache.class);
+    private static final Charset CHARSET = Charsets.UTF_8;
+
+    /**
+     * The default size of the cache, in bytes.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Roughly how many bytes a cached entry takes, on top of its contents.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * Files of at least this many bytes are mapped rather than read. Mapping has a cost of its own, so small files
+     * are read into the heap.
+     */
+    static final long MAPPED_READ_SIZE = 1024 * 1024;
+
+    private static final RunContext.Slot<ContentCache> activeCache = RunContext.newSlot();
+    private static final RunContext.Slot<ContentSource> contentSource =
+            RunContext.newSlot(() -> ContentSource.FILE_SYSTEM);
+
+    private final Cache<File, CachedContent> cache;
+    private final ConcurrentMap<File, SettableFuture<CachedContent>> loadingContents = new ConcurrentHashMap<>();
+    private final boolean isOffHeap;
+
+    private ContentCache(long maximumSize, boolean isOffHeap) {
+        this.isOffHeap = isOffHeap;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((File file, CachedContent content) -> content.getWeight())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Creates a cache that holds at most maximumSize bytes of file contents.
+     */
+    public static ContentCache create(long maximumSize, boolean isOffHeap) {
+        return new ContentCache(maximumSize, isOffHeap);
+    }
+
+    /**
+     * Makes a fresh cache the active one, and returns it. Until {@link #deactivate()} is called, file contents will
+     * be read through it. A maximum size of 0 disables caching, in which case this returns null.
+     */
+    public static ContentCache activate(long maximumSize, boolean isOffHeap) {
+        ContentCache contentCache = maximumSize > 0 ? new ContentCache(maximumSize, isOffHeap) : null;
+        activeCache.set(contentCache);
+        if (contentCache != null) {
+            LOGGER.debug("Caching up to {} bytes of file contents {}", maximumSize, isOffHeap ? "off-heap" : "on-heap");
+        }
+        return contentCache;
+    }
+
+    public static void deactivate() {
+        activeCache.set(null);
+    }
+
+    /**
+     * Changes where file contents are read from, for every cache. Null goes back to
+     * {@link ContentSource#FILE_SYSTEM}.
+     */
+    public static void setContentSource(ContentSource source) {
+        contentSource.set(source);
+    }
+
+    public static ContentSource getContentSource() {
+        return contentSource.get();
+    }
+
+    /**
+     * Returns the contents of the file, decoded as UTF-8. The active cache is used if there is one, otherwise the
+     * file is read from the {@link ContentSource}.
+     */
+    public static String readContents(File file) throws IOException {
+        ContentCache contentCache = activeCache.get();
+        if (contentCache == null) {
+            return readString(file);
+        }
+        return contentCache.getContents(file);
+    }
+
+    /**
+     * Opens a stream on the raw contents of the file, from the {@link ContentSource}. This bypasses the cache.
+     */
+    public static InputStream openStream(File file) throws IOException {
+        return contentSource.get().openStream(file);
+    }
+
+    /**
+     * Returns the contents of the file, decoded as UTF-8, reading the file if it isn't in the cache.
+     */
+    public String getContents(File file) throws IOException {
+        CachedContent cachedContent = cache.getIfPresent(file);
+        if (cachedContent != null) {
+            return cachedContent.getContents();
+        }
+
+        // Cache.get(file, loader) reads the file while holding a monitor, which would keep a virtual thread on its
+        // carrier thread for the whole read. Threads that want a file being read wait for it on a future instead.
+        while (true) {
+            SettableFuture<CachedContent> loadingContent = SettableFuture.create();
+            SettableFuture<CachedContent> otherLoadingContent = loadingContents.putIfAbsent(file, loadingContent);
+            if (otherLoadingContent != null) {
+                cachedContent = getLoadedContent(otherLoadingContent);
+                if (cachedContent != null) {
+                    return cachedContent.getContents();
+                }
+                // The thread that was reading the file was interrupted, so it is read again
+                continue;
+            }
+            try {
+                cachedContent = load(file);
+                cache.put(file, cachedContent);
+                loadingContent.set(cachedContent);
+                return cachedContent.getContents();
+            }
+            catch (IOException | RuntimeException | Error e) {
+                if (isInterruption(e)) {
+                    // Only the interrupted thread fails (i.e. the rule that timed out), the others try again
+                    loadingContent.cancel(false);
+                }
+                else {
+                    loadingContent.setException(e);
+                }
+                throw e;
+            }
+            finally {
+                loadingContents.remove(file, loadingContent);
+            }
+        }
+    }
+
+    /**
+     * Waits for a file being read by another thread, and returns its contents, or null if that thread was
+     * interrupted before it was done.
+     */
+    private static CachedContent getLoadedContent(Future<CachedContent> loadingContent) throws IOException {
+        try {
+            return Uninterruptibles.getUninterruptibly(loadingContent);
+        }
+        catch (CancellationException e) {
+            return null;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Whether a read failed because the reading thread was interrupted, which closes the {@link FileChannel}s it reads
+     * from, rather than because of the file.
+     */
+    private static boolean isInterruption(Throwable e) {
+        return e instanceof ClosedByInterruptException || e instanceof InterruptedIOException ||
+                Thread.currentThread().isInterrupted();
+    }
+
+    private CachedContent load(File file) throws IOException {
+        if (isOffHeap) {
+            return new DirectContent(readDirect(file));
+        }
+        return new HeapContent(readString(file));
+    }
+
+    private static String readString(File file) throws IOException {
+        ContentSource source = contentSource.get();
+        if (source != ContentSource.FILE_SYSTEM) {
+            return new String(source.read(file), CHARSET);
+        }
+        // The index usually knows the size already, which saves a call to the file system
+        long size = FileIndex.getKnownSize(file);
+        if ((size < 0 ? file.length() : size) < MAPPED_READ_SIZE) {
+            return Files.toString(file, CHARSET);
+        }
+        return readMapped(file);
+    }
+
+    private static String readMapped(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be read, at " + size + " bytes");
+            }
+            // Malformed input is replaced, like new String(bytes, CHARSET) does
+            return CHARSET.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString();
+        }
+    }
+
+    private static ByteBuffer readDirect(File file) throws IOException {
+        ContentSource source = contentSource.get();
+        if (source != ContentSource.FILE_SYSTEM) {
+            byte[] contents = source.read(file);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length);
+            buffer.put(contents);
+            buffer.flip();
+            return buffer;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Ints.checkedCast(channel.size()));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full, or the file is over
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * The number of hits, misses and evictions since this cache was created.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public boolean isOffHeap() {
+        return isOffHeap;
+    }
+
+    private interface CachedContent {
+        String getContents();
+
+        int getWeight();
+    }
+
+    private static class HeapContent implements CachedContent {
+        private final String contents;
+
+        HeapContent(String contents) {
+            this.contents = contents;
+        }
+
+        @Override
+        public String getContents() {
+            return contents;
+        }
+
+        @Override
+        public int getWeight() {
+            return Ints.saturatedCast(ENTRY_OVERHEAD + 2L * contents.length());
+        }
+    }
+
+    private static class DirectContent implements CachedContent {
+        private final ByteBuffer bytes;
+
+        DirectContent(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getContents() {
+            return CHARSET.decode(bytes.duplicate()).toString();
+        }
+
+        @Override
+        public int getWeight() {
+            return ENTRY_OVERHEAD + bytes.capacity();
+        }
+    }
+}
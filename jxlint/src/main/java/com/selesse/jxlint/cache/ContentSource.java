@@ -0,0 +1,34 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the contents of the files being validated come from. Normally, that's the {@link #FILE_SYSTEM}, but a run
+ * can read them from somewhere else instead (the Git index, for example, see
+ * {@link com.selesse.jxlint.git.StagedContentSource}) by setting {@link ContentCache#setContentSource(ContentSource)}.
+ */
+public interface ContentSource {
+    /**
+     * Reads files from disk.
+     */
+    ContentSource FILE_SYSTEM = FileInputStream::new;
+
+    /**
+     * Opens a stream on the contents of the file.
+     */
+    InputStream openStream(File file) throws IOException;
+
+    /**
+     * Reads all the contents of the file.
+     */
+    default byte[] read(File file) throws IOException {
+        try (InputStream inputStream = openStream(file)) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+}
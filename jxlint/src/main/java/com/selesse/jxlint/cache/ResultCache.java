@@ -0,0 +1,504 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.utils.RunContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of lint results that is kept on disk between runs. For every rule and file, it remembers the errors that
+ * were found, along with a hash of the file's contents and a fingerprint of the rule. When the file and the rule
+ * haven't changed since, the errors are replayed instead of validating the file again.
+ *
+ * <p>
+ *     A rule's fingerprint is made of its class name, its {@link LintRule#getVersion()}, and a hash of the jar (or
+ *     class file) it was loaded from, so results are invalidated whenever the rule's implementation changes. Rules
+ *     whose results depend on more than the contents of the file they validate must opt out, see
+ *     {@link LintRule#hasCacheableResults()}.
+ * </p>
+ *
+ * <p>
+ *     Hashing a file means reading it, so the cache also keeps the size, modification time and inode of every file
+ *     it has hashed. If those haven't changed, the previous hash is reused without reading the file. That shortcut
+ *     is only taken when the file was last modified well before it was hashed: a file modified within the same tick
+ *     of the file system's clock could otherwise change without its modification time changing.
+ * </p>
+ *
+ * <p>
+ *     The {@link com.selesse.jxlint.linter.Linter} activates the cache when asked to (see
+ *     {@link #activate(File, File)}), and {@link LintRule#validateFile(com.selesse.jxlint.model.rules.SourceFile)}
+ *     goes through it. Results that contain exceptions, or that point to other files, are never cached.
+ * </p>
+ */
+public class ResultCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+    private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+    /**
+     * Identifies the format of the cache file. Bump it whenever the format changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * How long after a file was modified we consider that its modification time can be trusted.
+     */
+    private static final long MODIFICATION_TIME_GRANULARITY_MS = 2000;
+
+    private static final RunContext.Slot<ResultCache> activeCache = RunContext.newSlot();
+    private static final Map<String, String> implementationHashes = Maps.newConcurrentMap();
+
+    private final File cacheFile;
+    private final File rootDirectory;
+    private final Map<String, FileStat> fileStats;
+    private final Map<ResultKey, CachedResult> results;
+    private final Map<String, String> contentHashes;
+    private final Set<ResultKey> usedKeys = Sets.newConcurrentHashSet();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong hashedFileCount = new AtomicLong();
+
+    private ResultCache(File cacheFile, File rootDirectory) {
+        this.cacheFile = cacheFile;
+        this.rootDirectory = rootDirectory == null ? null : FileUtils.normalizeFile(rootDirectory);
+        this.fileStats = Maps.newConcurrentMap();
+        this.results = Maps.newConcurrentMap();
+        this.contentHashes = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Loads the cache stored in cacheFile (if there is one) for the files under rootDirectory. Files are stored
+     * relative to rootDirectory, so that the cache still works if the directory is moved or checked out somewhere
+     * else. A cache file that can't be read is ignored: the cache starts out empty, and the file will be
+     * overwritten by {@link #save()}.
+     */
+    public static ResultCache load(File cacheFile, File rootDirectory) {
+        ResultCache resultCache = new ResultCache(cacheFile, rootDirectory);
+        if (cacheFile.isFile()) {
+            try {
+                resultCache.read();
+                LOGGER.debug("Loaded {} cached results from {}", resultCache.results.size(), cacheFile);
+            }
+            catch (IOException e) {
+                LOGGER.warn("Could not read result cache {}, starting from scratch", cacheFile, e);
+                resultCache.fileStats.clear();
+                resultCache.results.clear();
+            }
+        }
+        return resultCache;
+    }
+
+    /**
+     * Loads the cache stored in cacheFile, and makes it the active one. Until {@link #deactivate()} is called,
+     * rules replay their cached results through it.
+     */
+    public static ResultCache activate(File cacheFile, File rootDirectory) {
+        ResultCache resultCache = load(cacheFile, rootDirectory);
+        activeCache.set(resultCache);
+        return resultCache;
+    }
+
+    public static void deactivate() {
+        activeCache.set(null);
+    }
+
+    /**
+     * Returns the active cache, or null if there isn't one.
+     */
+    public static ResultCache getActiveCache() {
+        return activeCache.get();
+    }
+
+    /**
+     * Returns the errors this rule found in this file the last time it was validated, or null if the file or the
+     * rule have changed since (or if they have never been seen). The errors are attached to this rule.
+     */
+    public List<LintError> getLintErrors(LintRule lintRule, File file) {
+        if (!lintRule.hasCacheableResults()) {
+            return null;
+        }
+
+        String path = getRelativePath(file);
+        ResultKey resultKey = new ResultKey(lintRule.getName(), path);
+        usedKeys.add(resultKey);
+        CachedResult cachedResult = results.get(resultKey);
+        if (cachedResult == null
+                || !cachedResult.ruleFingerprint.equals(getRuleFingerprint(lintRule))
+                || !cachedResult.contentHash.equals(getContentHash(file, path))) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        hitCount.incrementAndGet();
+        List<LintError> lintErrors = Lists.newArrayListWithCapacity(cachedResult.errors.size());
+        for (CachedError cachedError : cachedResult.errors) {
+            lintErrors.add(cachedError.toLintError(lintRule, file));
+        }
+        return lintErrors;
+    }
+
+    /**
+     * Remembers the errors this rule found in this file, if they can be replayed later.
+     */
+    public void putLintErrors(LintRule lintRule, File file, List<LintError> lintErrors) {
+        if (!lintRule.hasCacheableResults()) {
+            return;
+        }
+
+        File normalizedFile = FileUtils.normalizeFile(file);
+        List<CachedError> cachedErrors = Lists.newArrayListWithCapacity(lintErrors.size());
+        for (LintError lintError : lintErrors) {
+            if (lintError.getException() != null || !normalizedFile.equals(lintError.getFile())) {
+                return;
+            }
+            cachedErrors.add(new CachedError(lintRule, lintError));
+        }
+
+        String path = getRelativePath(file);
+        String contentHash = getContentHash(file, path);
+        if (contentHash != null) {
+            ResultKey resultKey = new ResultKey(lintRule.getName(), path);
+            usedKeys.add(resultKey);
+            results.put(resultKey, new CachedResult(getRuleFingerprint(lintRule), contentHash, cachedErrors));
+        }
+    }
+
+    private String getRelativePath(File file) {
+        File normalizedFile = FileUtils.normalizeFile(file);
+        if (rootDirectory != null && normalizedFile.getPath().startsWith(rootDirectory.getPath() + File.separator)) {
+            return rootDirectory.toPath().relativize(normalizedFile.toPath()).toString();
+        }
+        return normalizedFile.getPath();
+    }
+
+    /**
+     * Returns a hash of the file's contents, or null if it can't be read. Each file is hashed at most once per run,
+     * and not at all if its size, modification time and inode say it hasn't changed since the last run.
+     */
+    private String getContentHash(File file, String path) {
+        String contentHash = contentHashes.get(path);
+        if (contentHash != null) {
+            return contentHash;
+        }
+
+        try {
+            BasicFileAttributes attributes = java.nio.file.Files.readAttributes(file.toPath(),
+                    BasicFileAttributes.class);
+            FileStat currentStat = new FileStat(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    String.valueOf(attributes.fileKey()), System.currentTimeMillis(), null);
+
+            FileStat previousStat = fileStats.get(path);
+            if (previousStat != null && previousStat.isUnchanged(currentStat)) {
+                contentHash = previousStat.contentHash;
+            }
+            else {
+                contentHash = Files.hash(file, HASH_FUNCTION).toString();
+                hashedFileCount.incrementAndGet();
+                fileStats.put(path, currentStat.withContentHash(contentHash));
+            }
+        }
+        catch (IOException e) {
+            LOGGER.debug("Could not hash {}", file, e);
+            return null;
+        }
+
+        contentHashes.put(path, contentHash);
+        return contentHash;
+    }
+
+    private static String getRuleFingerprint(LintRule lintRule) {
+        Class<?> ruleClass = lintRule.getClass();
+        String implementationHash = implementationHashes.get(ruleClass.getName());
+        if (implementationHash == null) {
+            implementationHash = getImplementationHash(ruleClass);
+            implementationHashes.put(ruleClass.getName(), implementationHash);
+        }
+
+        return ruleClass.getName() + ":" + lintRule.getVersion() + ":" + implementationHash;
+    }
+
+    /**
+     * Hashes the jar a rule was loaded from or, if it was loaded from a directory, its class file.
+     */
+    private static String getImplementationHash(Class<?> ruleClass) {
+        try {
+            CodeSource codeSource = ruleClass.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                File location = new File(codeSource.getLocation().toURI());
+                if (location.isFile()) {
+                    return Files.hash(location, HASH_FUNCTION).toString();
+                }
+            }
+
+            URL classFile = ruleClass.getResource(ruleClass.getSimpleName() + ".class");
+            if (classFile != null) {
+                try (InputStream inputStream = classFile.openStream()) {
+                    return HASH_FUNCTION.hashBytes(ByteStreams.toByteArray(inputStream)).toString();
+                }
+            }
+        }
+        catch (IOException | URISyntaxException | SecurityException | IllegalArgumentException e) {
+            LOGGER.debug("Could not hash the implementation of {}", ruleClass, e);
+        }
+        // Without a hash, the version is all we have to go on
+        return "";
+    }
+
+    /**
+     * The number of results that were replayed (hits) or had to be computed (misses) since this cache was loaded.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.get(), missCount.get(), 0, 0, 0, 0);
+    }
+
+    /**
+     * The number of files that had to be read to compute their hash since this cache was loaded. Files whose
+     * size, modification time and inode hadn't changed are not counted.
+     */
+    public long getHashedFileCount() {
+        return hashedFileCount.get();
+    }
+
+    /**
+     * Writes the cache to its file. The file is replaced atomically, so a run that gets interrupted never leaves a
+     * truncated cache behind. Only the results this run looked up or found are kept: the others belong to files
+     * (or rules) that are gone, and would otherwise stay in the cache forever. A run over some of the files or rules
+     * therefore leaves a cache for those only.
+     */
+    public void save() throws IOException {
+        results.keySet().retainAll(usedKeys);
+        Set<String> paths = Sets.newHashSet();
+        for (ResultKey resultKey : results.keySet()) {
+            paths.add(resultKey.path);
+        }
+        fileStats.keySet().retainAll(paths);
+
+        File parentDirectory = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + parentDirectory);
+        }
+
+        File temporaryFile = new File(parentDirectory, cacheFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temporaryFile))))) {
+            write(output);
+        }
+        java.nio.file.Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("Saved {} results to {}", results.size(), cacheFile);
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(FORMAT_VERSION);
+
+        output.writeInt(fileStats.size());
+        for (Map.Entry<String, FileStat> pathAndStat : fileStats.entrySet()) {
+            FileStat fileStat = pathAndStat.getValue();
+            writeString(output, pathAndStat.getKey());
+            output.writeLong(fileStat.size);
+            output.writeLong(fileStat.modificationTime);
+            writeString(output, fileStat.fileKey);
+            output.writeLong(fileStat.recordedAt);
+            writeString(output, fileStat.contentHash);
+        }
+
+        output.writeInt(results.size());
+        for (Map.Entry<ResultKey, CachedResult> keyAndResult : results.entrySet()) {
+            CachedResult cachedResult = keyAndResult.getValue();
+            writeString(output, keyAndResult.getKey().ruleName);
+            writeString(output, keyAndResult.getKey().path);
+            writeString(output, cachedResult.ruleFingerprint);
+            writeString(output, cachedResult.contentHash);
+            output.writeInt(cachedResult.errors.size());
+            for (CachedError cachedError : cachedResult.errors) {
+                output.writeInt(cachedError.lineNumber);
+                writeString(output, cachedError.message);
+                writeString(output, cachedError.severity == null ? "" : cachedError.severity.name());
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(cacheFile))))) {
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache format " + formatVersion);
+            }
+
+            int fileStatCount = input.readInt();
+            for (int i = 0; i < fileStatCount; i++) {
+                String path = readString(input);
+                fileStats.put(path, new FileStat(input.readLong(), input.readLong(), readString(input),
+                        input.readLong(), readString(input)));
+            }
+
+            int resultCount = input.readInt();
+            for (int i = 0; i < resultCount; i++) {
+                ResultKey resultKey = new ResultKey(readString(input), readString(input));
+                String ruleFingerprint = readString(input);
+                String contentHash = readString(input);
+                int errorCount = input.readInt();
+                List<CachedError> cachedErrors = Lists.newArrayListWithCapacity(errorCount);
+                for (int j = 0; j < errorCount; j++) {
+                    int lineNumber = input.readInt();
+                    String message = readString(input);
+                    String severity = readString(input);
+                    cachedErrors.add(new CachedError(lineNumber, message,
+                            Strings.isNullOrEmpty(severity) ? null : Severity.valueOf(severity)));
+                }
+                results.put(resultKey, new CachedResult(ruleFingerprint, contentHash, cachedErrors));
+            }
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * What the file system told us about a file the last time we hashed it.
+     */
+    private static class FileStat {
+        private final long size;
+        private final long modificationTime;
+        private final String fileKey;
+        private final long recordedAt;
+        private final String contentHash;
+
+        FileStat(long size, long modificationTime, String fileKey, long recordedAt, String contentHash) {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.fileKey = fileKey;
+            this.recordedAt = recordedAt;
+            this.contentHash = contentHash;
+        }
+
+        FileStat withContentHash(String contentHash) {
+            return new FileStat(size, modificationTime, fileKey, recordedAt, contentHash);
+        }
+
+        /**
+         * Returns true if the current stat matches this one, and this one was recorded long enough after the file
+         * was modified for its modification time to be trusted.
+         */
+        boolean isUnchanged(FileStat currentStat) {
+            return size == currentStat.size
+                    && modificationTime == currentStat.modificationTime
+                    && fileKey.equals(currentStat.fileKey)
+                    && modificationTime + MODIFICATION_TIME_GRANULARITY_MS < recordedAt;
+        }
+    }
+
+    private static class ResultKey {
+        private final String ruleName;
+        private final String path;
+
+        ResultKey(String ruleName, String path) {
+            this.ruleName = ruleName;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ResultKey that = (ResultKey) o;
+            return Objects.equals(ruleName, that.ruleName) && Objects.equals(path, that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ruleName, path);
+        }
+    }
+
+    private static class CachedResult {
+        private final String ruleFingerprint;
+        private final String contentHash;
+        private final List<CachedError> errors;
+
+        CachedResult(String ruleFingerprint, String contentHash, List<CachedError> errors) {
+            this.ruleFingerprint = ruleFingerprint;
+            this.contentHash = contentHash;
+            this.errors = ImmutableList.copyOf(errors);
+        }
+    }
+
+    private static class CachedError {
+        private final int lineNumber;
+        private final String message;
+        private final Severity severity;
+
+        CachedError(int lineNumber, String message, Severity severity) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+            this.severity = severity;
+        }
+
+        /**
+         * Only keeps the severity of the error if it's not the rule's, so that the rule's severity can change.
+         */
+        CachedError(LintRule lintRule, LintError lintError) {
+            this(lintError.getLineNumber(), Strings.nullToEmpty(lintError.getMessage()),
+                    lintError.getSeverity() == lintRule.getSeverity() ? null : lintError.getSeverity());
+        }
+
+        LintError toLintError(LintRule lintRule, File file) {
+            return LintError.with(lintRule, file)
+                    .andLineNumber(lineNumber)
+                    .andErrorMessage(message)
+                    .andSeverity(severity)
+                    .create();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.selesse.jxlint.cache;
+
+import com.selesse.jxlint.model.rules.RuleContext;
+import com.selesse.jxlint.model.rules.SourceFile;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import java.io.InputStream;
+
+/**
+ * Parses XML files into (normalized) W3C {@link Document}s. Parsing errors are thrown as they are by the
+ * {@link DocumentBuilder}, i.e. as {@link org.xml.sax.SAXException}s, every time the document is asked for. The
+ * builder is the one of the {@link RuleContext} of the rule that asks for the document first.
+ *
+ * <pre>{@code
+ *      Document document = sourceFile.getArtifact(XmlDocumentProvider.getInstance());
+ * }</pre>
+ */
+public class XmlDocumentProvider implements ArtifactProvider<Document, Exception> {
+    private static final XmlDocumentProvider instance = new XmlDocumentProvider();
+
+    private XmlDocumentProvider() {
+    }
+
+    public static XmlDocumentProvider getInstance() {
+        return instance;
+    }
+
+    @Override
+    public String getId() {
+        return "w3c-dom";
+    }
+
+    @Override
+    public Document parse(SourceFile sourceFile) throws Exception {
+        DocumentBuilder documentBuilder = RuleContext.current().getDocumentBuilder();
+
+        // Parse the bytes rather than the cached contents, so that the parser picks up the declared encoding
+        Document document;
+        try (InputStream inputStream = sourceFile.openStream()) {
+            document = documentBuilder.parse(inputStream, sourceFile.getFile().toURI().toString());
+        }
+        document.getDocumentElement().normalize();
+
+        return document;
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Caches that are shared by every rule during a single lint run, so that the same work (reading a file, for example)
+ * doesn't have to be done once per rule.
+ */
+package com.selesse.jxlint.cache;
@@ -1,14 +1,12 @@
 package com.selesse.jxlint.cli;
 
-import com.google.common.base.Charsets;
 import com.google.common.collect.Ordering;
 import com.selesse.jxlint.model.ExitType;
 import com.selesse.jxlint.settings.ProgramSettings;
 import org.apache.commons.cli.*;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 @SuppressWarnings("AccessStaticViaInstance")
 /**
@@ -37,6 +35,12 @@ public class CommandLineOptions {
                 hasOptionalArg().
                 withArgName("port").create('b')
         );
+        options.addOption(OptionBuilder.withLongOpt("daemon").
+                withDescription("Keep running in the background, validating the directories sent by " +
+                        "clients. (default port: " + ProgramOptionExtractor.DEFAULT_DAEMON_PORT + ")").
+                hasOptionalArg().
+                withArgName("port").create('n')
+        );
         options.addOption("r", "rules", false, "Prints a Markdown dump of the program's rules.");
         options.addOption(OptionBuilder.withLongOpt("show").
                 withDescription("Lists a verbose rule explanation.").
@@ -63,10 +67,102 @@ public class CommandLineOptions {
                         hasArg().
                         withArgName("CATEGORY[s]").create('y')
         );
+        options.addOption("f", "file-major", false, "Read each file once, for all rules.");
+        options.addOption(OptionBuilder.withLongOpt("cache-size").
+                withDescription("Memory used by each cache (file contents, parsed files), i.e. 512k, 64m " +
+                        "or 0 to disable. (default: 64m)").
+                hasArg().
+                withArgName("size").create('m')
+        );
+        options.addOption("o", "off-heap", false, "Cache file contents outside of the heap.");
+        options.addOption(OptionBuilder.withLongOpt("incremental").
+                withDescription("Only validate files that changed since the last run, " +
+                        "using this cache file.").
+                hasArg().
+                withArgName("file").create('i')
+        );
+        options.addOption(OptionBuilder.withLongOpt("changed-since").
+                withDescription("Only validate files that changed since this Git revision.").
+                hasArg().
+                withArgName("ref").create('g')
+        );
+        options.addOption("a", "staged", false, "Only validate the staged contents of files staged in Git.");
+        options.addOption("k", "watch", false, "Keep running, validating files again when they change.");
+        options.addOption(OptionBuilder.withLongOpt("file-timeout").
+                withDescription("Stop validating a file after this long, i.e. 500ms, 30s or 5m, and report it " +
+                        "instead.").
+                hasArg().
+                withArgName("time").create('u')
+        );
+        options.addOption(OptionBuilder.withLongOpt("rule-timeout").
+                withDescription("Stop running a rule after this long, and report it instead.").
+                hasArg().
+                withArgName("time").create('j')
+        );
+        options.addOption("z", "stream", false, "Report errors as they are found, in no particular order, instead " +
+                "of keeping them all in memory. Supported by the default and XML reports.");
         options.addOption("w", "nowarn", false, "Only check for errors; ignore warnings.");
         options.addOption("Wall", "Wall", false, "Check all warnings, including those off by default.");
         options.addOption("Werror", "Werror", false, "Treat all warnings as errors.");
 
+        options.addOption(OptionBuilder.withLongOpt("history").
+                withDescription("Keep how long every rule takes in this file, and start the rules expected to " +
+                        "take the longest first.").
+                hasArg().
+                withArgName("file").create("history")
+        );
+        options.addOption("plan", "plan", false, "List the rules in the order they would run, with their files and " +
+                "estimated time, without validating anything.");
+        options.addOption(OptionBuilder.withLongOpt("threads").
+                withDescription("Number of threads that run the rules. (default: one per available processor)").
+                hasArg().
+                withArgName("count").create("threads")
+        );
+        options.addOption(OptionBuilder.withLongOpt("io-threads").
+                withDescription("Number of threads that read files ahead of the rules and run I/O-heavy rules. " +
+                        "(default: 0)").
+                hasArg().
+                withArgName("count").create("io")
+        );
+        options.addOption("vt", "virtual-threads", false, "Read files and run I/O-heavy rules on virtual threads, " +
+                "with up to --io-threads files at a time (default: 256). Needs Java 21 or later.");
+        options.addOption(OptionBuilder.withLongOpt("shard").
+                withDescription("Only validate shard i of N, a slice of the files of every rule balanced by size " +
+                        "(or --history), and write its errors to --partial.").
+                hasArg().
+                withArgName("i/N").create("shard")
+        );
+        options.addOption(OptionBuilder.withLongOpt("partial").
+                withDescription("Write the errors of a --shard run to this file, for --merge.").
+                hasArg().
+                withArgName("file").create("partial")
+        );
+        options.addOption(OptionBuilder.withLongOpt("merge").
+                withDescription("Report the errors in the --partial files of every shard, instead of validating " +
+                        "anything.").
+                hasArg().
+                withArgName("file[s]").create("merge")
+        );
+        options.addOption(OptionBuilder.withLongOpt("workers").
+                withDescription("Run the rules in this many worker processes, each with its own heap, instead of " +
+                        "threads. Idle workers take batches of files from busy ones.").
+                hasArg().
+                withArgName("count").create("workers")
+        );
+        options.addOption(OptionBuilder.withLongOpt("spill-after").
+                withDescription("Keep at most this many errors in memory for the report, and spill the others to " +
+                        "sorted temporary files.").
+                hasArg().
+                withArgName("count").create("sp")
+        );
+        options.addOption(OptionBuilder.withLongOpt("exclude").
+                withDescription("Skip the files and directories that match these globs, i.e. \"build,**/*.min.js\". " +
+                        "Globs without a \"/\" match names in any directory.").
+                hasArg().
+                withArgName("glob[s]").create("ex")
+        );
+        options.addOption("ni", "no-ignore", false, "Validate the files that .gitignore files ignore too.");
+
         OptionGroup outputOptionGroup = new OptionGroup();
         outputOptionGroup.addOption(OptionBuilder.withLongOpt("quiet").
                 withDescription("Don't output any progress or reports.").
@@ -104,27 +200,15 @@ public class CommandLineOptions {
             exitStatusFooter.append(String.format("%-21d %-30s%n", exitType.getErrorCode(), exitType.getExplanation()));
         }
 
-        String outputString = "";
-
-        // redirect stdout to a temporary stream to capture HelpFormatter.printHelp()
-        PrintStream previousOut = System.out;
-        try {
-            final ByteArrayOutputStream output = new ByteArrayOutputStream();
-            System.setOut(new PrintStream(output, true, Charsets.UTF_8.displayName()));
-
-            helpFormatter.printHelp(programSettings.getProgramName() + " [flags] <directory>", "",
-                    generateJxlintOptions(), "\n" + exitStatusFooter.toString().trim());
-
-            outputString = output.toString(Charsets.UTF_8.displayName());
-        }
-        catch (UnsupportedEncodingException e) {
-            // nothing to do here, why wouldn't UTF-8 be available?
-        }
-        finally {
-            System.setOut(previousOut);
+        StringWriter output = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(output)) {
+            helpFormatter.printHelp(printWriter, helpFormatter.getWidth(),
+                    programSettings.getProgramName() + " [flags] <directory>", "", generateJxlintOptions(),
+                    helpFormatter.getLeftPadding(), helpFormatter.getDescPadding(),
+                    "\n" + exitStatusFooter.toString().trim());
         }
 
-        return outputString;
+        return output.toString();
     }
 
     /**
@@ -132,7 +216,7 @@ public class CommandLineOptions {
      * {@link #optionsOrdering}.
      */
     private static String getOptionsOrder() {
-        return "hvplbrscdeywWallWerrorqtx";
+        return "hvplbnrscdeyfmoigakujzwWallWerrorqtxhistoryplanthreadsiovtshardpartialmergeworkersspexni";
     }
 
     /**
@@ -13,6 +13,7 @@ import java.util.List;
  */
 public class ProgramOptionExtractor {
     public static final String DEFAULT_PORT = "8380";
+    public static final String DEFAULT_DAEMON_PORT = "8381";
     @VisibleForTesting
     static final String HTML_OPTION = "html";
     @VisibleForTesting
@@ -39,6 +40,10 @@ public class ProgramOptionExtractor {
             String port = commandLine.getOptionValue(JxlintOption.WEB.getOptionString(), DEFAULT_PORT);
             programOptions.addOption(JxlintOption.WEB, port);
         }
+        if (commandLine.hasOption(JxlintOption.DAEMON.getOptionString())) {
+            String port = commandLine.getOptionValue(JxlintOption.DAEMON.getOptionString(), DEFAULT_DAEMON_PORT);
+            programOptions.addOption(JxlintOption.DAEMON, port);
+        }
         if (commandLine.hasOption(JxlintOption.REPORT_RULES.getOptionString())) {
             programOptions.addOption(JxlintOption.REPORT_RULES);
         }
@@ -62,6 +67,86 @@ public class ProgramOptionExtractor {
             programOptions.addOption(JxlintOption.CHECK,
                     commandLine.getOptionValue(JxlintOption.CHECK.getOptionString()));
         }
+        if (commandLine.hasOption(JxlintOption.FILE_MAJOR.getOptionString())) {
+            programOptions.addOption(JxlintOption.FILE_MAJOR);
+        }
+        if (commandLine.hasOption(JxlintOption.CACHE_SIZE.getOptionString())) {
+            programOptions.addOption(JxlintOption.CACHE_SIZE,
+                    commandLine.getOptionValue(JxlintOption.CACHE_SIZE.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.OFF_HEAP.getOptionString())) {
+            programOptions.addOption(JxlintOption.OFF_HEAP);
+        }
+        if (commandLine.hasOption(JxlintOption.INCREMENTAL.getOptionString())) {
+            programOptions.addOption(JxlintOption.INCREMENTAL,
+                    commandLine.getOptionValue(JxlintOption.INCREMENTAL.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.CHANGED_SINCE.getOptionString())) {
+            programOptions.addOption(JxlintOption.CHANGED_SINCE,
+                    commandLine.getOptionValue(JxlintOption.CHANGED_SINCE.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.STAGED.getOptionString())) {
+            programOptions.addOption(JxlintOption.STAGED);
+        }
+        if (commandLine.hasOption(JxlintOption.WATCH.getOptionString())) {
+            programOptions.addOption(JxlintOption.WATCH);
+        }
+        if (commandLine.hasOption(JxlintOption.FILE_TIMEOUT.getOptionString())) {
+            programOptions.addOption(JxlintOption.FILE_TIMEOUT,
+                    commandLine.getOptionValue(JxlintOption.FILE_TIMEOUT.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.RULE_TIMEOUT.getOptionString())) {
+            programOptions.addOption(JxlintOption.RULE_TIMEOUT,
+                    commandLine.getOptionValue(JxlintOption.RULE_TIMEOUT.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.STREAM.getOptionString())) {
+            programOptions.addOption(JxlintOption.STREAM);
+        }
+        if (commandLine.hasOption(JxlintOption.HISTORY.getOptionString())) {
+            programOptions.addOption(JxlintOption.HISTORY,
+                    commandLine.getOptionValue(JxlintOption.HISTORY.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.PLAN.getOptionString())) {
+            programOptions.addOption(JxlintOption.PLAN);
+        }
+        if (commandLine.hasOption(JxlintOption.THREADS.getOptionString())) {
+            programOptions.addOption(JxlintOption.THREADS,
+                    commandLine.getOptionValue(JxlintOption.THREADS.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.IO_THREADS.getOptionString())) {
+            programOptions.addOption(JxlintOption.IO_THREADS,
+                    commandLine.getOptionValue(JxlintOption.IO_THREADS.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.VIRTUAL_THREADS.getOptionString())) {
+            programOptions.addOption(JxlintOption.VIRTUAL_THREADS);
+        }
+        if (commandLine.hasOption(JxlintOption.SHARD.getOptionString())) {
+            programOptions.addOption(JxlintOption.SHARD,
+                    commandLine.getOptionValue(JxlintOption.SHARD.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.PARTIAL.getOptionString())) {
+            programOptions.addOption(JxlintOption.PARTIAL,
+                    commandLine.getOptionValue(JxlintOption.PARTIAL.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.MERGE.getOptionString())) {
+            programOptions.addOption(JxlintOption.MERGE,
+                    commandLine.getOptionValue(JxlintOption.MERGE.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.WORKERS.getOptionString())) {
+            programOptions.addOption(JxlintOption.WORKERS,
+                    commandLine.getOptionValue(JxlintOption.WORKERS.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.SPILL_AFTER.getOptionString())) {
+            programOptions.addOption(JxlintOption.SPILL_AFTER,
+                    commandLine.getOptionValue(JxlintOption.SPILL_AFTER.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.EXCLUDE.getOptionString())) {
+            programOptions.addOption(JxlintOption.EXCLUDE,
+                    commandLine.getOptionValue(JxlintOption.EXCLUDE.getOptionString()));
+        }
+        if (commandLine.hasOption(JxlintOption.NO_IGNORE.getOptionString())) {
+            programOptions.addOption(JxlintOption.NO_IGNORE);
+        }
         if (commandLine.hasOption(JxlintOption.NO_WARNINGS.getOptionString())) {
             programOptions.addOption(JxlintOption.NO_WARNINGS);
         }
@@ -0,0 +1,102 @@
+package com.selesse.jxlint.daemon;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.selesse.jxlint.cli.ProgramOptionExtractor;
+import com.selesse.jxlint.model.ExitType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A client for the {@link JxlintDaemon}: sends it the command line arguments, prints what it outputs and exits with
+ * its exit code, as if jxlint had been run directly. The port is 8381 unless the "jxlint.daemon.port" system property
+ * says otherwise.
+ *
+ * <p>
+ *     The protocol is line-based and encoded in UTF-8. A request is the daemon's token (see
+ *     {@link #getTokenFile(int)}), followed by the client's (absolute) working directory, followed by one argument
+ *     per line, followed by an empty line. The response is the output of jxlint, every line
+ *     of it prefixed with "&gt; ", followed by "exit &lt;code&gt;". Therefore, arguments can't be empty or contain
+ *     line breaks.
+ * </p>
+ */
+public class DaemonClient {
+    public static final String PORT_PROPERTY = "jxlint.daemon.port";
+    public static final String TOKEN_DIRECTORY_PROPERTY = "jxlint.daemon.tokenDirectory";
+    static final String OUTPUT_PREFIX = "> ";
+    static final String EXIT_PREFIX = "exit ";
+
+    public static void main(String[] args) {
+        int port = Integer.getInteger(PORT_PROPERTY, Integer.parseInt(ProgramOptionExtractor.DEFAULT_DAEMON_PORT));
+        try {
+            int exitCode = send(port, new File("").getAbsoluteFile(), Arrays.asList(args), System.out);
+            System.exit(exitCode);
+        }
+        catch (IOException e) {
+            System.err.println("Could not reach the jxlint daemon on port " + port + ": " + e.getMessage());
+            System.exit(ExitType.FAILED.getErrorCode());
+        }
+    }
+
+    /**
+     * Returns the file the daemon listening on the port writes its token to: "daemon-&lt;port&gt;.token", in the
+     * ".jxlint" directory of the user's home unless the "jxlint.daemon.tokenDirectory" system property says
+     * otherwise.
+     */
+    public static File getTokenFile(int port) {
+        String defaultDirectory = new File(System.getProperty("user.home"), ".jxlint").getPath();
+        File directory = new File(System.getProperty(TOKEN_DIRECTORY_PROPERTY, defaultDirectory));
+        return new File(directory, "daemon-" + port + ".token");
+    }
+
+    /**
+     * Sends a request to the daemon listening on the port, and prints its output.
+     *
+     * @return The exit code of the request
+     */
+    public static int send(int port, File workingDirectory, List<String> arguments, PrintStream out)
+            throws IOException {
+        File tokenFile = getTokenFile(port);
+        String token = tokenFile.isFile() ? Files.asCharSource(tokenFile, Charsets.UTF_8).readFirstLine() : null;
+        if (token == null) {
+            throw new IOException("Could not read the daemon's token from " + tokenFile);
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), Charsets.UTF_8);
+            writer.write(token + "\n");
+            writer.write(workingDirectory.getAbsolutePath() + "\n");
+            for (String argument : arguments) {
+                if (argument.isEmpty() || argument.contains("\n")) {
+                    throw new IllegalArgumentException("Arguments can't be empty or contain line breaks: " +
+                            argument);
+                }
+                writer.write(argument + "\n");
+            }
+            writer.write("\n");
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(OUTPUT_PREFIX)) {
+                    out.println(line.substring(OUTPUT_PREFIX.length()));
+                }
+                else if (line.startsWith(EXIT_PREFIX)) {
+                    return Integer.parseInt(line.substring(EXIT_PREFIX.length()));
+                }
+            }
+            throw new IOException("The daemon closed the connection without an exit code");
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.selesse.jxlint.daemon;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.selesse.jxlint.Jxlint;
+import com.selesse.jxlint.ProgramExitter;
+import com.selesse.jxlint.cli.CommandLineOptions;
+import com.selesse.jxlint.model.ExitType;
+import com.selesse.jxlint.model.rules.LintRules;
+import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.RunContext;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.ParseException;
+import org.fusesource.jansi.AnsiConsole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Constructor;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A long-lived jxlint that validates the directories sent by clients, so that each validation doesn't have to pay
+ * for starting (and warming up) a JVM. It listens on a loopback port (see {@link DaemonClient} for the protocol) and
+ * handles up to a fixed number of requests concurrently, then shuts itself down once it has been idle for a while.
+ *
+ * <p>
+ *     Only the user that started the daemon can send it requests: it writes a random token to a file that only that
+ *     user can read (see {@link DaemonClient#getTokenFile(int)}), and rejects the requests that don't start with it.
+ *     Other users and processes could otherwise make it read and write files with its permissions.
+ * </p>
+ *
+ * <p>
+ *     Every request runs in a {@link RunContext} of its own, with its own {@link LintRules} (borrowed from a pool),
+ *     {@link com.selesse.jxlint.linter.Linter}, {@link com.selesse.jxlint.settings.Profiler} and caches. What it
+ *     prints on {@link System#out} is sent to its client, and exiting the program only ends the request: its exit
+ *     code is sent to the client instead.
+ * </p>
+ */
+public class JxlintDaemon implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JxlintDaemon.class);
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLISECONDS = TimeUnit.MINUTES.toMillis(30);
+    private static final int ACCEPT_TIMEOUT_MILLISECONDS = 500;
+    private static final int TOKEN_BYTES = 16;
+    private static final Set<String> PATH_OPTIONS = ImmutableSet.of("html", "xml", "incremental", "history", "partial");
+    // Options whose value is a comma-separated list of paths
+    private static final Set<String> PATH_LIST_OPTIONS = ImmutableSet.of("merge");
+    private static final Set<String> UNSUPPORTED_OPTIONS = ImmutableSet.of("web", "watch", "daemon");
+    private static final RunContext.Slot<OutputStream> requestOutput = RunContext.newSlot();
+
+    private final ProgramSettings programSettings;
+    private final BlockingQueue<LintRules> lintRulesPool;
+    private final ServerSocket serverSocket;
+    private final ExecutorService requestExecutor;
+    private final long idleTimeoutMilliseconds;
+    private final String token;
+    private final File tokenFile;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private volatile long lastActivityTime;
+
+    /**
+     * @param lintRulesSupplier Creates the {@link LintRules} of every concurrent request, so it has to return a
+     *                          new instance every time
+     * @param port The port to listen on, or 0 for any free port (see {@link #getPort()})
+     * @param concurrency How many requests can be handled at the same time
+     * @param idleTimeoutMilliseconds How long to wait for requests before shutting down
+     */
+    public JxlintDaemon(Supplier<LintRules> lintRulesSupplier, ProgramSettings programSettings, int port,
+                        int concurrency, long idleTimeoutMilliseconds) throws IOException {
+        this.programSettings = programSettings;
+        this.idleTimeoutMilliseconds = idleTimeoutMilliseconds;
+        this.lintRulesPool = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            lintRulesPool.add(lintRulesSupplier.get());
+        }
+
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLISECONDS);
+
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(tokenBytes);
+        this.token = BaseEncoding.base16().lowerCase().encode(tokenBytes);
+        this.tokenFile = DaemonClient.getTokenFile(getPort());
+        try {
+            writeTokenFile(tokenFile, token);
+        }
+        catch (IOException e) {
+            serverSocket.close();
+            throw new IOException("Could not write the token file " + tokenFile + ": " + e.getMessage(), e);
+        }
+
+        this.requestExecutor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("jxlint-daemon-%d").build());
+    }
+
+    /**
+     * Writes the token to a file that only the owner of the daemon can read and write.
+     */
+    private static void writeTokenFile(File tokenFile, String token) throws IOException {
+        Path directory = tokenFile.getParentFile().toPath();
+        Path path = tokenFile.toPath();
+        Files.createDirectories(directory);
+        Files.deleteIfExists(path);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        else {
+            Files.createFile(path);
+            boolean isOwnerOnly = tokenFile.setReadable(false, false) && tokenFile.setReadable(true, true) &&
+                    tokenFile.setWritable(false, false) && tokenFile.setWritable(true, true);
+            if (!isOwnerOnly) {
+                throw new IOException("Could not make the file private");
+            }
+        }
+        Files.write(path, token.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Creates a daemon for the rules of a program. Every concurrent request gets its own instance of the rules'
+     * class, created with its public no-argument constructor. If there isn't one, the daemon handles one request at
+     * a time, with these rules.
+     */
+    public static JxlintDaemon create(LintRules lintRules, ProgramSettings programSettings, int port)
+            throws IOException {
+        try {
+            Constructor<? extends LintRules> constructor = lintRules.getClass().getConstructor();
+            int concurrency = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+            return new JxlintDaemon(() -> newInstance(constructor), programSettings, port, concurrency,
+                    DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+        }
+        catch (NoSuchMethodException e) {
+            LOGGER.info("{} has no public no-argument constructor, requests will be handled one at a time",
+                    lintRules.getClass().getName());
+            return new JxlintDaemon(() -> lintRules, programSettings, port, 1, DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+        }
+    }
+
+    private static LintRules newInstance(Constructor<? extends LintRules> constructor) {
+        try {
+            return constructor.newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Handles requests until the daemon has been idle for too long, or until it gets closed. Requests that are in
+     * progress get to finish.
+     */
+    public void run() {
+        LOGGER.info("Listening on {}", serverSocket.getLocalSocketAddress());
+        lastActivityTime = System.currentTimeMillis();
+
+        // Jansi only wraps the console once, so it has to be done before the console gets replaced by our router
+        AnsiConsole.systemInstall();
+        PrintStream previousOut = System.out;
+        System.setOut(newPrintStream(new RequestOutputRouter(previousOut)));
+
+        try {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    activeRequests.incrementAndGet();
+                    requestExecutor.execute(() -> handle(socket));
+                }
+                catch (SocketTimeoutException e) {
+                    if (isIdle()) {
+                        LOGGER.info("No requests for {} ms, shutting down", idleTimeoutMilliseconds);
+                        break;
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+                LOGGER.error("Error accepting requests", e);
+            }
+        }
+        finally {
+            close();
+            try {
+                requestExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            System.setOut(previousOut);
+        }
+    }
+
+    private boolean isIdle() {
+        return activeRequests.get() == 0 && System.currentTimeMillis() - lastActivityTime >= idleTimeoutMilliseconds;
+    }
+
+    private void handle(Socket socket) {
+        try (Socket requestSocket = socket) {
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(requestSocket.getInputStream(), Charsets.UTF_8));
+            ResponseOutputStream response =
+                    new ResponseOutputStream(new BufferedOutputStream(requestSocket.getOutputStream()));
+            if (!isAuthenticated(reader.readLine())) {
+                LOGGER.warn("Rejected a request without the daemon's token from {}",
+                        requestSocket.getRemoteSocketAddress());
+                newPrintStream(response).println("Error: the request did not start with the daemon's token.");
+                response.finish(ExitType.FAILED.getErrorCode());
+                return;
+            }
+
+            String workingDirectory = reader.readLine();
+            List<String> arguments = Lists.newArrayList();
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                arguments.add(line);
+            }
+
+            int exitCode = lint(workingDirectory, arguments, response);
+            response.finish(exitCode);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not handle a request", e);
+        }
+        finally {
+            lastActivityTime = System.currentTimeMillis();
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * Compares the token in constant time, so that how long it takes doesn't tell how much of it is right.
+     */
+    private boolean isAuthenticated(String requestToken) {
+        return requestToken != null &&
+                MessageDigest.isEqual(token.getBytes(Charsets.UTF_8), requestToken.getBytes(Charsets.UTF_8));
+    }
+
+    private int lint(String workingDirectory, List<String> arguments, ResponseOutputStream response) {
+        PrintStream responseStream = newPrintStream(response);
+        if (workingDirectory == null || !new File(workingDirectory).isAbsolute()) {
+            responseStream.println("Error: the working directory must be an absolute path.");
+            return ExitType.COMMAND_LINE_ERROR.getErrorCode();
+        }
+
+        CommandLine commandLine = parse(arguments);
+        if (commandLine != null) {
+            for (Option option : commandLine.getOptions()) {
+                if (UNSUPPORTED_OPTIONS.contains(option.getLongOpt())) {
+                    responseStream.println("Error: \"" + option.getLongOpt() + "\" can't be used with the daemon.");
+                    return ExitType.COMMAND_LINE_ERROR.getErrorCode();
+                }
+            }
+        }
+        List<String> rewrittenArguments =
+                commandLine == null ? arguments : rewriteArguments(new File(workingDirectory), commandLine);
+        String[] requestArguments = rewrittenArguments.toArray(new String[rewrittenArguments.size()]);
+        LOGGER.debug("Handling request for {} in {}", rewrittenArguments, workingDirectory);
+
+        LintRules lintRules;
+        try {
+            lintRules = lintRulesPool.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExitType.FAILED.getErrorCode();
+        }
+
+        AtomicInteger exitCode = new AtomicInteger(ExitType.SUCCESS.getErrorCode());
+        try {
+            RunContext.create().run(() -> {
+                requestOutput.set(response);
+                ProgramExitter.setExitHandler(code -> {
+                    throw new RequestExitException(code);
+                });
+                try {
+                    new Jxlint(lintRules, programSettings, true).parseArgumentsAndDispatch(requestArguments);
+                }
+                catch (RequestExitException e) {
+                    exitCode.set(e.exitCode);
+                }
+                catch (RuntimeException e) {
+                    LOGGER.error("Error handling request for {}", rewrittenArguments, e);
+                    responseStream.println("Error: " + e);
+                    exitCode.set(ExitType.FAILED.getErrorCode());
+                }
+            });
+        }
+        finally {
+            lintRulesPool.add(lintRules);
+        }
+        return exitCode.get();
+    }
+
+    private static CommandLine parse(List<String> arguments) {
+        try {
+            return new GnuParser().parse(CommandLineOptions.generateJxlintOptions(),
+                    arguments.toArray(new String[arguments.size()]));
+        }
+        catch (ParseException e) {
+            // The request will fail with the usual message
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the arguments of a request, with the paths they contain made absolute, since relative paths are
+     * relative to the client's working directory, not the daemon's.
+     */
+    @VisibleForTesting
+    static List<String> rewriteArguments(File workingDirectory, CommandLine commandLine) {
+        List<String> arguments = Lists.newArrayList();
+        for (Object argument : commandLine.getArgList()) {
+            arguments.add(resolve(workingDirectory, (String) argument));
+        }
+        for (Option option : commandLine.getOptions()) {
+            arguments.add("--" + option.getLongOpt());
+            String value = option.getValue();
+            if (value == null) {
+                continue;
+            }
+            if (PATH_OPTIONS.contains(option.getLongOpt())) {
+                arguments.add(resolve(workingDirectory, value));
+            }
+            else if (PATH_LIST_OPTIONS.contains(option.getLongOpt())) {
+                List<String> paths = Lists.newArrayList();
+                for (String path : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+                    paths.add(resolve(workingDirectory, path));
+                }
+                arguments.add(Joiner.on(',').join(paths));
+            }
+            else {
+                arguments.add(value);
+            }
+        }
+        return arguments;
+    }
+
+    private static String resolve(File workingDirectory, String path) {
+        return new File(path).isAbsolute() ? path : new File(workingDirectory, path).getPath();
+    }
+
+    private static PrintStream newPrintStream(OutputStream outputStream) {
+        try {
+            return new PrintStream(outputStream, true, Charsets.UTF_8.name());
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Stops accepting requests, and deletes the token file.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not close the server socket", e);
+        }
+        requestExecutor.shutdown();
+        if (tokenFile.exists() && !tokenFile.delete()) {
+            LOGGER.warn("Could not delete the token file {}", tokenFile);
+        }
+    }
+
+    /**
+     * Thrown instead of exiting the program, to end the request.
+     */
+    private static class RequestExitException extends RuntimeException {
+        private final int exitCode;
+
+        RequestExitException(int exitCode) {
+            super("Exit with code " + exitCode, null, false, false);
+            this.exitCode = exitCode;
+        }
+    }
+
+    /**
+     * Sends what gets written to the response of the current request, or to the console outside of requests.
+     */
+    private static class RequestOutputRouter extends OutputStream {
+        private final OutputStream console;
+
+        RequestOutputRouter(OutputStream console) {
+            this.console = console;
+        }
+
+        private OutputStream target() {
+            OutputStream output = requestOutput.get();
+            return output == null ? console : output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            target().write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * Writes the output of a request in the daemon's protocol: every line is prefixed with "&gt; ", and the last line
+     * is "exit &lt;code&gt;".
+     */
+    private static class ResponseOutputStream extends OutputStream {
+        private final OutputStream socketOutput;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        ResponseOutputStream(OutputStream socketOutput) {
+            this.socketOutput = socketOutput;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                writeLine();
+            }
+            else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            socketOutput.flush();
+        }
+
+        private void writeLine() throws IOException {
+            socketOutput.write(DaemonClient.OUTPUT_PREFIX.getBytes(Charsets.UTF_8));
+            line.writeTo(socketOutput);
+            socketOutput.write('\n');
+            line.reset();
+        }
+
+        synchronized void finish(int exitCode) throws IOException {
+            if (line.size() > 0) {
+                writeLine();
+            }
+            socketOutput.write((DaemonClient.EXIT_PREFIX + exitCode + "\n").getBytes(Charsets.UTF_8));
+            socketOutput.flush();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * A long-lived jxlint process that validates directories on behalf of clients, avoiding the cost of starting a JVM
+ * for every run, and the client that talks to it.
+ */
+package com.selesse.jxlint.daemon;
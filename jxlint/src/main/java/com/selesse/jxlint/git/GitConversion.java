@@ -0,0 +1,167 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What Git does to the files of the working tree before hashing them (the "clean" conversion), as far as it can be
+ * told from the configuration and the attribute files. Only the conversion of line endings is applied: files that go
+ * through filters (e.g. Git LFS), "ident" or a working tree encoding can't be hashed without the git executable.
+ *
+ * <p>
+ *     Line endings are converted when "core.autocrlf" is "true" or "input", or when an attribute file sets "text",
+ *     "eol" or "crlf". Patterns of attribute files aren't matched: a conversion set for any path is assumed to apply
+ *     to every text file (i.e. every file without a NUL byte). Since the contents are also hashed as they are, a file
+ *     that Git doesn't convert is still recognized when it hasn't changed.
+ * </p>
+ */
+final class GitConversion {
+    private static final String ATTRIBUTES_FILE_NAME = ".gitattributes";
+    private static final Set<String> LINE_ENDING_ATTRIBUTES = ImmutableSet.of("text", "eol", "crlf");
+    private static final Set<String> FILTER_ATTRIBUTES = ImmutableSet.of("filter", "ident", "working-tree-encoding");
+    private static final Set<String> AUTOCRLF_VALUES = ImmutableSet.of("true", "yes", "on", "1", "input");
+
+    private final boolean convertsLineEndings;
+
+    private GitConversion(boolean convertsLineEndings) {
+        this.convertsLineEndings = convertsLineEndings;
+    }
+
+    /**
+     * Reads the conversion of a repository from its configuration (and the user's and the system's), its
+     * ".git/info/attributes" and the ".gitattributes" files it tracks.
+     *
+     * @param attributePaths The paths of the tracked files, relative to the working tree, with forward slashes
+     * @throws IOException If files go through a conversion that can't be applied, like a filter
+     */
+    static GitConversion read(File workTree, File gitDirectory, File commonDirectory, Iterable<String> attributePaths)
+            throws IOException {
+        List<File> attributeFiles = Lists.newArrayList(new File(gitDirectory, "info/attributes"),
+                getGlobalAttributesFile(commonDirectory));
+        for (String path : attributePaths) {
+            if (path.equals(ATTRIBUTES_FILE_NAME) || path.endsWith("/" + ATTRIBUTES_FILE_NAME)) {
+                attributeFiles.add(new File(workTree, path.replace('/', File.separatorChar)));
+            }
+        }
+
+        String autocrlf = readConfig(commonDirectory, "core", "autocrlf");
+        boolean convertsLineEndings = autocrlf != null && AUTOCRLF_VALUES.contains(autocrlf.toLowerCase());
+        for (File attributeFile : attributeFiles) {
+            if (!attributeFile.isFile()) {
+                continue;
+            }
+            for (String line : Files.readLines(attributeFile, Charsets.UTF_8)) {
+                List<String> tokens = Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().splitToList(line);
+                if (tokens.isEmpty() || tokens.get(0).startsWith("#")) {
+                    continue;
+                }
+                // The first token is the pattern (or "[attr]<name>" for a macro), the others are attributes
+                for (String attribute : tokens.subList(1, tokens.size())) {
+                    if (attribute.startsWith("-") || attribute.startsWith("!")) {
+                        continue;
+                    }
+                    String name = Splitter.on('=').limit(2).splitToList(attribute).get(0);
+                    if (FILTER_ATTRIBUTES.contains(name)) {
+                        throw new IOException(String.format("\"%s\" in %s can't be applied without git",
+                                attribute, attributeFile));
+                    }
+                    convertsLineEndings |= LINE_ENDING_ATTRIBUTES.contains(name);
+                }
+            }
+        }
+        return new GitConversion(convertsLineEndings);
+    }
+
+    private static File getGlobalAttributesFile(File commonDirectory) throws IOException {
+        String attributesFile = readConfig(commonDirectory, "core", "attributesfile");
+        if (attributesFile != null) {
+            return attributesFile.startsWith("~/") ?
+                    new File(System.getProperty("user.home"), attributesFile.substring(2)) : new File(attributesFile);
+        }
+        return new File(getXdgConfigDirectory(), "git/attributes");
+    }
+
+    private static File getXdgConfigDirectory() {
+        String xdgConfigHome = System.getenv("XDG_CONFIG_HOME");
+        return Strings.isNullOrEmpty(xdgConfigHome) ? new File(System.getProperty("user.home"), ".config") :
+                new File(xdgConfigHome);
+    }
+
+    /**
+     * Returns the value of a key in the repository's configuration, or in the user's or the system's (in that order of
+     * precedence), or null if it isn't set. Includes aren't followed.
+     */
+    private static String readConfig(File commonDirectory, String section, String key) throws IOException {
+        File homeDirectory = new File(System.getProperty("user.home"));
+        List<File> configFiles = ImmutableList.of(new File("/etc/gitconfig"),
+                new File(getXdgConfigDirectory(), "git/config"), new File(homeDirectory, ".gitconfig"),
+                new File(commonDirectory, "config"));
+        String value = null;
+        for (File configFile : configFiles) {
+            if (!configFile.isFile()) {
+                continue;
+            }
+            String currentSection = "";
+            for (String line : Files.readLines(configFile, Charsets.UTF_8)) {
+                line = line.trim();
+                if (line.startsWith("[")) {
+                    currentSection = CharMatcher.anyOf("[]").trimFrom(line).trim().toLowerCase();
+                    continue;
+                }
+                List<String> keyAndValue = Splitter.on('=').trimResults().limit(2).splitToList(line);
+                if (currentSection.equals(section) && keyAndValue.get(0).equalsIgnoreCase(key)) {
+                    // A key without a value is true
+                    value = keyAndValue.size() == 1 ? "true" : CharMatcher.is('"').trimFrom(
+                            Splitter.on(CharMatcher.anyOf("#;")).split(keyAndValue.get(1)).iterator().next().trim());
+                }
+            }
+        }
+        return value;
+    }
+
+    boolean convertsLineEndings() {
+        return convertsLineEndings;
+    }
+
+    /**
+     * Returns the contents as Git would hash them, or null if Git would hash them as they are.
+     */
+    byte[] clean(byte[] contents) {
+        if (!convertsLineEndings) {
+            return null;
+        }
+        int crlfCount = 0;
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] == 0) {
+                // Binary files are never converted
+                return null;
+            }
+            if (contents[i] == '\r' && i + 1 < contents.length && contents[i + 1] == '\n') {
+                crlfCount++;
+            }
+        }
+        if (crlfCount == 0) {
+            return null;
+        }
+
+        byte[] cleanContents = new byte[contents.length - crlfCount];
+        int length = 0;
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != '\r' || i + 1 == contents.length || contents[i + 1] != '\n') {
+                cleanContents[length++] = contents[i];
+            }
+        }
+        return cleanContents;
+    }
+}
@@ -0,0 +1,210 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The index (a.k.a. staging area) of a repository, as found in ".git/index". Versions 2, 3 and 4 of the format are
+ * supported. Extensions are skipped, except for the split index, which isn't supported.
+ */
+class GitIndex {
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = GitObject.ID_LENGTH;
+    private static final int EXTENDED_FLAG = 0x4000;
+    private static final int SKIP_WORKTREE_FLAG = 0x4000;
+    private static final int INTENT_TO_ADD_FLAG = 0x2000;
+    private static final int NAME_MASK = 0xfff;
+
+    private final List<Entry> entries;
+
+    private GitIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Reads an index file. A missing file is an empty index, like in a brand new repository.
+     */
+    static GitIndex read(File indexFile) throws IOException {
+        if (!indexFile.isFile()) {
+            return new GitIndex(ImmutableList.of());
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.toByteArray(indexFile));
+        if (buffer.remaining() < HEADER_SIZE + TRAILER_SIZE || buffer.getInt() != SIGNATURE) {
+            throw new IOException("Not a Git index file: " + indexFile);
+        }
+        int version = buffer.getInt();
+        if (version < 2 || version > 4) {
+            throw new IOException(String.format("Unsupported index version %d: %s", version, indexFile));
+        }
+        int entryCount = buffer.getInt();
+
+        ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+        byte[] previousPath = new byte[0];
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = readEntry(buffer, version, previousPath);
+            previousPath = entry.path.getBytes(Charsets.UTF_8);
+            entries.add(entry);
+        }
+
+        while (buffer.remaining() > TRAILER_SIZE) {
+            byte[] signature = new byte[4];
+            buffer.get(signature);
+            int extensionSize = buffer.getInt();
+            if (new String(signature, Charsets.US_ASCII).equals("link")) {
+                throw new IOException("Split indexes are not supported: " + indexFile);
+            }
+            buffer.position(buffer.position() + extensionSize);
+        }
+
+        return new GitIndex(entries.build());
+    }
+
+    private static Entry readEntry(ByteBuffer buffer, int version, byte[] previousPath) {
+        int start = buffer.position();
+        buffer.position(start + 8); // ctime
+        int mtimeSeconds = buffer.getInt();
+        int mtimeNanos = buffer.getInt();
+        buffer.position(buffer.position() + 8); // dev, ino
+        int mode = buffer.getInt();
+        buffer.position(buffer.position() + 8); // uid, gid
+        int size = buffer.getInt();
+        byte[] id = new byte[GitObject.ID_LENGTH];
+        buffer.get(id);
+        int flags = buffer.getShort() & 0xffff;
+        int extendedFlags = 0;
+        if (version >= 3 && (flags & EXTENDED_FLAG) != 0) {
+            extendedFlags = buffer.getShort() & 0xffff;
+        }
+
+        String path;
+        if (version == 4) {
+            // The path is the previous path, minus some bytes at the end, plus a NUL-terminated suffix
+            int strippedLength = (int) readOffsetEncodedInt(buffer);
+            ByteArrayOutputStream pathBytes = new ByteArrayOutputStream();
+            pathBytes.write(previousPath, 0, previousPath.length - strippedLength);
+            byte b;
+            while ((b = buffer.get()) != 0) {
+                pathBytes.write(b);
+            }
+            path = new String(pathBytes.toByteArray(), Charsets.UTF_8);
+        }
+        else {
+            int nameLength = flags & NAME_MASK;
+            int nameStart = buffer.position();
+            if (nameLength == NAME_MASK) {
+                while (buffer.get(nameStart + nameLength) != 0) {
+                    nameLength++;
+                }
+            }
+            path = new String(buffer.array(), nameStart, nameLength, Charsets.UTF_8);
+            // Entries are padded with 1 to 8 NULs, to a multiple of 8 bytes
+            int entryLength = (nameStart - start) + nameLength;
+            buffer.position(start + ((entryLength + 8) & ~7));
+        }
+
+        return new Entry(path, GitObject.toHex(id, 0), mode, (flags >> 12) & 3, mtimeSeconds, mtimeNanos, size,
+                (extendedFlags & SKIP_WORKTREE_FLAG) != 0, (extendedFlags & INTENT_TO_ADD_FLAG) != 0);
+    }
+
+    /**
+     * Reads a number in the same variable-length encoding as the offsets of deltas in pack files.
+     */
+    private static long readOffsetEncodedInt(ByteBuffer buffer) {
+        int c = buffer.get() & 0xff;
+        long value = c & 0x7f;
+        while ((c & 0x80) != 0) {
+            c = buffer.get() & 0xff;
+            value = ((value + 1) << 7) | (c & 0x7f);
+        }
+        return value;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    static class Entry {
+        private static final int REGULAR_FILE_MODE = 0100000;
+        private static final int TYPE_MASK = 0170000;
+
+        private final String path;
+        private final String id;
+        private final int mode;
+        private final int stage;
+        private final int mtimeSeconds;
+        private final int mtimeNanos;
+        private final int size;
+        private final boolean isSkipWorktree;
+        private final boolean isIntentToAdd;
+
+        Entry(String path, String id, int mode, int stage, int mtimeSeconds, int mtimeNanos, int size,
+              boolean isSkipWorktree, boolean isIntentToAdd) {
+            this.path = path;
+            this.id = id;
+            this.mode = mode;
+            this.stage = stage;
+            this.mtimeSeconds = mtimeSeconds;
+            this.mtimeNanos = mtimeNanos;
+            this.size = size;
+            this.isSkipWorktree = isSkipWorktree;
+            this.isIntentToAdd = isIntentToAdd;
+        }
+
+        /**
+         * The path of the file, relative to the root of the working tree, with forward slashes.
+         */
+        String getPath() {
+            return path;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        /**
+         * 0 for a normal entry, 1 to 3 for the different sides of a merge conflict.
+         */
+        int getStage() {
+            return stage;
+        }
+
+        int getMtimeSeconds() {
+            return mtimeSeconds;
+        }
+
+        int getMtimeNanos() {
+            return mtimeNanos;
+        }
+
+        /**
+         * The size of the file, truncated to 32 bits.
+         */
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * Whether this is a regular file, as opposed to a symbolic link or a submodule.
+         */
+        boolean isRegularFile() {
+            return (mode & TYPE_MASK) == REGULAR_FILE_MODE;
+        }
+
+        boolean isSkipWorktree() {
+            return isSkipWorktree;
+        }
+
+        boolean isIntentToAdd() {
+            return isIntentToAdd;
+        }
+    }
+}
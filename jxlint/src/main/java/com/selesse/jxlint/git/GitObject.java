@@ -0,0 +1,73 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * An object from a Git object database: a commit, a tree, a blob or a tag, with its (inflated) contents. Object ids
+ * are passed around as 40-character lowercase hexadecimal strings.
+ */
+class GitObject {
+    static final String COMMIT = "commit";
+    static final String TREE = "tree";
+    static final String BLOB = "blob";
+    static final String TAG = "tag";
+
+    static final int ID_LENGTH = 20;
+    private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+    private final String type;
+    private final byte[] contents;
+
+    GitObject(String type, byte[] contents) {
+        this.type = type;
+        this.contents = contents;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    byte[] getContents() {
+        return contents;
+    }
+
+    /**
+     * Returns the contents of this object, making sure it is of the expected type.
+     */
+    byte[] getContents(String expectedType, String id) throws IOException {
+        if (!type.equals(expectedType)) {
+            throw new IOException(String.format("Expected %s to be a %s, but it is a %s", id, expectedType, type));
+        }
+        return contents;
+    }
+
+    static boolean isObjectId(String string) {
+        return ID_PATTERN.matcher(string).matches();
+    }
+
+    static String toHex(byte[] bytes, int offset) {
+        return HEX.encode(bytes, offset, ID_LENGTH);
+    }
+
+    static byte[] fromHex(String id) {
+        return HEX.decode(id);
+    }
+
+    /**
+     * Returns the id Git gives to a blob with these contents, i.e. the SHA-1 of "blob &lt;length&gt;\0" followed by
+     * the contents.
+     */
+    static String blobId(byte[] contents) {
+        return Hashing.sha1().newHasher()
+                .putBytes((BLOB + " " + contents.length + "\0").getBytes(Charsets.US_ASCII))
+                .putBytes(contents)
+                .hash()
+                .toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The objects of a repository: loose objects, pack files, and the objects of alternate repositories (see
+ * "objects/info/alternates").
+ */
+class GitObjectDatabase implements Closeable {
+    private final List<File> objectDirectories;
+    private List<GitPackFile> packFiles;
+
+    GitObjectDatabase(File objectDirectory) throws IOException {
+        this.objectDirectories = Lists.newArrayList(objectDirectory);
+        File alternates = new File(objectDirectory, "info/alternates");
+        if (alternates.isFile()) {
+            for (String line : Files.readLines(alternates, Charsets.UTF_8)) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    File alternate = new File(line);
+                    objectDirectories.add(alternate.isAbsolute() ? alternate : new File(objectDirectory, line));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the object with this id.
+     *
+     * @throws FileNotFoundException If there's no such object
+     */
+    GitObject read(String id) throws IOException {
+        for (File objectDirectory : objectDirectories) {
+            File looseObject = new File(objectDirectory, id.substring(0, 2) + File.separator + id.substring(2));
+            if (looseObject.isFile()) {
+                return readLooseObject(looseObject);
+            }
+        }
+        for (GitPackFile packFile : getPackFiles()) {
+            GitObject object = packFile.read(id);
+            if (object != null) {
+                return object;
+            }
+        }
+        throw new FileNotFoundException("Object not found: " + id);
+    }
+
+    /**
+     * Returns the ids of all the objects that start with this (hexadecimal) prefix.
+     */
+    Set<String> findByPrefix(String prefix) throws IOException {
+        Set<String> ids = Sets.newTreeSet();
+        for (File objectDirectory : objectDirectories) {
+            File[] looseObjects = new File(objectDirectory, prefix.substring(0, 2)).listFiles();
+            if (looseObjects != null) {
+                for (File looseObject : looseObjects) {
+                    String id = prefix.substring(0, 2) + looseObject.getName();
+                    if (GitObject.isObjectId(id) && id.startsWith(prefix)) {
+                        ids.add(id);
+                    }
+                }
+            }
+        }
+        for (GitPackFile packFile : getPackFiles()) {
+            packFile.findByPrefix(prefix, ids);
+        }
+        return ids;
+    }
+
+    private static GitObject readLooseObject(File looseObject) throws IOException {
+        try (InputStream inputStream = new InflaterInputStream(new FileInputStream(looseObject))) {
+            StringBuilder header = new StringBuilder();
+            int c;
+            while ((c = inputStream.read()) > 0) {
+                header.append((char) c);
+            }
+            String[] typeAndSize = header.toString().split(" ");
+            if (c < 0 || typeAndSize.length != 2) {
+                throw new IOException("Corrupt object: " + looseObject);
+            }
+
+            byte[] contents = new byte[Ints.checkedCast(Long.parseLong(typeAndSize[1]))];
+            ByteStreams.readFully(inputStream, contents);
+            return new GitObject(typeAndSize[0], contents);
+        }
+    }
+
+    private synchronized List<GitPackFile> getPackFiles() throws IOException {
+        if (packFiles == null) {
+            packFiles = Lists.newArrayList();
+            for (File objectDirectory : objectDirectories) {
+                File[] indexFiles = new File(objectDirectory, "pack").listFiles((dir, name) -> name.endsWith(".idx"));
+                if (indexFiles != null) {
+                    for (File indexFile : indexFiles) {
+                        packFiles.add(new GitPackFile(indexFile, this));
+                    }
+                }
+            }
+        }
+        return packFiles;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (packFiles != null) {
+            for (GitPackFile packFile : packFiles) {
+                packFile.close();
+            }
+            packFiles = null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A pack file and its (version 2) index. Objects are looked up in the index, which is memory-mapped, and read from
+ * the pack with positional reads, so a pack can be shared by several threads. The pack isn't read through a
+ * {@link FileChannel}, since interrupting a thread (when a validation times out) would close the channel for every
+ * thread. Deltified objects are rebuilt from
+ * their base, and recently used bases are kept around, since a lot of objects tend to share the same ones.
+ */
+class GitPackFile implements Closeable {
+    private static final int OBJ_COMMIT = 1;
+    private static final int OBJ_TREE = 2;
+    private static final int OBJ_BLOB = 3;
+    private static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    private static final int INDEX_MAGIC = 0xff744f63;
+    private static final int FANOUT_OFFSET = 8;
+    private static final int NAMES_OFFSET = FANOUT_OFFSET + 256 * 4;
+    private static final int MAXIMUM_HEADER_SIZE = 32;
+    private static final int INFLATE_BUFFER_SIZE = 8192;
+    private static final long MAXIMUM_CACHED_BASES_SIZE = 16L * 1024 * 1024;
+
+    private final File packFile;
+    private final GitObjectDatabase objectDatabase;
+    private final RandomAccessFile pack;
+    private final MappedByteBuffer index;
+    private final int objectCount;
+    private final Cache<Long, GitObject> cachedBases;
+
+    GitPackFile(File indexFile, GitObjectDatabase objectDatabase) throws IOException {
+        String indexName = indexFile.getName();
+        this.packFile = new File(indexFile.getParentFile(),
+                indexName.substring(0, indexName.length() - ".idx".length()) + ".pack");
+        this.objectDatabase = objectDatabase;
+
+        try (FileChannel indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            this.index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+        }
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != 2) {
+            throw new IOException("Unsupported pack index format: " + indexFile);
+        }
+        this.objectCount = index.getInt(FANOUT_OFFSET + 255 * 4);
+        this.pack = new RandomAccessFile(packFile, "r");
+        this.cachedBases = CacheBuilder.newBuilder()
+                .maximumWeight(MAXIMUM_CACHED_BASES_SIZE)
+                .weigher((Long offset, GitObject object) -> object.getContents().length)
+                .build();
+    }
+
+    /**
+     * Returns the object with this id, or null if it isn't in this pack.
+     */
+    GitObject read(String id) throws IOException {
+        long offset = findOffset(GitObject.fromHex(id));
+        return offset < 0 ? null : readAt(offset);
+    }
+
+    /**
+     * Adds the ids of the objects in this pack that start with this (hexadecimal) prefix.
+     */
+    void findByPrefix(String prefix, Set<String> ids) {
+        int firstByte = Integer.parseInt(prefix.substring(0, 2), 16);
+        for (int position = fanout(firstByte - 1); position < fanout(firstByte); position++) {
+            byte[] name = new byte[GitObject.ID_LENGTH];
+            readName(position, name);
+            String id = GitObject.toHex(name, 0);
+            if (id.startsWith(prefix)) {
+                ids.add(id);
+            }
+        }
+    }
+
+    private int fanout(int firstByte) {
+        return firstByte < 0 ? 0 : index.getInt(FANOUT_OFFSET + firstByte * 4);
+    }
+
+    private void readName(int position, byte[] name) {
+        ByteBuffer names = index.duplicate();
+        names.position(NAMES_OFFSET + position * GitObject.ID_LENGTH);
+        names.get(name);
+    }
+
+    private long findOffset(byte[] id) {
+        int firstByte = id[0] & 0xff;
+        int low = fanout(firstByte - 1);
+        int high = fanout(firstByte) - 1;
+        byte[] name = new byte[GitObject.ID_LENGTH];
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            readName(middle, name);
+            int comparison = compare(name, id);
+            if (comparison < 0) {
+                low = middle + 1;
+            }
+            else if (comparison > 0) {
+                high = middle - 1;
+            }
+            else {
+                return offsetAt(middle);
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(byte[] first, byte[] second) {
+        for (int i = 0; i < GitObject.ID_LENGTH; i++) {
+            int difference = (first[i] & 0xff) - (second[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private long offsetAt(int position) {
+        int offsetsStart = NAMES_OFFSET + objectCount * (GitObject.ID_LENGTH + 4);
+        int offset = index.getInt(offsetsStart + position * 4);
+        if (offset >= 0) {
+            return offset;
+        }
+        // The most significant bit means the offset is too big for 31 bits, and is in the table of 64-bit offsets
+        int largeOffsetsStart = offsetsStart + objectCount * 4;
+        return index.getLong(largeOffsetsStart + (offset & 0x7fffffff) * 8);
+    }
+
+    private GitObject readAt(long offset) throws IOException {
+        byte[] headerBytes = new byte[MAXIMUM_HEADER_SIZE];
+        int headerLength = readPack(offset, headerBytes, 0, headerBytes.length);
+        ByteBuffer header = ByteBuffer.wrap(headerBytes, 0, Math.max(headerLength, 0));
+
+        int c = header.get() & 0xff;
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = header.get() & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+
+        switch (type) {
+            case OBJ_COMMIT:
+                return new GitObject(GitObject.COMMIT, inflate(offset + header.position(), size));
+            case OBJ_TREE:
+                return new GitObject(GitObject.TREE, inflate(offset + header.position(), size));
+            case OBJ_BLOB:
+                return new GitObject(GitObject.BLOB, inflate(offset + header.position(), size));
+            case OBJ_TAG:
+                return new GitObject(GitObject.TAG, inflate(offset + header.position(), size));
+            case OBJ_OFS_DELTA:
+                c = header.get() & 0xff;
+                long baseDistance = c & 0x7f;
+                while ((c & 0x80) != 0) {
+                    c = header.get() & 0xff;
+                    baseDistance = ((baseDistance + 1) << 7) | (c & 0x7f);
+                }
+                GitObject base = readBaseAt(offset - baseDistance);
+                return applyDelta(base, inflate(offset + header.position(), size));
+            case OBJ_REF_DELTA:
+                byte[] baseId = new byte[GitObject.ID_LENGTH];
+                header.get(baseId);
+                GitObject referencedBase = objectDatabase.read(GitObject.toHex(baseId, 0));
+                return applyDelta(referencedBase, inflate(offset + header.position(), size));
+            default:
+                throw new IOException(String.format("Unknown object type %d at offset %d of %s", type, offset,
+                        packFile));
+        }
+    }
+
+    private GitObject readBaseAt(long offset) throws IOException {
+        GitObject base = cachedBases.getIfPresent(offset);
+        if (base == null) {
+            base = readAt(offset);
+            cachedBases.put(offset, base);
+        }
+        return base;
+    }
+
+    private byte[] inflate(long position, long size) throws IOException {
+        byte[] contents = new byte[Ints.checkedCast(size)];
+        Inflater inflater = new Inflater();
+        InputStream packStream = new PackInputStream(position);
+        try (InputStream inputStream = new InflaterInputStream(packStream, inflater, INFLATE_BUFFER_SIZE)) {
+            ByteStreams.readFully(inputStream, contents);
+        }
+        finally {
+            inflater.end();
+        }
+        return contents;
+    }
+
+    /**
+     * Rebuilds an object from its base and a delta, i.e. a list of "copy this range of the base" and "insert these
+     * bytes" instructions.
+     */
+    static GitObject applyDelta(GitObject base, byte[] delta) throws IOException {
+        byte[] source = base.getContents();
+        int[] position = {0};
+        long sourceSize = readDeltaSize(delta, position);
+        if (sourceSize != source.length) {
+            throw new IOException("Delta doesn't match the size of its base");
+        }
+        byte[] target = new byte[Ints.checkedCast(readDeltaSize(delta, position))];
+
+        int p = position[0];
+        int targetPosition = 0;
+        while (p < delta.length) {
+            int command = delta[p++] & 0xff;
+            if ((command & 0x80) != 0) {
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int i = 0; i < 4; i++) {
+                    if ((command & (1 << i)) != 0) {
+                        copyOffset |= (delta[p++] & 0xff) << (8 * i);
+                    }
+                }
+                for (int i = 0; i < 3; i++) {
+                    if ((command & (0x10 << i)) != 0) {
+                        copySize |= (delta[p++] & 0xff) << (8 * i);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                System.arraycopy(source, copyOffset, target, targetPosition, copySize);
+                targetPosition += copySize;
+            }
+            else if (command != 0) {
+                System.arraycopy(delta, p, target, targetPosition, command);
+                p += command;
+                targetPosition += command;
+            }
+            else {
+                throw new IOException("Invalid delta instruction");
+            }
+        }
+        if (targetPosition != target.length) {
+            throw new IOException("Delta doesn't match the size of its result");
+        }
+        return new GitObject(base.getType(), target);
+    }
+
+    private static long readDeltaSize(byte[] delta, int[] position) {
+        long size = 0;
+        int shift = 0;
+        int c;
+        do {
+            c = delta[position[0]++] & 0xff;
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return size;
+    }
+
+    /**
+     * Reads the pack from a given position. Returns the number of bytes read, or -1 at the end of the pack.
+     */
+    private int readPack(long position, byte[] b, int off, int len) throws IOException {
+        synchronized (pack) {
+            pack.seek(position);
+            return pack.read(b, off, len);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pack.close();
+    }
+
+    /**
+     * Reads the pack from a given position.
+     */
+    private class PackInputStream extends InputStream {
+        private long position;
+
+        PackInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = readPack(position, b, off, len);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of pack file");
+            }
+            position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.selesse.jxlint.utils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local Git repository, read directly from its ".git" directory. Nothing is written, and the git executable isn't
+ * needed.
+ *
+ * <p>
+ *     Revisions can be given as full or abbreviated object ids, or as names of branches, tags, remote branches or
+ *     other refs (i.e. "HEAD", "master", "origin/master", "v1.7.0"), optionally followed by any number of
+ *     "~&lt;n&gt;" and "^&lt;n&gt;" suffixes. Ranges and the more exotic forms of revisions aren't supported.
+ * </p>
+ */
+public class GitRepository implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitRepository.class);
+    private static final String GIT_DIRECTORY_NAME = ".git";
+    private static final String SYMBOLIC_REF_PREFIX = "ref: ";
+    private static final int MAXIMUM_SYMBOLIC_REF_DEPTH = 5;
+    private static final int MINIMUM_ABBREVIATED_ID_LENGTH = 4;
+    private static final List<String> REF_NAME_FORMATS = ImmutableList.of("%s", "refs/%s", "refs/tags/%s",
+            "refs/heads/%s", "refs/remotes/%s", "refs/remotes/%s/HEAD");
+
+    private final File workTree;
+    private final File gitDirectory;
+    private final File commonDirectory;
+    private final GitObjectDatabase objectDatabase;
+
+    private GitRepository(File workTree, File gitDirectory) throws IOException {
+        this.workTree = FileUtils.normalizeFile(workTree.getAbsoluteFile());
+        this.gitDirectory = gitDirectory;
+        // Linked working trees (see "git worktree") share their objects and most of their refs with the main one
+        File commonDirectoryFile = new File(gitDirectory, "commondir");
+        this.commonDirectory = commonDirectoryFile.isFile() ?
+                resolveFile(gitDirectory, Files.toString(commonDirectoryFile, Charsets.UTF_8).trim()) : gitDirectory;
+        this.objectDatabase = new GitObjectDatabase(new File(commonDirectory, "objects"));
+    }
+
+    /**
+     * Finds the repository that this directory belongs to, by looking for a ".git" directory in it and in each of its
+     * parents.
+     *
+     * @throws FileNotFoundException If the directory isn't in a Git repository
+     */
+    public static GitRepository find(File directory) throws IOException {
+        for (File current = directory.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            File dotGit = new File(current, GIT_DIRECTORY_NAME);
+            if (dotGit.isDirectory()) {
+                return new GitRepository(current, dotGit);
+            }
+            if (dotGit.isFile()) {
+                // Submodules and linked working trees have a ".git" file pointing to the actual directory
+                String contents = Files.toString(dotGit, Charsets.UTF_8).trim();
+                if (contents.startsWith("gitdir: ")) {
+                    return new GitRepository(current, resolveFile(current, contents.substring("gitdir: ".length())));
+                }
+            }
+        }
+        throw new FileNotFoundException("Not a Git repository: " + directory.getAbsolutePath());
+    }
+
+    private static File resolveFile(File parent, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(parent, path);
+    }
+
+    /**
+     * The root of the working tree, i.e. the directory that contains ".git".
+     */
+    public File getWorkTree() {
+        return workTree;
+    }
+
+    /**
+     * Returns the id of the commit that a revision points to.
+     *
+     * @throws IOException If the revision doesn't exist, or can't be read
+     */
+    public String resolve(String revision) throws IOException {
+        int suffixStart = 0;
+        while (suffixStart < revision.length() && "~^".indexOf(revision.charAt(suffixStart)) < 0) {
+            suffixStart++;
+        }
+        String id = resolveName(revision.substring(0, suffixStart), revision);
+
+        int position = suffixStart;
+        while (position < revision.length()) {
+            char suffix = revision.charAt(position++);
+            int numberStart = position;
+            while (position < revision.length() && Character.isDigit(revision.charAt(position))) {
+                position++;
+            }
+            int number = position == numberStart ? 1 : Integer.parseInt(revision.substring(numberStart, position));
+
+            if (suffix == '~') {
+                for (int i = 0; i < number; i++) {
+                    id = getParent(peelToCommit(id), 1, revision);
+                }
+            }
+            else if (number > 0) {
+                id = getParent(peelToCommit(id), number, revision);
+            }
+        }
+        return peelToCommit(id);
+    }
+
+    private String resolveName(String name, String revision) throws IOException {
+        if (name.isEmpty() || name.equals("@")) {
+            name = "HEAD";
+        }
+        if (GitObject.isObjectId(name)) {
+            return name;
+        }
+        for (String refNameFormat : REF_NAME_FORMATS) {
+            String id = readRef(String.format(refNameFormat, name), 0);
+            if (id != null) {
+                return id;
+            }
+        }
+        if (name.length() >= MINIMUM_ABBREVIATED_ID_LENGTH && name.matches("[0-9a-fA-F]+")) {
+            Set<String> ids = objectDatabase.findByPrefix(name.toLowerCase());
+            if (ids.size() == 1) {
+                return ids.iterator().next();
+            }
+            if (ids.size() > 1) {
+                throw new IOException("Ambiguous revision: " + revision);
+            }
+        }
+        throw new IOException("Unknown revision: " + revision);
+    }
+
+    /**
+     * Returns the id a ref points to, following symbolic refs, or null if there's no such ref.
+     */
+    private String readRef(String refName, int depth) throws IOException {
+        if (depth > MAXIMUM_SYMBOLIC_REF_DEPTH || !isRefName(refName)) {
+            return null;
+        }
+
+        for (File directory : new File[] { gitDirectory, commonDirectory }) {
+            File refFile = new File(directory, refName);
+            if (refFile.isFile()) {
+                String contents = Files.toString(refFile, Charsets.UTF_8).trim();
+                if (contents.startsWith(SYMBOLIC_REF_PREFIX)) {
+                    return readRef(contents.substring(SYMBOLIC_REF_PREFIX.length()).trim(), depth + 1);
+                }
+                // FETCH_HEAD has extra information after the id
+                String id = contents.length() >= 40 ? contents.substring(0, 40) : contents;
+                if (GitObject.isObjectId(id)) {
+                    return id;
+                }
+            }
+        }
+
+        return readPackedRefs().get(refName);
+    }
+
+    private static boolean isRefName(String name) {
+        return (name.startsWith("refs/") || name.matches("[A-Z_]*HEAD")) && !name.contains("..");
+    }
+
+    private Map<String, String> readPackedRefs() throws IOException {
+        File packedRefsFile = new File(commonDirectory, "packed-refs");
+        if (!packedRefsFile.isFile()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> packedRefs = Maps.newHashMap();
+        for (String line : Files.readLines(packedRefsFile, Charsets.UTF_8)) {
+            // Comments, and "^<id>" lines, which are the commits that annotated tags point to
+            if (line.startsWith("#") || line.startsWith("^")) {
+                continue;
+            }
+            List<String> idAndName = Splitter.on(' ').limit(2).splitToList(line);
+            if (idAndName.size() == 2 && GitObject.isObjectId(idAndName.get(0))) {
+                packedRefs.put(idAndName.get(1), idAndName.get(0));
+            }
+        }
+        return packedRefs;
+    }
+
+    private String peelToCommit(String id) throws IOException {
+        GitObject object = objectDatabase.read(id);
+        while (object.getType().equals(GitObject.TAG)) {
+            id = getHeader(object.getContents(), "object").get(0);
+            object = objectDatabase.read(id);
+        }
+        object.getContents(GitObject.COMMIT, id);
+        return id;
+    }
+
+    private String getParent(String commitId, int number, String revision) throws IOException {
+        List<String> parents = getHeader(objectDatabase.read(commitId).getContents(GitObject.COMMIT, commitId),
+                "parent");
+        if (parents.size() < number) {
+            throw new IOException("Unknown revision: " + revision);
+        }
+        return parents.get(number - 1);
+    }
+
+    /**
+     * Returns the values of a header of a commit or a tag, i.e. the ids after "tree", "parent" or "object".
+     */
+    private static List<String> getHeader(byte[] contents, String headerName) {
+        ImmutableList.Builder<String> values = ImmutableList.builder();
+        for (String line : Splitter.on('\n').split(new String(contents, Charsets.UTF_8))) {
+            if (line.isEmpty()) {
+                break;
+            }
+            if (line.startsWith(headerName + " ")) {
+                values.add(line.substring(headerName.length() + 1));
+            }
+        }
+        return values.build();
+    }
+
+    /**
+     * Returns every file in a commit, as a map of paths (relative to the working tree, with forward slashes) to blob
+     * ids. Submodules are left out.
+     */
+    Map<String, String> readFiles(String commitId) throws IOException {
+        byte[] commit = objectDatabase.read(commitId).getContents(GitObject.COMMIT, commitId);
+        Map<String, String> files = Maps.newHashMap();
+        readTree(getHeader(commit, GitObject.TREE).get(0), "", files);
+        return files;
+    }
+
+    private void readTree(String treeId, String pathPrefix, Map<String, String> files) throws IOException {
+        byte[] tree = objectDatabase.read(treeId).getContents(GitObject.TREE, treeId);
+
+        // Entries are "<octal mode> <name>\0<20-byte id>"
+        int position = 0;
+        while (position < tree.length) {
+            int modeEnd = position;
+            while (tree[modeEnd] != ' ') {
+                modeEnd++;
+            }
+            int nameEnd = modeEnd + 1;
+            while (tree[nameEnd] != 0) {
+                nameEnd++;
+            }
+            String mode = new String(tree, position, modeEnd - position, Charsets.US_ASCII);
+            String path = pathPrefix + new String(tree, modeEnd + 1, nameEnd - modeEnd - 1, Charsets.UTF_8);
+            String id = GitObject.toHex(tree, nameEnd + 1);
+            position = nameEnd + 1 + GitObject.ID_LENGTH;
+
+            if (mode.equals("40000")) {
+                readTree(id, path + "/", files);
+            }
+            else if (!mode.equals("160000")) {
+                files.put(path, id);
+            }
+        }
+    }
+
+    /**
+     * Returns the regular files whose contents in the working tree differ from their contents in a revision, like
+     * "git diff --name-only &lt;revision&gt;" does. Only files that are tracked (i.e. in the index) are considered,
+     * and deleted files are left out.
+     *
+     * <p>
+     *     Files are hashed the way Git would, with their line endings converted when "core.autocrlf" or the
+     *     attributes say so (see {@link GitConversion}), so that a checkout with CRLF line endings isn't all changed.
+     * </p>
+     *
+     * @throws IOException If files go through a Git filter, like Git LFS, since they can't be hashed without git
+     */
+    public Set<File> getFilesChangedSince(String revision) throws IOException {
+        Map<String, String> revisionFiles = readFiles(resolve(revision));
+        File indexFile = new File(gitDirectory, "index");
+        long indexSeconds = TimeUnit.MILLISECONDS.toSeconds(indexFile.lastModified());
+        List<GitIndex.Entry> entries = GitIndex.read(indexFile).getEntries();
+        GitConversion conversion = GitConversion.read(workTree, gitDirectory, commonDirectory,
+                Lists.transform(entries, GitIndex.Entry::getPath));
+
+        Set<File> changedFiles = Sets.newLinkedHashSet();
+        int hashedFileCount = 0;
+        for (GitIndex.Entry entry : entries) {
+            if (!entry.isRegularFile() || entry.isSkipWorktree()) {
+                continue;
+            }
+            File file = getWorkTreeFile(entry.getPath());
+            if (!file.isFile()) {
+                continue;
+            }
+            if (entry.getStage() != 0) {
+                // The file is in the middle of a merge conflict
+                changedFiles.add(file);
+                continue;
+            }
+
+            String revisionId = revisionFiles.get(entry.getPath());
+            String workTreeId = entry.getId();
+            if (entry.isIntentToAdd() || !isStatClean(entry, file, indexSeconds)) {
+                byte[] contents = Files.toByteArray(file);
+                workTreeId = GitObject.blobId(contents);
+                byte[] cleanContents = workTreeId.equals(revisionId) ? null : conversion.clean(contents);
+                if (cleanContents != null) {
+                    workTreeId = GitObject.blobId(cleanContents);
+                }
+                hashedFileCount++;
+            }
+            if (!workTreeId.equals(revisionId)) {
+                changedFiles.add(file);
+            }
+        }
+
+        LOGGER.debug("{} files changed since {}, hashed {} files (line endings converted: {})", changedFiles.size(),
+                revision, hashedFileCount, conversion.convertsLineEndings());
+        return changedFiles;
+    }
+
+    /**
+     * Returns the regular files whose staged contents differ from their contents in HEAD, like
+     * "git diff --cached --name-only" does, along with the id of their staged blob. Deleted files are left out.
+     * Only ids that Git computed are compared, so line ending conversions and filters don't matter here.
+     */
+    public Map<File, String> getStagedFiles() throws IOException {
+        Map<String, String> headFiles = hasHead() ? readFiles(resolve("HEAD")) : Collections.emptyMap();
+
+        Map<File, String> stagedFiles = Maps.newLinkedHashMap();
+        for (GitIndex.Entry entry : GitIndex.read(new File(gitDirectory, "index")).getEntries()) {
+            if (entry.isRegularFile() && entry.getStage() == 0 && !entry.isIntentToAdd() &&
+                    !entry.getId().equals(headFiles.get(entry.getPath()))) {
+                stagedFiles.put(getWorkTreeFile(entry.getPath()), entry.getId());
+            }
+        }
+
+        LOGGER.debug("{} files staged", stagedFiles.size());
+        return stagedFiles;
+    }
+
+    private boolean hasHead() throws IOException {
+        return readRef("HEAD", 0) != null;
+    }
+
+    /**
+     * Returns the contents of a blob.
+     */
+    public byte[] readBlob(String id) throws IOException {
+        return objectDatabase.read(id).getContents(GitObject.BLOB, id);
+    }
+
+    private File getWorkTreeFile(String path) {
+        return new File(workTree, path.replace('/', File.separatorChar));
+    }
+
+    /**
+     * Whether the file can be assumed to have the contents recorded in the index, because its size and modification
+     * time haven't changed. Like Git, files that were modified in the same second as the index was written are
+     * "racily clean", and need to be hashed to be sure.
+     */
+    private static boolean isStatClean(GitIndex.Entry entry, File file, long indexSeconds) throws IOException {
+        BasicFileAttributes attributes = java.nio.file.Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        long modifiedNanos = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        long modifiedSeconds = TimeUnit.NANOSECONDS.toSeconds(modifiedNanos);
+        int nanosWithinSecond = (int) (modifiedNanos - TimeUnit.SECONDS.toNanos(modifiedSeconds));
+
+        if ((int) attributes.size() != entry.getSize() || (int) modifiedSeconds != entry.getMtimeSeconds() ||
+                modifiedSeconds >= indexSeconds) {
+            return false;
+        }
+        // Depending on the JVM and the file system, modification times may only be precise to the micro or millisecond
+        int precision = nanosWithinSecond % 1000000 == 0 ? 1000000 : nanosWithinSecond % 1000 == 0 ? 1000 : 1;
+        return nanosWithinSecond / precision == entry.getMtimeNanos() / precision;
+    }
+
+    @Override
+    public void close() throws IOException {
+        objectDatabase.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.collect.ImmutableMap;
+import com.selesse.jxlint.cache.ContentSource;
+import com.selesse.jxlint.utils.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Reads staged files from the index of a repository rather than from the working tree, so that what gets validated is
+ * what is about to be committed. Files that aren't staged are read from disk.
+ */
+public class StagedContentSource implements ContentSource {
+    private final GitRepository repository;
+    private final Map<File, String> stagedBlobIds;
+
+    /**
+     * @param stagedBlobIds The staged files, and the ids of their blobs (see {@link GitRepository#getStagedFiles()})
+     */
+    public StagedContentSource(GitRepository repository, Map<File, String> stagedBlobIds) {
+        this.repository = repository;
+        this.stagedBlobIds = ImmutableMap.copyOf(stagedBlobIds);
+    }
+
+    @Override
+    public InputStream openStream(File file) throws IOException {
+        String blobId = stagedBlobIds.get(FileUtils.normalizeFile(file));
+        if (blobId == null) {
+            return FILE_SYSTEM.openStream(file);
+        }
+        return new ByteArrayInputStream(repository.readBlob(blobId));
+    }
+
+    @Override
+    public byte[] read(File file) throws IOException {
+        String blobId = stagedBlobIds.get(FileUtils.normalizeFile(file));
+        if (blobId == null) {
+            return FILE_SYSTEM.read(file);
+        }
+        return repository.readBlob(blobId);
+    }
+}
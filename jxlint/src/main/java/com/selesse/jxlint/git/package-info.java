@@ -0,0 +1,5 @@
+/**
+ * A small, read-only reader for local Git repositories: refs, objects (loose and packed), trees and the index.
+ * It is just enough to find out which files have changed, without a network connection or a git executable.
+ */
+package com.selesse.jxlint.git;
@@ -0,0 +1,17 @@
+package com.selesse.jxlint.linter;
+
+/**
+ * The order in which a {@link Linter} goes through the (rule, file) pairs it has to validate.
+ */
+public enum ExecutionMode {
+    /**
+     * Every rule goes through all of its files on its own. A file that is checked by several rules is read once per
+     * rule. This is the default.
+     */
+    RULE_MAJOR,
+    /**
+     * Every file is visited once: it is read, then handed to every rule that wants it, before moving on to the next
+     * file. I/O scales with the number of files rather than the number of files times the number of rules.
+     */
+    FILE_MAJOR,
+}
@@ -0,0 +1,408 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.model.LintErrorOrderings;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import com.selesse.jxlint.model.rules.ValidationTimeouts;
+import com.selesse.jxlint.model.rules.Workload;
+import com.selesse.jxlint.settings.Profiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Validates in {@link ExecutionMode#FILE_MAJOR} order. Every file that at least one rule wants is visited once: a
+ * single {@link SourceFile} is created for it and handed to every interested rule, so that its contents are read
+ * and decoded at most once. {@link com.selesse.jxlint.model.rules.LineLintRule}s that want the same file share a
+ * single read of its lines (see {@link SourceFile#shareLinePass(java.util.Collection)}), and
+ * {@link com.selesse.jxlint.model.rules.XmlLintRule}s a single parse. Files are visited in parallel on a
+ * {@link ForkJoinPool}.
+ *
+ * <p>
+ *     The results are the same as with {@link ExecutionMode#RULE_MAJOR}: every rule ends up with its errors sorted
+ *     by file then line number, and a rule that throws an exception on any file reports no errors at all.
+ * </p>
+ *
+ * <p>
+ *     With a {@link LintErrorSink}, the errors of every file are handed to the sink as soon as the file is validated
+ *     instead. A rule that throws an exception then stops reporting errors, but keeps the ones it already reported.
+ * </p>
+ *
+ * <p>
+ *     With an active {@link ValidationOrder}, the largest files are visited first.
+ * </p>
+ *
+ * <p>
+ *     With an I/O pool, files go through two stages: they are read on the I/O pool, a bounded number of files ahead
+ *     of the {@link ForkJoinPool}, which then runs the rules on them. I/O-heavy rules (see {@link Workload}) run in
+ *     the first stage, right after the file is read, so that they don't hold up the processors.
+ * </p>
+ */
+class FileMajorValidator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileMajorValidator.class);
+    private static final int CHUNKS_PER_WORKER = 8;
+    /**
+     * How many files every worker can have waiting for it, once they have been read. More files keep the workers
+     * busier when reads are slow, at the cost of keeping more contents in memory.
+     */
+    private static final int FILES_READ_AHEAD_PER_WORKER = 4;
+
+    private final List<LintRule> rules;
+    private final LintErrorSink lintErrorSink;
+    private final List<RuleProgress> ruleProgressList;
+    private final List<File> files;
+    private final List<List<RuleSlot>> fileRuleSlots;
+
+    FileMajorValidator(List<LintRule> rules, LintErrorSink lintErrorSink) {
+        this.rules = rules;
+        this.lintErrorSink = lintErrorSink;
+        this.ruleProgressList = Lists.newArrayList();
+        this.files = Lists.newArrayList();
+        this.fileRuleSlots = Lists.newArrayList();
+    }
+
+    /**
+     * Validates every rule and returns all the errors that were found, rule by rule. If there is an I/O pool (it can
+     * be null), the files are read on it before being validated on the {@link ForkJoinPool}, with up to
+     * <code>numberOfIoThreads</code> files being read at the same time.
+     */
+    List<LintError> validate(ForkJoinPool forkJoinPool, ExecutorService ioExecutorService, int numberOfIoThreads) {
+        indexFiles();
+        orderFiles();
+        if (ioExecutorService == null) {
+            forkJoinPool.invoke(new FileRangeTask(0, files.size(), grainSize(forkJoinPool)));
+        }
+        else {
+            validateInStages(forkJoinPool, ioExecutorService, numberOfIoThreads);
+        }
+
+        List<LintError> lintErrors = Lists.newArrayList();
+        for (RuleProgress ruleProgress : ruleProgressList) {
+            lintErrors.addAll(ruleProgress.finish());
+        }
+        return lintErrors;
+    }
+
+    /**
+     * Inverts the rule -&gt; files mapping into a file -&gt; rules mapping, remembering the position of every file
+     * in its rule's list so that the errors can be put back in that order.
+     */
+    private void indexFiles() {
+        Map<File, Integer> fileIndices = Maps.newLinkedHashMap();
+        ValidationTimeouts validationTimeouts = ValidationTimeouts.getActiveTimeouts();
+
+        for (LintRule rule : rules) {
+            RuleProgress ruleProgress = new RuleProgress(rule, lintErrorSink);
+            ruleProgressList.add(ruleProgress);
+            if (validationTimeouts != null) {
+                // Rules share the files, so they all start together
+                validationTimeouts.startRule(rule);
+            }
+
+            List<File> ruleFiles;
+            try {
+                ruleFiles = ShardAssignment.getFilesToValidate(rule);
+            }
+            catch (RuntimeException e) {
+                ruleProgress.fail(e);
+                continue;
+            }
+            ruleProgress.initializeFileCount(ruleFiles.size());
+
+            for (int position = 0; position < ruleFiles.size(); position++) {
+                File file = ruleFiles.get(position);
+                Integer fileIndex = fileIndices.get(file);
+                if (fileIndex == null) {
+                    fileIndex = files.size();
+                    fileIndices.put(file, fileIndex);
+                    files.add(file);
+                    fileRuleSlots.add(Lists.newArrayList());
+                }
+                fileRuleSlots.get(fileIndex).add(new RuleSlot(ruleProgress, position));
+            }
+        }
+
+        LOGGER.debug("Visiting {} distinct files for {} rules", files.size(), rules.size());
+    }
+
+    /**
+     * Puts the files in the order they should be validated in, if there is an active {@link ValidationOrder}. The
+     * errors are put back in the order of every rule's files anyway.
+     */
+    private void orderFiles() {
+        ValidationOrder validationOrder = ValidationOrder.getActiveOrder();
+        if (validationOrder == null) {
+            return;
+        }
+
+        List<File> orderedFiles = Lists.newArrayListWithCapacity(files.size());
+        List<List<RuleSlot>> orderedFileRuleSlots = Lists.newArrayListWithCapacity(files.size());
+        for (int fileIndex : validationOrder.getValidationOrder(files)) {
+            orderedFiles.add(files.get(fileIndex));
+            orderedFileRuleSlots.add(fileRuleSlots.get(fileIndex));
+        }
+        files.clear();
+        files.addAll(orderedFiles);
+        fileRuleSlots.clear();
+        fileRuleSlots.addAll(orderedFileRuleSlots);
+    }
+
+    private int grainSize(ForkJoinPool forkJoinPool) {
+        return Math.max(1, files.size() / (forkJoinPool.getParallelism() * CHUNKS_PER_WORKER));
+    }
+
+    /**
+     * Reads the files on the I/O pool, in order, and hands every file over to the {@link ForkJoinPool} once it has
+     * been read. Reading stops when too many files are waiting to be validated, and resumes as they get validated.
+     * There can be more files waiting than that if there are more I/O threads, so that all of them have something
+     * to read.
+     */
+    private void validateInStages(ForkJoinPool forkJoinPool, ExecutorService ioExecutorService,
+                                  int numberOfIoThreads) {
+        Semaphore filesReadAhead = new Semaphore(
+                Math.max(forkJoinPool.getParallelism() * FILES_READ_AHEAD_PER_WORKER, numberOfIoThreads));
+        CountDownLatch validatedFiles = new CountDownLatch(files.size());
+
+        for (int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+            filesReadAhead.acquireUninterruptibly();
+            int readFileIndex = fileIndex;
+            ioExecutorService.execute(() -> readFile(readFileIndex, forkJoinPool, () -> {
+                filesReadAhead.release();
+                validatedFiles.countDown();
+            }));
+        }
+        Uninterruptibles.awaitUninterruptibly(validatedFiles);
+    }
+
+    /**
+     * Reads the file and runs the I/O-heavy rules on it, then hands it over to the {@link ForkJoinPool} for the
+     * others. Once the file has been validated, or if anything goes wrong, it is marked as done. If anything goes
+     * wrong outside of the rules, the rules that didn't get to validate the file report that it couldn't be read.
+     */
+    private void readFile(int fileIndex, ForkJoinPool forkJoinPool, Runnable markAsDone) {
+        SourceFile sourceFile = new SourceFile(files.get(fileIndex));
+        boolean isHandedOver = false;
+        try {
+            try {
+                sourceFile.getContents();
+            }
+            catch (IOException e) {
+                // The rules that read the file will report it
+                LOGGER.debug("Could not read {} ahead of the rules", sourceFile.getFile(), e);
+            }
+            validateFile(fileIndex, sourceFile, Workload.IO);
+
+            forkJoinPool.execute(() -> {
+                try {
+                    validateFile(fileIndex, sourceFile, Workload.CPU);
+                }
+                finally {
+                    markAsDone.run();
+                }
+            });
+            isHandedOver = true;
+        }
+        catch (RuntimeException e) {
+            LOGGER.debug("Could not read {}", sourceFile.getFile(), e);
+            for (RuleSlot ruleSlot : fileRuleSlots.get(fileIndex)) {
+                RuleProgress ruleProgress = ruleSlot.ruleProgress;
+                if (!ruleProgress.hasFailed() && !ruleProgress.hasValidated(ruleSlot.position)) {
+                    ruleProgress.addFileErrors(ruleSlot.position, Lists.newArrayList(
+                            LintError.with(ruleProgress.rule, sourceFile.getFile())
+                                    .andErrorMessage("Could not read file").andException(e).create()));
+                }
+            }
+        }
+        finally {
+            if (!isHandedOver) {
+                markAsDone.run();
+            }
+        }
+    }
+
+    private void validateFile(int fileIndex) {
+        validateFile(fileIndex, new SourceFile(files.get(fileIndex)), null);
+    }
+
+    /**
+     * Runs the rules that want the file, or only those with this workload if it isn't null.
+     */
+    private void validateFile(int fileIndex, SourceFile sourceFile, Workload workload) {
+        List<LintRule> fileRules = Lists.newArrayList();
+        for (RuleSlot ruleSlot : fileRuleSlots.get(fileIndex)) {
+            RuleProgress ruleProgress = ruleSlot.ruleProgress;
+            if (!ruleProgress.hasFailed() && (workload == null || ruleProgress.rule.getWorkload() == workload)) {
+                fileRules.add(ruleProgress.rule);
+            }
+        }
+        // Line rules go through the file together, and so do XML rules
+        sourceFile.shareLinePass(fileRules);
+        sourceFile.shareXmlPass(fileRules);
+
+        for (RuleSlot ruleSlot : fileRuleSlots.get(fileIndex)) {
+            RuleProgress ruleProgress = ruleSlot.ruleProgress;
+            if (ruleProgress.hasFailed() || (workload != null && ruleProgress.rule.getWorkload() != workload)) {
+                continue;
+            }
+
+            long startTime = System.nanoTime();
+            try {
+                ruleProgress.addFileErrors(ruleSlot.position, ruleProgress.rule.validateFile(sourceFile));
+            }
+            catch (RuntimeException e) {
+                ruleProgress.fail(e);
+            }
+            finally {
+                ruleProgress.addElapsedNanos(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    private class FileRangeTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+        private final int grainSize;
+
+        FileRangeTask(int start, int end, int grainSize) {
+            this.start = start;
+            this.end = end;
+            this.grainSize = grainSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= grainSize) {
+                for (int fileIndex = start; fileIndex < end; fileIndex++) {
+                    validateFile(fileIndex);
+                }
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new FileRangeTask(start, middle, grainSize), new FileRangeTask(middle, end, grainSize));
+        }
+    }
+
+    /**
+     * A rule, and the position of the file in the rule's {@link LintRule#getFilesToValidate()}.
+     */
+    private static class RuleSlot {
+        private final RuleProgress ruleProgress;
+        private final int position;
+
+        RuleSlot(RuleProgress ruleProgress, int position) {
+            this.ruleProgress = ruleProgress;
+            this.position = position;
+        }
+    }
+
+    /**
+     * The errors a rule has found so far, one slot per file (empty once they have been handed to the sink, if there is
+     * one), and the total time spent in the rule.
+     */
+    private static class RuleProgress {
+        private final LintRule rule;
+        private final LintErrorSink lintErrorSink;
+        private final LongAdder elapsedNanos = new LongAdder();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private AtomicReferenceArray<List<LintError>> fileErrors = new AtomicReferenceArray<>(0);
+
+        RuleProgress(LintRule rule, LintErrorSink lintErrorSink) {
+            this.rule = rule;
+            this.lintErrorSink = lintErrorSink;
+        }
+
+        void initializeFileCount(int numberOfFiles) {
+            fileErrors = new AtomicReferenceArray<>(numberOfFiles);
+        }
+
+        /**
+         * Keeps the errors the rule found in the file at that position, or hands them to the sink if there is one.
+         */
+        void addFileErrors(int position, List<LintError> lintErrors) {
+            if (lintErrorSink == null) {
+                fileErrors.set(position, lintErrors);
+            }
+            else {
+                lintErrorSink.acceptAll(lintErrors);
+                fileErrors.set(position, Collections.emptyList());
+            }
+        }
+
+        boolean hasValidated(int position) {
+            return fileErrors.get(position) != null;
+        }
+
+        void fail(Throwable t) {
+            failure.compareAndSet(null, t);
+        }
+
+        boolean hasFailed() {
+            return failure.get() != null;
+        }
+
+        void addElapsedNanos(long nanos) {
+            elapsedNanos.add(nanos);
+        }
+
+        /**
+         * Puts the rule's errors together, in the same way {@link ValidationThread} does for a rule-major run.
+         */
+        List<LintError> finish() {
+            long executionTimeMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos.sum());
+            LOGGER.info("[{}] took {} milliseconds to execute", rule.getName(), executionTimeMs);
+            Profiler.addExecutionTime(rule, executionTimeMs);
+
+            if (hasFailed()) {
+                Throwable t = failure.get();
+                LOGGER.error("Error running validation thread: {}", t.getMessage(), Throwables.getRootCause(t));
+                rule.setLintErrors(Lists.newArrayList());
+                return Collections.emptyList();
+            }
+
+            List<LintError> lintErrors = Lists.newArrayList();
+            if (lintErrorSink == null) {
+                for (int position = 0; position < fileErrors.length(); position++) {
+                    lintErrors.addAll(fileErrors.get(position));
+                }
+            }
+            ValidationTimeouts validationTimeouts = ValidationTimeouts.getActiveTimeouts();
+            if (validationTimeouts != null) {
+                LintError timeoutError = validationTimeouts.finishRule(rule);
+                if (timeoutError != null && lintErrorSink != null) {
+                    lintErrorSink.accept(timeoutError);
+                }
+                else if (timeoutError != null) {
+                    lintErrors.add(timeoutError);
+                }
+            }
+            Collections.sort(lintErrors, LintErrorOrderings.getFileThenLineNumberOrdering());
+            rule.setLintErrors(lintErrors);
+
+            LOGGER.info("[{}] found {} errors", rule.getName(), lintErrors.size());
+            return lintErrors;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes errors to, and reads them from, the streams that go between processes: the partial results of shards (see
+ * {@link ShardResult}) and the connections to workers (see {@link WorkerCoordinator}). The rule and file of an error
+ * are left to the caller, since it knows how to point to them.
+ */
+final class LintErrorCodec {
+    private LintErrorCodec() {
+    }
+
+    /**
+     * Writes the line number, message, severity and exception of an error. The severity is only kept if it's not the
+     * rule's, like the result cache does, and the exception is kept as the text of its root cause, which is all that
+     * reports print.
+     */
+    static void writeLintError(DataOutputStream output, LintError lintError) throws IOException {
+        output.writeInt(lintError.getLineNumber());
+        writeString(output, Strings.nullToEmpty(lintError.getMessage()));
+        writeString(output, lintError.getSeverity() == lintError.getViolatedRule().getSeverity() ? "" :
+                lintError.getSeverity().name());
+        writeString(output, lintError.getException() == null ? "" :
+                Throwables.getRootCause(lintError.getException()).toString());
+    }
+
+    /**
+     * Reads an error written by {@link #writeLintError(DataOutputStream, LintError)}, for this rule and file. Throws
+     * an {@link IllegalArgumentException} if the severity is unknown.
+     */
+    static LintError readLintError(DataInputStream input, LintRule lintRule, File file) throws IOException {
+        int lineNumber = input.readInt();
+        String message = readString(input);
+        String severity = readString(input);
+        String exception = readString(input);
+        return LintError.with(lintRule, file)
+                .andLineNumber(lineNumber)
+                .andErrorMessage(message)
+                .andSeverity(severity.isEmpty() ? null : Severity.valueOf(severity))
+                .andException(exception.isEmpty() ? null : new RecordedException(exception))
+                .create();
+    }
+
+    static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
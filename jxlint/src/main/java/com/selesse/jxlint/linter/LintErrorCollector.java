@@ -0,0 +1,49 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.model.rules.LintError;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects the errors of rules that are validated in parallel. Every rule has its own slot, which is written once by
+ * whichever thread ran the rule, so threads never wait for each other. The slots are put together at the end, in the
+ * order of the rules, which keeps the results the same from one run to the next.
+ */
+class LintErrorCollector {
+    private final AtomicReferenceArray<List<LintError>> ruleErrors;
+
+    LintErrorCollector(int numberOfRules) {
+        this.ruleErrors = new AtomicReferenceArray<>(numberOfRules);
+    }
+
+    /**
+     * Records the errors of the rule at this position. A rule's errors can only be recorded once.
+     */
+    void setLintErrors(int ruleIndex, List<LintError> lintErrors) {
+        if (!ruleErrors.compareAndSet(ruleIndex, null, lintErrors)) {
+            throw new IllegalStateException("The errors of rule " + ruleIndex + " have already been recorded");
+        }
+    }
+
+    /**
+     * Returns the errors recorded so far, rule by rule. Rules that haven't finished (or that failed) have no errors.
+     */
+    List<LintError> getLintErrors() {
+        int numberOfErrors = 0;
+        for (int ruleIndex = 0; ruleIndex < ruleErrors.length(); ruleIndex++) {
+            List<LintError> lintErrors = ruleErrors.get(ruleIndex);
+            numberOfErrors += lintErrors == null ? 0 : lintErrors.size();
+        }
+
+        List<LintError> allLintErrors = Lists.newArrayListWithCapacity(numberOfErrors);
+        for (int ruleIndex = 0; ruleIndex < ruleErrors.length(); ruleIndex++) {
+            List<LintError> lintErrors = ruleErrors.get(ruleIndex);
+            if (lintErrors != null) {
+                allLintErrors.addAll(lintErrors);
+            }
+        }
+        return allLintErrors;
+    }
+}
@@ -0,0 +1,168 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import com.selesse.jxlint.utils.FileIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The order in which the rules of a run get started, longest expected first. A rule that is started last and takes
+ * a long time holds up the whole run, while the other threads have nothing left to do; starting it first lets the
+ * shorter rules fill in around it.
+ *
+ * <p>
+ *     The expected cost of a rule is its cost per file in previous runs (see {@link RuleCostHistory}), times the
+ *     number of files it validates this time. Rules that have no history could take any amount of time, so they are
+ *     started before the others, from the one with the most bytes to read to the one with the fewest. The files are
+ *     also validated from the largest to the smallest (see {@link ValidationOrder}).
+ * </p>
+ *
+ * <p>
+ *     Only the order in which rules and files are validated changes: the errors come out in the same order.
+ * </p>
+ */
+public class LintPlan {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LintPlan.class);
+
+    private final List<RulePlan> rulePlans;
+
+    private LintPlan(List<RulePlan> rulePlans) {
+        this.rulePlans = ImmutableList.copyOf(rulePlans);
+    }
+
+    /**
+     * Plans the rules, whose files are resolved against the active {@link FileIndex} and {@link ShardAssignment}.
+     */
+    static LintPlan create(List<LintRule> rules, RuleCostHistory ruleCostHistory, ValidationOrder validationOrder) {
+        List<RulePlan> rulePlans = Lists.newArrayListWithCapacity(rules.size());
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+            LintRule rule = rules.get(ruleIndex);
+            List<File> ruleFiles;
+            try {
+                ruleFiles = ShardAssignment.getFilesToValidate(rule);
+            }
+            catch (RuntimeException e) {
+                // The rule will fail again, and be reported, when it gets validated
+                LOGGER.debug("[{}] could not list its files", rule.getName(), e);
+                ruleFiles = Collections.emptyList();
+            }
+
+            Double millisecondsPerFile = ruleCostHistory.getMillisecondsPerFile(rule);
+            long estimatedTimeMs = millisecondsPerFile == null ? -1 :
+                    Math.round(millisecondsPerFile * ruleFiles.size());
+            rulePlans.add(new RulePlan(rule, ruleIndex, ruleFiles.size(), validationOrder.getTotalSize(ruleFiles),
+                    estimatedTimeMs));
+        }
+
+        Comparator<RulePlan> withoutHistoryFirst = Comparator.comparing(RulePlan::hasHistory);
+        Comparator<RulePlan> longestFirst = Comparator.comparingLong(RulePlan::getExpectedCost).reversed();
+        // The sort is stable, so rules that cost the same keep their order
+        rulePlans.sort(withoutHistoryFirst.thenComparing(longestFirst));
+        return new LintPlan(rulePlans);
+    }
+
+    /**
+     * The rules, in the order they get started.
+     */
+    public List<RulePlan> getRulePlans() {
+        return rulePlans;
+    }
+
+    /**
+     * Lists the rules in the order they get started, with their files and expected cost.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-40s %10s %14s  %s%n", "Rule", "Files", "Bytes", "Estimated time"));
+
+        long numberOfFiles = 0;
+        long numberOfBytes = 0;
+        long estimatedTimeMs = 0;
+        int rulesWithoutHistory = 0;
+        for (RulePlan rulePlan : rulePlans) {
+            report.append(String.format("%-40s %10d %14d  %s%n", rulePlan.rule.getName(), rulePlan.numberOfFiles,
+                    rulePlan.numberOfBytes, rulePlan.hasHistory() ?
+                            String.format("%3.3f seconds", rulePlan.estimatedTimeMs / 1000.0) : "no history"));
+            numberOfFiles += rulePlan.numberOfFiles;
+            numberOfBytes += rulePlan.numberOfBytes;
+            if (rulePlan.hasHistory()) {
+                estimatedTimeMs += rulePlan.estimatedTimeMs;
+            }
+            else {
+                rulesWithoutHistory++;
+            }
+        }
+
+        report.append(String.format("%n%d rules, %d files to validate, %d bytes, %3.3f seconds of work",
+                rulePlans.size(), numberOfFiles, numberOfBytes, estimatedTimeMs / 1000.0));
+        if (rulesWithoutHistory > 0) {
+            report.append(String.format(" (not counting %d rules with no history)", rulesWithoutHistory));
+        }
+        return report.append(".").toString();
+    }
+
+    /**
+     * A rule, its position in the list of rules, and what it is expected to cost.
+     */
+    public static class RulePlan {
+        private final LintRule rule;
+        private final int ruleIndex;
+        private final int numberOfFiles;
+        private final long numberOfBytes;
+        private final long estimatedTimeMs;
+
+        RulePlan(LintRule rule, int ruleIndex, int numberOfFiles, long numberOfBytes, long estimatedTimeMs) {
+            this.rule = rule;
+            this.ruleIndex = ruleIndex;
+            this.numberOfFiles = numberOfFiles;
+            this.numberOfBytes = numberOfBytes;
+            this.estimatedTimeMs = estimatedTimeMs;
+        }
+
+        public LintRule getRule() {
+            return rule;
+        }
+
+        /**
+         * The position of the rule in the list of rules, which is where its errors end up.
+         */
+        public int getRuleIndex() {
+            return ruleIndex;
+        }
+
+        public int getNumberOfFiles() {
+            return numberOfFiles;
+        }
+
+        public long getNumberOfBytes() {
+            return numberOfBytes;
+        }
+
+        /**
+         * The expected time, or the number of bytes to read for rules that have no history.
+         */
+        private long getExpectedCost() {
+            return hasHistory() ? estimatedTimeMs : numberOfBytes;
+        }
+
+        public boolean hasHistory() {
+            return estimatedTimeMs >= 0;
+        }
+
+        /**
+         * How long the rule is expected to take, in milliseconds, or -1 if it has no history.
+         */
+        public long getEstimatedTimeMs() {
+            return estimatedTimeMs;
+        }
+    }
+}
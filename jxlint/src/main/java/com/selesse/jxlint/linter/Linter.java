@@ -1,33 +1,218 @@
 package com.selesse.jxlint.linter;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.*;
+import com.selesse.jxlint.cache.ArtifactCache;
+import com.selesse.jxlint.cache.ContentCache;
+import com.selesse.jxlint.cache.ResultCache;
+import com.selesse.jxlint.git.GitRepository;
+import com.selesse.jxlint.git.StagedContentSource;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorInterner;
+import com.selesse.jxlint.model.rules.LintErrorSink;
 import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import com.selesse.jxlint.model.rules.ValidationTimeouts;
+import com.selesse.jxlint.model.rules.VirtualThreadValidation;
+import com.selesse.jxlint.model.rules.Workload;
+import com.selesse.jxlint.settings.Profiler;
+import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.CpuQuota;
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.FileWalker;
+import com.selesse.jxlint.utils.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Simple implementation of a Linter. Goes through all the {@link LintRule}s and calls
  * {@link com.selesse.jxlint.model.rules.LintRule#validate()}. If there are any errors, this class
  * accumulates them. Call {@link #getLintErrors()} to retrieve them.
+ *
+ * <p>
+ *     Rules are run in a work-stealing {@link ForkJoinPool}. Every rule further splits its files into smaller
+ *     tasks (see {@link LintRule#validate()}), so the pool stays busy even when there are fewer rules than
+ *     cores, or when one rule is a lot slower than the others. The errors of every rule are collected without
+ *     locking (see {@link LintErrorCollector}), and end up in the order of the rules.
+ * </p>
+ *
+ * <p>
+ *     In {@link ExecutionMode#FILE_MAJOR} mode, files are visited instead of rules: every file is read once and
+ *     handed to all the rules that want it (see {@link FileMajorValidator}).
+ * </p>
+ *
+ * <p>
+ *     By default, there is a thread per processor that jxlint can use (see {@link CpuQuota}). There can also be
+ *     threads set aside for I/O: rules that mostly wait (see {@link LintRule#getWorkload()}) run on those instead,
+ *     and, in {@link ExecutionMode#FILE_MAJOR} mode, they read the files ahead of the threads that run the rules.
+ *     On Java 21 or later, they can be virtual threads instead (see {@link VirtualThreads}), so that a lot more
+ *     files can be waited on at the same time: every file of the I/O-heavy rules then gets its own virtual thread
+ *     (see {@link VirtualThreadValidation}), and the number of I/O threads is how many files can be validated at
+ *     the same time.
+ * </p>
+ *
+ * <p>
+ *     Instead of being accumulated, the errors can be handed to a {@link LintErrorSink} as they are found, so that
+ *     they can be reported right away.
+ * </p>
+ *
+ * <p>
+ *     File contents and parsed files are shared between rules through a {@link ContentCache} and an
+ *     {@link ArtifactCache} that live for the duration of {@link #performLintValidations()}.
+ * </p>
+ *
+ * <p>
+ *     A run can be limited to the files that changed in Git since a given revision, or to the files that are
+ *     staged (whose staged contents are validated, rather than their contents on disk). The files are found by
+ *     reading the local repository (see {@link GitRepository}), so the source directory isn't walked.
+ * </p>
+ *
+ * <p>
+ *     With a history file, the time every rule took is kept between runs, and the rules that are expected to take
+ *     the longest are started first, with the largest files first (see {@link LintPlan}).
+ * </p>
+ *
+ * <p>
+ *     With a file or rule timeout, a rule that spends too long on a file, or on all of its files, is stopped and
+ *     reported with a warning (see {@link ValidationTimeouts}).
+ * </p>
+ *
+ * <p>
+ *     A run can be one shard of a run split over several machines: then only the files the shard was assigned are
+ *     validated (see {@link Shard}), and the errors can be saved as a partial result (see {@link #getShardResult()}).
+ * </p>
+ *
+ * <p>
+ *     With workers, the rules run in worker processes instead of the pools, so that rules that aren't thread-safe
+ *     still run in parallel (see {@link WorkerCoordinator}).
+ * </p>
  */
 public class Linter {
     private static final Logger LOGGER = LoggerFactory.getLogger(Linter.class);
-    private static final int NUMBER_OF_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int NUMBER_OF_THREADS = CpuQuota.getAvailableProcessors();
+    private static final int DEFAULT_NUMBER_OF_VIRTUAL_THREADS = 256;
 
     private List<LintRule> rules;
     private List<LintError> lintErrors;
+    private final int numberOfThreads;
+    private int numberOfIoThreads = 0;
+    private boolean isUsingVirtualThreads = false;
+    private final ExecutionMode executionMode;
+    private long cacheSize = ContentCache.DEFAULT_MAXIMUM_SIZE;
+    private boolean isContentCacheOffHeap = false;
+    private File resultCacheFile;
+    private String changedSinceRevision;
+    private boolean isStagedOnly = false;
+    private long fileTimeoutMilliseconds = 0;
+    private long ruleTimeoutMilliseconds = 0;
+    private File ruleHistoryFile;
+    private Shard shard;
+    private ShardAssignment shardAssignment;
+    private int numberOfWorkers = 0;
+    private FileWalker fileWalker = FileWalker.getDefault();
 
     Linter(List<LintRule> rules) {
+        this(rules, NUMBER_OF_THREADS);
+    }
+
+    Linter(List<LintRule> rules, ProgramOptions options) {
+        this(rules, options, null);
+    }
+
+    /**
+     * The number of threads comes from the options, or else from the settings (which may be null).
+     */
+    Linter(List<LintRule> rules, ProgramOptions options, ProgramSettings settings) {
+        this(rules, getNumberOfThreads(options, settings), options);
+        if (!options.hasOption(JxlintOption.IO_THREADS) && settings != null && settings.getNumberOfIoThreads() > 0) {
+            this.numberOfIoThreads = settings.getNumberOfIoThreads();
+        }
+    }
+
+    Linter(List<LintRule> rules, int numberOfThreads, ProgramOptions options) {
+        this(rules, numberOfThreads, options.hasOption(JxlintOption.FILE_MAJOR) ?
+                ExecutionMode.FILE_MAJOR : ExecutionMode.RULE_MAJOR);
+        if (options.hasOption(JxlintOption.CACHE_SIZE)) {
+            this.cacheSize = ProgramOptions.getByteSizeFromOptionString(
+                    options.getOption(JxlintOption.CACHE_SIZE));
+        }
+        this.isContentCacheOffHeap = options.hasOption(JxlintOption.OFF_HEAP);
+        if (options.hasOption(JxlintOption.INCREMENTAL)) {
+            this.resultCacheFile = new File(options.getOption(JxlintOption.INCREMENTAL));
+        }
+        this.changedSinceRevision = options.getOption(JxlintOption.CHANGED_SINCE);
+        this.isStagedOnly = options.hasOption(JxlintOption.STAGED);
+        if (options.hasOption(JxlintOption.FILE_TIMEOUT)) {
+            this.fileTimeoutMilliseconds = ProgramOptions.getDurationFromOptionString(
+                    options.getOption(JxlintOption.FILE_TIMEOUT));
+        }
+        if (options.hasOption(JxlintOption.RULE_TIMEOUT)) {
+            this.ruleTimeoutMilliseconds = ProgramOptions.getDurationFromOptionString(
+                    options.getOption(JxlintOption.RULE_TIMEOUT));
+        }
+        if (options.hasOption(JxlintOption.HISTORY)) {
+            this.ruleHistoryFile = new File(options.getOption(JxlintOption.HISTORY));
+        }
+        if (options.hasOption(JxlintOption.SHARD)) {
+            this.shard = Shard.parse(options.getOption(JxlintOption.SHARD));
+        }
+        if (options.hasOption(JxlintOption.IO_THREADS)) {
+            this.numberOfIoThreads = ProgramOptions.getThreadCountFromOptionString(
+                    options.getOption(JxlintOption.IO_THREADS), 0);
+        }
+        if (options.hasOption(JxlintOption.WORKERS)) {
+            this.numberOfWorkers = ProgramOptions.getWorkerCountFromOptionString(
+                    options.getOption(JxlintOption.WORKERS));
+        }
+        if (options.hasOption(JxlintOption.EXCLUDE) || options.hasOption(JxlintOption.NO_IGNORE)) {
+            List<String> excludeGlobs = options.hasOption(JxlintOption.EXCLUDE) ?
+                    ProgramOptions.getGlobListFromOptionString(options.getOption(JxlintOption.EXCLUDE)) :
+                    ImmutableList.of();
+            this.fileWalker = new FileWalker(excludeGlobs, !options.hasOption(JxlintOption.NO_IGNORE));
+        }
+        this.isUsingVirtualThreads = options.hasOption(JxlintOption.VIRTUAL_THREADS);
+        if (isUsingVirtualThreads && numberOfIoThreads == 0) {
+            this.numberOfIoThreads = DEFAULT_NUMBER_OF_VIRTUAL_THREADS;
+        }
+    }
+
+    private static int getNumberOfThreads(ProgramOptions options, ProgramSettings settings) {
+        if (options.hasOption(JxlintOption.THREADS)) {
+            return ProgramOptions.getThreadCountFromOptionString(options.getOption(JxlintOption.THREADS), 1);
+        }
+        if (settings != null && settings.getNumberOfThreads() > 0) {
+            return settings.getNumberOfThreads();
+        }
+        return NUMBER_OF_THREADS;
+    }
+
+    Linter(List<LintRule> rules, int numberOfThreads) {
+        this(rules, numberOfThreads, ExecutionMode.RULE_MAJOR);
+    }
+
+    Linter(List<LintRule> rules, int numberOfThreads, ExecutionMode executionMode) {
         this.rules = rules;
         this.lintErrors = Lists.newArrayList();
+        this.numberOfThreads = numberOfThreads;
+        this.executionMode = executionMode;
     }
 
     /**
@@ -36,35 +221,308 @@ public class Linter {
      * {@link com.selesse.jxlint.model.rules.LintError}.
      */
     public void performLintValidations() {
+        performLintValidations(null);
+    }
+
+    /**
+     * Like {@link #performLintValidations()}, but only validates these files, for the rules that would validate them
+     * anyway. The source directory isn't walked. Null means every file.
+     */
+    public void performLintValidations(Collection<File> files) {
+        performLintValidations(files, null);
+    }
+
+    /**
+     * Like {@link #performLintValidations(Collection)}, but the errors are handed to the sink as they are found,
+     * instead of being kept for {@link #getLintErrors()}, which stays empty. The sink isn't closed.
+     */
+    public void performLintValidations(Collection<File> files, LintErrorSink lintErrorSink) {
         lintErrors = Lists.newArrayList();
 
+        File sourceDirectory = LintRulesImpl.getInstance().getSourceDirectory();
+        GitRepository gitRepository = files == null ? openGitRepository(sourceDirectory) : null;
+        // Every rule resolves its files against this index, so the source directory only gets walked once
+        FileIndex.activate(sourceDirectory, files == null ? getGitScope(gitRepository) : files, fileWalker);
+        // Rules that read or parse their files through a SourceFile share these caches
+        ContentCache contentCache = ContentCache.activate(cacheSize, isContentCacheOffHeap);
+        ArtifactCache artifactCache = ArtifactCache.activate(cacheSize);
+        // Results from the previous run are replayed for files that haven't changed
+        ResultCache resultCache = getResultCache(sourceDirectory);
+        // Files and rules that take too long are stopped and reported, instead of holding up the whole run
+        ValidationTimeouts.activate(fileTimeoutMilliseconds, ruleTimeoutMilliseconds);
+        // The errors of the run share their files and messages
+        LintErrorInterner.activate();
+        // With a history, the rules and files that are expected to take the longest are started first
+        RuleCostHistory ruleCostHistory = ruleHistoryFile == null ? null : RuleCostHistory.load(ruleHistoryFile);
+        LintPlan lintPlan = null;
+        // With virtual threads, every file of the I/O-heavy rules gets its own thread from this executor
+        ExecutorService fileExecutorService = null;
         try {
-            LOGGER.debug("Initializing pool of {} threads", NUMBER_OF_THREADS);
+            if (shard != null) {
+                // Only this shard's files get validated
+                activateShardAssignment(sourceDirectory, ruleCostHistory);
+            }
+            if (ruleCostHistory != null) {
+                ValidationOrder validationOrder = new ValidationOrder();
+                ValidationOrder.activate(validationOrder);
+                lintPlan = LintPlan.create(rules, ruleCostHistory, validationOrder);
+            }
+            if (executionMode == ExecutionMode.FILE_MAJOR) {
+                performFileMajorValidations(lintErrorSink);
+                return;
+            }
+            if (numberOfWorkers > 0) {
+                LOGGER.debug("Starting {} workers", numberOfWorkers);
+                WorkerCoordinator workerCoordinator = new WorkerCoordinator(numberOfWorkers,
+                        LintRulesImpl.getInstance().getClass().getName(), cacheSize, fileTimeoutMilliseconds);
+                lintErrors = workerCoordinator.validate(rules, getRuleOrder(lintPlan), lintErrorSink);
+                return;
+            }
+
+            LOGGER.debug("Initializing work-stealing pools of {} threads and {} I/O threads{}", numberOfThreads,
+                    numberOfIoThreads, isUsingVirtualThreads ? ", virtual" : "");
             final ListeningExecutorService executorService =
-                    MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(NUMBER_OF_THREADS));
+                    MoreExecutors.listeningDecorator(new ForkJoinPool(numberOfThreads));
+            final ListeningExecutorService ioExecutorService;
+            if (isUsingVirtualThreads) {
+                // The rules wait for their files on virtual threads too, which the files get started on
+                ioExecutorService = MoreExecutors.listeningDecorator(
+                        VirtualThreads.newThreadPerTaskExecutor("jxlint-virtual-rule-"));
+                fileExecutorService = VirtualThreads.newThreadPerTaskExecutor("jxlint-virtual-");
+                VirtualThreadValidation.activate(new VirtualThreadValidation(fileExecutorService, numberOfIoThreads));
+            }
+            else {
+                ioExecutorService = numberOfIoThreads == 0 ? executorService :
+                        MoreExecutors.listeningDecorator(new ForkJoinPool(numberOfIoThreads));
+            }
 
-            for (LintRule lintRule : rules) {
-                ValidationThread validationThread = new ValidationThread(lintRule);
+            LintErrorCollector lintErrorCollector = new LintErrorCollector(rules.size());
+            for (int ruleIndex : getRuleOrder(lintPlan)) {
+                LintRule lintRule = rules.get(ruleIndex);
+                ValidationThread validationThread = new ValidationThread(lintRule, lintErrorSink);
 
-                ListenableFuture<List<LintError>> lintErrorFuture = executorService.submit(validationThread);
-                Futures.addCallback(lintErrorFuture, getFutureCallback(lintRule));
+                ListenableFuture<List<LintError>> lintErrorFuture = lintRule.getWorkload() == Workload.IO ?
+                        ioExecutorService.submit(validationThread) : executorService.submit(validationThread);
+                Futures.addCallback(lintErrorFuture, getFutureCallback(lintRule, ruleIndex, lintErrorCollector));
             }
 
             executorService.shutdown();
-            executorService.awaitTermination(24, TimeUnit.HOURS);
+            ioExecutorService.shutdown();
+            try {
+                if (!awaitTermination(executorService) || !awaitTermination(ioExecutorService)) {
+                    LOGGER.error("Gave up waiting for the rules to finish");
+                }
+            }
+            finally {
+                lintErrors = lintErrorCollector.getLintErrors();
+            }
         }
         catch (InterruptedException e) {
             LOGGER.error("Thread interrupted while validating", e);
         }
+        finally {
+            FileIndex.deactivate();
+            ContentCache.deactivate();
+            ContentCache.setContentSource(null);
+            ArtifactCache.deactivate();
+            ValidationTimeouts.deactivate();
+            LintErrorInterner.deactivate();
+            ValidationOrder.deactivate();
+            ShardAssignment.deactivate();
+            VirtualThreadValidation.deactivate();
+            if (fileExecutorService != null) {
+                fileExecutorService.shutdown();
+            }
+            closeGitRepository(gitRepository);
+            if (contentCache != null) {
+                Profiler.addCacheStats("File contents cache", contentCache.getStats());
+            }
+            if (artifactCache != null) {
+                Profiler.addCacheStats("Parsed files cache", artifactCache.getStats());
+            }
+            if (resultCache != null) {
+                ResultCache.deactivate();
+                saveResultCache(resultCache);
+            }
+            if (lintPlan != null) {
+                saveRuleCostHistory(ruleCostHistory, lintPlan);
+            }
+        }
+    }
+
+    /**
+     * Plans the validations, without performing them: lists the rules in the order they would be started, with
+     * their files and expected cost (see {@link LintPlan}). Without a history file, no rule has a history. With a
+     * shard, only its files are planned.
+     */
+    public LintPlan planLintValidations() {
+        File sourceDirectory = LintRulesImpl.getInstance().getSourceDirectory();
+        GitRepository gitRepository = openGitRepository(sourceDirectory);
+        FileIndex.activate(sourceDirectory, getGitScope(gitRepository), fileWalker);
+        try {
+            RuleCostHistory ruleCostHistory = ruleHistoryFile == null ? RuleCostHistory.empty() :
+                    RuleCostHistory.load(ruleHistoryFile);
+            if (shard != null) {
+                activateShardAssignment(sourceDirectory, ruleCostHistory);
+            }
+            return LintPlan.create(rules, ruleCostHistory, new ValidationOrder());
+        }
+        finally {
+            FileIndex.deactivate();
+            ShardAssignment.deactivate();
+            ContentCache.setContentSource(null);
+            closeGitRepository(gitRepository);
+        }
+    }
+
+    /**
+     * Splits the files between the shards (see {@link Shard}), and makes this shard's files the ones the rules
+     * validate. Rules without a history are split by the size of their files.
+     */
+    private void activateShardAssignment(File sourceDirectory, RuleCostHistory ruleCostHistory) {
+        shardAssignment = shard.assign(rules, sourceDirectory,
+                ruleCostHistory == null ? RuleCostHistory.empty() : ruleCostHistory, new ValidationOrder());
+        ShardAssignment.activate(shardAssignment);
+    }
+
+    /**
+     * Returns the positions of the rules, in the order they should be started.
+     */
+    private int[] getRuleOrder(LintPlan lintPlan) {
+        int[] ruleOrder = new int[rules.size()];
+        for (int i = 0; i < ruleOrder.length; i++) {
+            ruleOrder[i] = lintPlan == null ? i : lintPlan.getRulePlans().get(i).getRuleIndex();
+        }
+        return ruleOrder;
+    }
+
+    private GitRepository openGitRepository(File sourceDirectory) {
+        if (changedSinceRevision == null && !isStagedOnly) {
+            return null;
+        }
+        try {
+            return GitRepository.find(sourceDirectory);
+        }
+        catch (IOException e) {
+            LOGGER.error("Could not open the Git repository of {}, validating every file", sourceDirectory, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the files that changed in Git, or null if every file should be validated. When validating staged
+     * files, their staged contents are read instead of their contents on disk.
+     */
+    private Set<File> getGitScope(GitRepository gitRepository) {
+        if (gitRepository == null) {
+            return null;
+        }
+        try {
+            if (isStagedOnly) {
+                Map<File, String> stagedFiles = gitRepository.getStagedFiles();
+                ContentCache.setContentSource(new StagedContentSource(gitRepository, stagedFiles));
+                LOGGER.info("Validating {} staged files", stagedFiles.size());
+                return stagedFiles.keySet();
+            }
+            Set<File> changedFiles = gitRepository.getFilesChangedSince(changedSinceRevision);
+            LOGGER.info("Validating {} files changed since {}", changedFiles.size(), changedSinceRevision);
+            return changedFiles;
+        }
+        catch (IOException e) {
+            LOGGER.error("Could not find the files that changed in Git, validating every file", e);
+            return null;
+        }
+    }
+
+    private void closeGitRepository(GitRepository gitRepository) {
+        if (gitRepository != null) {
+            try {
+                gitRepository.close();
+            }
+            catch (IOException e) {
+                LOGGER.warn("Could not close the Git repository", e);
+            }
+        }
     }
 
-    private FutureCallback<List<LintError>> getFutureCallback(final LintRule lintRule) {
+    private ResultCache getResultCache(File sourceDirectory) {
+        if (resultCacheFile == null) {
+            return null;
+        }
+        if (isStagedOnly) {
+            // The cache is keyed on the contents of the files on disk, not on their staged contents
+            LOGGER.warn("Ignoring the result cache, since staged files are being validated");
+            return null;
+        }
+        return ResultCache.activate(resultCacheFile, sourceDirectory);
+    }
+
+    private static boolean awaitTermination(ExecutorService executorService) throws InterruptedException {
+        return executorService.awaitTermination(24, TimeUnit.HOURS);
+    }
+
+    private void performFileMajorValidations(LintErrorSink lintErrorSink) {
+        LOGGER.debug("Initializing work-stealing pool of {} threads and {} I/O threads{}, file-major", numberOfThreads,
+                numberOfIoThreads, isUsingVirtualThreads ? " (virtual)" : "");
+        ForkJoinPool forkJoinPool = new ForkJoinPool(numberOfThreads);
+        ExecutorService ioExecutorService;
+        if (isUsingVirtualThreads) {
+            ioExecutorService = VirtualThreads.newThreadPerTaskExecutor("jxlint-virtual-");
+        }
+        else {
+            ioExecutorService = numberOfIoThreads == 0 ? null : Executors.newFixedThreadPool(numberOfIoThreads,
+                    new ThreadFactoryBuilder().setNameFormat("jxlint-io-%d").setDaemon(true).build());
+        }
+        try {
+            FileMajorValidator fileMajorValidator = new FileMajorValidator(rules, lintErrorSink);
+            lintErrors.addAll(fileMajorValidator.validate(forkJoinPool, ioExecutorService, numberOfIoThreads));
+        }
+        finally {
+            forkJoinPool.shutdown();
+            if (ioExecutorService != null) {
+                ioExecutorService.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Adds the time every rule took, as recorded by the {@link Profiler}, to the history.
+     */
+    private void saveRuleCostHistory(RuleCostHistory ruleCostHistory, LintPlan lintPlan) {
+        for (LintPlan.RulePlan rulePlan : lintPlan.getRulePlans()) {
+            Long executionTimeMs = Profiler.getExecutionTime(rulePlan.getRule());
+            if (executionTimeMs != null) {
+                ruleCostHistory.update(rulePlan.getRule(), executionTimeMs, rulePlan.getNumberOfFiles());
+            }
+        }
+        try {
+            ruleCostHistory.save();
+        }
+        catch (IOException e) {
+            LOGGER.error("Could not save the rule history to {}", ruleHistoryFile, e);
+        }
+    }
+
+    private void saveResultCache(ResultCache resultCache) {
+        LOGGER.info("Replayed {} of {} results, hashed {} files", resultCache.getStats().hitCount(),
+                resultCache.getStats().requestCount(), resultCache.getHashedFileCount());
+        Profiler.addCacheStats("Incremental results cache", resultCache.getStats());
+        try {
+            resultCache.save();
+        }
+        catch (IOException e) {
+            LOGGER.error("Could not save the result cache to {}", resultCacheFile, e);
+        }
+    }
+
+    private FutureCallback<List<LintError>> getFutureCallback(final LintRule lintRule, final int ruleIndex,
+                                                              final LintErrorCollector lintErrorCollector) {
         return new FutureCallback<List<LintError>>() {
             @Override
             public void onSuccess(@Nullable List<LintError> resultErrors) {
                 if (resultErrors != null) {
                     LOGGER.info("[{}] found {} errors", lintRule.getName(), resultErrors.size());
-                    lintErrors.addAll(resultErrors);
+                    lintErrorCollector.setLintErrors(ruleIndex, resultErrors);
                 }
                 else {
                     LOGGER.error("[{}] returned null error list", lintRule.getName());
@@ -86,7 +544,42 @@ public class Linter {
         return lintErrors;
     }
 
+    /**
+     * Returns the errors found by {@link #performLintValidations()}, for the shard this linter validated, or null if
+     * it validated every file.
+     */
+    public ShardResult getShardResult() {
+        return shardAssignment == null ? null : ShardResult.of(shardAssignment, lintErrors);
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    public int getNumberOfIoThreads() {
+        return numberOfIoThreads;
+    }
+
+    public int getNumberOfWorkers() {
+        return numberOfWorkers;
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return isUsingVirtualThreads;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
     public List<LintRule> getLintRules() {
         return rules;
     }
+
+    /**
+     * Returns the walker that lists the files of the source directory, which knows what this run excludes.
+     */
+    public FileWalker getFileWalker() {
+        return fileWalker;
+    }
 }
@@ -1,26 +1,50 @@
 package com.selesse.jxlint.linter;
 
+import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.RunContext;
 
 import java.util.List;
 
 /**
  * A factory/singleton hybrid. Used for accessing {@link com.selesse.jxlint.linter.Linter}s as global variables.
  * This is particularly useful when we're performing unit tests and want to get the results of a lint validation
- * without passing around and returning tons of objects.
+ * without passing around and returning tons of objects. There is one per {@link RunContext}.
  */
 public class LinterFactory {
-    private static Linter instance;
+    private static final RunContext.Slot<Linter> instance = RunContext.newSlot();
 
     /**
      * Creates a new {@link Linter} based on a {@link java.util.List} of {@link LintRule}s.
      */
     public static Linter createNewLinter(List<LintRule> rules) {
-        instance = new Linter(rules);
-        return instance;
+        Linter linter = new Linter(rules);
+        instance.set(linter);
+        return linter;
+    }
+
+    /**
+     * Creates a new {@link Linter} based on a {@link java.util.List} of {@link LintRule}s, using the
+     * {@link ExecutionMode} requested by the {@link ProgramOptions}.
+     */
+    public static Linter createNewLinter(List<LintRule> rules, ProgramOptions options) {
+        Linter linter = new Linter(rules, options);
+        instance.set(linter);
+        return linter;
+    }
+
+    /**
+     * Like {@link #createNewLinter(List, ProgramOptions)}, but the number of threads can also come from the
+     * {@link ProgramSettings}, when the options don't specify it.
+     */
+    public static Linter createNewLinter(List<LintRule> rules, ProgramOptions options, ProgramSettings settings) {
+        Linter linter = new Linter(rules, options, settings);
+        instance.set(linter);
+        return linter;
     }
 
     public static Linter getInstance() {
-        return instance;
+        return instance.get();
     }
 }
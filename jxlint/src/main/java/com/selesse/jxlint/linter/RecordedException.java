@@ -0,0 +1,19 @@
+package com.selesse.jxlint.linter;
+
+/**
+ * An exception that happened in another process (a shard or a worker), of which only the text is left. Reports
+ * only print the text of exceptions, so they print the same thing as for the original exception.
+ */
+class RecordedException extends Exception {
+    private final String text;
+
+    RecordedException(String text) {
+        super(text);
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
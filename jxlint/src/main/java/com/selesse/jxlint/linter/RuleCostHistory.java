@@ -0,0 +1,118 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Maps;
+import com.selesse.jxlint.model.rules.LintRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * How long every rule took per file, in previous runs, according to the {@link com.selesse.jxlint.settings.Profiler}.
+ * It is kept in a properties file between runs, so that the next run can start with the rules that are expected to
+ * take the longest (see {@link LintPlan}).
+ *
+ * <p>
+ *     The cost of a rule is kept per file, since the number of files changes from one run to the next (a run limited
+ *     to the files that changed in Git, for example). Every run counts for half of the new cost, so that the history
+ *     follows rules that get slower or faster without jumping around because of a single unusual run.
+ * </p>
+ */
+class RuleCostHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleCostHistory.class);
+    private static final double LAST_RUN_WEIGHT = 0.5;
+
+    private final File historyFile;
+    private final Map<String, Double> millisecondsPerFile;
+
+    private RuleCostHistory(File historyFile) {
+        this.historyFile = historyFile;
+        this.millisecondsPerFile = Maps.newTreeMap();
+    }
+
+    /**
+     * A history in which no rule has run yet, and that can't be saved.
+     */
+    static RuleCostHistory empty() {
+        return new RuleCostHistory(null);
+    }
+
+    /**
+     * Reads the history from the file. A file that doesn't exist, or that can't be read, is an empty history.
+     */
+    static RuleCostHistory load(File historyFile) {
+        RuleCostHistory ruleCostHistory = new RuleCostHistory(historyFile);
+        if (!historyFile.isFile()) {
+            return ruleCostHistory;
+        }
+
+        Properties properties = new Properties();
+        try (BufferedReader reader = Files.newBufferedReader(historyFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Could not read the rule history from {}, starting over", historyFile, e);
+            return ruleCostHistory;
+        }
+
+        for (String ruleName : properties.stringPropertyNames()) {
+            try {
+                ruleCostHistory.millisecondsPerFile.put(ruleName,
+                        Double.parseDouble(properties.getProperty(ruleName)));
+            }
+            catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring the history of [{}], which isn't a number", ruleName);
+            }
+        }
+        LOGGER.debug("Read the history of {} rules from {}", ruleCostHistory.millisecondsPerFile.size(), historyFile);
+        return ruleCostHistory;
+    }
+
+    /**
+     * Returns how many milliseconds the rule is expected to spend on every file, or null if it has no history.
+     */
+    Double getMillisecondsPerFile(LintRule lintRule) {
+        return millisecondsPerFile.get(lintRule.getName());
+    }
+
+    /**
+     * Adds a run of the rule to its history. Runs without files say nothing about the cost of a file, and are ignored.
+     */
+    void update(LintRule lintRule, long executionTimeMs, int numberOfFiles) {
+        if (numberOfFiles <= 0) {
+            return;
+        }
+        double lastRunCost = (double) executionTimeMs / numberOfFiles;
+        Double previousCost = millisecondsPerFile.get(lintRule.getName());
+        millisecondsPerFile.put(lintRule.getName(), previousCost == null ? lastRunCost :
+                LAST_RUN_WEIGHT * lastRunCost + (1 - LAST_RUN_WEIGHT) * previousCost);
+    }
+
+    void save() throws IOException {
+        File parentDirectory = historyFile.getAbsoluteFile().getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + parentDirectory);
+        }
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Double> ruleNameAndCost : millisecondsPerFile.entrySet()) {
+            properties.setProperty(ruleNameAndCost.getKey(), String.valueOf(ruleNameAndCost.getValue()));
+        }
+
+        File temporaryFile = new File(parentDirectory, historyFile.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+            properties.store(writer, "Milliseconds per file, for every rule");
+        }
+        Files.move(temporaryFile.toPath(), historyFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("Saved the history of {} rules to {}", millisecondsPerFile.size(), historyFile);
+    }
+}
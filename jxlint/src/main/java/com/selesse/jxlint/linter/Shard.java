@@ -0,0 +1,229 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * One slice of a run that is split over several machines, like "3/8" for the third of eight shards. Every shard
+ * validates a different part of the (rule, file) pairs, writes its errors to a partial result (see
+ * {@link ShardResult}), and the partial results are merged into a single report.
+ *
+ * <p>
+ *     The split only depends on the rules, the files (relative to the source directory) and their sizes, and the
+ *     history if there is one, so every shard computes the same split on its own without talking to the others.
+ *     The pairs are handed out from the most expensive to the cheapest, each one to the shard that has the least
+ *     work so far. A pair is expected to cost the size of its file, plus a fixed cost per file. With a history (see
+ *     {@link RuleCostHistory}), a rule's cost per file is spread over its files by size instead, so that slow rules
+ *     count for more than fast ones. Every shard needs the same history for that, or the shards can't be merged.
+ * </p>
+ */
+public class Shard {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Shard.class);
+
+    /**
+     * What opening and reading a file costs, on top of its contents, in bytes.
+     */
+    private static final long FILE_COST_BYTES = 4096;
+
+    private final int index;
+    private final int count;
+
+    private Shard(int index, int count) {
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard like "3/8". Throws an {@link IllegalArgumentException} if the string isn't "i/N", with i from
+     * 1 to N.
+     */
+    public static Shard parse(String shardString) throws IllegalArgumentException {
+        List<String> indexAndCount = Splitter.on('/').trimResults().splitToList(shardString);
+        try {
+            if (indexAndCount.size() == 2) {
+                int index = Integer.parseInt(indexAndCount.get(0));
+                int count = Integer.parseInt(indexAndCount.get(1));
+                if (index >= 1 && index <= count) {
+                    return new Shard(index, count);
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            // Same error as any other malformed shard
+        }
+        throw new IllegalArgumentException("Invalid shard \"" + shardString + "\". Try i/N, like 3/8, with i " +
+                "from 1 to N.");
+    }
+
+    /**
+     * The position of this shard, from 1 to {@link #getCount()}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Splits the files of the rules between all the shards, and returns the ones of this shard. The files are
+     * resolved against the active {@link FileIndex}, and relative to the source directory.
+     */
+    ShardAssignment assign(List<LintRule> rules, File sourceDirectory, RuleCostHistory ruleCostHistory,
+                           ValidationOrder validationOrder) {
+        Map<LintRule, List<File>> allRuleFiles = Maps.newIdentityHashMap();
+        Map<LintRule, Double> costsPerByte = Maps.newIdentityHashMap();
+        for (LintRule rule : rules) {
+            try {
+                List<File> ruleFiles = FileIndex.retainFilesInScope(rule.getFilesToValidate());
+                allRuleFiles.put(rule, ruleFiles);
+                Double millisecondsPerFile = ruleCostHistory.getMillisecondsPerFile(rule);
+                if (millisecondsPerFile != null && !ruleFiles.isEmpty()) {
+                    long ruleCost = validationOrder.getTotalSize(ruleFiles) + FILE_COST_BYTES * ruleFiles.size();
+                    costsPerByte.put(rule, millisecondsPerFile * ruleFiles.size() / ruleCost);
+                }
+            }
+            catch (RuntimeException e) {
+                // The rule will fail again, and be reported, when it gets validated
+                LOGGER.debug("[{}] could not list its files", rule.getName(), e);
+            }
+        }
+        // Rules without a history are expected to cost what the others do on average
+        double defaultCostPerByte = costsPerByte.values().stream().mapToDouble(Double::doubleValue).average()
+                .orElse(1);
+
+        List<WorkItem> workItems = Lists.newArrayList();
+        for (LintRule rule : rules) {
+            List<File> ruleFiles = allRuleFiles.get(rule);
+            if (ruleFiles == null) {
+                continue;
+            }
+            double costPerByte = costsPerByte.getOrDefault(rule, defaultCostPerByte);
+            for (int position = 0; position < ruleFiles.size(); position++) {
+                File file = ruleFiles.get(position);
+                double cost = costPerByte * (validationOrder.getSize(file) + FILE_COST_BYTES);
+                workItems.add(new WorkItem(rule, position, getPortablePath(sourceDirectory, file), cost));
+            }
+        }
+
+        Comparator<WorkItem> mostExpensiveFirst = Comparator.comparingDouble(WorkItem::getCost).reversed();
+        workItems.sort(mostExpensiveFirst.thenComparing(WorkItem::getRuleName).thenComparing(WorkItem::getPath));
+
+        // Every pair goes to the shard with the least work so far, the first of them if there's a tie
+        PriorityQueue<ShardLoad> shardLoads = new PriorityQueue<>(count);
+        for (int shardIndex = 1; shardIndex <= count; shardIndex++) {
+            shardLoads.add(new ShardLoad(shardIndex));
+        }
+        Hasher fingerprint = Hashing.sha256().newHasher().putInt(count);
+        Map<LintRule, List<Integer>> assignedPositions = Maps.newIdentityHashMap();
+        for (WorkItem workItem : workItems) {
+            ShardLoad shardLoad = shardLoads.poll();
+            shardLoad.cost += workItem.cost;
+            shardLoads.add(shardLoad);
+
+            fingerprint.putString(workItem.getRuleName(), Charsets.UTF_8).putString(workItem.path, Charsets.UTF_8)
+                    .putInt(shardLoad.shardIndex);
+            if (shardLoad.shardIndex == index) {
+                assignedPositions.computeIfAbsent(workItem.rule, rule -> Lists.newArrayList()).add(workItem.position);
+            }
+        }
+
+        // The rules validate their files in the order they listed them, like they would without shards
+        Map<LintRule, List<File>> assignedFiles = Maps.newIdentityHashMap();
+        for (Map.Entry<LintRule, List<File>> ruleAndFiles : allRuleFiles.entrySet()) {
+            List<Integer> positions = assignedPositions.getOrDefault(ruleAndFiles.getKey(), Lists.newArrayList());
+            Collections.sort(positions);
+            List<File> files = Lists.newArrayListWithCapacity(positions.size());
+            for (int position : positions) {
+                files.add(ruleAndFiles.getValue().get(position));
+            }
+            assignedFiles.put(ruleAndFiles.getKey(), files);
+        }
+
+        LOGGER.debug("Shard {} got {} of {} (rule, file) pairs", this, assignedPositions.values().stream()
+                .mapToInt(List::size).sum(), workItems.size());
+        return new ShardAssignment(index, count, fingerprint.hash().toString(), assignedFiles);
+    }
+
+    /**
+     * Returns the path of the file relative to the source directory, with "/" as a separator, so that shards that
+     * check out the source directory in different places, or on different systems, agree on it.
+     */
+    static String getPortablePath(File sourceDirectory, File file) {
+        File normalizedDirectory = FileUtils.normalizeFile(sourceDirectory);
+        File normalizedFile = FileUtils.normalizeFile(file);
+        String path = normalizedFile.getPath();
+        if (normalizedFile.getPath().startsWith(normalizedDirectory.getPath() + File.separator)) {
+            path = normalizedDirectory.toPath().relativize(normalizedFile.toPath()).toString();
+        }
+        return path.replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+
+    /**
+     * A file of a rule, and how much it is expected to cost.
+     */
+    private static class WorkItem {
+        private final LintRule rule;
+        private final int position;
+        private final String path;
+        private final double cost;
+
+        WorkItem(LintRule rule, int position, String path, double cost) {
+            this.rule = rule;
+            this.position = position;
+            this.path = path;
+            this.cost = cost;
+        }
+
+        String getRuleName() {
+            return rule.getName();
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        double getCost() {
+            return cost;
+        }
+    }
+
+    private static class ShardLoad implements Comparable<ShardLoad> {
+        private final int shardIndex;
+        private double cost;
+
+        ShardLoad(int shardIndex) {
+            this.shardIndex = shardIndex;
+        }
+
+        @Override
+        public int compareTo(ShardLoad other) {
+            int byCost = Double.compare(cost, other.cost);
+            return byCost != 0 ? byCost : Integer.compare(shardIndex, other.shardIndex);
+        }
+    }
+}
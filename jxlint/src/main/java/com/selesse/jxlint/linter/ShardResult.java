@@ -0,0 +1,165 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.model.LintErrorOrderings;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRules;
+import com.selesse.jxlint.model.rules.NonExistentLintRuleException;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The errors found by one {@link Shard} of a run, written to a file so that they can be merged with the errors of
+ * the other shards into a single report (see {@link #merge(List)}).
+ *
+ * <p>
+ *     Errors point to their rule by name, and to their file by its path relative to the source directory, so the
+ *     shards can be merged on another machine, where the source directory is somewhere else. Exceptions are kept as
+ *     the text of their root cause (see {@link LintErrorCodec}).
+ * </p>
+ */
+public class ShardResult {
+    private static final int FORMAT_VERSION = 1;
+
+    private final int shardIndex;
+    private final int numberOfShards;
+    private final String fingerprint;
+    private final List<LintError> lintErrors;
+
+    private ShardResult(int shardIndex, int numberOfShards, String fingerprint, List<LintError> lintErrors) {
+        this.shardIndex = shardIndex;
+        this.numberOfShards = numberOfShards;
+        this.fingerprint = fingerprint;
+        this.lintErrors = ImmutableList.copyOf(lintErrors);
+    }
+
+    /**
+     * The errors found by the shard that validated the files of this assignment.
+     */
+    public static ShardResult of(ShardAssignment shardAssignment, List<LintError> lintErrors) {
+        return new ShardResult(shardAssignment.getShardIndex(), shardAssignment.getNumberOfShards(),
+                shardAssignment.getFingerprint(), lintErrors);
+    }
+
+    /**
+     * Reads the result a shard wrote with {@link #save(File, File)}. Rules are looked up by name in lintRules, and
+     * files are resolved against the source directory.
+     */
+    public static ShardResult load(File resultFile, LintRules lintRules, File sourceDirectory) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(resultFile))))) {
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException(resultFile + " is not a partial result, or is from another version");
+            }
+
+            int shardIndex = input.readInt();
+            int numberOfShards = input.readInt();
+            String fingerprint = LintErrorCodec.readString(input);
+            int errorCount = input.readInt();
+            List<LintError> lintErrors = Lists.newArrayListWithCapacity(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                LintRule lintRule = lintRules.getLintRule(LintErrorCodec.readString(input));
+                String path = LintErrorCodec.readString(input);
+                File file = new File(path).isAbsolute() ? new File(path) : new File(sourceDirectory, path);
+                lintErrors.add(LintErrorCodec.readLintError(input, lintRule, file));
+            }
+            return new ShardResult(shardIndex, numberOfShards, fingerprint, lintErrors);
+        }
+        catch (NonExistentLintRuleException e) {
+            throw new IOException(resultFile + " has errors for an unknown rule: " + e.getRuleName());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(resultFile + " is not a valid partial result", e);
+        }
+    }
+
+    /**
+     * Writes this result to a file. The file is replaced atomically, so a shard that gets interrupted never leaves a
+     * truncated result behind.
+     */
+    public void save(File resultFile, File sourceDirectory) throws IOException {
+        File parentDirectory = resultFile.getAbsoluteFile().getParentFile();
+        if (parentDirectory != null && !parentDirectory.isDirectory() && !parentDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + parentDirectory);
+        }
+
+        File temporaryFile = new File(parentDirectory, resultFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temporaryFile))))) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(shardIndex);
+            output.writeInt(numberOfShards);
+            LintErrorCodec.writeString(output, fingerprint);
+            output.writeInt(lintErrors.size());
+            for (LintError lintError : lintErrors) {
+                LintErrorCodec.writeString(output, lintError.getViolatedRule().getName());
+                LintErrorCodec.writeString(output, Shard.getPortablePath(sourceDirectory, lintError.getFile()));
+                LintErrorCodec.writeLintError(output, lintError);
+            }
+        }
+        java.nio.file.Files.move(temporaryFile.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Puts the errors of every shard of a run together, in the order a run without shards would have found them.
+     * Throws an {@link IOException} if a shard is missing or there twice, or if the shards weren't split the same
+     * way (see {@link ShardAssignment}).
+     */
+    public static List<LintError> merge(List<ShardResult> shardResults) throws IOException {
+        if (shardResults.isEmpty()) {
+            throw new IOException("There are no partial results to merge");
+        }
+
+        ShardResult firstResult = shardResults.get(0);
+        BitSet mergedShards = new BitSet();
+        List<LintError> lintErrors = Lists.newArrayList();
+        for (ShardResult shardResult : shardResults) {
+            if (shardResult.numberOfShards != firstResult.numberOfShards ||
+                    !shardResult.fingerprint.equals(firstResult.fingerprint)) {
+                throw new IOException("Shard " + shardResult.getShard() + " was not split like shard " +
+                        firstResult.getShard() + ": they saw different rules, files or histories");
+            }
+            if (mergedShards.get(shardResult.shardIndex)) {
+                throw new IOException("Shard " + shardResult.getShard() + " is there more than once");
+            }
+            mergedShards.set(shardResult.shardIndex);
+            lintErrors.addAll(shardResult.lintErrors);
+        }
+
+        int missingShard = mergedShards.nextClearBit(1);
+        if (missingShard <= firstResult.numberOfShards) {
+            throw new IOException("Shard " + missingShard + "/" + firstResult.numberOfShards + " is missing");
+        }
+
+        lintErrors.sort(LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+        return lintErrors;
+    }
+
+    /**
+     * The shard that found these errors, like "3/8".
+     */
+    public String getShard() {
+        return shardIndex + "/" + numberOfShards;
+    }
+
+    public List<LintError> getLintErrors() {
+        return lintErrors;
+    }
+}
@@ -3,6 +3,7 @@ package com.selesse.jxlint.linter;
 import com.google.common.base.Stopwatch;
 import com.selesse.jxlint.model.LintErrorOrderings;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
 import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.settings.Profiler;
 import org.slf4j.Logger;
@@ -17,15 +18,30 @@ public class ValidationThread implements Callable<List<LintError>> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ValidationThread.class);
 
     private LintRule lintRule;
+    private LintErrorSink lintErrorSink;
 
     public ValidationThread(LintRule lintRule) {
+        this(lintRule, null);
+    }
+
+    /**
+     * With a sink, the errors are handed to it as they are found (see
+     * {@link LintRule#validateInto(LintErrorSink)}), and none are returned.
+     */
+    public ValidationThread(LintRule lintRule, LintErrorSink lintErrorSink) {
         this.lintRule = lintRule;
+        this.lintErrorSink = lintErrorSink;
     }
 
     @Override
     public List<LintError> call() throws Exception {
         Stopwatch stopwatch = Stopwatch.createStarted();
-        lintRule.validate();
+        if (lintErrorSink == null) {
+            lintRule.validate();
+        }
+        else {
+            lintRule.validateInto(lintErrorSink);
+        }
 
         List<LintError> lintErrorList = lintRule.getLintErrors();
         Collections.sort(lintErrorList, LintErrorOrderings.getFileThenLineNumberOrdering());
@@ -0,0 +1,72 @@
+package com.selesse.jxlint.linter;
+
+import com.selesse.jxlint.model.rules.LintRule;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A range of the files of a rule, that a worker validates in one go (see {@link WorkerCoordinator}). If the worker
+ * dies, the files it had already validated are kept, and the rest of the batch goes to another worker.
+ */
+class WorkBatch {
+    private final int ruleIndex;
+    private final LintRule rule;
+    private final List<File> ruleFiles;
+    private final int endPosition;
+    private int nextPosition;
+    private int attempts;
+
+    /**
+     * The files of the rule from <code>startPosition</code> (inclusive) to <code>endPosition</code> (exclusive).
+     */
+    WorkBatch(int ruleIndex, LintRule rule, List<File> ruleFiles, int startPosition, int endPosition) {
+        this.ruleIndex = ruleIndex;
+        this.rule = rule;
+        this.ruleFiles = ruleFiles;
+        this.nextPosition = startPosition;
+        this.endPosition = endPosition;
+    }
+
+    int getRuleIndex() {
+        return ruleIndex;
+    }
+
+    LintRule getRule() {
+        return rule;
+    }
+
+    /**
+     * The files that haven't been validated yet.
+     */
+    List<File> getRemainingFiles() {
+        return ruleFiles.subList(nextPosition, endPosition);
+    }
+
+    /**
+     * The position, in the files of the rule, of the next file to validate.
+     */
+    int getNextPosition() {
+        return nextPosition;
+    }
+
+    File getNextFile() {
+        return ruleFiles.get(nextPosition);
+    }
+
+    void advance() {
+        nextPosition++;
+    }
+
+    /**
+     * Counts a worker that died while validating this batch, and returns how many did.
+     */
+    int addFailedAttempt() {
+        return ++attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + rule.getName() + "] files " + nextPosition + " to " + endPosition;
+    }
+}
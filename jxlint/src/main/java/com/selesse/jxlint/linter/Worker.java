@@ -0,0 +1,126 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Stopwatch;
+import com.selesse.jxlint.cache.ArtifactCache;
+import com.selesse.jxlint.cache.ContentCache;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRules;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.NonExistentLintRuleException;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.ValidationTimeouts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process that validates batches of files for a {@link WorkerCoordinator}, one file after the other. It creates its
+ * own rules, and connects back to the coordinator, which started it with:
+ *
+ * <pre>
+ *     java -cp ... com.selesse.jxlint.linter.Worker &lt;port&gt; &lt;LintRules class&gt;
+ * </pre>
+ *
+ * and wrote the token to connect with to its standard input, where other users can't read it. It stops once the
+ * coordinator tells it to, or once the connection is closed.
+ */
+public class Worker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Worker.class);
+
+    private final LintRules lintRules;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    Worker(LintRules lintRules, DataInputStream input, DataOutputStream output) {
+        this.lintRules = lintRules;
+        this.input = input;
+        this.output = output;
+    }
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        // The coordinator's standard output is for its reports
+        System.setOut(System.err);
+
+        int port = Integer.parseInt(args[0]);
+        long token = new DataInputStream(System.in).readLong();
+        LintRules lintRules = (LintRules) Class.forName(args[1]).getConstructor().newInstance();
+        LintRulesImpl.setInstance(lintRules);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeInt(WorkerCoordinator.PROTOCOL_VERSION);
+            output.writeLong(token);
+            output.flush();
+
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            new Worker(lintRules, input, output).run();
+        }
+    }
+
+    /**
+     * Validates the batches the coordinator sends, until it says to stop.
+     */
+    void run() throws IOException {
+        lintRules.setSourceDirectory(new File(LintErrorCodec.readString(input)));
+        long cacheSize = input.readLong();
+        long fileTimeoutMilliseconds = input.readLong();
+        ContentCache.activate(cacheSize, false);
+        ArtifactCache.activate(cacheSize);
+        ValidationTimeouts.activate(fileTimeoutMilliseconds, 0);
+
+        try {
+            while (input.readByte() == WorkerCoordinator.VALIDATE) {
+                String ruleName = LintErrorCodec.readString(input);
+                File[] files = new File[input.readInt()];
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = new File(LintErrorCodec.readString(input));
+                }
+                validate(ruleName, files);
+                output.flush();
+            }
+        }
+        finally {
+            ContentCache.deactivate();
+            ArtifactCache.deactivate();
+            ValidationTimeouts.deactivate();
+        }
+    }
+
+    private void validate(String ruleName, File[] files) throws IOException {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            LintRule lintRule = lintRules.getLintRule(ruleName);
+            for (File file : files) {
+                List<LintError> lintErrors = lintRule.validateFile(new SourceFile(file));
+                output.writeByte(WorkerCoordinator.FILE_DONE);
+                output.writeInt(lintErrors.size());
+                for (LintError lintError : lintErrors) {
+                    LintErrorCodec.writeLintError(output, lintError);
+                }
+            }
+            output.writeByte(WorkerCoordinator.BATCH_DONE);
+            output.writeLong(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+        catch (NonExistentLintRuleException e) {
+            output.writeByte(WorkerCoordinator.BATCH_FAILED);
+            LintErrorCodec.writeString(output, "no rule named \"" + e.getRuleName() + "\" in " +
+                    lintRules.getClass().getName());
+        }
+        catch (RuntimeException e) {
+            LOGGER.error("[{}] failed", ruleName, e);
+            output.writeByte(WorkerCoordinator.BATCH_FAILED);
+            LintErrorCodec.writeString(output, String.valueOf(e.getMessage()));
+        }
+    }
+}
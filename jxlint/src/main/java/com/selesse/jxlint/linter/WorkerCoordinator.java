@@ -0,0 +1,462 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.StandardSystemProperty;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.model.LintErrorOrderings;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.settings.Profiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Validates the rules in worker processes (see {@link Worker}) instead of threads, so that rules that aren't
+ * thread-safe still run in parallel, and so that every worker has a heap of its own. The workers are started on this
+ * machine, with the same class path, and connect back to this process over the loopback interface.
+ *
+ * <p>
+ *     The files of every rule are split into batches. Every worker gets a deque of batches, and validates them from
+ *     the front, one file after the other; a worker that runs out of batches steals them from the back of the
+ *     longest deque. The errors are sent back as every batch gets validated, and are handed to the sink right away
+ *     if there is one.
+ * </p>
+ *
+ * <p>
+ *     A worker that dies (or stops answering) is not replaced: the rest of its batch goes back to its deque, for the
+ *     others to steal, along with the batches it hadn't started yet. A batch that kills {@value #MAX_ATTEMPTS}
+ *     workers fails its rule, like a rule that throws an exception would. If every worker is dead, the remaining
+ *     batches are validated in this process.
+ * </p>
+ *
+ * <p>
+ *     Like with threads, the errors end up in the order of the rules, and of the files of every rule. A rule that
+ *     fails loses all of its errors, unless there is a sink: the errors that were handed to it before the rule
+ *     failed stay reported, since the point of a sink is to report them as soon as they are found.
+ * </p>
+ */
+public class WorkerCoordinator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerCoordinator.class);
+
+    static final int PROTOCOL_VERSION = 1;
+    static final byte STOP = 0;
+    static final byte VALIDATE = 1;
+    static final byte FILE_DONE = 1;
+    static final byte BATCH_DONE = 2;
+    static final byte BATCH_FAILED = 3;
+
+    private static final int MAX_ATTEMPTS = 2;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int BATCHES_PER_WORKER = 8;
+    private static final long CONNECT_TIMEOUT_MILLISECONDS = TimeUnit.MINUTES.toMillis(1);
+    private static final int ACCEPT_TIMEOUT_MILLISECONDS = 500;
+    private static final long IDLE_WAIT_MILLISECONDS = 10;
+
+    private final int numberOfWorkers;
+    private final String lintRulesClassName;
+    private final long cacheSize;
+    private final long fileTimeoutMilliseconds;
+    private final AtomicInteger deadWorkers = new AtomicInteger();
+
+    private List<LintRule> rules;
+    private LintErrorSink lintErrorSink;
+    private List<Deque<WorkBatch>> workerBatches;
+    private List<List<List<LintError>>> fileLintErrors;
+    private boolean[] failedRules;
+    private AtomicLongArray ruleTimesMs;
+    private AtomicInteger unfinishedBatches;
+
+    /**
+     * @param lintRulesClassName The {@link com.selesse.jxlint.model.rules.LintRules} every worker creates, with its
+     *                           public no-argument constructor, to find the rules by name
+     * @param cacheSize The size of the caches of every worker (see {@link com.selesse.jxlint.cache.ContentCache})
+     * @param fileTimeoutMilliseconds How long every file can take, or 0 for no timeout
+     */
+    public WorkerCoordinator(int numberOfWorkers, String lintRulesClassName, long cacheSize,
+                             long fileTimeoutMilliseconds) {
+        this.numberOfWorkers = numberOfWorkers;
+        this.lintRulesClassName = lintRulesClassName;
+        this.cacheSize = cacheSize;
+        this.fileTimeoutMilliseconds = fileTimeoutMilliseconds;
+    }
+
+    /**
+     * Validates every rule, starting with the ones in <code>ruleOrder</code> (positions in the list of rules), and
+     * returns their errors, unless there is a sink to hand them to. A coordinator can only be used once.
+     */
+    public List<LintError> validate(List<LintRule> rules, int[] ruleOrder, LintErrorSink lintErrorSink) {
+        this.rules = rules;
+        this.lintErrorSink = lintErrorSink;
+        this.fileLintErrors = Lists.newArrayList(Collections.nCopies(rules.size(), null));
+        this.failedRules = new boolean[rules.size()];
+        this.ruleTimesMs = new AtomicLongArray(rules.size());
+        List<WorkBatch> batches = createBatches(ruleOrder);
+        this.unfinishedBatches = new AtomicInteger(batches.size());
+
+        // Every worker starts with a contiguous part of the batches, so it sees as few rules as possible
+        workerBatches = Lists.newArrayList();
+        for (int workerIndex = 0; workerIndex < numberOfWorkers; workerIndex++) {
+            int start = batches.size() * workerIndex / numberOfWorkers;
+            int end = batches.size() * (workerIndex + 1) / numberOfWorkers;
+            workerBatches.add(new ConcurrentLinkedDeque<>(batches.subList(start, end)));
+        }
+
+        LOGGER.debug("Validating {} batches in {} workers", batches.size(), numberOfWorkers);
+        long token = new SecureRandom().nextLong();
+        File sourceDirectory = LintRulesImpl.getInstance().getSourceDirectory();
+        ExecutorService workerExecutor = Executors.newFixedThreadPool(numberOfWorkers,
+                new ThreadFactoryBuilder().setNameFormat("jxlint-worker-%d").setDaemon(true).build());
+        for (int workerIndex = 0; workerIndex < numberOfWorkers; workerIndex++) {
+            int index = workerIndex;
+            workerExecutor.execute(() -> runWorker(index, token, sourceDirectory));
+        }
+        workerExecutor.shutdown();
+        try {
+            if (!workerExecutor.awaitTermination(24, TimeUnit.HOURS)) {
+                LOGGER.error("Gave up waiting for the workers to finish");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting for the workers", e);
+        }
+
+        if (unfinishedBatches.get() > 0) {
+            LOGGER.warn("No workers left, validating the {} remaining batches in this process",
+                    unfinishedBatches.get());
+            WorkBatch batch;
+            while ((batch = takeBatch(0)) != null) {
+                validateInProcess(batch);
+            }
+        }
+
+        return collectLintErrors();
+    }
+
+    /**
+     * Splits the files of every rule into batches small enough that every worker gets several of them.
+     */
+    private List<WorkBatch> createBatches(int[] ruleOrder) {
+        List<List<File>> ruleFiles = Lists.newArrayList(Collections.nCopies(rules.size(), null));
+        int numberOfFiles = 0;
+        for (int ruleIndex : ruleOrder) {
+            LintRule rule = rules.get(ruleIndex);
+            try {
+                List<File> files = ShardAssignment.getFilesToValidate(rule);
+                ruleFiles.set(ruleIndex, files);
+                numberOfFiles += files.size();
+                fileLintErrors.set(ruleIndex, Lists.newArrayList(Collections.nCopies(files.size(), null)));
+            }
+            catch (RuntimeException e) {
+                failRule(ruleIndex, e.getMessage());
+            }
+        }
+
+        int batchSize = numberOfFiles / (numberOfWorkers * BATCHES_PER_WORKER);
+        batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
+        List<WorkBatch> batches = Lists.newArrayList();
+        for (int ruleIndex : ruleOrder) {
+            List<File> files = ruleFiles.get(ruleIndex);
+            if (files == null) {
+                continue;
+            }
+            for (int start = 0; start < files.size(); start += batchSize) {
+                batches.add(new WorkBatch(ruleIndex, rules.get(ruleIndex), files, start,
+                        Math.min(files.size(), start + batchSize)));
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Starts a worker, and hands it batches until there are none left, or until it dies.
+     */
+    private void runWorker(int workerIndex, long token, File sourceDirectory) {
+        Process process = null;
+        WorkBatch batch = null;
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            process = startWorker(serverSocket.getLocalPort(), token);
+            try (Socket socket = awaitConnection(serverSocket, process, token)) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                LintErrorCodec.writeString(output, sourceDirectory.getAbsolutePath());
+                output.writeLong(cacheSize);
+                output.writeLong(fileTimeoutMilliseconds);
+
+                while ((batch = takeBatch(workerIndex)) != null) {
+                    validate(batch, input, output);
+                    batch = null;
+                }
+                output.writeByte(STOP);
+                output.flush();
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Worker {} didn't stop, stopping it forcibly", workerIndex);
+                process.destroyForcibly();
+            }
+        }
+        catch (IOException e) {
+            deadWorkers.incrementAndGet();
+            LOGGER.warn("Worker {} died, its batches go to the other workers: {}", workerIndex, e.getMessage());
+            if (batch != null) {
+                giveBack(batch, workerIndex);
+            }
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+        catch (RuntimeException e) {
+            // Like the sink failing: the batch can't be finished, by this worker or any other
+            LOGGER.error("Error coordinating worker {}", workerIndex, e);
+            if (batch != null) {
+                failRule(batch.getRuleIndex(), e.getMessage());
+                unfinishedBatches.decrementAndGet();
+            }
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Starts a worker, and sends it the token through its standard input: arguments can be read by any user, with
+     * "ps" or in "/proc".
+     */
+    private Process startWorker(int port, long token) throws IOException {
+        String javaBinary = new File(new File(StandardSystemProperty.JAVA_HOME.value(), "bin"), "java").getPath();
+        List<String> command = Lists.newArrayList(javaBinary, "-cp", StandardSystemProperty.JAVA_CLASS_PATH.value(),
+                Worker.class.getName(), String.valueOf(port), lintRulesClassName);
+        // Workers log to their standard error, which is ours; their standard output is left for the reports
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (DataOutputStream input = new DataOutputStream(process.getOutputStream())) {
+            input.writeLong(token);
+        }
+        catch (IOException e) {
+            process.destroyForcibly();
+            throw e;
+        }
+        return process;
+    }
+
+    /**
+     * Waits for the worker to connect, and checks that it's the one that was started. Connections from other
+     * processes are dropped.
+     */
+    private static Socket awaitConnection(ServerSocket serverSocket, Process process, long token) throws IOException {
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MILLISECONDS);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        while (stopwatch.elapsed(TimeUnit.MILLISECONDS) < CONNECT_TIMEOUT_MILLISECONDS) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (SocketTimeoutException e) {
+                if (!process.isAlive()) {
+                    throw new IOException("it exited with code " + process.exitValue() + " before connecting", e);
+                }
+                continue;
+            }
+
+            try {
+                socket.setSoTimeout(ACCEPT_TIMEOUT_MILLISECONDS * 10);
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                if (input.readInt() == PROTOCOL_VERSION && input.readLong() == token) {
+                    socket.setSoTimeout(0);
+                    return socket;
+                }
+            }
+            catch (IOException e) {
+                LOGGER.debug("Dropped a connection that isn't from a worker", e);
+            }
+            socket.close();
+        }
+        throw new IOException("it didn't connect in " + CONNECT_TIMEOUT_MILLISECONDS + " ms");
+    }
+
+    /**
+     * Returns the next batch of the worker, or one stolen from the back of the longest deque. Waits while other
+     * workers are still validating batches, since they could die and give theirs back. Returns null once every
+     * batch has been validated.
+     */
+    private WorkBatch takeBatch(int workerIndex) {
+        while (unfinishedBatches.get() > 0) {
+            WorkBatch batch = workerBatches.get(workerIndex).pollFirst();
+            if (batch != null) {
+                return batch;
+            }
+
+            Deque<WorkBatch> longestDeque = null;
+            for (Deque<WorkBatch> deque : workerBatches) {
+                if (longestDeque == null || deque.size() > longestDeque.size()) {
+                    longestDeque = deque;
+                }
+            }
+            batch = longestDeque.pollLast();
+            if (batch != null) {
+                return batch;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            Uninterruptibles.sleepUninterruptibly(IDLE_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS);
+        }
+        return null;
+    }
+
+    /**
+     * Puts the rest of a batch back in front of the worker's deque, for the other workers to steal, unless it has
+     * killed too many workers already.
+     */
+    private void giveBack(WorkBatch batch, int workerIndex) {
+        int attempts = batch.addFailedAttempt();
+        if (attempts >= MAX_ATTEMPTS) {
+            failRule(batch.getRuleIndex(), batch.getNextFile().getAbsolutePath() + " killed " + attempts +
+                    " workers");
+            unfinishedBatches.decrementAndGet();
+        }
+        else {
+            workerBatches.get(workerIndex).addFirst(batch);
+        }
+    }
+
+    /**
+     * Sends a batch to a worker, and reads the errors of its files as they come.
+     */
+    private void validate(WorkBatch batch, DataInputStream input, DataOutputStream output) throws IOException {
+        List<File> files = batch.getRemainingFiles();
+        output.writeByte(VALIDATE);
+        LintErrorCodec.writeString(output, batch.getRule().getName());
+        output.writeInt(files.size());
+        for (File file : files) {
+            LintErrorCodec.writeString(output, file.getAbsolutePath());
+        }
+        output.flush();
+
+        while (true) {
+            byte reply = input.readByte();
+            if (reply == FILE_DONE) {
+                int errorCount = input.readInt();
+                List<LintError> lintErrors = Lists.newArrayListWithCapacity(errorCount);
+                for (int i = 0; i < errorCount; i++) {
+                    try {
+                        lintErrors.add(LintErrorCodec.readLintError(input, batch.getRule(), batch.getNextFile()));
+                    }
+                    catch (IllegalArgumentException e) {
+                        throw new IOException("it sent an invalid error", e);
+                    }
+                }
+                finishFile(batch, lintErrors);
+            }
+            else if (reply == BATCH_DONE) {
+                ruleTimesMs.addAndGet(batch.getRuleIndex(), input.readLong());
+                unfinishedBatches.decrementAndGet();
+                return;
+            }
+            else if (reply == BATCH_FAILED) {
+                failRule(batch.getRuleIndex(), LintErrorCodec.readString(input));
+                unfinishedBatches.decrementAndGet();
+                return;
+            }
+            else {
+                throw new IOException("it sent an unknown reply: " + reply);
+            }
+        }
+    }
+
+    private void validateInProcess(WorkBatch batch) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            while (!batch.getRemainingFiles().isEmpty()) {
+                finishFile(batch, batch.getRule().validateFile(new SourceFile(batch.getNextFile())));
+            }
+            ruleTimesMs.addAndGet(batch.getRuleIndex(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+        catch (RuntimeException e) {
+            failRule(batch.getRuleIndex(), e.getMessage());
+        }
+        unfinishedBatches.decrementAndGet();
+    }
+
+    private void finishFile(WorkBatch batch, List<LintError> lintErrors) {
+        if (lintErrorSink == null) {
+            fileLintErrors.get(batch.getRuleIndex()).set(batch.getNextPosition(), lintErrors);
+        }
+        else {
+            lintErrorSink.acceptAll(lintErrors);
+        }
+        batch.advance();
+    }
+
+    private void failRule(int ruleIndex, String message) {
+        failedRules[ruleIndex] = true;
+        LOGGER.error("[{}] failed in a worker: {}", rules.get(ruleIndex).getName(), message);
+    }
+
+    /**
+     * Puts the errors of every rule that didn't fail together, in the order of the rules, and records how long every
+     * rule took in the workers.
+     */
+    private List<LintError> collectLintErrors() {
+        List<LintError> lintErrors = Lists.newArrayList();
+        for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+            if (failedRules[ruleIndex]) {
+                continue;
+            }
+            LintRule rule = rules.get(ruleIndex);
+            Profiler.addExecutionTime(rule, ruleTimesMs.get(ruleIndex));
+            if (lintErrorSink != null || fileLintErrors.get(ruleIndex) == null) {
+                continue;
+            }
+
+            List<LintError> ruleLintErrors = Lists.newArrayList();
+            for (List<LintError> fileErrors : fileLintErrors.get(ruleIndex)) {
+                ruleLintErrors.addAll(fileErrors);
+            }
+            ruleLintErrors.sort(LintErrorOrderings.getFileThenLineNumberOrdering());
+            LOGGER.info("[{}] found {} errors", rule.getName(), ruleLintErrors.size());
+            lintErrors.addAll(ruleLintErrors);
+        }
+        return lintErrors;
+    }
+
+    /**
+     * Returns how many workers died, or never connected.
+     */
+    public int getNumberOfDeadWorkers() {
+        return deadWorkers.get();
+    }
+}
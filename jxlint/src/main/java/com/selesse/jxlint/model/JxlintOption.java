@@ -17,6 +17,29 @@ public enum JxlintOption {
     REPORT_RULES("rules"),
     PROFILE("profile"),
     CATEGORY("category"),
+    FILE_MAJOR("file-major"),
+    CACHE_SIZE("cache-size"),
+    OFF_HEAP("off-heap"),
+    INCREMENTAL("incremental"),
+    CHANGED_SINCE("changed-since"),
+    STAGED("staged"),
+    WATCH("watch"),
+    DAEMON("daemon"),
+    FILE_TIMEOUT("file-timeout"),
+    RULE_TIMEOUT("rule-timeout"),
+    STREAM("stream"),
+    HISTORY("history"),
+    PLAN("plan"),
+    THREADS("threads"),
+    IO_THREADS("io-threads"),
+    VIRTUAL_THREADS("virtual-threads"),
+    SHARD("shard"),
+    PARTIAL("partial"),
+    MERGE("merge"),
+    WORKERS("workers"),
+    SPILL_AFTER("spill-after"),
+    EXCLUDE("exclude"),
+    NO_IGNORE("no-ignore"),
     ;
 
     private String optionString;
@@ -11,6 +11,7 @@ import com.selesse.jxlint.model.rules.NonExistentLintRuleException;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * jxlint program options. This contains information relating to {@link com.selesse.jxlint.model.JxlintOption}s.
@@ -103,6 +104,13 @@ public class ProgramOptions {
         return Lists.newArrayList(rulesStringList);
     }
 
+    /**
+     * Returns the globs of a raw option string, i.e. { "build", "*.min.js" } for "build, *.min.js".
+     */
+    public static List<String> getGlobListFromOptionString(String globOptionString) {
+        return Lists.newArrayList(Splitter.on(",").omitEmptyStrings().trimResults().split(globOptionString));
+    }
+
     public static List<String> getCategoryListFromOptionString(String categoryOptionString)
             throws IllegalArgumentException {
         List<String> categoryList = Lists.newArrayList();
@@ -127,6 +135,134 @@ public class ProgramOptions {
         return categoryList;
     }
 
+    /**
+     * Returns a number of bytes from the raw option string. The number can be followed by a unit: "k", "m" or "g",
+     * i.e. "64m" is 64 * 1024 * 1024 bytes. Throws an {@link IllegalArgumentException} if the string isn't a
+     * valid size.
+     */
+    public static long getByteSizeFromOptionString(String sizeOptionString) throws IllegalArgumentException {
+        String sizeString = sizeOptionString.trim().toLowerCase();
+        long multiplier = 1;
+        if (sizeString.endsWith("k")) {
+            multiplier = 1024L;
+        }
+        else if (sizeString.endsWith("m")) {
+            multiplier = 1024L * 1024;
+        }
+        else if (sizeString.endsWith("g")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            sizeString = sizeString.substring(0, sizeString.length() - 1);
+        }
+
+        try {
+            long size = Long.parseLong(sizeString);
+            if (size < 0) {
+                throw new NumberFormatException();
+            }
+            return size * multiplier;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size \"" + sizeOptionString + "\". Try something like " +
+                    "512k, 64m or 1g.");
+        }
+    }
+
+    /**
+     * Returns a number of milliseconds from the raw option string. The number can be followed by a unit: "ms", "s",
+     * "m" or "h", i.e. "30s" is 30000 milliseconds. Without a unit, the number is in seconds. Throws an
+     * {@link IllegalArgumentException} if the string isn't a valid duration.
+     */
+    public static long getDurationFromOptionString(String durationOptionString) throws IllegalArgumentException {
+        String durationString = durationOptionString.trim().toLowerCase();
+        TimeUnit timeUnit = TimeUnit.SECONDS;
+        int unitLength = 0;
+        if (durationString.endsWith("ms")) {
+            timeUnit = TimeUnit.MILLISECONDS;
+            unitLength = 2;
+        }
+        else if (durationString.endsWith("s")) {
+            unitLength = 1;
+        }
+        else if (durationString.endsWith("m")) {
+            timeUnit = TimeUnit.MINUTES;
+            unitLength = 1;
+        }
+        else if (durationString.endsWith("h")) {
+            timeUnit = TimeUnit.HOURS;
+            unitLength = 1;
+        }
+        durationString = durationString.substring(0, durationString.length() - unitLength);
+
+        try {
+            long duration = Long.parseLong(durationString);
+            if (duration < 0) {
+                throw new NumberFormatException();
+            }
+            return timeUnit.toMillis(duration);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration \"" + durationOptionString + "\". Try something " +
+                    "like 500ms, 30s or 5m.");
+        }
+    }
+
+    /**
+     * Returns a number of threads from the raw option string. Throws an {@link IllegalArgumentException} if the
+     * string isn't a number, or is less than the minimum.
+     */
+    public static int getThreadCountFromOptionString(String threadCountOptionString, int minimum)
+            throws IllegalArgumentException {
+        try {
+            int threadCount = Integer.parseInt(threadCountOptionString.trim());
+            if (threadCount < minimum) {
+                throw new NumberFormatException();
+            }
+            return threadCount;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of threads \"" + threadCountOptionString + "\". " +
+                    "Try a number, " + minimum + " or more.");
+        }
+    }
+
+    /**
+     * Returns a number of workers from the raw option string. Throws an {@link IllegalArgumentException} if the
+     * string isn't a number, or is less than 1.
+     */
+    public static int getWorkerCountFromOptionString(String workerCountOptionString) throws IllegalArgumentException {
+        try {
+            int workerCount = Integer.parseInt(workerCountOptionString.trim());
+            if (workerCount < 1) {
+                throw new NumberFormatException();
+            }
+            return workerCount;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of workers \"" + workerCountOptionString + "\". " +
+                    "Try a number, 1 or more.");
+        }
+    }
+
+    /**
+     * Returns a number of errors from the raw option string. Throws an {@link IllegalArgumentException} if the
+     * string isn't a number, or is less than 1.
+     */
+    public static int getErrorCountFromOptionString(String errorCountOptionString) throws IllegalArgumentException {
+        try {
+            int errorCount = Integer.parseInt(errorCountOptionString.trim());
+            if (errorCount < 1) {
+                throw new NumberFormatException();
+            }
+            return errorCount;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of errors \"" + errorCountOptionString + "\". " +
+                    "Try a number, 1 or more.");
+        }
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
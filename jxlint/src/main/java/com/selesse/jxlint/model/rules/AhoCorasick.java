@@ -0,0 +1,142 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds every occurrence of a set of literals in a single pass over the text, however many literals there are (see
+ * Aho and Corasick, "Efficient string matching: an aid to bibliographic search", 1975).
+ *
+ * <p>
+ *     The automaton is a complete table: every state has a transition for every character that appears in the
+ *     literals (any other character is a single "other" character), so that going through the text is a table
+ *     lookup per character. The table takes a state per character of the literals, times the number of different
+ *     characters.
+ * </p>
+ */
+final class AhoCorasick {
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    // The class of every char: 0 for the ones that aren't in any literal
+    private final char[] charClasses = new char[Character.MAX_VALUE + 1];
+    private final int numberOfClasses;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    /**
+     * Builds the automaton for these literals, which must not be empty. The literals are identified by their index
+     * in the list.
+     */
+    AhoCorasick(List<String> literals) {
+        int numberOfClasses = 1;
+        int numberOfStates = 1;
+        for (String literal : literals) {
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Literals can't be empty");
+            }
+            numberOfStates += literal.length();
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (charClasses[c] == 0) {
+                    charClasses[c] = (char) numberOfClasses++;
+                }
+            }
+        }
+        this.numberOfClasses = numberOfClasses;
+
+        int[] transitions = new int[Ints.checkedCast((long) numberOfStates * numberOfClasses)];
+        Arrays.fill(transitions, -1);
+        int[][] outputs = new int[numberOfStates][];
+        int usedStates = 1;
+        for (int literalIndex = 0; literalIndex < literals.size(); literalIndex++) {
+            String literal = literals.get(literalIndex);
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int transition = state * numberOfClasses + charClasses[literal.charAt(i)];
+                if (transitions[transition] < 0) {
+                    transitions[transition] = usedStates++;
+                }
+                state = transitions[transition];
+            }
+            outputs[state] = append(outputs[state], literalIndex);
+        }
+
+        // Missing transitions go where the longest suffix that is a prefix of a literal goes, breadth first so that
+        // shorter suffixes are done first
+        int[] failures = new int[usedStates];
+        Queue<Integer> states = new ArrayDeque<>();
+        for (int c = 0; c < numberOfClasses; c++) {
+            if (transitions[c] < 0) {
+                transitions[c] = 0;
+            }
+            else {
+                states.add(transitions[c]);
+            }
+        }
+        while (!states.isEmpty()) {
+            int state = states.poll();
+            int failure = failures[state];
+            outputs[state] = concat(outputs[state], outputs[failure]);
+            for (int c = 0; c < numberOfClasses; c++) {
+                int transition = state * numberOfClasses + c;
+                if (transitions[transition] < 0) {
+                    transitions[transition] = transitions[failure * numberOfClasses + c];
+                }
+                else {
+                    failures[transitions[transition]] = transitions[failure * numberOfClasses + c];
+                    states.add(transitions[transition]);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(transitions, usedStates * numberOfClasses);
+        for (int state = 0; state < usedStates; state++) {
+            if (outputs[state] == null) {
+                outputs[state] = NO_OUTPUTS;
+            }
+        }
+        this.outputs = Arrays.copyOf(outputs, usedStates);
+    }
+
+    /**
+     * The state to start from, at the beginning of the text.
+     */
+    int getInitialState() {
+        return 0;
+    }
+
+    int next(int state, char c) {
+        return transitions[state * numberOfClasses + charClasses[c]];
+    }
+
+    /**
+     * Returns the indexes of the literals that end right where this state was reached, which is empty for most
+     * states.
+     */
+    int[] getOutputs(int state) {
+        return outputs[state];
+    }
+
+    private static int[] append(int[] values, int value) {
+        if (values == null) {
+            return new int[] { value };
+        }
+        int[] newValues = Arrays.copyOf(values, values.length + 1);
+        newValues[values.length] = value;
+        return newValues;
+    }
+
+    private static int[] concat(int[] values, int[] otherValues) {
+        if (otherValues == null || otherValues.length == 0) {
+            return values;
+        }
+        if (values == null) {
+            return otherValues;
+        }
+        return Ints.concat(values, otherValues);
+    }
+}
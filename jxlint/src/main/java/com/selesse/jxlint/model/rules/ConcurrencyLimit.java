@@ -0,0 +1,77 @@
+package com.selesse.jxlint.model.rules;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many threads can validate files for a rule at the same time (see {@link LintRule#getMaxConcurrency()}).
+ * Threads of a {@link ForkJoinPool} that have to wait tell the pool, which can then start another thread to keep the
+ * other rules going.
+ */
+class ConcurrencyLimit {
+    private static final ConcurrencyLimit UNLIMITED = new ConcurrencyLimit(null);
+
+    private final Semaphore permits;
+
+    private ConcurrencyLimit(Semaphore permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * Returns a limit of that many threads at the same time, or no limit at all if it isn't positive.
+     */
+    static ConcurrencyLimit of(int maxConcurrency) {
+        return maxConcurrency > 0 ? new ConcurrencyLimit(new Semaphore(maxConcurrency)) : UNLIMITED;
+    }
+
+    /**
+     * Waits until there are fewer threads than the limit. Every call must be followed by a call to {@link #release()}.
+     */
+    void acquire() {
+        if (permits == null) {
+            return;
+        }
+        try {
+            ForkJoinPool.managedBlock(new PermitBlocker());
+        }
+        catch (InterruptedException e) {
+            // Can't happen, the blocker doesn't get interrupted, but keep the interruption for whoever wanted it
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes a permit if one is available right away, and returns whether it did. A call that returns true must be
+     * followed by a call to {@link #release()}.
+     */
+    boolean tryAcquire() {
+        return permits == null || permits.tryAcquire();
+    }
+
+    void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+        private boolean hasPermit = false;
+
+        @Override
+        public boolean block() {
+            if (!hasPermit) {
+                permits.acquireUninterruptibly();
+                hasPermit = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!hasPermit) {
+                hasPermit = permits.tryAcquire();
+            }
+            return hasPermit;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The time by which the file being validated on the current thread has to be done, because of the file timeout or
+ * because of its rule's timeout (see {@link ValidationTimeouts}). There is no deadline when no timeout is configured.
+ *
+ * <p>
+ *     A thread can't be stopped from the outside, so deadlines are enforced cooperatively: {@link #check()} throws a
+ *     {@link ValidationTimeoutException} once the deadline has passed, and the thread gets interrupted, which stops
+ *     blocking operations that can be interrupted. jxlint checks whenever a rule reads the contents of a
+ *     {@link SourceFile}. Rules that do a lot of work on a file should call {@link #check()} every now and then, and
+ *     match their regular expressions against {@link SourceFile#getInterruptibleContents()}, so that a pathological
+ *     input can't keep them busy forever.
+ * </p>
+ */
+public final class Deadline implements AutoCloseable {
+    private static final ThreadLocal<Deadline> currentDeadline = new ThreadLocal<>();
+    /**
+     * How many characters an {@link #interruptible(CharSequence)} sequence hands out between two checks.
+     */
+    private static final int CHARACTERS_BETWEEN_CHECKS = 1 << 12;
+
+    private final LintRule lintRule;
+    private final File file;
+    private long fileDeadlineNanos;
+    private final long ruleDeadlineNanos;
+    private final long fileTimeoutMilliseconds;
+    private final long ruleTimeoutMilliseconds;
+    private final Thread thread;
+    private final Deadline previousDeadline;
+    private ScheduledFuture<?> interruption;
+    private boolean isOpen = true;
+    private boolean hasInterrupted = false;
+    private boolean isPaused = false;
+    private long pauseStartNanos;
+
+    /**
+     * Starts a deadline for the current thread, until it is closed.
+     */
+    Deadline(LintRule lintRule, File file, long fileDeadlineNanos, long ruleDeadlineNanos,
+             long fileTimeoutMilliseconds, long ruleTimeoutMilliseconds) {
+        this.lintRule = lintRule;
+        this.file = file;
+        this.fileDeadlineNanos = fileDeadlineNanos;
+        this.ruleDeadlineNanos = ruleDeadlineNanos;
+        this.fileTimeoutMilliseconds = fileTimeoutMilliseconds;
+        this.ruleTimeoutMilliseconds = ruleTimeoutMilliseconds;
+        this.thread = Thread.currentThread();
+        this.previousDeadline = currentDeadline.get();
+        currentDeadline.set(this);
+    }
+
+    /**
+     * Throws a {@link ValidationTimeoutException} if the file being validated on this thread has run out of time.
+     */
+    public static void check() {
+        Deadline deadline = currentDeadline.get();
+        if (deadline != null) {
+            deadline.checkExpiration();
+        }
+    }
+
+    /**
+     * Returns the deadline of the current thread, or null if it doesn't have one.
+     */
+    static Deadline current() {
+        return currentDeadline.get();
+    }
+
+    /**
+     * Returns a view of the characters that calls {@link #check()} as they get read. Regular expressions are matched
+     * by reading their input, so this is how a catastrophically backtracking one gets stopped.
+     */
+    public static CharSequence interruptible(CharSequence charSequence) {
+        return new CheckedCharSequence(charSequence);
+    }
+
+    void checkExpiration() {
+        long now = System.nanoTime();
+        if (now - fileDeadlineNanos >= 0) {
+            throw new ValidationTimeoutException(lintRule, file, false, fileTimeoutMilliseconds);
+        }
+        if (now - ruleDeadlineNanos >= 0) {
+            throw new ValidationTimeoutException(lintRule, file, true, ruleTimeoutMilliseconds);
+        }
+    }
+
+    /**
+     * Returns the exception for this deadline if it has passed, or null if there is still time.
+     */
+    ValidationTimeoutException getExpiration() {
+        try {
+            checkExpiration();
+            return null;
+        }
+        catch (ValidationTimeoutException e) {
+            return e;
+        }
+    }
+
+    long getNanosUntilExpiration() {
+        long now = System.nanoTime();
+        return Math.max(0, Math.min(fileDeadlineNanos - now, ruleDeadlineNanos - now));
+    }
+
+    synchronized void setInterruption(ScheduledFuture<?> interruption) {
+        this.interruption = interruption;
+    }
+
+    /**
+     * Stops the clock of the file while the thread works on something else (see
+     * {@link ValidationTimeouts#startPass(List, File)}): the thread isn't interrupted until {@link #resume()}.
+     */
+    synchronized void pause() {
+        isPaused = true;
+        pauseStartNanos = System.nanoTime();
+        if (interruption != null) {
+            interruption.cancel(false);
+        }
+        if (hasInterrupted) {
+            Thread.interrupted();
+            hasInterrupted = false;
+        }
+    }
+
+    /**
+     * Restarts the clock of the file, pushing its deadline back by how long it was paused. The interruption has to be
+     * scheduled again.
+     */
+    synchronized void resume() {
+        fileDeadlineNanos += System.nanoTime() - pauseStartNanos;
+        isPaused = false;
+    }
+
+    /**
+     * Interrupts the thread, if it's still working on this file.
+     */
+    synchronized void interrupt() {
+        if (isOpen && !isPaused) {
+            hasInterrupted = true;
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Ends the deadline. Must be called by the thread that started it.
+     */
+    @Override
+    public synchronized void close() {
+        isOpen = false;
+        if (interruption != null) {
+            interruption.cancel(false);
+        }
+        if (hasInterrupted) {
+            // The interruption was only meant for this file, not for whatever the thread does next
+            Thread.interrupted();
+        }
+        if (previousDeadline == null) {
+            currentDeadline.remove();
+        }
+        else {
+            currentDeadline.set(previousDeadline);
+        }
+    }
+
+    private static class CheckedCharSequence implements CharSequence {
+        private final CharSequence charSequence;
+        private int charactersUntilCheck = CHARACTERS_BETWEEN_CHECKS;
+
+        CheckedCharSequence(CharSequence charSequence) {
+            this.charSequence = charSequence;
+        }
+
+        @Override
+        public int length() {
+            return charSequence.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--charactersUntilCheck <= 0) {
+                charactersUntilCheck = CHARACTERS_BETWEEN_CHECKS;
+                check();
+            }
+            return charSequence.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new CheckedCharSequence(charSequence.subSequence(start, end));
+        }
+
+        @Override
+        public String toString() {
+            return charSequence.toString();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Validates a range of files for a single {@link LintRule}. Ranges bigger than the grain size are split in two, so
+ * that idle {@link java.util.concurrent.ForkJoinPool} workers can steal half of the work. The errors are always
+ * returned in file order, unless there is a {@link LintErrorSink}: then they are handed to the sink file by file, and
+ * nothing is returned.
+ *
+ * <p>
+ *     The files can be validated in a different order than the one they are listed in (see {@link ValidationOrder}).
+ *     The thread that splits a range keeps the first half for itself, so the files at the front of the order are
+ *     the first ones to be validated, and idle workers steal from the back.
+ * </p>
+ */
+class FileValidationTask extends RecursiveTask<List<LintError>> {
+    /**
+     * How many chunks we aim to give each worker. More chunks means better balancing when some files are much
+     * slower to validate than others, at the cost of a bit more task overhead.
+     */
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private final LintRule lintRule;
+    private final List<File> files;
+    private final LintErrorSink lintErrorSink;
+    private final int[] validationOrder;
+    private final AtomicReferenceArray<List<LintError>> fileErrors;
+    private final int start;
+    private final int end;
+    private final int grainSize;
+
+    FileValidationTask(LintRule lintRule, List<File> files, LintErrorSink lintErrorSink) {
+        this(lintRule, files, lintErrorSink, null, null, 0, files.size(), computeGrainSize(files.size()));
+    }
+
+    private FileValidationTask(LintRule lintRule, List<File> files, LintErrorSink lintErrorSink, int[] validationOrder,
+                               AtomicReferenceArray<List<LintError>> fileErrors, int start, int end, int grainSize) {
+        this.lintRule = lintRule;
+        this.files = files;
+        this.lintErrorSink = lintErrorSink;
+        this.validationOrder = validationOrder;
+        this.fileErrors = fileErrors;
+        this.start = start;
+        this.end = end;
+        this.grainSize = grainSize;
+    }
+
+    /**
+     * Validates the files in the given order (positions in the list of files), but returns the errors in the order
+     * of the list, like {@link #invoke()} does.
+     */
+    static List<LintError> invokeInOrder(LintRule lintRule, List<File> files, LintErrorSink lintErrorSink,
+                                         int[] validationOrder) {
+        // With a sink, there is nothing to put back in order
+        AtomicReferenceArray<List<LintError>> fileErrors =
+                lintErrorSink == null ? new AtomicReferenceArray<>(files.size()) : null;
+        List<LintError> lintErrors = new FileValidationTask(lintRule, files, lintErrorSink, validationOrder,
+                fileErrors, 0, files.size(), computeGrainSize(files.size())).invoke();
+
+        if (fileErrors != null) {
+            for (int position = 0; position < fileErrors.length(); position++) {
+                lintErrors.addAll(fileErrors.get(position));
+            }
+        }
+        return lintErrors;
+    }
+
+    private static int computeGrainSize(int numberOfFiles) {
+        int parallelism = ForkJoinTask.getPool() == null ? 1 : ForkJoinTask.getPool().getParallelism();
+        return Math.max(1, numberOfFiles / (parallelism * CHUNKS_PER_WORKER));
+    }
+
+    @Override
+    protected List<LintError> compute() {
+        if (end - start <= grainSize) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            for (int i = start; i < end; i++) {
+                int position = validationOrder == null ? i : validationOrder[i];
+                List<LintError> fileLintErrors = lintRule.validateFile(new SourceFile(files.get(position)));
+                if (fileErrors == null) {
+                    LintRule.collectLintErrors(fileLintErrors, lintErrors, lintErrorSink);
+                }
+                else {
+                    fileErrors.set(position, fileLintErrors);
+                }
+            }
+            return lintErrors;
+        }
+
+        int middle = (start + end) >>> 1;
+        FileValidationTask left = new FileValidationTask(lintRule, files, lintErrorSink, validationOrder, fileErrors,
+                start, middle, grainSize);
+        FileValidationTask right = new FileValidationTask(lintRule, files, lintErrorSink, validationOrder, fileErrors,
+                middle, end, grainSize);
+
+        right.fork();
+        List<LintError> lintErrors = left.compute();
+        lintErrors.addAll(right.join());
+
+        return lintErrors;
+    }
+}
@@ -0,0 +1,99 @@
+package com.selesse.jxlint.model.rules;
+
+import java.util.Arrays;
+
+/**
+ * Where every line of a file starts, to turn offsets in its contents into line and column numbers without going
+ * through the contents again. The index is an int per line, and doesn't keep the contents.
+ *
+ * <p>
+ *     Lines end with "\n", "\r\n" or "\r", like in {@link com.google.common.io.CharStreams#readLines(Readable)}, and
+ *     a line terminator at the very end of the file doesn't start another line. Lines and columns start at 1.
+ * </p>
+ */
+public final class LineIndex {
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int length;
+
+    private LineIndex(int[] lineStarts, int lineCount, int length) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.length = length;
+    }
+
+    /**
+     * Indexes the lines of the contents.
+     */
+    public static LineIndex of(CharSequence contents) {
+        int length = contents.length();
+        int[] lineStarts = new int[64];
+        int lineCount = 1;
+        for (int i = 0; i < length; i++) {
+            char c = contents.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < length && contents.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                if (i + 1 == length) {
+                    break;
+                }
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                }
+                lineStarts[lineCount++] = i + 1;
+            }
+        }
+        if (length == 0) {
+            lineCount = 0;
+        }
+        return new LineIndex(Arrays.copyOf(lineStarts, Math.max(1, lineCount)), lineCount, length);
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the line of the character at this offset. The offset just past the end of the contents is on the last
+     * line.
+     */
+    public int getLineNumber(int offset) {
+        checkOffset(offset);
+        int position = Arrays.binarySearch(lineStarts, 0, Math.max(1, lineCount), offset);
+        // Not a line start: the insertion point is the line after the one the offset is on
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Returns the column of the character at this offset, counted in chars.
+     */
+    public int getColumnNumber(int offset) {
+        return offset - getLineStart(getLineNumber(offset)) + 1;
+    }
+
+    /**
+     * Returns the offset of the first character of the line.
+     */
+    public int getLineStart(int lineNumber) {
+        if (lineNumber < 1 || lineNumber > Math.max(1, lineCount)) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " of " + lineCount);
+        }
+        return lineStarts[lineNumber - 1];
+    }
+
+    /**
+     * Returns the offset of the first character after the line and its terminator, which is where the next line
+     * starts, or the end of the contents.
+     */
+    public int getNextLineStart(int lineNumber) {
+        getLineStart(lineNumber);
+        return lineNumber < lineCount ? lineStarts[lineNumber] : length;
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " of " + length);
+        }
+    }
+}
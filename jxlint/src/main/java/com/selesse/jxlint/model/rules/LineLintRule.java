@@ -0,0 +1,77 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A {@link LintRule} that goes through its files line by line. The file is streamed through a buffer that is reused
+ * from one line to the next, so files of any size can be validated without ever being kept in memory, and without
+ * a {@link String} per line. Rules only see the lines, one at a time, through the {@link LineVisitor} they create for
+ * every file.
+ *
+ * <pre><code>
+ * public class MyRule extends LineLintRule {
+ *     {@literal @}Override
+ *     public LineVisitor visitFile(File file) {
+ *         List&lt;LintError&gt; lintErrorList = Lists.newArrayList();
+ *         return new LineVisitor() {
+ *             {@literal @}Override
+ *             public void visitLine(int lineNumber, CharSequence line) {
+ *                 if (line.length() &gt; 120) {
+ *                     lintErrorList.add(LintError.with(MyRule.this, file).andLineNumber(lineNumber)
+ *                             .andErrorMessage("Line is too long").create());
+ *                 }
+ *             }
+ *
+ *             {@literal @}Override
+ *             public List&lt;LintError&gt; endFile() {
+ *                 return lintErrorList;
+ *             }
+ *         };
+ *     }
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ *     When several line rules are handed the same {@link SourceFile} (see
+ *     {@link com.selesse.jxlint.linter.ExecutionMode#FILE_MAJOR}), they share a single read of the file: every line
+ *     is handed to every rule's visitor before the next line is read. If the contents of the file have already been
+ *     read by another rule, the lines come from those instead.
+ * </p>
+ */
+public abstract class LineLintRule extends LintRule {
+    public LineLintRule(String name, String summary, String detailedDescription, Severity severity,
+                        Enum<?> category) {
+        super(name, summary, detailedDescription, severity, category);
+    }
+
+    public LineLintRule(String name, String summary, String detailedDescription, Severity severity,
+                        Enum<?> category, boolean isEnabledByDefault) {
+        super(name, summary, detailedDescription, severity, category, isEnabledByDefault);
+    }
+
+    /**
+     * Returns a visitor for the lines of this file. Files may be visited concurrently, so anything the rule needs to
+     * remember about a file belongs in its visitor rather than in the rule.
+     */
+    public abstract LineVisitor visitFile(File file);
+
+    /**
+     * Adapts {@link LintRule#getLintErrors(File)} to {@link #getLintErrors(SourceFile)}.
+     */
+    @Override
+    public final List<LintError> getLintErrors(File file) {
+        return validateFile(new SourceFile(file));
+    }
+
+    @Override
+    public final List<LintError> getLintErrors(SourceFile sourceFile) throws IOException {
+        LinePass linePass = sourceFile.getLinePass();
+        if (linePass != null && linePass.includes(this)) {
+            return linePass.getLintErrors(this, sourceFile);
+        }
+        return LinePass.getLintErrorsAlone(this, sourceFile);
+    }
+}
@@ -0,0 +1,246 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.cache.ContentCache;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single read of a file, line by line, for several {@link LineLintRule}s. The first rule that asks for its errors
+ * reads the file for all of them, and the others get the errors that were found for them. A rule that throws an
+ * exception doesn't keep the others from seeing the rest of the file: the exception is thrown again when that rule
+ * asks for its errors. The {@link PatternLintRule}s of the pass are scanned for together, by the first of them.
+ *
+ * <p>
+ *     Every rule of the pass keeps its own concurrency limit and timeouts (see {@link PassBudget}). A rule that was
+ *     left out of the pass reads the file on its own when it asks for its errors. If the pass stops before the end of
+ *     the file because the file couldn't be read, nothing is kept, and the next rule reads the file again.
+ * </p>
+ */
+class LinePass {
+    private final List<LineLintRule> rules;
+    // Not a monitor, like the contents of the SourceFile
+    private final Lock lock = new ReentrantLock();
+    private volatile List<Object> results;
+
+    LinePass(List<LineLintRule> rules) {
+        this.rules = ImmutableList.copyOf(rules);
+    }
+
+    boolean includes(LineLintRule rule) {
+        return rules.contains(rule);
+    }
+
+    /**
+     * Returns the errors the rule found in the file, reading the file for every rule of the pass if it hasn't been
+     * read yet.
+     */
+    List<LintError> getLintErrors(LineLintRule rule, SourceFile sourceFile) throws IOException {
+        if (results == null) {
+            lock.lock();
+            try {
+                if (results == null) {
+                    // A rule that is already out of time doesn't start a pass for the others
+                    Deadline.check();
+                    try (PassBudget passBudget = PassBudget.open(rule, rules, sourceFile.getFile())) {
+                        results = visitLines(sourceFile, rules, passBudget);
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        Object result = results.get(rules.indexOf(rule));
+        return result == PassBudget.LEFT_OUT ? getLintErrorsAlone(rule, sourceFile) : getResult(result);
+    }
+
+    /**
+     * Reads the file once for a single rule.
+     */
+    static List<LintError> getLintErrorsAlone(LineLintRule rule, SourceFile sourceFile) throws IOException {
+        return getResult(visitLines(sourceFile, ImmutableList.of(rule), PassBudget.ALONE).get(0));
+    }
+
+    private static List<LintError> getResult(Object result) {
+        if (result instanceof RuntimeException) {
+            throw (RuntimeException) result;
+        }
+        @SuppressWarnings("unchecked")
+        List<LintError> lintErrors = (List<LintError>) result;
+        return lintErrors;
+    }
+
+    /**
+     * Visits every line of the file for every rule the budget includes, and returns either the errors, the exception
+     * or {@link PassBudget#LEFT_OUT} for every rule. The contents of the file are used if they have already been
+     * read, otherwise the file is streamed.
+     */
+    private static List<Object> visitLines(SourceFile sourceFile, List<LineLintRule> rules, PassBudget passBudget)
+            throws IOException {
+        List<Object> results = Lists.newArrayListWithCapacity(rules.size());
+        try {
+            visitLines(sourceFile, rules, passBudget, results);
+        }
+        catch (IOException | RuntimeException e) {
+            if (!passBudget.hasExpired(e)) {
+                throw e;
+            }
+            // Keep what the rules that were done found, so that only the others have to read the file again
+            for (int i = 0; i < rules.size(); i++) {
+                if (i == results.size()) {
+                    results.add(passBudget.getUnfinishedResult(i));
+                }
+                else if (results.get(i) instanceof LineVisitor) {
+                    results.set(i, passBudget.getUnfinishedResult(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void visitLines(SourceFile sourceFile, List<LineLintRule> rules, PassBudget passBudget,
+                                   List<Object> results) throws IOException {
+        LineVisitor[] activeVisitors = new LineVisitor[rules.size()];
+        int numberOfActiveVisitors = 0;
+        PatternMatcher.Scan patternScan = startPatternScan(sourceFile, rules, passBudget);
+        int scanningRuleIndex = -1;
+        for (int i = 0; i < rules.size(); i++) {
+            if (!passBudget.includes(i)) {
+                results.add(PassBudget.LEFT_OUT);
+                continue;
+            }
+            passBudget.startVisit(i);
+            try {
+                LineLintRule rule = rules.get(i);
+                if (patternScan != null && rule instanceof PatternLintRule) {
+                    activeVisitors[i] = patternScan.getVisitor((PatternLintRule) rule);
+                    scanningRuleIndex = scanningRuleIndex < 0 ? i : scanningRuleIndex;
+                }
+                else {
+                    activeVisitors[i] = rule.visitFile(sourceFile.getFile());
+                }
+                results.add(activeVisitors[i]);
+                numberOfActiveVisitors++;
+            }
+            catch (ValidationTimeoutException e) {
+                throw e;
+            }
+            catch (RuntimeException e) {
+                results.add(e);
+            }
+            numberOfActiveVisitors -= endVisit(passBudget, i, activeVisitors, results);
+        }
+
+        String contents = sourceFile.getReadContents();
+        Reader reader = contents != null ? new StringReader(contents) :
+                new InputStreamReader(ContentCache.openStream(sourceFile.getFile()), Charsets.UTF_8);
+        RuleContext ruleContext = RuleContext.current();
+        LineReader lineReader = new LineReader(reader, ruleContext.borrowCharBuffer(LineReader.BUFFER_SIZE));
+        try {
+            while (numberOfActiveVisitors > 0 && lineReader.next()) {
+                for (int i = 0; i < activeVisitors.length; i++) {
+                    LineVisitor visitor = activeVisitors[i];
+                    if (visitor == null) {
+                        continue;
+                    }
+                    passBudget.startVisit(i);
+                    try {
+                        visitor.visitLine(lineReader.getLineNumber(), lineReader.getLine());
+                        if (visitor.isDone()) {
+                            activeVisitors[i] = null;
+                            numberOfActiveVisitors--;
+                        }
+                    }
+                    catch (ValidationTimeoutException e) {
+                        throw e;
+                    }
+                    catch (RuntimeException e) {
+                        activeVisitors[i] = null;
+                        numberOfActiveVisitors--;
+                        results.set(i, e);
+                    }
+                    numberOfActiveVisitors -= endVisit(passBudget, i, activeVisitors, results);
+                }
+            }
+        }
+        finally {
+            ruleContext.releaseCharBuffer(lineReader.getBuffer());
+            lineReader.close();
+        }
+
+        if (patternScan != null && results.get(scanningRuleIndex) instanceof ValidationTimeoutException) {
+            // The scan is charged to the rule that runs it, the others didn't get to see the whole file
+            for (int i = 0; i < results.size(); i++) {
+                if (rules.get(i) instanceof PatternLintRule && results.get(i) instanceof LineVisitor) {
+                    results.set(i, PassBudget.LEFT_OUT);
+                }
+            }
+        }
+
+        // Every visitor that didn't throw an exception or run out of time is replaced by its errors
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) instanceof LineVisitor) {
+                passBudget.startVisit(i);
+                results.set(i, endFile((LineVisitor) results.get(i)));
+                endVisit(passBudget, i, activeVisitors, results);
+            }
+        }
+    }
+
+    /**
+     * Charges the visit to the rule, and drops its visitor if the rule ran out of time. Returns the number of active
+     * visitors that were dropped.
+     */
+    private static int endVisit(PassBudget passBudget, int ruleIndex, LineVisitor[] activeVisitors,
+                                List<Object> results) {
+        ValidationTimeoutException timeout = passBudget.endVisit();
+        if (timeout == null) {
+            return 0;
+        }
+        results.set(ruleIndex, timeout);
+        if (activeVisitors[ruleIndex] == null) {
+            return 0;
+        }
+        activeVisitors[ruleIndex] = null;
+        return 1;
+    }
+
+    /**
+     * Starts a single scan for the patterns of every {@link PatternLintRule} the budget includes, if there is more
+     * than one of them.
+     */
+    private static PatternMatcher.Scan startPatternScan(SourceFile sourceFile, List<LineLintRule> rules,
+                                                        PassBudget passBudget) {
+        List<PatternLintRule> patternRules = Lists.newArrayList();
+        for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i) instanceof PatternLintRule && passBudget.includes(i)) {
+                patternRules.add((PatternLintRule) rules.get(i));
+            }
+        }
+        if (patternRules.size() < 2) {
+            return null;
+        }
+        return PatternMatcher.forRules(patternRules).startScan(sourceFile.getFile());
+    }
+
+    private static Object endFile(LineVisitor visitor) {
+        try {
+            return visitor.endFile();
+        }
+        catch (ValidationTimeoutException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            return e;
+        }
+    }
+}
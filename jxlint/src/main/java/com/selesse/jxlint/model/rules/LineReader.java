@@ -0,0 +1,154 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a {@link Reader} into a single buffer, and hands them out as views of that buffer, so that going
+ * through a file doesn't allocate anything per line. The buffer only grows for lines that don't fit in it.
+ *
+ * <p>
+ *     Lines end with "\n", "\r\n" or "\r", like in {@link com.google.common.io.CharStreams#readLines(Readable)}.
+ * </p>
+ */
+class LineReader implements Closeable {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final Line line = new Line();
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean isEndOfInput;
+    private int lineNumber;
+
+    LineReader(Reader reader) {
+        this(reader, BUFFER_SIZE);
+    }
+
+    LineReader(Reader reader, int bufferSize) {
+        this(reader, new char[bufferSize]);
+    }
+
+    /**
+     * Reads the lines into this buffer, whatever it holds, until a line doesn't fit in it (see {@link #getBuffer()}).
+     */
+    LineReader(Reader reader, char[] buffer) {
+        this.reader = reader;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Moves on to the next line, and returns false if there are no more lines.
+     */
+    boolean next() throws IOException {
+        int scan = position;
+        while (true) {
+            for (; scan < limit; scan++) {
+                char c = buffer[scan];
+                if (c == '\n' || c == '\r') {
+                    if (c == '\r' && scan + 1 == limit && !isEndOfInput) {
+                        // The next char might be the "\n" of a "\r\n"
+                        break;
+                    }
+                    int next = c == '\r' && scan + 1 < limit && buffer[scan + 1] == '\n' ? scan + 2 : scan + 1;
+                    return nextLine(scan, next);
+                }
+            }
+            if (isEndOfInput) {
+                return position < limit && nextLine(limit, limit);
+            }
+            scan -= position;
+            fill();
+        }
+    }
+
+    private boolean nextLine(int end, int next) {
+        line.start = position;
+        line.end = end;
+        position = next;
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Moves the part of the buffer that hasn't been handed out yet to the front, and reads more after it. The
+     * buffer doubles if that part fills it.
+     */
+    private void fill() throws IOException {
+        Deadline.check();
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            isEndOfInput = true;
+        }
+        else {
+            limit += read;
+        }
+    }
+
+    /**
+     * The current line, which changes with every call to {@link #next()}.
+     */
+    CharSequence getLine() {
+        return line;
+    }
+
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * The buffer the lines are read into, which is a larger one than the reader started with if it had to grow.
+     */
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private class Line implements CharSequence {
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + (end - start));
+            }
+            return buffer[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int subStart, int subEnd) {
+            if (subStart < 0 || subEnd > end - start || subStart > subEnd) {
+                throw new IndexOutOfBoundsException("Range [" + subStart + ", " + subEnd + ") of " + (end - start));
+            }
+            return new String(buffer, start + subStart, subEnd - subStart);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, start, end - start);
+        }
+    }
+}
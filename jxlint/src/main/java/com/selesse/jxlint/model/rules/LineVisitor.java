@@ -0,0 +1,29 @@
+package com.selesse.jxlint.model.rules;
+
+import java.util.List;
+
+/**
+ * Goes through the lines of a single file for a {@link LineLintRule}, and keeps whatever the rule needs to remember
+ * about the file while it does.
+ */
+public interface LineVisitor {
+    /**
+     * Visits a line, without its line terminator. Lines are visited in order, starting at line 1. The line is a view
+     * of a buffer that is reused for the next line, so it is only valid during the call: call
+     * {@link CharSequence#toString()} to keep it.
+     */
+    void visitLine(int lineNumber, CharSequence line);
+
+    /**
+     * Returns true once the visitor doesn't need to see any more lines, i.e. when it has found what it was looking
+     * for. The file is only read until every visitor is done.
+     */
+    default boolean isDone() {
+        return false;
+    }
+
+    /**
+     * Called once every line has been visited (or the visitor is done), and returns the errors found in the file.
+     */
+    List<LintError> endFile();
+}
@@ -3,23 +3,48 @@ package com.selesse.jxlint.model.rules;
 import com.selesse.jxlint.utils.FileUtils;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * A lint error representation. Uses the Builder pattern for its optional parameters.
  * It knows about which rule was violated and the file that violated it. It may have other
  * information, like the line number in which the violation was found, an error message,
  * an Exception relating to its violation, and a custom severity.
+ *
+ * <p>
+ *     Runs can find millions of errors, so they are kept small: the line number and the custom severity share an
+ *     int, and the file and message are shared with the other errors of the run (see {@link LintErrorInterner}).
+ * </p>
  */
 public class LintError {
+    /**
+     * Line numbers are shifted left to make room for the severity.
+     */
+    private static final int SEVERITY_BITS = 2;
+    private static final int SEVERITY_MASK = (1 << SEVERITY_BITS) - 1;
+    private static final Severity[] SEVERITIES = Severity.values();
+    static final int MIN_LINE_NUMBER = Integer.MIN_VALUE >> SEVERITY_BITS;
+    static final int MAX_LINE_NUMBER = Integer.MAX_VALUE >> SEVERITY_BITS;
+
+    static {
+        // 0 stands for the rule's severity, so every other severity needs a code of its own
+        if (SEVERITIES.length > SEVERITY_MASK) {
+            throw new IllegalStateException(SEVERITIES.length + " severities don't fit in " + SEVERITY_BITS + " bits");
+        }
+    }
+
     private LintRule violatedRule;
-    private int lineNumber;
+    /**
+     * The line number, and the ordinal of the custom severity plus one (0 if the error has the rule's severity) in
+     * the lowest bits.
+     */
+    private int lineNumberAndSeverity;
     private String errorMessage;
     private Exception e;
     /**
      * The file that failed the validation.
      */
     private File faultyFile;
-    private Severity severity;
 
     /**
      * Creates a {@link LintError} with the {@link com.selesse.jxlint.model.rules.LintRule} and
@@ -38,9 +63,23 @@ public class LintError {
         return new LintErrorBuilder(violatedRule, faultyFile);
     }
 
+    /**
+     * Like {@link #with(LintRule, File)}, for rules that validate {@link SourceFile}s. The error can then be placed
+     * with an offset in the contents of the file, instead of a line number:
+     *
+     * <pre>
+     *     LintError lintError = LintError.with(this, sourceFile).andOffset(matcher.start()).create();
+     * </pre>
+     */
+    public static LintErrorBuilder with(LintRule violatedRule, SourceFile sourceFile) {
+        return new LintErrorBuilder(violatedRule, sourceFile);
+    }
+
     private LintError(LintRule violatedRule, File faultyFile) {
+        LintErrorInterner lintErrorInterner = LintErrorInterner.getActiveInterner();
         this.violatedRule = violatedRule;
-        this.faultyFile = FileUtils.normalizeFile(faultyFile);
+        this.faultyFile = lintErrorInterner != null ? lintErrorInterner.internFile(faultyFile) :
+                FileUtils.normalizeFile(faultyFile);
         this.errorMessage = "";
     }
 
@@ -61,11 +100,19 @@ public class LintError {
     }
 
     public int getLineNumber() {
-        return lineNumber;
+        return lineNumberAndSeverity >> SEVERITY_BITS;
     }
 
+    /**
+     * Sets the line number, which has to be between -2^29 and 2^29 - 1, since it shares an int with the severity.
+     *
+     * @throws IllegalArgumentException if the line number is out of that range. Any int used to be accepted.
+     */
     public void setLineNumber(int lineNumber) {
-        this.lineNumber = lineNumber;
+        if (lineNumber < MIN_LINE_NUMBER || lineNumber > MAX_LINE_NUMBER) {
+            throw new IllegalArgumentException("Line number " + lineNumber + " is out of range");
+        }
+        this.lineNumberAndSeverity = (lineNumber << SEVERITY_BITS) | (lineNumberAndSeverity & SEVERITY_MASK);
     }
 
     public void setException(Exception e) {
@@ -73,25 +120,28 @@ public class LintError {
     }
 
     public void setErrorMessage(String errorMessage) {
-        this.errorMessage = errorMessage;
+        LintErrorInterner lintErrorInterner = LintErrorInterner.getActiveInterner();
+        this.errorMessage = lintErrorInterner != null ? lintErrorInterner.internMessage(errorMessage) : errorMessage;
     }
 
     public void setSeverity(Severity severity) {
-        this.severity = severity;
+        int severityCode = severity == null ? 0 : severity.ordinal() + 1;
+        this.lineNumberAndSeverity = (lineNumberAndSeverity & ~SEVERITY_MASK) | severityCode;
     }
 
     public Severity getSeverity() {
-        if (severity == null) {
+        int severityCode = lineNumberAndSeverity & SEVERITY_MASK;
+        if (severityCode == 0) {
             return violatedRule.getSeverity();
         }
-        return severity;
+        return SEVERITIES[severityCode - 1];
     }
 
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("'").append(violatedRule.getName()).append("' failed");
-        if (lineNumber > 0) {
-            stringBuilder.append(" at line ").append(lineNumber);
+        if (getLineNumber() > 0) {
+            stringBuilder.append(" at line ").append(getLineNumber());
         }
         if (errorMessage.length() > 0) {
             stringBuilder.append(": ").append(errorMessage);
@@ -105,9 +155,16 @@ public class LintError {
      */
     public static class LintErrorBuilder {
         private final LintError lintError;
+        private final SourceFile sourceFile;
 
         public LintErrorBuilder(LintRule lintRule, File file) {
             this.lintError = new LintError(lintRule, file);
+            this.sourceFile = null;
+        }
+
+        public LintErrorBuilder(LintRule lintRule, SourceFile sourceFile) {
+            this.lintError = new LintError(lintRule, sourceFile.getFile());
+            this.sourceFile = sourceFile;
         }
 
         /**
@@ -128,12 +185,27 @@ public class LintError {
 
         /**
          * Adds an associated line number to the error. This is printed in the reports if available.
+         *
+         * @throws IllegalArgumentException if the line number isn't between -2^29 and 2^29 - 1 (see
+         *     {@link LintError#setLineNumber(int)}).
          */
         public LintErrorBuilder andLineNumber(int lineNumber) {
             this.lintError.setLineNumber(lineNumber);
             return this;
         }
 
+        /**
+         * Places the error at this offset in the contents of the file, which is turned into a line number with the
+         * file's {@link LineIndex}. The error doesn't keep the offset, or the file: it only keeps the line number.
+         * Only for builders of a {@link SourceFile} (see {@link LintError#with(LintRule, SourceFile)}).
+         */
+        public LintErrorBuilder andOffset(int offset) throws IOException {
+            if (sourceFile == null) {
+                throw new IllegalStateException("Offsets need a SourceFile, not a File");
+            }
+            return andLineNumber(sourceFile.getLineIndex().getLineNumber(offset));
+        }
+
         /**
          * Specifies a custom severity for this error.
          */
@@ -0,0 +1,83 @@
+package com.selesse.jxlint.model.rules;
+
+import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares the files and messages of the errors found during a run, so that a million errors in a thousand files
+ * point to a thousand {@link File}s rather than a million copies of them. Rules usually report the same few
+ * messages over and over, and those are shared too.
+ *
+ * <p>
+ *     The {@link com.selesse.jxlint.linter.Linter} activates an interner at the beginning of every run, and every
+ *     {@link LintError} created while it is active goes through it (see {@link #activate()}). Files are normalized
+ *     once per path rather than once per error. Only the first {@link #MAX_MESSAGES} different messages are kept,
+ *     since rules that put the offending text in their messages would otherwise fill the interner with messages
+ *     that are only seen once.
+ * </p>
+ */
+public class LintErrorInterner {
+    private static final RunContext.Slot<LintErrorInterner> activeInterner = RunContext.newSlot();
+
+    static final int MAX_MESSAGES = 64 * 1024;
+
+    // Both the files rules report and their normalized version point to the normalized version
+    private final ConcurrentMap<File, File> files = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Makes a new interner the active one, until {@link #deactivate()} is called.
+     */
+    public static LintErrorInterner activate() {
+        LintErrorInterner lintErrorInterner = new LintErrorInterner();
+        activeInterner.set(lintErrorInterner);
+        return lintErrorInterner;
+    }
+
+    public static void deactivate() {
+        activeInterner.set(null);
+    }
+
+    /**
+     * Returns the active interner, or null if errors keep their own files and messages.
+     */
+    public static LintErrorInterner getActiveInterner() {
+        return activeInterner.get();
+    }
+
+    /**
+     * Returns the normalized file (see {@link FileUtils#normalizeFile(File)}), the same instance for every file with
+     * the same path.
+     */
+    public File internFile(File file) {
+        File normalizedFile = files.get(file);
+        if (normalizedFile == null) {
+            File newFile = FileUtils.normalizeFile(file);
+            normalizedFile = files.computeIfAbsent(newFile, key -> newFile);
+            files.putIfAbsent(file, normalizedFile);
+        }
+        return normalizedFile;
+    }
+
+    /**
+     * Returns the message, the same instance for every equal message, unless there are too many different messages
+     * already.
+     */
+    public String internMessage(String message) {
+        if (message == null) {
+            return null;
+        }
+        String internedMessage = messages.get(message);
+        if (internedMessage == null) {
+            if (messages.size() >= MAX_MESSAGES) {
+                return message;
+            }
+            internedMessage = messages.computeIfAbsent(message, key -> message);
+        }
+        return internedMessage;
+    }
+}
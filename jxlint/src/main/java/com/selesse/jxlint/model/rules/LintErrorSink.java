@@ -0,0 +1,30 @@
+package com.selesse.jxlint.model.rules;
+
+import java.util.Collection;
+
+/**
+ * Receives {@link LintError}s as they are found, instead of once every rule is done with every file. This way, a
+ * run with millions of errors doesn't have to keep them all in memory (see
+ * {@link com.selesse.jxlint.report.Reporter#createSink()}).
+ *
+ * <p>
+ *     A sink is fed by the threads that validate the files, so it must be thread-safe. It may block them, for
+ *     instance while a reporter catches up, which slows the validation down to the pace of the sink. The errors
+ *     of a file are handed over together, as soon as the file is validated, in no particular order.
+ * </p>
+ */
+public interface LintErrorSink extends AutoCloseable {
+    void accept(LintError lintError);
+
+    default void acceptAll(Collection<LintError> lintErrors) {
+        for (LintError lintError : lintErrors) {
+            accept(lintError);
+        }
+    }
+
+    /**
+     * Called once every error has been accepted.
+     */
+    @Override
+    void close();
+}
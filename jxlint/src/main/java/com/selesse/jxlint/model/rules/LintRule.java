@@ -3,9 +3,14 @@ package com.selesse.jxlint.model.rules;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 import com.google.common.io.Resources;
+import com.selesse.jxlint.cache.ResultCache;
 import com.selesse.jxlint.utils.EnumUtils;
+import com.selesse.jxlint.utils.FileSelector;
+import com.selesse.jxlint.utils.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,6 +18,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * A lint rule model object. Should be extended to create rules. A full implementation is completed by extending this
@@ -26,8 +33,8 @@ import java.util.List;
  *     }
  *
  *     {@literal @}Override
- *     public List&lt;File&gt; getFilesToValidate() {
- *         return FileUtils.allFiles(getSourceDirectory());
+ *     public FileSelector getFileSelector() {
+ *         return FileSelector.withExtension("txt");
  *     }
  *
  *     {@literal @}Override
@@ -49,6 +56,14 @@ import java.util.List;
  * }
  * </code>
  * </pre>
+ *
+ * <p>
+ *     Reading every line into memory like this is fine for small files. Rules that go through their files line by
+ *     line should extend {@link LineLintRule} instead, which streams the lines without ever keeping the whole file,
+ *     rules that look at XML files should extend {@link XmlLintRule}, which streams the parsing events the same way,
+ *     and rules that need the whole contents should extend {@link SourceFileLintRule}, so that the file is only
+ *     read once for every rule that wants it.
+ * </p>
  */
 public abstract class LintRule {
     private static final Logger LOGGER = LoggerFactory.getLogger(LintRule.class);
@@ -60,6 +75,7 @@ public abstract class LintRule {
     private Enum<?> category;
     private boolean enabled = true;
     private List<LintError> lintErrors;
+    private final Supplier<ConcurrencyLimit> concurrencyLimit = Suppliers.memoize(this::createConcurrencyLimit);
 
     public LintRule(String name, String summary, String detailedDescription, Severity severity, Enum<?> category) {
         this.name = name;
@@ -77,40 +93,198 @@ public abstract class LintRule {
     }
 
     /**
-     * Return a list of {@link File}s to perform this rule's validation on. Several utility methods have been created
-     * in {@link com.selesse.jxlint.utils.FileUtils} to make this easy and are sampled below.
+     * Return the {@link FileSelector} describing which files this rule validates. The selector is resolved against
+     * a single index of the source directory that is shared by every rule, which is a lot cheaper than walking the
+     * directory for every rule. By default, every file is selected.
+     *
+     * <pre>{@code
+     *      FileSelector.allFiles(); // All the files in directory we're validating (recursive)
+     *      FileSelector.withExtension("txt"); // All .txt files in directory we're validating
+     * }</pre>
+     */
+    public FileSelector getFileSelector() {
+        return FileSelector.allFiles();
+    }
+
+    /**
+     * Return a list of {@link File}s to perform this rule's validation on. By default, this returns the files
+     * selected by {@link #getFileSelector()}. It can be overridden when a selector isn't enough. Several utility
+     * methods have been created in {@link com.selesse.jxlint.utils.FileUtils} to make this easy and are sampled
+     * below.
      *
      * <pre>{@code
      *      FileUtils.allFiles(getSourceDirectory()); // All the files in directory we're validating (recursive)
      *      FileUtils.allFilesWithExtension(getSourceDirectory, "txt"); // All .txt files in directory we're validating
      * }</pre>
      */
-    public abstract List<File> getFilesToValidate();
+    public List<File> getFilesToValidate() {
+        return FileUtils.allFilesSelectedBy(getSourceDirectory(), getFileSelector());
+    }
 
     /**
-     * Goes through every file and calls {@link #getLintErrors(java.io.File)} on it. If there is an error,
+     * Goes through every file and calls {@link #getLintErrors(SourceFile)} on it. If there is an error,
      * it is added to {@link #lintErrors}.
+     * This is the "rule-major" way of validating: this rule looks at all of its files before the next rule starts.
+     *
+     * <p>
+     *     When called from within a {@link ForkJoinPool} (which is what {@link com.selesse.jxlint.linter.Linter}
+     *     does), the files are split into chunks that idle workers can steal, so a single expensive rule can use
+     *     every core. {@link #getLintErrors(SourceFile)} may therefore be called concurrently for different
+     *     files and should not keep per-file state in fields. The resulting errors are in the same order as
+     *     {@link #getFilesToValidate()}, regardless of how the work was split, or of the order the files were
+     *     validated in (see {@link ValidationOrder}).
+     * </p>
      */
     public void validate() {
         // If validate is called successively, the size of lintErrors should be constant...
+        lintErrors = validateFiles(null);
+    }
+
+    /**
+     * Like {@link #validate()}, but the errors of every file are handed to the sink as soon as the file has been
+     * validated, instead of being kept in {@link #lintErrors}, which stays empty.
+     */
+    public void validateInto(LintErrorSink lintErrorSink) {
         lintErrors = Lists.newArrayList();
+        validateFiles(lintErrorSink);
+    }
 
-        LOGGER.debug("[{}] will run against {} files", getName(), getFilesToValidate().size());
-        for (File file : getFilesToValidate()) {
+    /**
+     * Validates every file, and returns the errors, unless there is a sink to hand them to.
+     */
+    private List<LintError> validateFiles(LintErrorSink lintErrorSink) {
+        ValidationTimeouts validationTimeouts = ValidationTimeouts.getActiveTimeouts();
+        if (validationTimeouts != null) {
+            validationTimeouts.startRule(this);
+        }
+
+        List<File> filesToValidate = ShardAssignment.getFilesToValidate(this);
+        LOGGER.debug("[{}] will run against {} files", getName(), filesToValidate.size());
+
+        List<LintError> ruleLintErrors;
+        ValidationOrder validationOrder = ValidationOrder.getActiveOrder();
+        VirtualThreadValidation virtualThreadValidation = VirtualThreadValidation.getActiveValidation();
+        if (getWorkload() == Workload.IO && virtualThreadValidation != null) {
+            ruleLintErrors = virtualThreadValidation.validateFiles(this, filesToValidate, lintErrorSink,
+                    validationOrder == null ? null : validationOrder.getValidationOrder(filesToValidate));
+        }
+        else if (ForkJoinTask.inForkJoinPool() && validationOrder != null) {
+            ruleLintErrors = FileValidationTask.invokeInOrder(this, filesToValidate, lintErrorSink,
+                    validationOrder.getValidationOrder(filesToValidate));
+        }
+        else if (ForkJoinTask.inForkJoinPool()) {
+            ruleLintErrors = new FileValidationTask(this, filesToValidate, lintErrorSink).invoke();
+        }
+        else {
+            ruleLintErrors = Lists.newArrayList();
+            for (File file : filesToValidate) {
+                collectLintErrors(validateFile(new SourceFile(file)), ruleLintErrors, lintErrorSink);
+            }
+        }
+
+        if (validationTimeouts != null) {
+            LintError timeoutError = validationTimeouts.finishRule(this);
+            if (timeoutError != null) {
+                collectLintErrors(Lists.newArrayList(timeoutError), ruleLintErrors, lintErrorSink);
+            }
+        }
+        return ruleLintErrors;
+    }
+
+    /**
+     * Hands the errors of a file to the sink, or adds them to the list if there is no sink.
+     */
+    static void collectLintErrors(List<LintError> fileLintErrors, List<LintError> lintErrors,
+                                  LintErrorSink lintErrorSink) {
+        if (lintErrorSink == null) {
+            lintErrors.addAll(fileLintErrors);
+        }
+        else {
+            lintErrorSink.acceptAll(fileLintErrors);
+        }
+    }
+
+    /**
+     * Calls {@link #getLintErrors(SourceFile)} on a single file, wrapping any exception with the name of the rule
+     * and the file that caused it. A file that can't be read is reported as a {@link LintError}.
+     * If there is an active {@link ResultCache} and neither the file nor the rule have changed since the last run,
+     * the errors from the last run are returned instead. If there are active {@link ValidationTimeouts}, a file
+     * that runs out of time is reported as a warning (see {@link Deadline}).
+     */
+    public List<LintError> validateFile(SourceFile sourceFile) {
+        File file = sourceFile.getFile();
+        ResultCache resultCache = ResultCache.getActiveCache();
+        if (resultCache != null) {
+            List<LintError> cachedLintErrors = resultCache.getLintErrors(this, file);
+            if (cachedLintErrors != null) {
+                LOGGER.debug("[{}]: Replayed [{}], found {} errors", file.getAbsolutePath(), getName(),
+                        cachedLintErrors.size());
+                return cachedLintErrors;
+            }
+        }
+
+        ValidationTimeouts validationTimeouts = ValidationTimeouts.getActiveTimeouts();
+        if (validationTimeouts == null) {
+            return validateFile(sourceFile, resultCache);
+        }
+        if (validationTimeouts.skipIfRuleTimedOut(this)) {
+            return Lists.newArrayList();
+        }
+
+        try (Deadline deadline = validationTimeouts.startFile(this, file)) {
             try {
-                LOGGER.debug("[{}]: Starting [{}]", file.getAbsolutePath(), getName());
-                List<LintError> fileLintErrors = getLintErrors(file);
-                lintErrors.addAll(fileLintErrors);
-                LOGGER.debug("[{}]: Done [{}], found {} errors", file.getAbsolutePath(), getName(),
-                        fileLintErrors.size());
+                return validateFile(sourceFile, resultCache);
+            }
+            catch (ValidationTimeoutException e) {
+                return validationTimeouts.timedOut(e);
             }
-            catch (Exception e) {
-                throw new RuntimeException("\"" + this.getClass().getSimpleName() + "\" threw an " +
-                        "exception when trying to validate " + file.getAbsolutePath(), e);
+            catch (RuntimeException e) {
+                // Being interrupted can make a rule fail in all sorts of ways
+                ValidationTimeoutException expiration = deadline.getExpiration();
+                if (expiration != null) {
+                    return validationTimeouts.timedOut(expiration);
+                }
+                throw e;
             }
         }
     }
 
+    private List<LintError> validateFile(SourceFile sourceFile, ResultCache resultCache) {
+        File file = sourceFile.getFile();
+        try {
+            LOGGER.debug("[{}]: Starting [{}]", file.getAbsolutePath(), getName());
+            List<LintError> fileLintErrors;
+            concurrencyLimit.get().acquire();
+            RuleContext ruleContext = RuleContext.open();
+            try {
+                fileLintErrors = getLintErrors(sourceFile);
+            }
+            finally {
+                ruleContext.close();
+                concurrencyLimit.get().release();
+            }
+            Deadline.check();
+            LOGGER.debug("[{}]: Done [{}], found {} errors", file.getAbsolutePath(), getName(),
+                    fileLintErrors.size());
+            if (resultCache != null) {
+                resultCache.putLintErrors(this, file, fileLintErrors);
+            }
+            return fileLintErrors;
+        }
+        catch (IOException e) {
+            Deadline.check();
+            return Lists.newArrayList(LintError.with(this, file).andErrorMessage("Could not read file")
+                    .andException(e).create());
+        }
+        catch (ValidationTimeoutException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException("\"" + this.getClass().getSimpleName() + "\" threw an " +
+                    "exception when trying to validate " + file.getAbsolutePath(), e);
+        }
+    }
+
     /**
      * Get a {@link java.util.List} of {@link com.selesse.jxlint.model.rules.LintError}s from a file.
      * The list should be empty if it passed the validation.
@@ -118,6 +292,16 @@ public abstract class LintRule {
      */
     public abstract List<LintError> getLintErrors(File file);
 
+    /**
+     * Get a {@link java.util.List} of {@link com.selesse.jxlint.model.rules.LintError}s from a
+     * {@link SourceFile}. By default, this calls {@link #getLintErrors(java.io.File)}. Rules that read the contents
+     * of the file should use {@link SourceFile#getContents()} instead, so that the file is only read once for all
+     * the rules that look at it. See {@link SourceFileLintRule}.
+     */
+    public List<LintError> getLintErrors(SourceFile sourceFile) throws IOException {
+        return getLintErrors(sourceFile.getFile());
+    }
+
     /**
      * Checks to see if a particular file passes this rule.
      */
@@ -287,6 +471,59 @@ public abstract class LintRule {
         return lintErrors;
     }
 
+    /**
+     * A version for the logic of this rule, and any configuration that changes its results. Results kept by the
+     * {@link ResultCache} are only replayed if the version hasn't changed. Changes to the rule's jar (or class file)
+     * are detected on their own, so this only needs to change when the rule's results would change for some other
+     * reason.
+     */
+    public String getVersion() {
+        return "";
+    }
+
+    /**
+     * Returns true if the errors this rule finds in a file only depend on the contents of that file, so that they
+     * can be kept in the {@link ResultCache} and replayed for as long as the file doesn't change. Rules that look at
+     * other files, or at anything else, should return false.
+     */
+    public boolean hasCacheableResults() {
+        return true;
+    }
+
+    /**
+     * Returns what this rule spends most of its time doing. When the {@link com.selesse.jxlint.linter.Linter} has
+     * threads set aside for I/O, rules that mostly wait (on other files, external programs...) run on those, so that
+     * they don't keep the other rules from using the processors. With virtual threads, every one of their files gets
+     * its own thread (see {@link VirtualThreadValidation}). By default, rules are CPU-heavy.
+     */
+    public Workload getWorkload() {
+        return Workload.CPU;
+    }
+
+    /**
+     * Returns the maximum number of files this rule can validate at the same time, for rules that use something that
+     * can't be shared by too many threads (an external program, a server...). 0, the default, means no limit.
+     */
+    public int getMaxConcurrency() {
+        return 0;
+    }
+
+    private ConcurrencyLimit createConcurrencyLimit() {
+        return ConcurrencyLimit.of(getMaxConcurrency());
+    }
+
+    ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit.get();
+    }
+
+    /**
+     * Sets the errors found by this rule. Used by {@link com.selesse.jxlint.linter.Linter}s that don't go through
+     * {@link #validate()}.
+     */
+    public void setLintErrors(List<LintError> lintErrors) {
+        this.lintErrors = lintErrors;
+    }
+
     /**
      * Get the source/root directory. This is the directory that was passed to the program,
      * i.e. "java -jar myjar.jar sourceDirectory".
@@ -1,22 +1,25 @@
 package com.selesse.jxlint.model.rules;
 
+import com.selesse.jxlint.utils.RunContext;
+
 /**
  * A singleton for the {@link LintRules} implementation. Also contains information about whether or not the program
- * is in test mode.
+ * is in test mode. Both are kept per {@link RunContext}, so that the daemon can give each request its own.
  */
 public class LintRulesImpl {
-    private static LintRules instance;
-    private static boolean willExitAfterReporting;
+    private static final RunContext.Slot<LintRules> instance = RunContext.newSlot();
+    private static final RunContext.Slot<Boolean> willExitAfterReporting = RunContext.newSlot(() -> false);
 
     public static LintRules getInstance() {
-        if (instance == null) {
+        LintRules lintRules = instance.get();
+        if (lintRules == null) {
             throw new RuntimeException("No instance of LintRules is defined.");
         }
-        return instance;
+        return lintRules;
     }
 
     public static void setInstance(LintRules instance) {
-        LintRulesImpl.instance = instance;
+        LintRulesImpl.instance.set(instance);
     }
 
     /**
@@ -24,7 +27,7 @@ public class LintRulesImpl {
      * if it will call {@link System#exit(int)}.
      */
     public static boolean willExitAfterReporting() {
-        return LintRulesImpl.willExitAfterReporting;
+        return LintRulesImpl.willExitAfterReporting.get();
     }
 
     /**
@@ -32,6 +35,6 @@ public class LintRulesImpl {
      * it will call {@link System#exit(int)} if exitAfterReporting is true.
      */
     public static void setExitAfterReporting(boolean exitAfterReporting) {
-        LintRulesImpl.willExitAfterReporting = exitAfterReporting;
+        LintRulesImpl.willExitAfterReporting.set(exitAfterReporting);
     }
 }
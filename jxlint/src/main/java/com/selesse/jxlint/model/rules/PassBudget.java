@@ -0,0 +1,154 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a pass over a file shared by several rules ({@link LinePass}, {@link XmlPass}) can spend, so that the rule that
+ * happens to run the pass doesn't pay for the others.
+ *
+ * <p>
+ *     Every rule keeps its own limits in the pass. A rule that is already validating as many files as its
+ *     {@link LintRule#getMaxConcurrency()} allows is left out, and reads the file on its own when it asks for its
+ *     errors. With active {@link ValidationTimeouts}, the time spent in a rule's visitor is charged to that rule: a
+ *     visitor that goes over the file timeout, or whose rule runs out of time, is dropped with a timeout for its rule
+ *     only, and the other visitors carry on. The pass itself gets a deadline of its own (see
+ *     {@link ValidationTimeouts#startPass(List, File)}). If that runs out, because of a visitor that never returns or
+ *     of the reading itself, the rules that went over their own time get a timeout, and the others are left out. The
+ *     time of the pass still shows in the {@link com.selesse.jxlint.settings.Profiler}'s report of the rule that ran
+ *     it, since that is the rule the thread was validating a file for.
+ * </p>
+ */
+final class PassBudget implements AutoCloseable {
+    /**
+     * The result of a rule that was left out of the pass.
+     */
+    static final Object LEFT_OUT = new Object();
+    /**
+     * The budget of a rule that reads a file on its own, within the limits of its own file.
+     */
+    static final PassBudget ALONE = new PassBudget(null, null, -1, null, null, null);
+
+    private final List<? extends LintRule> lintRules;
+    private final File file;
+    private final int runningRuleIndex;
+    // The permits this budget took, and has to give back: the rule that runs the pass already has its own
+    private final boolean[] hasPermit;
+    private final ValidationTimeouts validationTimeouts;
+    private final Deadline passDeadline;
+    private final long[] ruleDeadlineNanos;
+    private final long[] visitorNanos;
+    private int visitedRuleIndex = -1;
+    private long visitStartNanos;
+
+    private PassBudget(List<? extends LintRule> lintRules, File file, int runningRuleIndex, boolean[] hasPermit,
+                       ValidationTimeouts validationTimeouts, Deadline passDeadline) {
+        this.lintRules = lintRules;
+        this.file = file;
+        this.runningRuleIndex = runningRuleIndex;
+        this.hasPermit = hasPermit;
+        this.validationTimeouts = validationTimeouts;
+        this.passDeadline = passDeadline;
+        this.visitorNanos = lintRules == null ? null : new long[lintRules.size()];
+        this.ruleDeadlineNanos = validationTimeouts == null ? null : new long[lintRules.size()];
+        for (int i = 0; validationTimeouts != null && i < lintRules.size(); i++) {
+            ruleDeadlineNanos[i] = validationTimeouts.getRuleDeadlineNanos(lintRules.get(i));
+        }
+    }
+
+    /**
+     * Opens the budget of a pass over the file for these rules, run by one of them, which is already validating the
+     * file. Must be closed by the thread that opened it.
+     */
+    static PassBudget open(LintRule runningRule, List<? extends LintRule> lintRules, File file) {
+        boolean[] hasPermit = new boolean[lintRules.size()];
+        for (int i = 0; i < lintRules.size(); i++) {
+            LintRule lintRule = lintRules.get(i);
+            hasPermit[i] = lintRule != runningRule && lintRule.getConcurrencyLimit().tryAcquire();
+        }
+        ValidationTimeouts validationTimeouts = ValidationTimeouts.getActiveTimeouts();
+        Deadline passDeadline = validationTimeouts == null ? null : validationTimeouts.startPass(lintRules, file);
+        return new PassBudget(lintRules, file, lintRules.indexOf(runningRule), hasPermit, validationTimeouts,
+                passDeadline);
+    }
+
+    /**
+     * Returns true if the rule at this index of the pass gets visited, false if it was left out.
+     */
+    boolean includes(int ruleIndex) {
+        return hasPermit == null || ruleIndex == runningRuleIndex || hasPermit[ruleIndex];
+    }
+
+    /**
+     * Starts charging time to the rule at this index of the pass, until {@link #endVisit()}.
+     */
+    void startVisit(int ruleIndex) {
+        if (validationTimeouts != null) {
+            visitedRuleIndex = ruleIndex;
+            visitStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops charging time to the rule being visited, and returns its timeout if it has run out of time, or null.
+     */
+    ValidationTimeoutException endVisit() {
+        if (visitedRuleIndex < 0) {
+            return null;
+        }
+        int ruleIndex = visitedRuleIndex;
+        visitedRuleIndex = -1;
+        long now = System.nanoTime();
+        visitorNanos[ruleIndex] += now - visitStartNanos;
+        return getTimeout(ruleIndex, now);
+    }
+
+    /**
+     * Returns true if the exception a pass stopped with is the pass running out of time, in which case the result
+     * of every rule that wasn't done yet is {@link #getUnfinishedResult(int)}.
+     */
+    boolean hasExpired(Exception e) {
+        return passDeadline != null &&
+                (e instanceof ValidationTimeoutException || passDeadline.getExpiration() != null);
+    }
+
+    /**
+     * Returns the result of a rule that wasn't done with the file when the pass ran out of time: its timeout if it
+     * went over its own time, or {@link #LEFT_OUT}.
+     */
+    Object getUnfinishedResult(int ruleIndex) {
+        endVisit();
+        ValidationTimeoutException timeout = getTimeout(ruleIndex, System.nanoTime());
+        return timeout != null ? timeout : LEFT_OUT;
+    }
+
+    private ValidationTimeoutException getTimeout(int ruleIndex, long now) {
+        LintRule lintRule = lintRules.get(ruleIndex);
+        long fileTimeoutMilliseconds = validationTimeouts.getFileTimeoutMilliseconds();
+        if (fileTimeoutMilliseconds > 0 &&
+                visitorNanos[ruleIndex] >= TimeUnit.MILLISECONDS.toNanos(fileTimeoutMilliseconds)) {
+            return new ValidationTimeoutException(lintRule, file, false, fileTimeoutMilliseconds);
+        }
+        if (now - ruleDeadlineNanos[ruleIndex] >= 0) {
+            return new ValidationTimeoutException(lintRule, file, true,
+                    validationTimeouts.getRuleTimeoutMilliseconds());
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        if (hasPermit == null) {
+            return;
+        }
+        for (int i = 0; i < hasPermit.length; i++) {
+            if (hasPermit[i]) {
+                lintRules.get(i).getConcurrencyLimit().release();
+            }
+        }
+        if (passDeadline != null) {
+            validationTimeouts.endPass(passDeadline);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link LineLintRule} that is only a list of patterns: lines that contain a literal or match a regular expression
+ * are reported, and files that never contain a literal or match an expression are reported. The patterns are
+ * registered in the constructor of the rule:
+ *
+ * <pre><code>
+ * public class MyRule extends PatternLintRule {
+ *     public MyRule() {
+ *         super("My rule", "summary", "description", Severity.WARNING, Category.STYLE);
+ *         flagLinesContaining("TODO", "Unfinished work");
+ *         flagLinesMatching("System\\.(out|err)\\.print", "Printing to the console");
+ *         requireLiteral("Copyright", "Missing copyright notice");
+ *     }
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ *     Every line of the file is scanned once for all of the patterns (see {@link PatternMatcher}). When several
+ *     pattern rules share a read of the file (see {@link LineLintRule}), their patterns are compiled together, so
+ *     that the file is scanned once for all of the rules rather than once per rule, and every match is reported for
+ *     the rule that registered its pattern.
+ * </p>
+ */
+public abstract class PatternLintRule extends LineLintRule {
+    private final List<TextPattern> patterns = new CopyOnWriteArrayList<>();
+    private volatile PatternMatcher patternMatcher;
+
+    public PatternLintRule(String name, String summary, String detailedDescription, Severity severity,
+                           Enum<?> category) {
+        super(name, summary, detailedDescription, severity, category);
+    }
+
+    public PatternLintRule(String name, String summary, String detailedDescription, Severity severity,
+                           Enum<?> category, boolean isEnabledByDefault) {
+        super(name, summary, detailedDescription, severity, category, isEnabledByDefault);
+    }
+
+    /**
+     * Reports every line that contains this literal, with this error message.
+     */
+    protected void flagLinesContaining(String literal, String errorMessage) {
+        addPattern(TextPattern.literal(literal, errorMessage, false));
+    }
+
+    /**
+     * Reports every line in which this regular expression can be found, with this error message.
+     */
+    protected void flagLinesMatching(String regex, String errorMessage) {
+        addPattern(TextPattern.regex(Pattern.compile(regex), errorMessage, false));
+    }
+
+    /**
+     * Reports the files that don't contain this literal, with this error message.
+     */
+    protected void requireLiteral(String literal, String errorMessage) {
+        addPattern(TextPattern.literal(literal, errorMessage, true));
+    }
+
+    /**
+     * Reports the files in which this regular expression can't be found on any line, with this error message.
+     */
+    protected void requireMatch(String regex, String errorMessage) {
+        addPattern(TextPattern.regex(Pattern.compile(regex), errorMessage, true));
+    }
+
+    private void addPattern(TextPattern pattern) {
+        patterns.add(pattern);
+        patternMatcher = null;
+    }
+
+    List<TextPattern> getPatterns() {
+        return ImmutableList.copyOf(patterns);
+    }
+
+    @Override
+    public final LineVisitor visitFile(File file) {
+        PatternMatcher patternMatcher = this.patternMatcher;
+        if (patternMatcher == null) {
+            patternMatcher = PatternMatcher.forRule(this);
+            this.patternMatcher = patternMatcher;
+        }
+        return patternMatcher.startScan(file).getVisitor(this);
+    }
+}
@@ -0,0 +1,312 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+
+/**
+ * Every pattern of one or more {@link PatternLintRule}s, compiled so that a single scan of a line finds all of them.
+ *
+ * <p>
+ *     The literals go into a single {@link AhoCorasick} automaton. Regular expressions can't be combined like that,
+ *     so each one is only tried on the lines where the automaton saw a literal that all of its matches contain (see
+ *     {@link TextPattern#getRequiredLiteral()}); the few that don't have one are tried on every line. Either way,
+ *     every line is only gone through once by the automaton, however many patterns there are.
+ * </p>
+ *
+ * <p>
+ *     The matchers of the rules that share {@link LinePass}es are kept for the rest of the run, since the same rules
+ *     are usually handed the same kind of files over and over.
+ * </p>
+ */
+final class PatternMatcher {
+    private static final int MAX_CACHED_MATCHERS = 16;
+    private static final RunContext.Slot<Cache<RuleSet, PatternMatcher>> cachedMatchers =
+            RunContext.newSlot(() -> CacheBuilder.newBuilder().maximumSize(MAX_CACHED_MATCHERS).build());
+
+    private final List<PatternLintRule> rules;
+    private final List<TextPattern> patterns = Lists.newArrayList();
+    // The index of the rule of every pattern
+    private final int[] patternRules;
+    private final AhoCorasick automaton;
+    // The patterns every literal of the automaton is for: the literal patterns, and the expressions it is required by
+    private final int[][] literalPatterns;
+    private final int[] untriggeredExpressions;
+    private final boolean areAllRequired;
+
+    private PatternMatcher(List<PatternLintRule> rules) {
+        this.rules = ImmutableList.copyOf(rules);
+        List<Integer> patternRules = Lists.newArrayList();
+        for (int i = 0; i < rules.size(); i++) {
+            for (TextPattern pattern : rules.get(i).getPatterns()) {
+                patterns.add(pattern);
+                patternRules.add(i);
+            }
+        }
+        this.patternRules = Ints.toArray(patternRules);
+
+        // Patterns that look for the same literal share it
+        Map<String, Integer> literalIndexes = Maps.newLinkedHashMap();
+        List<List<Integer>> literalPatterns = Lists.newArrayList();
+        List<Integer> untriggeredExpressions = Lists.newArrayList();
+        boolean areAllRequired = true;
+        for (int i = 0; i < patterns.size(); i++) {
+            TextPattern pattern = patterns.get(i);
+            areAllRequired &= pattern.isRequired();
+            String literal = pattern.getRequiredLiteral();
+            if (literal == null) {
+                untriggeredExpressions.add(i);
+                continue;
+            }
+            Integer literalIndex = literalIndexes.get(literal);
+            if (literalIndex == null) {
+                literalIndex = literalIndexes.size();
+                literalIndexes.put(literal, literalIndex);
+                literalPatterns.add(Lists.newArrayList());
+            }
+            literalPatterns.get(literalIndex).add(i);
+        }
+        this.automaton = literalIndexes.isEmpty() ? null : new AhoCorasick(Lists.newArrayList(literalIndexes.keySet()));
+        this.literalPatterns = new int[literalPatterns.size()][];
+        for (int i = 0; i < literalPatterns.size(); i++) {
+            this.literalPatterns[i] = Ints.toArray(literalPatterns.get(i));
+        }
+        this.untriggeredExpressions = Ints.toArray(untriggeredExpressions);
+        this.areAllRequired = areAllRequired;
+    }
+
+    /**
+     * Compiles the patterns of a single rule.
+     */
+    static PatternMatcher forRule(PatternLintRule rule) {
+        return new PatternMatcher(ImmutableList.of(rule));
+    }
+
+    /**
+     * Returns the matcher of the patterns of all of these rules, compiling it if it hasn't been already during this
+     * run.
+     */
+    static PatternMatcher forRules(List<PatternLintRule> rules) {
+        try {
+            return cachedMatchers.get().get(new RuleSet(rules), () -> new PatternMatcher(rules));
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts scanning a file, for every rule.
+     */
+    Scan startScan(File file) {
+        return new Scan(file);
+    }
+
+    /**
+     * The state of the scan of a single file. The first rule's visitor goes through the lines for every rule, the
+     * visitors of the others only hand out what was found for them once the file has been read.
+     */
+    final class Scan {
+        private final File file;
+        private final int[] lastMatchedLines = new int[patterns.size()];
+        private final int[] lastTriggeredLines = new int[patterns.size()];
+        private final int[] triggeredExpressions = new int[patterns.size()];
+        private final Matcher[] matchers = new Matcher[patterns.size()];
+        private final List<List<LintError>> lintErrors = Lists.newArrayListWithCapacity(rules.size());
+        private int numberOfMissingPatterns;
+        private RuntimeException failure;
+
+        private Scan(File file) {
+            this.file = file;
+            for (int i = 0; i < rules.size(); i++) {
+                lintErrors.add(Lists.newArrayList());
+            }
+            for (TextPattern pattern : patterns) {
+                if (pattern.isRequired()) {
+                    numberOfMissingPatterns++;
+                }
+            }
+        }
+
+        LineVisitor getVisitor(PatternLintRule rule) {
+            int ruleIndex = 0;
+            while (ruleIndex < rules.size() && rules.get(ruleIndex) != rule) {
+                ruleIndex++;
+            }
+            if (ruleIndex == rules.size()) {
+                throw new IllegalArgumentException(rule.getName() + " isn't one of the rules of this scan");
+            }
+            return ruleIndex == 0 ? new ScanningVisitor() : new WaitingVisitor(ruleIndex);
+        }
+
+        private void visitLine(int lineNumber, CharSequence line) {
+            int numberOfTriggeredExpressions = 0;
+            if (automaton != null) {
+                int state = automaton.getInitialState();
+                for (int i = 0; i < line.length(); i++) {
+                    state = automaton.next(state, line.charAt(i));
+                    for (int literalIndex : automaton.getOutputs(state)) {
+                        for (int patternIndex : literalPatterns[literalIndex]) {
+                            if (patterns.get(patternIndex).isLiteral()) {
+                                match(patternIndex, lineNumber);
+                            }
+                            else if (lastTriggeredLines[patternIndex] != lineNumber) {
+                                lastTriggeredLines[patternIndex] = lineNumber;
+                                triggeredExpressions[numberOfTriggeredExpressions++] = patternIndex;
+                            }
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < numberOfTriggeredExpressions; i++) {
+                tryExpression(triggeredExpressions[i], lineNumber, line);
+            }
+            for (int patternIndex : untriggeredExpressions) {
+                tryExpression(patternIndex, lineNumber, line);
+            }
+        }
+
+        private void tryExpression(int patternIndex, int lineNumber, CharSequence line) {
+            TextPattern pattern = patterns.get(patternIndex);
+            if (pattern.isRequired() && lastMatchedLines[patternIndex] > 0) {
+                return;
+            }
+            Matcher matcher = matchers[patternIndex];
+            if (matcher == null) {
+                matcher = pattern.getRegex().matcher(line);
+                matchers[patternIndex] = matcher;
+            }
+            else {
+                matcher.reset(line);
+            }
+            if (matcher.find()) {
+                match(patternIndex, lineNumber);
+            }
+        }
+
+        private void match(int patternIndex, int lineNumber) {
+            if (lastMatchedLines[patternIndex] == lineNumber) {
+                return;
+            }
+            TextPattern pattern = patterns.get(patternIndex);
+            if (pattern.isRequired()) {
+                if (lastMatchedLines[patternIndex] == 0) {
+                    numberOfMissingPatterns--;
+                }
+            }
+            else {
+                PatternLintRule rule = rules.get(patternRules[patternIndex]);
+                lintErrors.get(patternRules[patternIndex]).add(LintError.with(rule, file).andLineNumber(lineNumber)
+                        .andErrorMessage(pattern.getErrorMessage()).create());
+            }
+            lastMatchedLines[patternIndex] = lineNumber;
+        }
+
+        private boolean isDone() {
+            return areAllRequired && numberOfMissingPatterns == 0;
+        }
+
+        private List<LintError> endFile(int ruleIndex) {
+            if (failure != null) {
+                throw failure;
+            }
+            PatternLintRule rule = rules.get(ruleIndex);
+            List<LintError> ruleErrors = lintErrors.get(ruleIndex);
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patternRules[i] == ruleIndex && patterns.get(i).isRequired() && lastMatchedLines[i] == 0) {
+                    ruleErrors.add(LintError.with(rule, file).andErrorMessage(patterns.get(i).getErrorMessage())
+                            .create());
+                }
+            }
+            return ruleErrors;
+        }
+
+        private final class ScanningVisitor implements LineVisitor {
+            @Override
+            public void visitLine(int lineNumber, CharSequence line) {
+                try {
+                    Scan.this.visitLine(lineNumber, line);
+                }
+                catch (RuntimeException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+
+            @Override
+            public boolean isDone() {
+                return Scan.this.isDone();
+            }
+
+            @Override
+            public List<LintError> endFile() {
+                return Scan.this.endFile(0);
+            }
+        }
+
+        private final class WaitingVisitor implements LineVisitor {
+            private final int ruleIndex;
+
+            private WaitingVisitor(int ruleIndex) {
+                this.ruleIndex = ruleIndex;
+            }
+
+            @Override
+            public void visitLine(int lineNumber, CharSequence line) {
+            }
+
+            @Override
+            public boolean isDone() {
+                return true;
+            }
+
+            @Override
+            public List<LintError> endFile() {
+                return Scan.this.endFile(ruleIndex);
+            }
+        }
+    }
+
+    /**
+     * A list of rules that are the same rules, rather than rules with the same names.
+     */
+    private static final class RuleSet {
+        private final List<PatternLintRule> rules;
+
+        private RuleSet(List<PatternLintRule> rules) {
+            this.rules = ImmutableList.copyOf(rules);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RuleSet) || ((RuleSet) obj).rules.size() != rules.size()) {
+                return false;
+            }
+            for (int i = 0; i < rules.size(); i++) {
+                if (((RuleSet) obj).rules.get(i) != rules.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = 1;
+            for (PatternLintRule rule : rules) {
+                hashCode = 31 * hashCode + System.identityHashCode(rule);
+            }
+            return hashCode;
+        }
+    }
+}
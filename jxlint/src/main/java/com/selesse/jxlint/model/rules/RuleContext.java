@@ -0,0 +1,222 @@
+package com.selesse.jxlint.model.rules;
+
+import com.selesse.jxlint.utils.RunContext;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * The things a rule needs to validate a file that are expensive to create but can be reused from one file to the
+ * next: configured parsers, and scratch buffers. Every file a rule validates gets a context of its own for the time
+ * it is being validated (see {@link #current()}), so nothing in it is ever used by two threads at the same time, and
+ * nothing in it needs to be thread safe.
+ *
+ * <pre><code>
+ *     Document document = RuleContext.current().getDocumentBuilder().parse(sourceFile.openStream());
+ * </code></pre>
+ *
+ * <p>
+ *     Contexts are pooled during a run rather than kept per thread, so that rules validated on virtual threads (see
+ *     {@link VirtualThreadValidation}) reuse them too: there are only ever as many of them as files being validated
+ *     at the same time. Parsers are reset before they are handed out. Buffers are lent, and must be released once
+ *     the rule is done with them; the ones that grew too large aren't kept.
+ * </p>
+ *
+ * <p>
+ *     Resources that jxlint doesn't know about, like the parser of a language, can be kept in a context too (see
+ *     {@link #newResource(Supplier)}).
+ * </p>
+ */
+public final class RuleContext implements AutoCloseable {
+    static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final RunContext.Slot<Queue<RuleContext>> pooledContexts =
+            RunContext.newSlot(ConcurrentLinkedQueue::new);
+    private static final ThreadLocal<RuleContext> currentContext = new ThreadLocal<>();
+
+    private final Map<Resource<?>, Object> resources = new IdentityHashMap<>();
+    private RuleContext previousContext;
+    private DocumentBuilder documentBuilder;
+    private SAXParser saxParser;
+    private XMLInputFactory xmlInputFactory;
+    private char[] charBuffer;
+    private byte[] byteBuffer;
+    private StringBuilder stringBuilder;
+
+    private RuleContext() {
+    }
+
+    /**
+     * Makes a context from the pool the current context of this thread, until it is closed.
+     */
+    static RuleContext open() {
+        RuleContext ruleContext = pooledContexts.get().poll();
+        if (ruleContext == null) {
+            ruleContext = new RuleContext();
+        }
+        ruleContext.previousContext = currentContext.get();
+        currentContext.set(ruleContext);
+        return ruleContext;
+    }
+
+    /**
+     * Gives the context back to the pool, and goes back to the context this thread had before.
+     */
+    @Override
+    public void close() {
+        if (previousContext == null) {
+            currentContext.remove();
+        }
+        else {
+            currentContext.set(previousContext);
+        }
+        previousContext = null;
+        pooledContexts.get().offer(this);
+    }
+
+    /**
+     * Returns the context of the file being validated on this thread. Outside of a validation (when a rule's
+     * {@link LintRule#getLintErrors(SourceFile)} is called directly, for instance), this is a new context that isn't
+     * reused.
+     */
+    public static RuleContext current() {
+        RuleContext ruleContext = currentContext.get();
+        return ruleContext == null ? new RuleContext() : ruleContext;
+    }
+
+    /**
+     * Returns a builder of W3C DOM {@link org.w3c.dom.Document}s, configured like
+     * {@link com.selesse.jxlint.cache.XmlDocumentProvider} needs it: the whole tree is expanded when the document is
+     * parsed, and errors aren't printed.
+     */
+    public DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        if (documentBuilder == null) {
+            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            // Expand the whole tree now, so that the document can be read from several threads afterwards
+            documentBuilderFactory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        }
+        documentBuilder.reset();
+        documentBuilder.setErrorHandler(null); // shut up!
+        return documentBuilder;
+    }
+
+    /**
+     * Returns a SAX parser with the default configuration.
+     */
+    public SAXParser getSaxParser() throws ParserConfigurationException, org.xml.sax.SAXException {
+        if (saxParser == null) {
+            saxParser = SAXParserFactory.newInstance().newSAXParser();
+        }
+        saxParser.reset();
+        return saxParser;
+    }
+
+    /**
+     * Returns the factory of the StAX parsers of {@link XmlLintRule}s. It is set up like a
+     * {@link DocumentBuilderFactory} is by default, without namespaces, so that rules see the same names and errors
+     * as they would in a DOM. External entities are never resolved.
+     */
+    public XMLInputFactory getXmlInputFactory() {
+        if (xmlInputFactory == null) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        }
+        return xmlInputFactory;
+    }
+
+    /**
+     * Lends a buffer of at least this many chars, whose contents are undefined. It is the caller's until it is given
+     * back with {@link #releaseCharBuffer(char[])}.
+     */
+    public char[] borrowCharBuffer(int minimumLength) {
+        char[] buffer = charBuffer;
+        charBuffer = null;
+        return buffer != null && buffer.length >= minimumLength ? buffer : new char[minimumLength];
+    }
+
+    public void releaseCharBuffer(char[] buffer) {
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE && (charBuffer == null || charBuffer.length < buffer.length)) {
+            charBuffer = buffer;
+        }
+    }
+
+    /**
+     * Lends a buffer of at least this many bytes, whose contents are undefined. It is the caller's until it is given
+     * back with {@link #releaseByteBuffer(byte[])}.
+     */
+    public byte[] borrowByteBuffer(int minimumLength) {
+        byte[] buffer = byteBuffer;
+        byteBuffer = null;
+        return buffer != null && buffer.length >= minimumLength ? buffer : new byte[minimumLength];
+    }
+
+    public void releaseByteBuffer(byte[] buffer) {
+        if (buffer.length <= MAX_RETAINED_BUFFER_SIZE && (byteBuffer == null || byteBuffer.length < buffer.length)) {
+            byteBuffer = buffer;
+        }
+    }
+
+    /**
+     * Lends an empty {@link StringBuilder}. It is the caller's until it is given back with
+     * {@link #releaseStringBuilder(StringBuilder)}.
+     */
+    public StringBuilder borrowStringBuilder() {
+        StringBuilder builder = stringBuilder;
+        stringBuilder = null;
+        if (builder == null) {
+            return new StringBuilder();
+        }
+        builder.setLength(0);
+        return builder;
+    }
+
+    public void releaseStringBuilder(StringBuilder builder) {
+        if (builder.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+            stringBuilder = builder;
+        }
+    }
+
+    /**
+     * Returns this context's instance of the resource, creating it the first time it is asked for.
+     */
+    public <T> T get(Resource<T> resource) {
+        @SuppressWarnings("unchecked")
+        T value = (T) resources.get(resource);
+        if (value == null) {
+            value = resource.initialValue.get();
+            resources.put(resource, value);
+        }
+        return value;
+    }
+
+    /**
+     * Creates a resource that every context has its own instance of, like the parsers of the context.
+     */
+    public static <T> Resource<T> newResource(Supplier<T> initialValue) {
+        return new Resource<>(initialValue);
+    }
+
+    /**
+     * Something that every {@link RuleContext} has its own instance of, for the rule that is using the context to
+     * reuse (see {@link RuleContext#get(Resource)}).
+     */
+    public static final class Resource<T> {
+        private final Supplier<T> initialValue;
+
+        private Resource(Supplier<T> initialValue) {
+            this.initialValue = initialValue;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The files every rule validates in one shard of a run that is split over several machines (see
+ * {@link com.selesse.jxlint.linter.Shard}). While an assignment is active, rules only validate the files they were
+ * assigned, instead of all of their {@link LintRule#getFilesToValidate()}.
+ *
+ * <p>
+ *     Every shard computes the assignment of every shard, so the assignment also has a fingerprint of the whole
+ *     split: shards that were split differently (because they saw different files, rules or histories) have
+ *     different fingerprints, and can't be merged.
+ * </p>
+ */
+public class ShardAssignment {
+    private static final RunContext.Slot<ShardAssignment> activeAssignment = RunContext.newSlot();
+
+    private final int shardIndex;
+    private final int numberOfShards;
+    private final String fingerprint;
+    private final Map<LintRule, List<File>> ruleFiles;
+
+    /**
+     * The files of every rule, for shard <code>shardIndex</code> (starting at 1) out of <code>numberOfShards</code>.
+     */
+    public ShardAssignment(int shardIndex, int numberOfShards, String fingerprint,
+                           Map<LintRule, List<File>> ruleFiles) {
+        this.shardIndex = shardIndex;
+        this.numberOfShards = numberOfShards;
+        this.fingerprint = fingerprint;
+        this.ruleFiles = Maps.newIdentityHashMap();
+        ruleFiles.forEach((rule, files) -> this.ruleFiles.put(rule, ImmutableList.copyOf(files)));
+    }
+
+    /**
+     * Makes this assignment the active one, until {@link #deactivate()} is called.
+     */
+    public static void activate(ShardAssignment shardAssignment) {
+        activeAssignment.set(shardAssignment);
+    }
+
+    public static void deactivate() {
+        activeAssignment.set(null);
+    }
+
+    /**
+     * Returns the active assignment, or null if every file of every rule gets validated.
+     */
+    public static ShardAssignment getActiveAssignment() {
+        return activeAssignment.get();
+    }
+
+    /**
+     * Returns the files the rule should validate: the ones in the active {@link FileIndex}'s scope, limited to the
+     * ones it was assigned if there is an active assignment. A rule that wasn't assigned anything, because its files
+     * couldn't be listed, lists them again: it fails the way it would have without shards.
+     */
+    public static List<File> getFilesToValidate(LintRule lintRule) {
+        ShardAssignment shardAssignment = activeAssignment.get();
+        if (shardAssignment != null && shardAssignment.ruleFiles.containsKey(lintRule)) {
+            return shardAssignment.getFiles(lintRule);
+        }
+        return FileIndex.retainFilesInScope(lintRule.getFilesToValidate());
+    }
+
+    /**
+     * Returns the files assigned to the rule in this shard, in the order the rule listed them.
+     */
+    public List<File> getFiles(LintRule lintRule) {
+        List<File> files = ruleFiles.get(lintRule);
+        return files == null ? Collections.emptyList() : files;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+}
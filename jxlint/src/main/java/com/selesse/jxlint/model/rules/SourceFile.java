@@ -0,0 +1,197 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.cache.ArtifactCache;
+import com.selesse.jxlint.cache.ArtifactProvider;
+import com.selesse.jxlint.cache.ContentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A file being validated, along with its contents. The contents are read the first time they are asked for, and are
+ * then kept for as long as this object is, so every rule that is handed the same {@link SourceFile} shares a single
+ * read. Reads go through the run's {@link ContentCache}, so rules that get different {@link SourceFile}s for the same
+ * file usually share a single read as well.
+ *
+ * <p>
+ *     Rules that want the contents of their files should extend {@link SourceFileLintRule} (or override
+ *     {@link LintRule#getLintErrors(SourceFile)}) instead of reading the {@link File} themselves.
+ * </p>
+ *
+ * <p>
+ *     The lines of the file are indexed the first time a rule needs them (see {@link #getLineIndex()}), and the
+ *     index is kept too. Rules that search the contents can then report offsets instead of counting lines
+ *     themselves (see {@link LintError.LintErrorBuilder#andOffset(int)}), and look at single lines without copying
+ *     them (see {@link #getLine(int)}).
+ * </p>
+ */
+public class SourceFile {
+    private final File file;
+    // Not a monitor: a virtual thread that waits for the file while holding a monitor keeps its carrier thread
+    private final Lock contentsLock = new ReentrantLock();
+    private volatile String contents;
+    private volatile LineIndex lineIndex;
+    private volatile LinePass linePass;
+    private volatile XmlPass xmlPass;
+
+    public SourceFile(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the contents of the file, decoded as UTF-8.
+     */
+    public String getContents() throws IOException {
+        Deadline.check();
+        if (contents == null) {
+            contentsLock.lock();
+            try {
+                if (contents == null) {
+                    contents = ContentCache.readContents(file);
+                }
+            }
+            finally {
+                contentsLock.unlock();
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Returns the contents of the file if they have already been read, or null.
+     */
+    String getReadContents() {
+        return contents;
+    }
+
+    /**
+     * Returns the contents of the file, as a sequence that stops the rule if it runs out of time while going through
+     * it (see {@link Deadline}). Regular expressions that might backtrack a lot should be matched against this.
+     */
+    public CharSequence getInterruptibleContents() throws IOException {
+        return Deadline.interruptible(getContents());
+    }
+
+    /**
+     * Opens a stream on the raw bytes of the file, for parsers that need to detect the encoding themselves. Unlike
+     * {@link #getContents()}, this isn't cached: the file is read again every time.
+     */
+    public InputStream openStream() throws IOException {
+        return ContentCache.openStream(file);
+    }
+
+    /**
+     * Returns the index of the lines of the file, to turn offsets in {@link #getContents()} into line numbers.
+     */
+    public LineIndex getLineIndex() throws IOException {
+        if (lineIndex == null) {
+            String contents = getContents();
+            contentsLock.lock();
+            try {
+                if (lineIndex == null) {
+                    lineIndex = LineIndex.of(contents);
+                }
+            }
+            finally {
+                contentsLock.unlock();
+            }
+        }
+        return lineIndex;
+    }
+
+    /**
+     * Returns a line of the file, without its line terminator. The line is a view of the contents, not a copy: call
+     * {@link CharSequence#toString()} to keep it.
+     */
+    public CharSequence getLine(int lineNumber) throws IOException {
+        String contents = getContents();
+        LineIndex lineIndex = getLineIndex();
+        int start = lineIndex.getLineStart(lineNumber);
+        int end = lineIndex.getNextLineStart(lineNumber);
+        if (end > start && contents.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && contents.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return CharBuffer.wrap(contents, start, end);
+    }
+
+    /**
+     * Returns the lines of the file, without their line terminators, like {@link Files#readLines(File, Charset)}.
+     * The first element is line 1.
+     */
+    public List<String> getLines() throws IOException {
+        LineIndex lineIndex = getLineIndex();
+        List<String> lines = Lists.newArrayListWithCapacity(lineIndex.getLineCount());
+        for (int lineNumber = 1; lineNumber <= lineIndex.getLineCount(); lineNumber++) {
+            lines.add(getLine(lineNumber).toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Returns something derived from this file, like a parsed syntax tree, from the run's {@link ArtifactCache}.
+     * The file is only parsed if no other rule has asked for the same artifact yet. The artifact may be shared with
+     * other rules, so it must not be modified.
+     */
+    public <T, X extends Exception> T getArtifact(ArtifactProvider<T, X> provider) throws IOException, X {
+        return ArtifactCache.readArtifact(this, provider);
+    }
+
+    /**
+     * Makes the {@link LineLintRule}s among these rules share a single read of the file, when they are handed this
+     * {@link SourceFile}. The linter does this when it hands the same file to several rules (see
+     * {@link com.selesse.jxlint.linter.ExecutionMode#FILE_MAJOR}).
+     */
+    public void shareLinePass(Collection<? extends LintRule> rules) {
+        List<LineLintRule> lineRules = Lists.newArrayList();
+        for (LintRule rule : rules) {
+            if (rule instanceof LineLintRule) {
+                lineRules.add((LineLintRule) rule);
+            }
+        }
+        linePass = lineRules.size() > 1 ? new LinePass(lineRules) : null;
+    }
+
+    LinePass getLinePass() {
+        return linePass;
+    }
+
+    /**
+     * Makes the {@link XmlLintRule}s among these rules share a single parse of the file, when they are handed this
+     * {@link SourceFile}, like {@link #shareLinePass(Collection)} does for line rules.
+     */
+    public void shareXmlPass(Collection<? extends LintRule> rules) {
+        List<XmlLintRule> xmlRules = Lists.newArrayList();
+        for (LintRule rule : rules) {
+            if (rule instanceof XmlLintRule) {
+                xmlRules.add((XmlLintRule) rule);
+            }
+        }
+        xmlPass = xmlRules.size() > 1 ? new XmlPass(xmlRules) : null;
+    }
+
+    XmlPass getXmlPass() {
+        return xmlPass;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("file", file).toString();
+    }
+}
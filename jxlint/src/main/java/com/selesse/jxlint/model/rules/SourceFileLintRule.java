@@ -0,0 +1,49 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A {@link LintRule} that validates {@link SourceFile}s instead of bare {@link File}s. Rules that need the contents of
+ * their files should extend this class: when several rules look at the same file, the file is only read once (see
+ * {@link com.selesse.jxlint.linter.ExecutionMode#FILE_MAJOR}).
+ *
+ * <pre><code>
+ * public class MyRule extends SourceFileLintRule {
+ *     {@literal @}Override
+ *     public List&lt;LintError&gt; getLintErrors(SourceFile sourceFile) throws IOException {
+ *         List&lt;LintError&gt; lintErrorList = Lists.newArrayList();
+ *
+ *         if (!sourceFile.getContents().contains("Hello, world!")) {
+ *             lintErrorList.add(LintError.with(this, sourceFile.getFile()).andErrorMessage("Must say hello world!")
+ *                     .create());
+ *         }
+ *         return lintErrorList;
+ *     }
+ * }
+ * </code>
+ * </pre>
+ */
+public abstract class SourceFileLintRule extends LintRule {
+    public SourceFileLintRule(String name, String summary, String detailedDescription, Severity severity,
+                              Enum<?> category) {
+        super(name, summary, detailedDescription, severity, category);
+    }
+
+    public SourceFileLintRule(String name, String summary, String detailedDescription, Severity severity,
+                              Enum<?> category, boolean isEnabledByDefault) {
+        super(name, summary, detailedDescription, severity, category, isEnabledByDefault);
+    }
+
+    /**
+     * Adapts {@link LintRule#getLintErrors(File)} to {@link #getLintErrors(SourceFile)}.
+     */
+    @Override
+    public final List<LintError> getLintErrors(File file) {
+        return validateFile(new SourceFile(file));
+    }
+
+    @Override
+    public abstract List<LintError> getLintErrors(SourceFile sourceFile) throws IOException;
+}
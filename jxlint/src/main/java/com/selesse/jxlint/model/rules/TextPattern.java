@@ -0,0 +1,156 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.regex.Pattern;
+
+/**
+ * A literal or a regular expression registered by a {@link PatternLintRule}, along with what a match means: either
+ * the line it is on is reported, or the file is required to have a match somewhere.
+ */
+final class TextPattern {
+    private static final String METACHARACTERS = ".^$*+?()[]{}|\\";
+    private static final String QUANTIFIERS = "*+?{";
+
+    private final String literal;
+    private final Pattern regex;
+    private final String errorMessage;
+    private final boolean isRequired;
+
+    private TextPattern(String literal, Pattern regex, String errorMessage, boolean isRequired) {
+        this.literal = literal;
+        this.regex = regex;
+        this.errorMessage = errorMessage;
+        this.isRequired = isRequired;
+    }
+
+    static TextPattern literal(String literal, String errorMessage, boolean isRequired) {
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Literals can't be empty");
+        }
+        return new TextPattern(literal, null, errorMessage, isRequired);
+    }
+
+    static TextPattern regex(Pattern regex, String errorMessage, boolean isRequired) {
+        return new TextPattern(null, regex, errorMessage, isRequired);
+    }
+
+    boolean isLiteral() {
+        return literal != null;
+    }
+
+    String getLiteral() {
+        return literal;
+    }
+
+    Pattern getRegex() {
+        return regex;
+    }
+
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    boolean isRequired() {
+        return isRequired;
+    }
+
+    /**
+     * Returns a literal that every match of the regular expression contains, or null if there isn't one that can be
+     * found for sure. Lines without it can't match, so the expression doesn't need to be tried on them.
+     */
+    String getRequiredLiteral() {
+        return regex == null ? literal : getRequiredLiteral(regex);
+    }
+
+    /**
+     * Looks for the longest run of plain characters outside of any group, in an expression without alternatives or
+     * flags. Anything the expression does that isn't understood here means there is no required literal.
+     */
+    static String getRequiredLiteral(Pattern regex) {
+        String expression = regex.pattern();
+        if (regex.flags() != 0 || expression.contains("(?") || expression.contains("\\Q")) {
+            return null;
+        }
+
+        String longestRun = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            char literalChar = 0;
+            if (c == '\\' && i + 1 < expression.length()) {
+                char escaped = expression.charAt(++i);
+                if (!Character.isLetterOrDigit(escaped) && depth == 0) {
+                    literalChar = escaped;
+                }
+            }
+            else if (c == '[') {
+                i = skipCharacterClass(expression, i);
+            }
+            else if (c == '{') {
+                // The bounds of a quantifier
+                int end = expression.indexOf('}', i);
+                i = end < 0 ? expression.length() : end;
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+            }
+            else if (c == '|') {
+                // Every match only has one of the alternatives
+                return null;
+            }
+            else if (depth == 0 && METACHARACTERS.indexOf(c) < 0) {
+                literalChar = c;
+            }
+
+            boolean isQuantified = i + 1 < expression.length() && QUANTIFIERS.indexOf(expression.charAt(i + 1)) >= 0;
+            if (literalChar != 0 && !isQuantified) {
+                run.append(literalChar);
+            }
+            else {
+                // A quantified char may be missing or repeated, so the run stops before it
+                if (run.length() > longestRun.length()) {
+                    longestRun = run.toString();
+                }
+                run.setLength(0);
+            }
+        }
+        if (run.length() > longestRun.length()) {
+            longestRun = run.toString();
+        }
+        return longestRun.length() > 1 ? longestRun : null;
+    }
+
+    /**
+     * Returns the index of the "]" that closes the character class that starts at this index.
+     */
+    private static int skipCharacterClass(String expression, int start) {
+        int depth = 0;
+        for (int i = start; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\') {
+                i++;
+            }
+            else if (c == '[') {
+                depth++;
+            }
+            else if (c == ']' && i > start + 1 && --depth == 0) {
+                return i;
+            }
+        }
+        return expression.length();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("literal", literal)
+                .add("regex", regex)
+                .add("isRequired", isRequired)
+                .toString();
+    }
+}
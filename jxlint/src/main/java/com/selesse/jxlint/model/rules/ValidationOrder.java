@@ -0,0 +1,100 @@
+package com.selesse.jxlint.model.rules;
+
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The order in which files get validated, when the run is scheduled (see
+ * {@link com.selesse.jxlint.linter.LintPlan}). Large files are validated first, so that the run doesn't end with a
+ * single thread stuck on a big file while the others have nothing left to do.
+ *
+ * <p>
+ *     Files are grouped by size, in powers of two, from the largest to the smallest. Within a group, files are
+ *     sorted by path, so that the files of a directory are still read one after the other. Only the order in which
+ *     files are validated changes: the errors end up in the same order either way.
+ * </p>
+ */
+public class ValidationOrder {
+    private static final RunContext.Slot<ValidationOrder> activeOrder = RunContext.newSlot();
+
+    // Rules share files, so every file is only looked up once
+    private final ConcurrentMap<File, Long> fileSizes;
+
+    public ValidationOrder() {
+        this.fileSizes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Makes this order the active one, until {@link #deactivate()} is called.
+     */
+    public static void activate(ValidationOrder validationOrder) {
+        activeOrder.set(validationOrder);
+    }
+
+    public static void deactivate() {
+        activeOrder.set(null);
+    }
+
+    /**
+     * Returns the active order, or null if files are validated in the order the rules list them.
+     */
+    public static ValidationOrder getActiveOrder() {
+        return activeOrder.get();
+    }
+
+    /**
+     * Returns the size of the file in bytes, or 0 if it doesn't exist.
+     */
+    public long getSize(File file) {
+        return fileSizes.computeIfAbsent(file, ValidationOrder::readSize);
+    }
+
+    private static long readSize(File file) {
+        // The index already knows the size of the files it listed
+        long knownSize = FileIndex.getKnownSize(file);
+        return knownSize >= 0 ? knownSize : file.length();
+    }
+
+    public long getTotalSize(List<File> files) {
+        long totalSize = 0;
+        for (File file : files) {
+            totalSize += getSize(file);
+        }
+        return totalSize;
+    }
+
+    /**
+     * Returns the positions of the files in the list, in the order they should be validated.
+     */
+    public int[] getValidationOrder(List<File> files) {
+        Integer[] positions = new Integer[files.size()];
+        for (int position = 0; position < positions.length; position++) {
+            positions[position] = position;
+        }
+
+        Comparator<Integer> bySizeGroup =
+                Comparator.comparingInt(position -> -getSizeGroup(getSize(files.get(position))));
+        Arrays.sort(positions, bySizeGroup.thenComparing(position -> files.get(position).getPath()));
+
+        int[] validationOrder = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            validationOrder[i] = positions[i];
+        }
+        return validationOrder;
+    }
+
+    /**
+     * The number of bits needed to write the size down: files of the same group are within a factor of two of each
+     * other.
+     */
+    static int getSizeGroup(long size) {
+        return Long.SIZE - Long.numberOfLeadingZeros(size);
+    }
+}
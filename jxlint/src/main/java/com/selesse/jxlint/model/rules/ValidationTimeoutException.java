@@ -0,0 +1,42 @@
+package com.selesse.jxlint.model.rules;
+
+import java.io.File;
+
+/**
+ * Thrown by {@link Deadline#check()} when the file being validated, or its rule, has run out of time. Rules shouldn't
+ * catch it: it is turned into a {@link LintError} by {@link LintRule#validateFile(SourceFile)}.
+ */
+public class ValidationTimeoutException extends RuntimeException {
+    private final LintRule lintRule;
+    private final File file;
+    private final boolean isRuleTimeout;
+    private final long timeoutMilliseconds;
+
+    public ValidationTimeoutException(LintRule lintRule, File file, boolean isRuleTimeout, long timeoutMilliseconds) {
+        super(String.format("[%s] %s after %d ms while validating %s", lintRule.getName(),
+                isRuleTimeout ? "Rule timed out" : "Timed out", timeoutMilliseconds, file));
+        this.lintRule = lintRule;
+        this.file = file;
+        this.isRuleTimeout = isRuleTimeout;
+        this.timeoutMilliseconds = timeoutMilliseconds;
+    }
+
+    public LintRule getLintRule() {
+        return lintRule;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Whether the whole rule ran out of time, rather than just this file.
+     */
+    public boolean isRuleTimeout() {
+        return isRuleTimeout;
+    }
+
+    public long getTimeoutMilliseconds() {
+        return timeoutMilliseconds;
+    }
+}
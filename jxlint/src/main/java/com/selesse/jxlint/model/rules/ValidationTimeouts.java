@@ -0,0 +1,220 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.selesse.jxlint.settings.Profiler;
+import com.selesse.jxlint.utils.RunContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timeouts of a run: how long a rule can spend on a single file, and how long a rule can run for. They are
+ * activated by the {@link com.selesse.jxlint.linter.Linter} for the duration of a run, when the "file-timeout" or
+ * "rule-timeout" options are given.
+ *
+ * <p>
+ *     Every file gets a {@link Deadline} while it is being validated. A file that runs out of time is reported as a
+ *     warning on that file, instead of with the errors it may have had. Once a rule has run out of time, its
+ *     remaining files are skipped, and the rule gets a single warning saying how many files weren't validated.
+ *     Either way, the timeout is listed in the {@link Profiler}'s report. A rule's time starts when it starts
+ *     validating its files (see {@link #startRule(LintRule)}), or when it gets its first file.
+ * </p>
+ */
+public class ValidationTimeouts {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ValidationTimeouts.class);
+    private static final RunContext.Slot<ValidationTimeouts> activeTimeouts = RunContext.newSlot();
+
+    private final long fileTimeoutMilliseconds;
+    private final long ruleTimeoutMilliseconds;
+    private final ScheduledExecutorService watchdog;
+    // Rules are compared by identity, since their hash code changes as they find errors
+    private final Map<LintRule, RuleClock> ruleClocks = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private ValidationTimeouts(long fileTimeoutMilliseconds, long ruleTimeoutMilliseconds) {
+        this.fileTimeoutMilliseconds = fileTimeoutMilliseconds;
+        this.ruleTimeoutMilliseconds = ruleTimeoutMilliseconds;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("jxlint-timeouts-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Makes these timeouts the active ones, until {@link #deactivate()} is called. A timeout of 0 means no timeout;
+     * if both are 0, there are no active timeouts and null is returned.
+     */
+    public static ValidationTimeouts activate(long fileTimeoutMilliseconds, long ruleTimeoutMilliseconds) {
+        deactivate();
+        if (fileTimeoutMilliseconds <= 0 && ruleTimeoutMilliseconds <= 0) {
+            return null;
+        }
+        activeTimeouts.set(new ValidationTimeouts(fileTimeoutMilliseconds, ruleTimeoutMilliseconds));
+        return activeTimeouts.get();
+    }
+
+    public static void deactivate() {
+        ValidationTimeouts validationTimeouts = activeTimeouts.get();
+        if (validationTimeouts != null) {
+            validationTimeouts.watchdog.shutdownNow();
+            activeTimeouts.set(null);
+        }
+    }
+
+    /**
+     * Returns the active timeouts, or null if there aren't any.
+     */
+    public static ValidationTimeouts getActiveTimeouts() {
+        return activeTimeouts.get();
+    }
+
+    /**
+     * Starts (or restarts) the clock of a rule.
+     */
+    public void startRule(LintRule lintRule) {
+        ruleClocks.put(lintRule, new RuleClock());
+    }
+
+    /**
+     * Returns true if the rule has run out of time, in which case the file is counted as not validated.
+     */
+    boolean skipIfRuleTimedOut(LintRule lintRule) {
+        RuleClock ruleClock = getRuleClock(lintRule);
+        if (System.nanoTime() - getDeadlineNanos(ruleClock.startNanos, ruleTimeoutMilliseconds) >= 0) {
+            ruleClock.skippedFiles.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts the deadline of a file, for the current thread. The thread is interrupted if the deadline passes before
+     * the returned {@link Deadline} is closed.
+     */
+    Deadline startFile(LintRule lintRule, File file) {
+        long fileDeadlineNanos = getDeadlineNanos(System.nanoTime(), fileTimeoutMilliseconds);
+        long ruleDeadlineNanos = getRuleDeadlineNanos(lintRule);
+
+        Deadline deadline = new Deadline(lintRule, file, fileDeadlineNanos, ruleDeadlineNanos,
+                fileTimeoutMilliseconds, ruleTimeoutMilliseconds);
+        scheduleInterruption(deadline);
+        return deadline;
+    }
+
+    /**
+     * Starts the deadline of a pass over a file shared by several rules (see {@link PassBudget}), for the current
+     * thread. The rule whose file the thread was validating doesn't pay for the others: the clock of its file is
+     * paused until {@link #endPass(Deadline)}. The pass can take as long as all of its rules could have spent on the
+     * file, until the last of them runs out of time.
+     */
+    Deadline startPass(List<? extends LintRule> lintRules, File file) {
+        Deadline fileDeadline = Deadline.current();
+        if (fileDeadline != null) {
+            fileDeadline.pause();
+        }
+        long passTimeoutMilliseconds = fileTimeoutMilliseconds * lintRules.size();
+        long ruleDeadlineNanos = getRuleDeadlineNanos(lintRules.get(0));
+        for (LintRule lintRule : lintRules) {
+            long deadlineNanos = getRuleDeadlineNanos(lintRule);
+            if (deadlineNanos - ruleDeadlineNanos > 0) {
+                ruleDeadlineNanos = deadlineNanos;
+            }
+        }
+
+        Deadline deadline = new Deadline(lintRules.get(0), file,
+                getDeadlineNanos(System.nanoTime(), passTimeoutMilliseconds), ruleDeadlineNanos,
+                passTimeoutMilliseconds, ruleTimeoutMilliseconds);
+        scheduleInterruption(deadline);
+        return deadline;
+    }
+
+    /**
+     * Ends the deadline of a pass, and restarts the clock of the file the thread was validating.
+     */
+    void endPass(Deadline passDeadline) {
+        passDeadline.close();
+        Deadline fileDeadline = Deadline.current();
+        if (fileDeadline != null) {
+            fileDeadline.resume();
+            scheduleInterruption(fileDeadline);
+        }
+    }
+
+    long getFileTimeoutMilliseconds() {
+        return fileTimeoutMilliseconds;
+    }
+
+    long getRuleTimeoutMilliseconds() {
+        return ruleTimeoutMilliseconds;
+    }
+
+    long getRuleDeadlineNanos(LintRule lintRule) {
+        return getDeadlineNanos(getRuleClock(lintRule).startNanos, ruleTimeoutMilliseconds);
+    }
+
+    private void scheduleInterruption(Deadline deadline) {
+        deadline.setInterruption(watchdog.schedule(deadline::interrupt, deadline.getNanosUntilExpiration(),
+                TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Returns the errors for a file that ran out of time: a warning if the file timed out, or nothing if the whole
+     * rule did, since the rule will get a warning of its own (see {@link #finishRule(LintRule)}).
+     */
+    List<LintError> timedOut(ValidationTimeoutException e) {
+        LintRule lintRule = e.getLintRule();
+        if (e.isRuleTimeout()) {
+            getRuleClock(lintRule).skippedFiles.increment();
+            return Lists.newArrayList();
+        }
+
+        String message = String.format("Validation timed out after %d ms", e.getTimeoutMilliseconds());
+        LOGGER.warn("[{}] {} on {}", lintRule.getName(), message, e.getFile());
+        Profiler.addTimeout(lintRule, e.getFile(), message);
+        return Lists.newArrayList(LintError.with(lintRule, e.getFile()).andErrorMessage(message)
+                .andSeverity(Severity.WARNING).create());
+    }
+
+    /**
+     * Stops the clock of a rule, and returns a warning if some of its files weren't validated because it ran out of
+     * time, or null.
+     */
+    public LintError finishRule(LintRule lintRule) {
+        RuleClock ruleClock = ruleClocks.remove(lintRule);
+        if (ruleClock == null || ruleClock.skippedFiles.sum() == 0) {
+            return null;
+        }
+
+        String message = String.format("Rule timed out after %d ms, %d files were not validated",
+                ruleTimeoutMilliseconds, ruleClock.skippedFiles.sum());
+        LOGGER.warn("[{}] {}", lintRule.getName(), message);
+        Profiler.addTimeout(lintRule, null, message);
+        return LintError.with(lintRule, lintRule.getSourceDirectory()).andErrorMessage(message)
+                .andSeverity(Severity.WARNING).create();
+    }
+
+    /**
+     * Returns when a timeout that started at this time expires. Without a timeout, that's far enough in the future
+     * never to happen, but not so far that subtracting {@link System#nanoTime()} would overflow.
+     */
+    private static long getDeadlineNanos(long startNanos, long timeoutMilliseconds) {
+        return startNanos + (timeoutMilliseconds > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds) :
+                Long.MAX_VALUE / 2);
+    }
+
+    private RuleClock getRuleClock(LintRule lintRule) {
+        return ruleClocks.computeIfAbsent(lintRule, rule -> new RuleClock());
+    }
+
+    private static class RuleClock {
+        private final long startNanos = System.nanoTime();
+        private final LongAdder skippedFiles = new LongAdder();
+    }
+}
@@ -0,0 +1,106 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.utils.RunContext;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Validates every file of the I/O-heavy rules (see {@link LintRule#getWorkload()}) on its own thread, when it is
+ * active. Meant for virtual threads (see {@link com.selesse.jxlint.utils.VirtualThreads}): a rule that waits on its
+ * files, a parser or another process can then wait on many files at the same time, without holding on to the
+ * threads that run the CPU-heavy rules.
+ *
+ * <p>
+ *     All the rules share a maximum number of files being validated at the same time, so that a rule with a lot of
+ *     files doesn't open all of them at once. The errors are returned in the order of the files, like
+ *     {@link FileValidationTask} does.
+ * </p>
+ */
+public class VirtualThreadValidation {
+    private static final RunContext.Slot<VirtualThreadValidation> activeValidation = RunContext.newSlot();
+
+    private final ExecutorService executorService;
+    private final Semaphore threads;
+
+    /**
+     * Starts every file on the executor, with at most <code>maxThreads</code> files at the same time.
+     */
+    public VirtualThreadValidation(ExecutorService executorService, int maxThreads) {
+        this.executorService = executorService;
+        this.threads = new Semaphore(maxThreads);
+    }
+
+    /**
+     * Makes this validation the active one, until {@link #deactivate()} is called.
+     */
+    public static void activate(VirtualThreadValidation virtualThreadValidation) {
+        activeValidation.set(virtualThreadValidation);
+    }
+
+    public static void deactivate() {
+        activeValidation.set(null);
+    }
+
+    /**
+     * Returns the active validation, or null if I/O-heavy rules are validated like the others.
+     */
+    public static VirtualThreadValidation getActiveValidation() {
+        return activeValidation.get();
+    }
+
+    /**
+     * Validates the files, each on its own thread, in the given order (positions in the list of files, or null for
+     * the order of the list). The errors are returned in the order of the list, unless there is a sink: then they
+     * are handed to it file by file, and nothing is returned.
+     */
+    List<LintError> validateFiles(LintRule lintRule, List<File> files, LintErrorSink lintErrorSink,
+                                  int[] validationOrder) {
+        List<Future<List<LintError>>> fileErrors = Lists.newArrayList(Collections.nCopies(files.size(), null));
+        for (int i = 0; i < files.size(); i++) {
+            int position = validationOrder == null ? i : validationOrder[i];
+            fileErrors.set(position, submit(lintRule, files.get(position)));
+        }
+
+        try {
+            List<LintError> lintErrors = Lists.newArrayList();
+            for (Future<List<LintError>> future : fileErrors) {
+                LintRule.collectLintErrors(Uninterruptibles.getUninterruptibly(future), lintErrors, lintErrorSink);
+            }
+            return lintErrors;
+        }
+        catch (ExecutionException e) {
+            // Fail like the rule would have on the thread that validates it. The files that were already started
+            // are left to finish: cancelling them before they start would keep their permits.
+            Throwables.propagateIfPossible(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private Future<List<LintError>> submit(LintRule lintRule, File file) {
+        threads.acquireUninterruptibly();
+        try {
+            return executorService.submit(() -> {
+                try {
+                    return lintRule.validateFile(new SourceFile(file));
+                }
+                finally {
+                    threads.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            threads.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.selesse.jxlint.model.rules;
+
+/**
+ * What a rule spends most of its time doing (see {@link LintRule#getWorkload()}).
+ */
+public enum Workload {
+    /**
+     * Going through the contents of the file it was handed.
+     */
+    CPU,
+    /**
+     * Waiting: on other files, on external programs, on the network...
+     */
+    IO,
+}
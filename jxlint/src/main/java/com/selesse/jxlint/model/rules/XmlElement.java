@@ -0,0 +1,77 @@
+package com.selesse.jxlint.model.rules;
+
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The element an {@link XmlVisitor} is visiting. It is a view of the parser, which moves on to the next event as
+ * soon as the visitor returns, so nothing it returns should be asked for later: keep the strings instead.
+ *
+ * <p>
+ *     Names are the names as they appear in the file, prefix included, since files are parsed without namespaces.
+ * </p>
+ */
+public final class XmlElement {
+    private final XMLStreamReader reader;
+    private int depth;
+
+    XmlElement(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    public String getName() {
+        return reader.getLocalName();
+    }
+
+    /**
+     * Returns the depth of the element in the document: 1 for the root element, 2 for its children, and so on.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the line the tag ends on, which is where the parser is when the tag is visited.
+     */
+    public int getLineNumber() {
+        return reader.getLocation().getLineNumber();
+    }
+
+    public int getColumnNumber() {
+        return reader.getLocation().getColumnNumber();
+    }
+
+    /**
+     * Returns the number of attributes of the element. Attributes are only available while visiting the start tag.
+     */
+    public int getAttributeCount() {
+        return reader.getAttributeCount();
+    }
+
+    public String getAttributeName(int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    public String getAttributeValue(int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    /**
+     * Returns the value of the attribute with this name, or null if the element doesn't have it.
+     */
+    public String getAttributeValue(String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equals(name)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    void enter() {
+        depth++;
+    }
+
+    void leave() {
+        depth--;
+    }
+}
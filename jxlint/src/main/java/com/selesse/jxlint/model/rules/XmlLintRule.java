@@ -0,0 +1,106 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.Lists;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A {@link LintRule} that goes through XML files as a stream of parsing events: the declaration, then the start and
+ * end tags of every element, with their attributes. Nothing but the current event is kept while the file is parsed,
+ * so files of any size can be validated, and the line numbers are the ones the parser is at. Rules only see the
+ * events through the {@link XmlVisitor} they create for every file.
+ *
+ * <pre><code>
+ * public class MyRule extends XmlLintRule {
+ *     {@literal @}Override
+ *     public XmlVisitor visitFile(File file) {
+ *         List&lt;LintError&gt; lintErrorList = Lists.newArrayList();
+ *         return new XmlVisitor() {
+ *             {@literal @}Override
+ *             public void visitStartElement(XmlElement element) {
+ *                 if (element.getName().equals("bean") &amp;&amp; element.getAttributeValue("id") == null) {
+ *                     lintErrorList.add(LintError.with(MyRule.this, file).andLineNumber(element.getLineNumber())
+ *                             .andErrorMessage("Beans need an id").create());
+ *                 }
+ *             }
+ *
+ *             {@literal @}Override
+ *             public List&lt;LintError&gt; endFile() {
+ *                 return lintErrorList;
+ *             }
+ *         };
+ *     }
+ * }
+ * </code>
+ * </pre>
+ *
+ * <p>
+ *     When several XML rules are handed the same {@link SourceFile} (see
+ *     {@link com.selesse.jxlint.linter.ExecutionMode#FILE_MAJOR}), the file is only parsed once: every event is
+ *     handed to every rule's visitor before the next one is parsed.
+ * </p>
+ */
+public abstract class XmlLintRule extends LintRule {
+    private static final String MESSAGE_PREFIX = "\nMessage: ";
+
+    public XmlLintRule(String name, String summary, String detailedDescription, Severity severity,
+                       Enum<?> category) {
+        super(name, summary, detailedDescription, severity, category);
+    }
+
+    public XmlLintRule(String name, String summary, String detailedDescription, Severity severity,
+                       Enum<?> category, boolean isEnabledByDefault) {
+        super(name, summary, detailedDescription, severity, category, isEnabledByDefault);
+    }
+
+    /**
+     * Returns a visitor for the events of this file. Files may be visited concurrently, so anything the rule needs to
+     * remember about a file belongs in its visitor rather than in the rule.
+     */
+    public abstract XmlVisitor visitFile(File file);
+
+    /**
+     * Returns the errors of a file that turned out not to be well-formed before the rule's visitor was done with it.
+     * By default, the file is reported as one that couldn't be parsed, at the line of the error. Rules that look for
+     * a particular parse error override this.
+     */
+    protected List<LintError> getParseErrors(File file, XMLStreamException e) {
+        LintError.LintErrorBuilder lintErrorBuilder = LintError.with(this, file).andErrorMessage("Could not parse XML")
+                .andException(e);
+        Location location = e.getLocation();
+        if (location != null && location.getLineNumber() > 0) {
+            lintErrorBuilder.andLineNumber(location.getLineNumber());
+        }
+        return Lists.newArrayList(lintErrorBuilder.create());
+    }
+
+    /**
+     * Returns the message of a parse error as the parser wrote it, without the location the exception adds to it.
+     */
+    protected static String getParseErrorMessage(XMLStreamException e) {
+        String message = e.getMessage();
+        int messageStart = message == null ? -1 : message.indexOf(MESSAGE_PREFIX);
+        return messageStart < 0 ? message : message.substring(messageStart + MESSAGE_PREFIX.length());
+    }
+
+    /**
+     * Adapts {@link LintRule#getLintErrors(File)} to {@link #getLintErrors(SourceFile)}.
+     */
+    @Override
+    public final List<LintError> getLintErrors(File file) {
+        return validateFile(new SourceFile(file));
+    }
+
+    @Override
+    public final List<LintError> getLintErrors(SourceFile sourceFile) throws IOException {
+        XmlPass xmlPass = sourceFile.getXmlPass();
+        if (xmlPass != null && xmlPass.includes(this)) {
+            return xmlPass.getLintErrors(this, sourceFile);
+        }
+        return XmlPass.getLintErrorsAlone(this, sourceFile);
+    }
+}
@@ -0,0 +1,285 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A single streaming parse of an XML file for several {@link XmlLintRule}s, like a {@link LinePass} is a single read
+ * of the lines of a file. The first rule that asks for its errors parses the file for all of them, handing every
+ * event to every rule's visitor before moving on to the next one. Only the current event is ever in memory, so files
+ * of any size can be parsed.
+ *
+ * <p>
+ *     If the file isn't well-formed, the parse stops there, and every rule whose visitor wasn't done yet reports the
+ *     file as it sees fit (see {@link XmlLintRule#getParseErrors(java.io.File, XMLStreamException)}). Every rule of
+ *     the pass keeps its own concurrency limit and timeouts, like in a {@link LinePass} (see {@link PassBudget}).
+ * </p>
+ */
+class XmlPass {
+    // Events between two checks of the deadline
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final List<XmlLintRule> rules;
+    // Not a monitor, like the contents of the SourceFile
+    private final Lock lock = new ReentrantLock();
+    private volatile List<Object> results;
+
+    XmlPass(List<XmlLintRule> rules) {
+        this.rules = ImmutableList.copyOf(rules);
+    }
+
+    boolean includes(XmlLintRule rule) {
+        return rules.contains(rule);
+    }
+
+    /**
+     * Returns the errors the rule found in the file, parsing the file for every rule of the pass if it hasn't been
+     * parsed yet.
+     */
+    List<LintError> getLintErrors(XmlLintRule rule, SourceFile sourceFile) throws IOException {
+        if (results == null) {
+            lock.lock();
+            try {
+                if (results == null) {
+                    // A rule that is already out of time doesn't start a pass for the others
+                    Deadline.check();
+                    try (PassBudget passBudget = PassBudget.open(rule, rules, sourceFile.getFile())) {
+                        results = visitEvents(sourceFile, rules, passBudget);
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        Object result = results.get(rules.indexOf(rule));
+        return result == PassBudget.LEFT_OUT ? getLintErrorsAlone(rule, sourceFile) : getResult(result);
+    }
+
+    /**
+     * Parses the file once for a single rule.
+     */
+    static List<LintError> getLintErrorsAlone(XmlLintRule rule, SourceFile sourceFile) throws IOException {
+        return getResult(visitEvents(sourceFile, ImmutableList.of(rule), PassBudget.ALONE).get(0));
+    }
+
+    private static List<LintError> getResult(Object result) {
+        if (result instanceof RuntimeException) {
+            throw (RuntimeException) result;
+        }
+        @SuppressWarnings("unchecked")
+        List<LintError> lintErrors = (List<LintError>) result;
+        return lintErrors;
+    }
+
+    /**
+     * Parses the file for every rule the budget includes, and returns either the errors, the exception or
+     * {@link PassBudget#LEFT_OUT} for every rule.
+     */
+    private static List<Object> visitEvents(SourceFile sourceFile, List<XmlLintRule> rules, PassBudget passBudget)
+            throws IOException {
+        List<Object> results = Lists.newArrayListWithCapacity(rules.size());
+        try {
+            visitEvents(sourceFile, rules, passBudget, results);
+        }
+        catch (IOException | RuntimeException e) {
+            if (!passBudget.hasExpired(e)) {
+                throw e;
+            }
+            // Keep what the rules that were done found, so that only the others have to parse the file again
+            for (int i = 0; i < rules.size(); i++) {
+                if (i == results.size()) {
+                    results.add(passBudget.getUnfinishedResult(i));
+                }
+                else if (results.get(i) instanceof XmlVisitor) {
+                    results.set(i, passBudget.getUnfinishedResult(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void visitEvents(SourceFile sourceFile, List<XmlLintRule> rules, PassBudget passBudget,
+                                    List<Object> results) throws IOException {
+        XmlVisitor[] activeVisitors = new XmlVisitor[rules.size()];
+        int numberOfActiveVisitors = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            if (!passBudget.includes(i)) {
+                results.add(PassBudget.LEFT_OUT);
+                continue;
+            }
+            passBudget.startVisit(i);
+            try {
+                activeVisitors[i] = rules.get(i).visitFile(sourceFile.getFile());
+                results.add(activeVisitors[i]);
+                numberOfActiveVisitors++;
+            }
+            catch (ValidationTimeoutException e) {
+                throw e;
+            }
+            catch (RuntimeException e) {
+                results.add(e);
+            }
+            numberOfActiveVisitors -= endVisit(passBudget, i, activeVisitors, results);
+        }
+
+        XMLStreamException parseError = null;
+        // Parse the bytes rather than the cached contents, so that the parser picks up the declared encoding
+        try (InputStream inputStream = sourceFile.openStream()) {
+            XMLStreamReader reader = null;
+            try {
+                // Factories aren't guaranteed to be thread safe, but creating one means looking up the implementation
+                XMLInputFactory inputFactory = RuleContext.current().getXmlInputFactory();
+                reader = inputFactory.createXMLStreamReader(sourceFile.getFile().toURI().toString(), inputStream);
+                XmlElement element = new XmlElement(reader);
+                int event = XMLStreamConstants.START_DOCUMENT;
+                for (int numberOfEvents = 1; numberOfActiveVisitors > 0; numberOfEvents++) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        element.enter();
+                    }
+                    if (isVisited(event)) {
+                        numberOfActiveVisitors -= visitEvent(event, reader, element, activeVisitors, results,
+                                passBudget);
+                    }
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        element.leave();
+                    }
+                    if (numberOfEvents % CHECK_INTERVAL == 0) {
+                        Deadline.check();
+                    }
+                    if (!reader.hasNext()) {
+                        break;
+                    }
+                    event = reader.next();
+                }
+            }
+            catch (XMLStreamException e) {
+                parseError = e;
+            }
+            finally {
+                if (reader != null) {
+                    closeQuietly(reader);
+                }
+            }
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            if (parseError != null && activeVisitors[i] != null) {
+                // The visitor never saw the whole file
+                results.set(i, getParseErrors(rules.get(i), sourceFile, parseError));
+            }
+            else if (results.get(i) instanceof XmlVisitor) {
+                passBudget.startVisit(i);
+                results.set(i, endFile((XmlVisitor) results.get(i)));
+                endVisit(passBudget, i, activeVisitors, results);
+            }
+        }
+    }
+
+    private static boolean isVisited(int event) {
+        return event == XMLStreamConstants.START_DOCUMENT || event == XMLStreamConstants.START_ELEMENT ||
+                event == XMLStreamConstants.END_ELEMENT;
+    }
+
+    /**
+     * Hands the event to every active visitor, and returns the number of visitors that are done with the file, failed
+     * or ran out of time.
+     */
+    private static int visitEvent(int event, XMLStreamReader reader, XmlElement element, XmlVisitor[] activeVisitors,
+                                  List<Object> results, PassBudget passBudget) {
+        int numberOfFinishedVisitors = 0;
+        for (int i = 0; i < activeVisitors.length; i++) {
+            XmlVisitor visitor = activeVisitors[i];
+            if (visitor == null) {
+                continue;
+            }
+            passBudget.startVisit(i);
+            try {
+                if (event == XMLStreamConstants.START_DOCUMENT) {
+                    visitor.visitProlog(reader.getVersion(), reader.getCharacterEncodingScheme());
+                }
+                else if (event == XMLStreamConstants.START_ELEMENT) {
+                    visitor.visitStartElement(element);
+                    for (int j = 0; j < reader.getAttributeCount(); j++) {
+                        visitor.visitAttribute(element, j);
+                    }
+                }
+                else {
+                    visitor.visitEndElement(element);
+                }
+                if (visitor.isDone()) {
+                    activeVisitors[i] = null;
+                    numberOfFinishedVisitors++;
+                }
+            }
+            catch (ValidationTimeoutException e) {
+                throw e;
+            }
+            catch (RuntimeException e) {
+                activeVisitors[i] = null;
+                numberOfFinishedVisitors++;
+                results.set(i, e);
+            }
+            numberOfFinishedVisitors += endVisit(passBudget, i, activeVisitors, results);
+        }
+        return numberOfFinishedVisitors;
+    }
+
+    /**
+     * Charges the visit to the rule, and drops its visitor if the rule ran out of time. Returns the number of active
+     * visitors that were dropped.
+     */
+    private static int endVisit(PassBudget passBudget, int ruleIndex, XmlVisitor[] activeVisitors,
+                                List<Object> results) {
+        ValidationTimeoutException timeout = passBudget.endVisit();
+        if (timeout == null) {
+            return 0;
+        }
+        results.set(ruleIndex, timeout);
+        if (activeVisitors[ruleIndex] == null) {
+            return 0;
+        }
+        activeVisitors[ruleIndex] = null;
+        return 1;
+    }
+
+    private static Object getParseErrors(XmlLintRule rule, SourceFile sourceFile, XMLStreamException parseError) {
+        try {
+            return rule.getParseErrors(sourceFile.getFile(), parseError);
+        }
+        catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static Object endFile(XmlVisitor visitor) {
+        try {
+            return visitor.endFile();
+        }
+        catch (ValidationTimeoutException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        try {
+            reader.close();
+        }
+        catch (XMLStreamException e) {
+            // Only releases the parser: the stream is closed with the file
+        }
+    }
+}
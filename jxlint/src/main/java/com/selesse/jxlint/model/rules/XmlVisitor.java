@@ -0,0 +1,52 @@
+package com.selesse.jxlint.model.rules;
+
+import java.util.List;
+
+/**
+ * Goes through the events of a single XML file for an {@link XmlLintRule}, and keeps whatever the rule needs to
+ * remember about the file while it does. Only the events a rule cares about need to be overridden.
+ */
+public interface XmlVisitor {
+    /**
+     * Visits the XML declaration, before anything else. The version and the encoding are null if the file doesn't
+     * declare them, or doesn't have a declaration at all.
+     */
+    default void visitProlog(String version, String encoding) {
+    }
+
+    /**
+     * Visits the start tag of an element, before its attributes are visited. The element is a view of the parser,
+     * and is only valid during the call.
+     */
+    default void visitStartElement(XmlElement element) {
+    }
+
+    /**
+     * Visits an attribute of the element whose start tag was just visited, i.e.
+     * {@link XmlElement#getAttributeName(int)} and {@link XmlElement#getAttributeValue(int)} at this index.
+     */
+    default void visitAttribute(XmlElement element, int index) {
+    }
+
+    /**
+     * Visits the end tag of an element (or the end of an empty element tag). The attributes of the element are no
+     * longer available.
+     */
+    default void visitEndElement(XmlElement element) {
+    }
+
+    /**
+     * Returns true once the visitor doesn't need to see any more events, i.e. when it has found what it was looking
+     * for. The file is only parsed until every visitor is done.
+     */
+    default boolean isDone() {
+        return false;
+    }
+
+    /**
+     * Called once the whole file has been parsed (or the visitor is done), and returns the errors found in the file.
+     * If the file turns out not to be well-formed before the visitor is done, the rule reports the file instead (see
+     * {@link XmlLintRule#getParseErrors(java.io.File, javax.xml.stream.XMLStreamException)}).
+     */
+    List<LintError> endFile();
+}
@@ -25,6 +25,11 @@ class DefaultReporter extends Reporter {
         super(out, programSettings, options, lintErrorList);
     }
 
+    @Override
+    protected boolean supportsStreaming() {
+        return true;
+    }
+
     @Override
     public void printHeader() {
     }
@@ -68,7 +73,7 @@ class DefaultReporter extends Reporter {
 
     @Override
     public void printFooter() {
-        if (lintErrorList.size() > 0) {
+        if (getNumberOfErrors() > 0) {
             out.println(getErrorReportString());
         }
     }
@@ -38,6 +38,13 @@ class HtmlTemplatedReporter extends Reporter {
     public HtmlTemplatedReporter(PrintStream out, ProgramSettings settings, ProgramOptions options,
                                  List<LintError> lintErrorList) {
         super(out, settings, options, lintErrorList);
+    }
+
+    /**
+     * Counts the errors of every rule and category. This is done when writing the report, since the errors may have
+     * been handed to a sink (see {@link #createSink()}) after this reporter was created.
+     */
+    private void summarizeLintErrors() {
         Set<Enum<?>> violatedCategories = Sets.newTreeSet((o1, o2) -> o1.toString().compareToIgnoreCase(o2.toString()));
         summaryMap = Maps.newTreeMap((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
         lintRuleSet = Sets.newLinkedHashSet();
@@ -62,6 +69,8 @@ class HtmlTemplatedReporter extends Reporter {
 
     @Override
     public void writeReport() {
+        summarizeLintErrors();
+
         Properties velocityProperties = new Properties();
         velocityProperties.setProperty(RuntimeConstants.RESOURCE_LOADER, "classpath");
         velocityProperties.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
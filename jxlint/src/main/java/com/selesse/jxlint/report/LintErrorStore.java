@@ -0,0 +1,547 @@
+package com.selesse.jxlint.report;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A list of errors that keeps at most a given number of them in memory, and spills the others to temporary files,
+ * so that a report can be written for more errors than would fit in memory. Reporters take it like any other list
+ * (see {@link Reporter#lintErrorList}), as long as they only iterate over it and sort it.
+ *
+ * <p>
+ *     The list is always sorted: errors are kept in the order it was created with, errors that are equal in that
+ *     order staying in the order they were added. Sorting it (see {@link #sort(Comparator)}) sorts it stably, like
+ *     {@link java.util.Collections#sort(List, Comparator)} would. Once the errors in memory reach the maximum, they
+ *     are sorted and written to a temporary file, a "run". Iterating goes through a merge of every run and the
+ *     errors still in memory, reading each run a bit at a time. A run that isn't in the order of the list anymore
+ *     is checked, and sorted again in pieces that fit in memory only if it has to be. Sorting in the order the list
+ *     is already in costs nothing.
+ * </p>
+ *
+ * <p>
+ *     Runs are compressed, and point to the rules, files and exceptions of their errors by their index in tables
+ *     that stay in memory: there are far fewer of those than errors. {@link #get(int)} goes through the errors one
+ *     after the other, so iterating is the way to go over them. The temporary files are deleted by
+ *     {@link #close()}, or when the program exits.
+ * </p>
+ */
+public class LintErrorStore extends AbstractList<LintError> implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LintErrorStore.class);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Smaller, since a merge reads every run at once.
+     */
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final int maxErrorsInMemory;
+    private final File directory;
+    private final List<LintRule> rules = Lists.newArrayList();
+    private final Map<LintRule, Integer> ruleIndexes = Maps.newIdentityHashMap();
+    private final List<File> files = Lists.newArrayList();
+    private final Map<File, Integer> fileIndexes = Maps.newHashMap();
+    private final List<Exception> exceptions = Lists.newArrayList();
+    private final Map<Exception, Integer> exceptionIndexes = Maps.newIdentityHashMap();
+    private final List<Run> runs = Lists.newArrayList();
+    private List<LintError> errorsInMemory = Lists.newArrayList();
+    /**
+     * The order of the list, which every run was written in, or was checked to be in.
+     */
+    private Comparator<LintError> order;
+    private Comparator<LintError> orderOfErrorsInMemory;
+    private int size;
+
+    /**
+     * Creates an empty list, sorted in this order, that spills its errors to temporary files in the directory (or
+     * the default temporary directory, if it's null) as soon as there are more than maxErrorsInMemory of them in
+     * memory.
+     */
+    public LintErrorStore(int maxErrorsInMemory, File directory, Comparator<LintError> order) {
+        Preconditions.checkArgument(maxErrorsInMemory >= 1, "maxErrorsInMemory must be 1 or more");
+        this.maxErrorsInMemory = maxErrorsInMemory;
+        this.directory = directory;
+        this.order = order;
+        this.orderOfErrorsInMemory = order;
+    }
+
+    /**
+     * Adds the error where it belongs in the order of the list, after the errors that are equal to it.
+     */
+    @Override
+    public boolean add(LintError lintError) {
+        errorsInMemory.add(lintError);
+        orderOfErrorsInMemory = null;
+        size++;
+        modCount++;
+        if (errorsInMemory.size() >= maxErrorsInMemory) {
+            spill();
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Goes through the errors until it gets to the one at that index. Prefer {@link #iterator()}.
+     */
+    @Override
+    public LintError get(int index) {
+        Preconditions.checkElementIndex(index, size);
+        Iterator<LintError> iterator = iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        LintError lintError = iterator.next();
+        ((MergingIterator) iterator).close();
+        return lintError;
+    }
+
+    /**
+     * Sorts the list stably, by comparator first, and then in the order it was in. The work is left to the next
+     * iteration, which only sorts the runs that aren't in the new order already.
+     */
+    @Override
+    public void sort(Comparator<? super LintError> comparator) {
+        if (comparator != order) {
+            Comparator<LintError> newOrder = comparator::compare;
+            order = newOrder.thenComparing(order);
+            modCount++;
+        }
+    }
+
+    /**
+     * Returns the errors in the order of the list, merging the runs and the errors in memory as it goes. The runs
+     * are closed once every error has been read.
+     */
+    @Override
+    public Iterator<LintError> iterator() {
+        try {
+            prepareRuns();
+            List<RunReader> readers = Lists.newArrayListWithCapacity(runs.size());
+            for (Run run : runs) {
+                readers.add(new RunReader(run));
+            }
+            return new MergingIterator(readers);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not read the errors spilled to " + getDirectory(), e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        deleteRuns();
+        errorsInMemory = Lists.newArrayList();
+        rules.clear();
+        ruleIndexes.clear();
+        files.clear();
+        fileIndexes.clear();
+        exceptions.clear();
+        exceptionIndexes.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Deletes the temporary files. The list is empty afterwards.
+     */
+    @Override
+    public void close() {
+        clear();
+    }
+
+    /**
+     * The number of runs written to temporary files so far.
+     */
+    public int getNumberOfRuns() {
+        return runs.size();
+    }
+
+    private void spill() {
+        if (orderOfErrorsInMemory != order) {
+            errorsInMemory.sort(order);
+        }
+        try {
+            runs.add(writeRun(errorsInMemory));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not spill errors to " + getDirectory(), e);
+        }
+        errorsInMemory = Lists.newArrayList();
+        orderOfErrorsInMemory = order;
+    }
+
+    /**
+     * Puts every run and the errors in memory in the order of the list. The runs stay in the order they were
+     * written, so that errors that are equal in that order come out in the order they were added.
+     */
+    private void prepareRuns() throws IOException {
+        if (orderOfErrorsInMemory != order) {
+            errorsInMemory.sort(order);
+            orderOfErrorsInMemory = order;
+        }
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            if (run.order == order) {
+                continue;
+            }
+            if (isInOrder(run)) {
+                run.order = order;
+                continue;
+            }
+
+            List<Run> sortedRuns = sortRun(run);
+            runs.remove(i);
+            runs.addAll(i, sortedRuns);
+            i += sortedRuns.size() - 1;
+            run.delete();
+        }
+    }
+
+    private boolean isInOrder(Run run) throws IOException {
+        try (RunReader reader = new RunReader(run)) {
+            LintError previous = reader.next();
+            for (LintError lintError = reader.next(); lintError != null; lintError = reader.next()) {
+                if (order.compare(previous, lintError) > 0) {
+                    return false;
+                }
+                previous = lintError;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts a run again, in pieces that fit in memory, which become runs of their own. If that fails, the pieces
+     * written so far are deleted, and the run is left as it was.
+     */
+    private List<Run> sortRun(Run run) throws IOException {
+        LOGGER.debug("Sorting the {} errors of {} again", run.size, run.file);
+        List<Run> sortedRuns = Lists.newArrayList();
+        boolean isSorted = false;
+        try (RunReader reader = new RunReader(run)) {
+            List<LintError> piece = Lists.newArrayList();
+            for (LintError lintError = reader.next(); lintError != null; lintError = reader.next()) {
+                piece.add(lintError);
+                if (piece.size() == maxErrorsInMemory) {
+                    piece.sort(order);
+                    sortedRuns.add(writeRun(piece));
+                    piece = Lists.newArrayList();
+                }
+            }
+            if (!piece.isEmpty()) {
+                piece.sort(order);
+                sortedRuns.add(writeRun(piece));
+            }
+            isSorted = true;
+        }
+        finally {
+            if (!isSorted) {
+                for (Run sortedRun : sortedRuns) {
+                    sortedRun.delete();
+                }
+            }
+        }
+        return sortedRuns;
+    }
+
+    /**
+     * Writes the errors to a new run. The file is deleted if they can't all be written.
+     */
+    private Run writeRun(List<LintError> lintErrors) throws IOException {
+        File runFile = File.createTempFile("jxlint-errors", ".run", directory);
+        runFile.deleteOnExit();
+        Run run = new Run(runFile, lintErrors.size(), order);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        boolean isWritten = false;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+                new FileOutputStream(runFile), deflater, WRITE_BUFFER_SIZE), WRITE_BUFFER_SIZE))) {
+            for (LintError lintError : lintErrors) {
+                writeLintError(output, lintError);
+            }
+            isWritten = true;
+        }
+        finally {
+            deflater.end();
+            if (!isWritten) {
+                run.delete();
+            }
+        }
+        LOGGER.debug("Spilled {} errors to {} ({} bytes)", lintErrors.size(), runFile, runFile.length());
+        return run;
+    }
+
+    /**
+     * Writes the rule, file, line number, message, severity and exception of an error, the rule, file and exception
+     * as their index in their table. The severity is only kept if it's not the rule's. Exceptions are compared by
+     * identity, like rules, so that writing the same error again (when a run is sorted again) doesn't add to the
+     * table.
+     */
+    private void writeLintError(DataOutputStream output, LintError lintError) throws IOException {
+        writeVarInt(output, indexOf(lintError.getViolatedRule(), rules, ruleIndexes));
+        writeVarInt(output, indexOf(lintError.getFile(), files, fileIndexes));
+        // Zigzag, since the line number can be negative
+        writeVarInt(output, (lintError.getLineNumber() << 1) ^ (lintError.getLineNumber() >> 31));
+        if (lintError.getMessage() == null) {
+            writeVarInt(output, 0);
+        }
+        else {
+            byte[] message = lintError.getMessage().getBytes(Charsets.UTF_8);
+            writeVarInt(output, message.length + 1);
+            output.write(message);
+        }
+        Severity severity = lintError.getSeverity();
+        output.writeByte(severity == lintError.getViolatedRule().getSeverity() ? 0 : severity.ordinal() + 1);
+        if (lintError.getException() == null) {
+            writeVarInt(output, 0);
+        }
+        else {
+            writeVarInt(output, indexOf(lintError.getException(), exceptions, exceptionIndexes) + 1);
+        }
+    }
+
+    private LintError readLintError(DataInputStream input) throws IOException {
+        LintRule rule = rules.get(readVarInt(input));
+        File file = files.get(readVarInt(input));
+        int zigzagLineNumber = readVarInt(input);
+        int lineNumber = (zigzagLineNumber >>> 1) ^ -(zigzagLineNumber & 1);
+        String message = null;
+        int messageLength = readVarInt(input) - 1;
+        if (messageLength >= 0) {
+            byte[] bytes = new byte[messageLength];
+            input.readFully(bytes);
+            message = new String(bytes, Charsets.UTF_8);
+        }
+        int severity = input.readUnsignedByte();
+        int exception = readVarInt(input);
+        return LintError.with(rule, file)
+                .andLineNumber(lineNumber)
+                .andErrorMessage(message)
+                .andSeverity(severity == 0 ? null : Severity.values()[severity - 1])
+                .andException(exception == 0 ? null : exceptions.get(exception - 1))
+                .create();
+    }
+
+    private static <T> int indexOf(T item, List<T> table, Map<T, Integer> indexes) {
+        Integer index = indexes.get(item);
+        if (index == null) {
+            index = table.size();
+            table.add(item);
+            indexes.put(item, index);
+        }
+        return index;
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in a run of errors");
+    }
+
+    private void deleteRuns() {
+        for (Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+    private String getDirectory() {
+        return directory != null ? directory.getPath() : System.getProperty("java.io.tmpdir");
+    }
+
+    /**
+     * A temporary file of errors, and the order they are known to be in.
+     */
+    private static class Run {
+        private final File file;
+        private final int size;
+        private Comparator<LintError> order;
+
+        Run(File file, int size, Comparator<LintError> order) {
+            this.file = file;
+            this.size = size;
+            this.order = order;
+        }
+
+        void delete() {
+            if (!file.delete() && file.exists()) {
+                LOGGER.warn("Could not delete {}", file);
+            }
+        }
+    }
+
+    /**
+     * Reads the errors of a run, one at a time.
+     */
+    private class RunReader implements Closeable {
+        private final Inflater inflater = new Inflater();
+        private final DataInputStream input;
+        private int remaining;
+
+        RunReader(Run run) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+                    new FileInputStream(run.file), inflater, READ_BUFFER_SIZE), READ_BUFFER_SIZE));
+            this.remaining = run.size;
+        }
+
+        /**
+         * Returns the next error, or null once there are none left.
+         */
+        LintError next() throws IOException {
+            if (remaining == 0) {
+                close();
+                return null;
+            }
+            remaining--;
+            return readLintError(input);
+        }
+
+        @Override
+        public void close() throws IOException {
+            remaining = 0;
+            try {
+                input.close();
+            }
+            finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Merges the runs and the errors in memory. The next error is the smallest of the next error of every run, the
+     * one from the first run if there's a tie, with the errors in memory coming last since they were added last.
+     */
+    private class MergingIterator implements Iterator<LintError> {
+        private final List<RunReader> readers;
+        private final PriorityQueue<Head> heads;
+        private final int expectedModCount = modCount;
+
+        MergingIterator(List<RunReader> readers) throws IOException {
+            this.readers = readers;
+            this.heads = new PriorityQueue<>(readers.size() + 1);
+            for (int i = 0; i < readers.size(); i++) {
+                LintError lintError = readers.get(i).next();
+                if (lintError != null) {
+                    heads.add(new Head(lintError, i));
+                }
+            }
+            if (!errorsInMemory.isEmpty()) {
+                heads.add(new Head(errorsInMemory.get(0), readers.size()));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public LintError next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+
+            LintError lintError = head.lintError;
+            head.position++;
+            if (head.source == readers.size()) {
+                head.lintError = head.position < errorsInMemory.size() ? errorsInMemory.get(head.position) : null;
+            }
+            else {
+                try {
+                    head.lintError = readers.get(head.source).next();
+                }
+                catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException("Could not read the errors spilled to " + getDirectory(), e);
+                }
+            }
+            if (head.lintError != null) {
+                heads.add(head);
+            }
+            return lintError;
+        }
+
+        void close() {
+            heads.clear();
+            for (RunReader reader : readers) {
+                try {
+                    reader.close();
+                }
+                catch (IOException e) {
+                    LOGGER.debug("Could not close a run", e);
+                }
+            }
+        }
+
+        /**
+         * The next error of a run, or of the errors in memory.
+         */
+        private class Head implements Comparable<Head> {
+            private final int source;
+            private LintError lintError;
+            private int position;
+
+            Head(LintError lintError, int source) {
+                this.lintError = lintError;
+                this.source = source;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                int byOrder = order.compare(lintError, other.lintError);
+                return byOrder != 0 ? byOrder : Integer.compare(source, other.source);
+            }
+        }
+    }
+}
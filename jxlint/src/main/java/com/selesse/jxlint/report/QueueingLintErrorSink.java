@@ -0,0 +1,95 @@
+package com.selesse.jxlint.report;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands the errors over to another sink, which is only ever called from a thread of its own. The threads that find
+ * the errors don't wait for each other, and don't wait for the other sink either, unless it falls behind: once
+ * there are too many errors waiting, they have to wait for room in the queue. That way, a slow reporter slows the
+ * validation down, instead of the errors piling up in memory.
+ *
+ * <p>
+ *     If the other sink throws an exception, the remaining errors are dropped, and the exception is thrown again
+ *     when this sink is closed.
+ * </p>
+ */
+public class QueueingLintErrorSink implements LintErrorSink {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueingLintErrorSink.class);
+    /**
+     * How many batches of errors (usually, the errors of a file) can be waiting for the other sink.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final List<LintError> END_OF_ERRORS = ImmutableList.of();
+
+    private final LintErrorSink lintErrorSink;
+    private final BlockingQueue<List<LintError>> queue;
+    private final Thread writerThread;
+    private volatile RuntimeException failure;
+
+    public QueueingLintErrorSink(LintErrorSink lintErrorSink) {
+        this(lintErrorSink, DEFAULT_CAPACITY);
+    }
+
+    public QueueingLintErrorSink(LintErrorSink lintErrorSink, int capacity) {
+        this.lintErrorSink = lintErrorSink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::writeLintErrors, "jxlint-error-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void accept(LintError lintError) {
+        Uninterruptibles.putUninterruptibly(queue, ImmutableList.of(lintError));
+    }
+
+    @Override
+    public void acceptAll(Collection<LintError> lintErrors) {
+        if (!lintErrors.isEmpty()) {
+            Uninterruptibles.putUninterruptibly(queue, ImmutableList.copyOf(lintErrors));
+        }
+    }
+
+    /**
+     * Waits for the other sink to get every error, then closes it.
+     */
+    @Override
+    public void close() {
+        Uninterruptibles.putUninterruptibly(queue, END_OF_ERRORS);
+        Uninterruptibles.joinUninterruptibly(writerThread);
+        if (failure != null) {
+            throw failure;
+        }
+        lintErrorSink.close();
+    }
+
+    private void writeLintErrors() {
+        while (true) {
+            List<LintError> lintErrors = Uninterruptibles.takeUninterruptibly(queue);
+            if (lintErrors == END_OF_ERRORS) {
+                return;
+            }
+            if (failure != null) {
+                // Keep emptying the queue, so that nobody waits for room forever
+                continue;
+            }
+            try {
+                lintErrorSink.acceptAll(lintErrors);
+            }
+            catch (RuntimeException e) {
+                LOGGER.error("Could not hand over errors, dropping the remaining ones", e);
+                failure = e;
+            }
+        }
+    }
+}
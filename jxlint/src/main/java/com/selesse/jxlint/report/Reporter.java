@@ -1,12 +1,17 @@
 package com.selesse.jxlint.report;
 
+import com.google.common.collect.EnumMultiset;
+import com.google.common.collect.Multiset;
+import com.selesse.jxlint.model.JxlintOption;
 import com.selesse.jxlint.model.LintErrorOrderings;
 import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
 import com.selesse.jxlint.model.rules.Severity;
 import com.selesse.jxlint.settings.ProgramSettings;
 
 import java.io.PrintStream;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -22,6 +27,10 @@ public abstract class Reporter {
     protected ProgramSettings settings;
     protected ProgramOptions options;
     protected List<LintError> lintErrorList;
+    /**
+     * The severities of the errors that were printed as they were found, rather than put in {@link #lintErrorList}.
+     */
+    private final Multiset<Severity> streamedSeverities = EnumMultiset.create(Severity.class);
 
     public Reporter(PrintStream out, ProgramSettings settings, ProgramOptions options, List<LintError> lintErrorList) {
         this.out = out;
@@ -47,6 +56,41 @@ public abstract class Reporter {
             printError(error);
         }
         printFooter();
+        closeOutput();
+    }
+
+    /**
+     * Whether this reporter can print the errors in the order they are found, as they are found. Reporters that
+     * need every error before they can print anything (to sort them, for instance) return false, which is the
+     * default.
+     */
+    protected boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * Whether the errors are printed as they are found: when the reporter supports it, and the "stream" option is
+     * given.
+     */
+    public final boolean isStreaming() {
+        return supportsStreaming() && options != null && options.hasOption(JxlintOption.STREAM);
+    }
+
+    /**
+     * Returns a sink to hand the errors to as they are found, instead of passing them to the constructor. The
+     * report is done once the sink is closed. When streaming (see {@link #isStreaming()}), every error is printed
+     * right away, on a thread of its own (see {@link QueueingLintErrorSink}), so the errors never all have to be in
+     * memory. Otherwise, they are collected, and the report is written like {@link #writeReport()} when the sink is
+     * closed.
+     */
+    public LintErrorSink createSink() {
+        if (isStreaming()) {
+            return new QueueingLintErrorSink(new StreamingSink());
+        }
+        return new BufferingSink();
+    }
+
+    private void closeOutput() {
         if (out != System.out) {
             out.close();
         }
@@ -79,25 +123,83 @@ public abstract class Reporter {
      * "There are 4 errors, 0 warnings, and 1 fatal error (5 total)."
      */
     String getErrorReportString() {
-        int numberOfErrors = getNumberOfSeverityErrors(Severity.ERROR);
-        int numberOfWarnings = getNumberOfSeverityErrors(Severity.WARNING);
-        int numberOfFatal = getNumberOfSeverityErrors(Severity.FATAL);
+        // Counted in one pass, since the errors may be spilled to disk (see LintErrorStore)
+        Multiset<Severity> severities = EnumMultiset.create(Severity.class);
+        for (LintError lintError : lintErrorList) {
+            severities.add(lintError.getViolatedRule().getSeverity());
+        }
+        severities.addAll(streamedSeverities);
+        int numberOfErrors = severities.count(Severity.ERROR);
+        int numberOfWarnings = severities.count(Severity.WARNING);
+        int numberOfFatal = severities.count(Severity.FATAL);
 
         return String.format("There are %s, %s, and %s (%d total).",
                     pluralize(numberOfWarnings, "warning"),
                     pluralize(numberOfErrors, "error"),
                     pluralize(numberOfFatal, "fatal error"),
-                    lintErrorList.size()
+                    getNumberOfErrors()
         );
     }
 
-    private String pluralize(int numberOfErrors, String error) {
-        return numberOfErrors + " " + (numberOfErrors == 1 ? error : error + "s");
+    /**
+     * Returns the number of errors reported so far.
+     */
+    protected int getNumberOfErrors() {
+        return lintErrorList.size() + streamedSeverities.size();
     }
 
-    private int getNumberOfSeverityErrors(final Severity severity) {
-        return (int) lintErrorList.stream()
-                .filter(input -> input.getViolatedRule().getSeverity() == severity)
-                .count();
+    /**
+     * Collects the errors, and writes the report once they are all in. They are sorted by category, rule, file and
+     * line number, so that {@link #writeReport()}, which sorts them by category and rule, leaves them in a predictable
+     * order, whichever order they were found in. A {@link LintErrorStore} is already in that order.
+     */
+    private class BufferingSink implements LintErrorSink {
+        @Override
+        public synchronized void accept(LintError lintError) {
+            lintErrorList.add(lintError);
+        }
+
+        @Override
+        public synchronized void acceptAll(Collection<LintError> lintErrors) {
+            lintErrorList.addAll(lintErrors);
+        }
+
+        @Override
+        public synchronized void close() {
+            Collections.sort(lintErrorList, LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+            writeReport();
+        }
+    }
+
+    /**
+     * Prints every error as it comes. It is only ever called by one thread at a time.
+     */
+    private class StreamingSink implements LintErrorSink {
+        private Enum<?> lastCategory;
+
+        StreamingSink() {
+            printHeader();
+        }
+
+        @Override
+        public void accept(LintError lintError) {
+            Enum<?> currentCategory = lintError.getViolatedRule().getCategory();
+            if (currentCategory != lastCategory) {
+                printCategoryHeader(currentCategory);
+                lastCategory = currentCategory;
+            }
+            printError(lintError);
+            streamedSeverities.add(lintError.getViolatedRule().getSeverity());
+        }
+
+        @Override
+        public void close() {
+            printFooter();
+            closeOutput();
+        }
+    }
+
+    private String pluralize(int numberOfErrors, String error) {
+        return numberOfErrors + " " + (numberOfErrors == 1 ? error : error + "s");
     }
 }
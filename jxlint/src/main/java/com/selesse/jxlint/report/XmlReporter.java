@@ -28,6 +28,14 @@ class XmlReporter extends Reporter {
         super(out, programSettings, options, lintErrorList);
     }
 
+    /**
+     * The issues don't need to be in any particular order, so they can be printed as they are found.
+     */
+    @Override
+    protected boolean supportsStreaming() {
+        return true;
+    }
+
     @Override
     public void printHeader() {
         out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
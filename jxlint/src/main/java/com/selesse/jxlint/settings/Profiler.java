@@ -1,54 +1,92 @@
 package com.selesse.jxlint.settings;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheStats;
 import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.report.color.Color;
+import com.selesse.jxlint.utils.RunContext;
 
+import java.io.File;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 
 public class Profiler {
-    private static Profiler instance = new Profiler();
+    private static final RunContext.Slot<Profiler> instance = RunContext.newSlot(Profiler::new);
 
     private Stopwatch stopwatch;
-    private boolean isEnabled;
-    private Map<LintRule, Long> ruleExecutionTimeMap;
+    private volatile boolean isEnabled;
+    // Rules report their times from the threads that ran them, so everything recorded during a run is concurrent
+    private final ConcurrentMap<LintRule, Long> ruleExecutionTimeMap;
+    private final ConcurrentMap<String, CacheStats> cacheStatsMap;
+    private final Queue<String> timeouts;
 
     private Profiler() {
-        ruleExecutionTimeMap = new TreeMap<>((rule1, rule2) -> rule1.getName().compareToIgnoreCase(rule2.getName()));
+        Comparator<LintRule> byName = (rule1, rule2) -> rule1.getName().compareToIgnoreCase(rule2.getName());
+        ruleExecutionTimeMap = new ConcurrentSkipListMap<>(byName);
+        cacheStatsMap = new ConcurrentSkipListMap<>();
+        timeouts = new ConcurrentLinkedQueue<>();
     }
 
     public static void beginProgramProfiling() {
-        instance.stopwatch = Stopwatch.createStarted();
+        instance.get().stopwatch = Stopwatch.createStarted();
     }
 
     public static void endProgramProfiling() {
-        instance.stopwatch = instance.stopwatch.stop();
+        instance.get().stopwatch = instance.get().stopwatch.stop();
     }
 
     public static boolean isEnabled() {
-        return instance.isEnabled;
+        return instance.get().isEnabled;
     }
 
     public static void setEnabled(boolean isEnabled) {
-        instance.isEnabled = isEnabled;
+        instance.get().isEnabled = isEnabled;
     }
 
+    /**
+     * Records how long a rule took to run. Like everything else that is recorded, this can be called from any thread.
+     */
     public static void addExecutionTime(LintRule lintRule, long executionTimeMs) {
-        instance.ruleExecutionTimeMap.put(lintRule, executionTimeMs);
+        instance.get().ruleExecutionTimeMap.put(lintRule, executionTimeMs);
+    }
+
+    /**
+     * Returns how long a rule took to run the last time it ran, or null if it hasn't been recorded.
+     */
+    public static Long getExecutionTime(LintRule lintRule) {
+        return instance.get().ruleExecutionTimeMap.get(lintRule);
+    }
+
+    /**
+     * Records the hits, misses and evictions of a cache. Statistics recorded under the same name are added up.
+     */
+    public static void addCacheStats(String cacheName, CacheStats cacheStats) {
+        instance.get().cacheStatsMap.merge(cacheName, cacheStats, CacheStats::plus);
+    }
+
+    /**
+     * Records that a rule ran out of time, on a file or (if the file is null) altogether.
+     */
+    public static void addTimeout(LintRule lintRule, File file, String message) {
+        instance.get().timeouts.add(String.format("%-40s %s%s", lintRule.getName(), message,
+                file == null ? "" : " (" + file.getPath() + ")"));
     }
 
     private static String getJxlintRuntimeReportString() {
         return String.format("Program completed in %3.3f seconds.",
-                (instance.stopwatch.elapsed(TimeUnit.MILLISECONDS)) / 1000.0);
+                (instance.get().stopwatch.elapsed(TimeUnit.MILLISECONDS)) / 1000.0);
     }
 
     private static String getRuleReportString() {
         StringBuilder ruleReport = new StringBuilder();
         boolean shouldPrintBold = false;
 
-        for (Map.Entry<LintRule, Long> lintRuleAndLongEntry : instance.ruleExecutionTimeMap.entrySet()) {
+        for (Map.Entry<LintRule, Long> lintRuleAndLongEntry : instance.get().ruleExecutionTimeMap.entrySet()) {
             LintRule lintRule = lintRuleAndLongEntry.getKey();
             long executionTimeMs = lintRuleAndLongEntry.getValue();
 
@@ -66,6 +104,30 @@ public class Profiler {
         return ruleReport.toString();
     }
 
+    private static String getCacheReportString() {
+        StringBuilder cacheReport = new StringBuilder();
+
+        for (Map.Entry<String, CacheStats> cacheNameAndStatsEntry : instance.get().cacheStatsMap.entrySet()) {
+            CacheStats cacheStats = cacheNameAndStatsEntry.getValue();
+
+            cacheReport.append(String.format("%-40s %d hits, %d misses, %d evictions (%3.1f%% hit rate)",
+                    cacheNameAndStatsEntry.getKey(), cacheStats.hitCount(), cacheStats.missCount(),
+                    cacheStats.evictionCount(), cacheStats.hitRate() * 100)).append("\n");
+        }
+
+        return cacheReport.toString();
+    }
+
+    private static String getTimeoutReportString() {
+        StringBuilder timeoutReport = new StringBuilder();
+
+        for (String timeout : instance.get().timeouts) {
+            timeoutReport.append(timeout).append("\n");
+        }
+
+        return timeoutReport.toString();
+    }
+
     public static String getGeneratedProfileReport() {
         String profileReport = "\n\n" + getJxlintRuntimeReportString();
 
@@ -74,6 +136,16 @@ public class Profiler {
             profileReport += "\n\n" + getRuleReportString();
         }
 
+        String cacheReportString = getCacheReportString();
+        if (cacheReportString.trim().length() > 0) {
+            profileReport += "\n" + cacheReportString;
+        }
+
+        String timeoutReportString = getTimeoutReportString();
+        if (timeoutReportString.trim().length() > 0) {
+            profileReport += "\nTimeouts:\n" + timeoutReportString;
+        }
+
         return profileReport;
     }
 
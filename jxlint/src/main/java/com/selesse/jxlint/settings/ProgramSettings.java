@@ -17,4 +17,21 @@ public interface ProgramSettings {
     String getProgramName();
 
     void initializeForWeb(File projectRoot);
+
+    /**
+     * The number of threads that run the rules, unless the command line says otherwise. 0, the default, means one
+     * per processor that jxlint can use (see {@link com.selesse.jxlint.utils.CpuQuota}).
+     */
+    default int getNumberOfThreads() {
+        return 0;
+    }
+
+    /**
+     * The number of threads that read files ahead of the rules and run I/O-heavy rules (see
+     * {@link com.selesse.jxlint.model.rules.LintRule#getWorkload()}), unless the command line says otherwise. 0, the
+     * default, means none: the threads that run the rules read the files themselves.
+     */
+    default int getNumberOfIoThreads() {
+        return 0;
+    }
 }
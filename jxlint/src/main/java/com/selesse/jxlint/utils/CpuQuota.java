@@ -0,0 +1,91 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The number of processors jxlint can actually use. In a container, {@link Runtime#availableProcessors()} can be
+ * the number of processors of the whole machine, even though the container's CPU quota only lets it use a couple of
+ * them: running a thread per processor then only adds contention. The quota is read from the Linux control groups
+ * (version 2, then version 1), if there is one.
+ */
+public final class CpuQuota {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CpuQuota.class);
+
+    private static final File CGROUP_V2_CPU_MAX = new File("/sys/fs/cgroup/cpu.max");
+    private static final File CGROUP_V1_QUOTA = new File("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+    private static final File CGROUP_V1_PERIOD = new File("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+
+    private static final int AVAILABLE_PROCESSORS =
+            getAvailableProcessors(Runtime.getRuntime().availableProcessors(), readQuota());
+
+    private CpuQuota() {
+    }
+
+    /**
+     * Returns the number of processors, limited by the CPU quota.
+     */
+    public static int getAvailableProcessors() {
+        return AVAILABLE_PROCESSORS;
+    }
+
+    @VisibleForTesting
+    static int getAvailableProcessors(int processors, double quota) {
+        if (quota <= 0) {
+            return processors;
+        }
+        return Math.max(1, Math.min(processors, (int) Math.ceil(quota)));
+    }
+
+    /**
+     * Returns how many processors' worth of time the quota allows, or 0 if there is no quota.
+     */
+    private static double readQuota() {
+        try {
+            if (CGROUP_V2_CPU_MAX.isFile()) {
+                return parseCpuMax(Files.toString(CGROUP_V2_CPU_MAX, Charsets.UTF_8));
+            }
+            if (CGROUP_V1_QUOTA.isFile() && CGROUP_V1_PERIOD.isFile()) {
+                return parseQuota(Files.toString(CGROUP_V1_QUOTA, Charsets.UTF_8),
+                        Files.toString(CGROUP_V1_PERIOD, Charsets.UTF_8));
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("Could not read the CPU quota, using every processor", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a "cpu.max" file: "max 100000" if there is no quota, or "200000 100000" for two processors.
+     */
+    @VisibleForTesting
+    static double parseCpuMax(String cpuMax) {
+        List<String> quotaAndPeriod = Splitter.on(' ').trimResults().omitEmptyStrings().splitToList(cpuMax);
+        if (quotaAndPeriod.size() != 2 || quotaAndPeriod.get(0).equals("max")) {
+            return 0;
+        }
+        return parseQuota(quotaAndPeriod.get(0), quotaAndPeriod.get(1));
+    }
+
+    /**
+     * Parses a quota and a period, in microseconds. A negative quota ("-1") means there is no quota.
+     */
+    @VisibleForTesting
+    static double parseQuota(String quota, String period) {
+        long quotaMicroseconds = Long.parseLong(quota.trim());
+        long periodMicroseconds = Long.parseLong(period.trim());
+        if (quotaMicroseconds <= 0 || periodMicroseconds <= 0) {
+            return 0;
+        }
+        return (double) quotaMicroseconds / periodMicroseconds;
+    }
+}
@@ -0,0 +1,261 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A list of every file in a directory, built with a single walk of the directory tree (see {@link FileWalker}).
+ * {@link FileSelector}s are resolved against it, so that every rule doesn't have to walk the tree on its own. The
+ * index also keeps the size of every file, as the walk saw it (see {@link #getKnownSize(File)}).
+ *
+ * <p>
+ *     The {@link com.selesse.jxlint.linter.Linter} activates an index for the source directory at the beginning of
+ *     every run (see {@link #activate(File)}). While it is active, the {@link FileUtils} methods use it instead of
+ *     walking the directory. The walk itself only happens the first time a rule asks for files.
+ * </p>
+ *
+ * <p>
+ *     An index can also be limited to a given set of files (the files that changed in Git, for example). The
+ *     directory isn't walked at all then, and the files every rule validates are restricted to that set (see
+ *     {@link #retainFilesInScope(List)}), whether or not the rule found them with a {@link FileSelector}. The files
+ *     the walker would skip (see {@link FileWalker}) are left out of the scope too.
+ * </p>
+ *
+ * <p>
+ *     Only active indexes skip files, with the walker of the run (the linter's knows what the run excludes). Other
+ *     indexes, like the ones {@link FileUtils} uses outside of a run, list every file, in the order of a pre-order
+ *     walk of the tree, like they always did.
+ * </p>
+ */
+public class FileIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndex.class);
+
+    private static final RunContext.Slot<FileIndex> activeIndex = RunContext.newSlot();
+
+    private final File rootDirectory;
+    // Null to list every file, without skipping any
+    private final FileWalker fileWalker;
+    private final Set<File> scope;
+    private final Supplier<FileWalker.Result> files;
+
+    private FileIndex(File rootDirectory, Collection<File> scope, FileWalker fileWalker) {
+        this.rootDirectory = FileUtils.normalizeFile(rootDirectory);
+        this.fileWalker = fileWalker;
+        this.scope = scope == null ? null : normalizeFiles(scope);
+        this.files = Suppliers.memoize(this::walk);
+    }
+
+    private static Set<File> normalizeFiles(Collection<File> files) {
+        ImmutableSet.Builder<File> normalizedFiles = ImmutableSet.builder();
+        for (File file : files) {
+            normalizedFiles.add(FileUtils.normalizeFile(file));
+        }
+        return normalizedFiles.build();
+    }
+
+    /**
+     * Creates an index of a directory. The directory is walked lazily, the first time files are selected.
+     */
+    public static FileIndex of(File rootDirectory) {
+        return new FileIndex(rootDirectory, null, null);
+    }
+
+    /**
+     * Creates an index of the files of a directory that are also in the scope. The directory isn't walked: only the
+     * files in the scope that exist and are in the directory are indexed.
+     */
+    public static FileIndex of(File rootDirectory, Collection<File> scope) {
+        return new FileIndex(rootDirectory, scope, null);
+    }
+
+    /**
+     * Makes a fresh index of this directory the active one. Until {@link #deactivate()} is called, file lookups
+     * within this directory will be resolved against it.
+     */
+    public static void activate(File rootDirectory) {
+        activate(rootDirectory, null);
+    }
+
+    /**
+     * Like {@link #activate(File)}, but limits the run to the files in the scope. A null scope means every file.
+     */
+    public static void activate(File rootDirectory, Collection<File> scope) {
+        activate(rootDirectory, scope, FileWalker.getDefault());
+    }
+
+    /**
+     * Like {@link #activate(File, Collection)}, but the files are found (or left out of the scope) by this walker.
+     */
+    public static void activate(File rootDirectory, Collection<File> scope, FileWalker fileWalker) {
+        activeIndex.set(rootDirectory == null ? null : new FileIndex(rootDirectory, scope,
+                Preconditions.checkNotNull(fileWalker)));
+    }
+
+    public static void deactivate() {
+        activeIndex.set(null);
+    }
+
+    /**
+     * Returns the active index if it can answer lookups for this directory, i.e. if the directory is the indexed
+     * directory or one of its subdirectories. Otherwise, returns a new index for this directory.
+     */
+    static FileIndex forDirectory(File directory) {
+        FileIndex index = activeIndex.get();
+        if (index != null && index.contains(FileUtils.normalizeFile(directory))) {
+            return index;
+        }
+        return new FileIndex(directory, null, null);
+    }
+
+    /**
+     * Returns the files that are in the scope of the active index, in the same order. If there is no active index,
+     * or if its scope isn't limited, returns the files as they are.
+     */
+    public static List<File> retainFilesInScope(List<File> files) {
+        FileIndex index = activeIndex.get();
+        if (index == null || index.scope == null) {
+            return files;
+        }
+        return files.stream()
+                .filter(file -> index.scope.contains(FileUtils.normalizeFile(file)))
+                .collect(Collectors.toList());
+    }
+
+    private boolean contains(File directory) {
+        return directory.equals(rootDirectory) || directory.getPath().startsWith(pathPrefix(rootDirectory));
+    }
+
+    private static String pathPrefix(File directory) {
+        String path = directory.getPath();
+        return path.endsWith(File.separator) ? path : path + File.separator;
+    }
+
+    private FileWalker.Result walk() {
+        if (scope != null) {
+            String rootPrefix = pathPrefix(rootDirectory);
+            List<File> filesInDirectory = scope.stream()
+                    .filter(file -> file.getPath().startsWith(rootPrefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+            ImmutableList.Builder<File> scopedFiles = ImmutableList.builder();
+            List<Long> sizes = Lists.newArrayList();
+            if (fileWalker != null) {
+                filesInDirectory = fileWalker.retainIncluded(rootDirectory, filesInDirectory);
+            }
+            for (File file : filesInDirectory) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        scopedFiles.add(file);
+                        sizes.add(attributes.size());
+                    }
+                }
+                catch (IOException e) {
+                    // It was deleted, and there is nothing left to validate
+                }
+            }
+            LOGGER.debug("Indexed {} of {} files in scope in {}", sizes.size(), scope.size(), rootDirectory);
+            return new FileWalker.Result(scopedFiles.build(), Longs.toArray(sizes));
+        }
+
+        LOGGER.debug("Indexing files in {}", rootDirectory);
+        FileWalker.Result result = fileWalker == null ? traverse(rootDirectory) : fileWalker.walk(rootDirectory);
+        LOGGER.debug("Indexed {} files in {}", result.getFiles().size(), rootDirectory);
+        return result;
+    }
+
+    /**
+     * Lists every file in the directory, recursively, in the order of a pre-order walk. Such an index is never
+     * active, so its files don't need to be sorted (see {@link #getKnownSize(File)}).
+     */
+    private static FileWalker.Result traverse(File rootDirectory) {
+        ImmutableList.Builder<File> files = ImmutableList.builder();
+        List<Long> sizes = Lists.newArrayList();
+        for (File file : com.google.common.io.Files.fileTreeTraverser().preOrderTraversal(rootDirectory)) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    files.add(file);
+                    sizes.add(attributes.size());
+                }
+            }
+            catch (IOException e) {
+                // It was deleted during the walk
+            }
+        }
+        return new FileWalker.Result(files.build(), Longs.toArray(sizes));
+    }
+
+    /**
+     * Returns the size of the file when the active index listed it, or -1 if there is no active index, or if the
+     * file isn't in it.
+     */
+    public static long getKnownSize(File file) {
+        FileIndex index = activeIndex.get();
+        if (index == null) {
+            return -1;
+        }
+        FileWalker.Result result = index.files.get();
+        int position = Collections.binarySearch(result.getFiles(), file);
+        return position >= 0 ? result.getSize(position) : -1;
+    }
+
+    public File getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /**
+     * Every file in the indexed directory, recursively (or only those in the scope, if there is one).
+     */
+    public List<File> getFiles() {
+        return files.get().getFiles();
+    }
+
+    /**
+     * Returns the files in the indexed directory that are selected by the {@link FileSelector}.
+     */
+    public List<File> select(FileSelector fileSelector) {
+        return select(rootDirectory, fileSelector);
+    }
+
+    /**
+     * Returns the files in a directory (the indexed directory, or one of its subdirectories) that are selected by the
+     * {@link FileSelector}. Relative paths for globs are relative to that directory.
+     */
+    List<File> select(File directory, FileSelector fileSelector) {
+        File normalizedDirectory = FileUtils.normalizeFile(directory);
+        boolean isRootDirectory = normalizedDirectory.equals(rootDirectory);
+        String directoryPrefix = pathPrefix(normalizedDirectory);
+        Path directoryPath = normalizedDirectory.toPath();
+
+        ImmutableList.Builder<File> selectedFiles = ImmutableList.builder();
+        for (File file : getFiles()) {
+            if (!isRootDirectory && !file.getPath().startsWith(directoryPrefix)) {
+                continue;
+            }
+            Path relativePath = fileSelector.needsRelativePath() ? directoryPath.relativize(file.toPath()) : null;
+            if (fileSelector.matches(file.getName(), relativePath)) {
+                selectedFiles.add(file);
+            }
+        }
+        return selectedFiles.build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.io.Files;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A declarative description of which files a {@link com.selesse.jxlint.model.rules.LintRule} wants to validate.
+ * Selectors are resolved against a {@link FileIndex}, so that the source directory only gets walked once, no matter
+ * how many rules there are. Anything that needs compiling (regular expressions, globs) is compiled once, when the
+ * selector is created.
+ *
+ * <pre>{@code
+ *      FileSelector.allFiles(); // Every file
+ *      FileSelector.withExtension("xml"); // Every .xml file
+ *      FileSelector.withFilename("pom.xml"); // Every file named pom.xml
+ *      FileSelector.matching(".*Test\\.java"); // Every file whose name matches the regex
+ *      FileSelector.matchingGlob("src/test/**.java"); // Every .java file under src/test
+ * }</pre>
+ */
+public final class FileSelector {
+    private final String description;
+    private final Predicate<String> fileNamePredicate;
+    private final PathMatcher relativePathMatcher;
+
+    private FileSelector(String description, Predicate<String> fileNamePredicate, PathMatcher relativePathMatcher) {
+        this.description = description;
+        this.fileNamePredicate = fileNamePredicate;
+        this.relativePathMatcher = relativePathMatcher;
+    }
+
+    private static FileSelector onFileName(String description, Predicate<String> fileNamePredicate) {
+        return new FileSelector(description, fileNamePredicate, null);
+    }
+
+    /**
+     * Selects every file.
+     */
+    public static FileSelector allFiles() {
+        return onFileName("all files", fileName -> true);
+    }
+
+    /**
+     * Selects files that have the given extension, ignoring case.
+     * The extension does not include the period, i.e. "txt" would match "file.txt".
+     */
+    public static FileSelector withExtension(String extension) {
+        Predicate<String> hasExtension = fileName -> Files.getFileExtension(fileName).equalsIgnoreCase(extension);
+        return onFileName("extension " + extension, hasExtension);
+    }
+
+    /**
+     * Selects files that have exactly the given filename.
+     */
+    public static FileSelector withFilename(String filename) {
+        return onFileName("filename " + filename, fileName -> Objects.equals(fileName, filename));
+    }
+
+    /**
+     * Selects files whose name (not their path) matches the given regex.
+     */
+    public static FileSelector matching(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return onFileName("regex " + regex, fileName -> pattern.matcher(fileName).matches());
+    }
+
+    /**
+     * Selects files that contain a certain substring in their filename.
+     */
+    public static FileSelector containing(String substring) {
+        return onFileName("containing " + substring, fileName -> fileName.contains(substring));
+    }
+
+    /**
+     * Selects files whose path, relative to the directory being validated, matches the given glob (see
+     * {@link java.nio.file.FileSystem#getPathMatcher(String)} for the syntax). Globs without a "/" are matched
+     * against the filename only, so "*.java" selects Java files in every directory.
+     */
+    public static FileSelector matchingGlob(String glob) {
+        PathMatcher pathMatcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        if (!glob.contains("/")) {
+            return onFileName("glob " + glob, fileName -> pathMatcher.matches(Paths.get(fileName)));
+        }
+        return new FileSelector("glob " + glob, null, pathMatcher);
+    }
+
+    /**
+     * Returns true if this selector needs the relative path of a file, as opposed to just its name.
+     */
+    boolean needsRelativePath() {
+        return relativePathMatcher != null;
+    }
+
+    /**
+     * Returns true if the file with this name, found at this path relative to the directory being validated, is
+     * selected. The relative path may be null if {@link #needsRelativePath()} is false.
+     */
+    boolean matches(String fileName, Path relativePath) {
+        if (relativePathMatcher != null) {
+            return relativePathMatcher.matches(relativePath);
+        }
+        return fileNamePredicate.test(fileName);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).addValue(description).toString();
+    }
+}
@@ -1,29 +1,25 @@
 package com.selesse.jxlint.utils;
 
-import com.google.common.io.Files;
-
 import java.io.File;
 import java.net.URI;
 import java.util.List;
-import java.util.Objects;
-import java.util.function.Predicate;
 
 public class FileUtils {
-    private static List<File> allFilesWithNameSatisfyingPredicate(File rootDir, Predicate<String> predicate) {
-        return Files.fileTreeTraverser()
-            .preOrderTraversal(rootDir)
-            .filter(file -> file != null && file.isFile())
-            .filter(file -> file != null && predicate.test(file.getName()))
-            .toList();
-    }
-
     private FileUtils() {}
 
+    /**
+     * Return all files in a directory, recursively, that are selected by the {@link FileSelector}. If the directory
+     * is covered by the active {@link FileIndex}, the directory is not walked again.
+     */
+    public static List<File> allFilesSelectedBy(File rootDir, FileSelector fileSelector) {
+        return FileIndex.forDirectory(rootDir).select(rootDir, fileSelector);
+    }
+
     /**
      * Recursively get all files in a directory.
      */
     public static List<File> allFiles(File rootDir) {
-        return allFilesWithNameSatisfyingPredicate(rootDir, fileName -> true);
+        return allFilesSelectedBy(rootDir, FileSelector.allFiles());
     }
 
     /**
@@ -31,43 +27,77 @@ public class FileUtils {
      * The extension does not include the period, i.e. "txt" would match "file.txt".
      */
     public static List<File> allFilesWithExtension(File rootDir, final String extension) {
-        return allFilesWithNameSatisfyingPredicate(rootDir, name ->
-                Files.getFileExtension(name).equalsIgnoreCase(extension)
-        );
+        return allFilesSelectedBy(rootDir, FileSelector.withExtension(extension));
     }
 
     /**
      * Return all files in a directory, recursively, that have the given filename.
      */
     public static List<File> allFilesWithFilename(File rootDir, String filename) {
-        return allFilesWithNameSatisfyingPredicate(rootDir, name -> Objects.equals(name, filename));
+        return allFilesSelectedBy(rootDir, FileSelector.withFilename(filename));
     }
 
     /**
      * Return all files in a directory, recursively, that match a given regex.
      */
     public static List<File> allFilesMatching(File rootDir, final String regex) {
-        return allFilesWithNameSatisfyingPredicate(rootDir, name -> name.matches(regex));
+        return allFilesSelectedBy(rootDir, FileSelector.matching(regex));
+    }
+
+    /**
+     * Return all files in a directory, recursively, whose path relative to the directory matches a given glob.
+     */
+    public static List<File> allFilesMatchingGlob(File rootDir, final String glob) {
+        return allFilesSelectedBy(rootDir, FileSelector.matchingGlob(glob));
     }
 
     /**
      * Return all files in a directory, recursively, that contain a certain substring in their filename.
      */
     public static List<File> allFilesContaining(File rootDir, final String substring) {
-        return allFilesWithNameSatisfyingPredicate(rootDir, name -> name.contains(substring));
+        return allFilesSelectedBy(rootDir, FileSelector.containing(substring));
     }
 
     /**
      * Normalize the input file. This helps when printing paths.
      * i.e. "java -jar jxlint.jar ." would print "/home/alex/git/jxlint/./text.txt"
+     * A file that is already normalized is returned as is, without going through a URI (which checks whether the
+     * file is a directory).
      */
     public static File normalizeFile(File file) {
+        if (isNormalized(file.getPath())) {
+            return file;
+        }
         URI uri = file.toURI();
         uri = uri.normalize();
         String normalizedPath = uri.getPath();
         return new File(normalizedPath);
     }
 
+    /**
+     * Whether the path is absolute, with no "." or ".." in it, and no empty names. Only checked on systems that
+     * separate names with "/", where that's all a normalized path needs.
+     */
+    private static boolean isNormalized(String path) {
+        if (File.separatorChar != '/' || !path.startsWith("/")) {
+            return false;
+        }
+        int nameStart = 1;
+        while (nameStart < path.length()) {
+            int nameEnd = path.indexOf('/', nameStart);
+            if (nameEnd == -1) {
+                nameEnd = path.length();
+            }
+            int nameLength = nameEnd - nameStart;
+            if (nameLength == 0 || (path.charAt(nameStart) == '.' &&
+                    (nameLength == 1 || (nameLength == 2 && path.charAt(nameStart + 1) == '.')))) {
+                return false;
+            }
+            nameStart = nameEnd + 1;
+        }
+        return true;
+    }
+
     public static String getRelativePath(File parent, File child) {
         return parent.toURI().relativize(child.toURI()).getPath();
     }
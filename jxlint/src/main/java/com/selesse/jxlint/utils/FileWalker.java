@@ -0,0 +1,507 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lists every file of a directory tree, for a {@link FileIndex}. Subdirectories are listed in parallel, since most of
+ * the time goes into waiting for the file system, and every entry is only looked at once: its attributes tell
+ * whether it's a file or a directory, and give the size of files (see {@link Result#getSize(int)}).
+ *
+ * <p>
+ *     Directories are skipped, without being listed, when they are excluded. So are files. The ".git" directory is
+ *     always excluded. So is anything that a ".gitignore" file in the tree ignores, unless ignore files are turned
+ *     off, and anything that matches one of the exclude globs. Exclude globs are relative to the root of the walk,
+ *     and globs without a "/" match names at any depth, like {@link FileSelector#matchingGlob(String)}: "build"
+ *     skips every directory named "build". Only ".gitignore" files within the walked directory count.
+ * </p>
+ *
+ * <p>
+ *     Symbolic links are followed, but a link to a directory that is already being walked (a parent of the link, for
+ *     instance) is skipped, so that the walk doesn't go around in circles.
+ * </p>
+ */
+public class FileWalker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileWalker.class);
+
+    static final String IGNORE_FILE_NAME = ".gitignore";
+    private static final String GIT_DIRECTORY_NAME = ".git";
+    private static final int MAX_PARALLELISM = 32;
+
+    private static final FileWalker DEFAULT_WALKER = new FileWalker(ImmutableList.of(), true);
+
+    private final List<IgnorePattern> excludePatterns;
+    private final boolean usesIgnoreFiles;
+    private final int parallelism;
+
+    /**
+     * A walker that skips the files that match the exclude globs, and those that ".gitignore" files ignore if
+     * usesIgnoreFiles is true.
+     */
+    public FileWalker(List<String> excludeGlobs, boolean usesIgnoreFiles) {
+        this(excludeGlobs, usesIgnoreFiles, Math.min(MAX_PARALLELISM, 2 * CpuQuota.getAvailableProcessors()));
+    }
+
+    FileWalker(List<String> excludeGlobs, boolean usesIgnoreFiles, int parallelism) {
+        ImmutableList.Builder<IgnorePattern> excludePatterns = ImmutableList.builder();
+        for (String excludeGlob : excludeGlobs) {
+            IgnorePattern excludePattern = IgnorePattern.parse(excludeGlob);
+            if (excludePattern != null) {
+                excludePatterns.add(excludePattern);
+            }
+        }
+        this.excludePatterns = excludePatterns.build();
+        this.usesIgnoreFiles = usesIgnoreFiles;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Only skips ".git" and what ".gitignore" files ignore.
+     */
+    public static FileWalker getDefault() {
+        return DEFAULT_WALKER;
+    }
+
+    /**
+     * Lists every file in the directory that isn't excluded, recursively, sorted by path. If the "directory" is a
+     * file, only that file is listed.
+     */
+    public Result walk(File rootDirectory) {
+        Path rootPath = rootDirectory.toPath();
+        BasicFileAttributes rootAttributes = readAttributes(rootPath);
+        if (rootAttributes == null) {
+            return new Result(ImmutableList.of(), new long[0]);
+        }
+        if (!rootAttributes.isDirectory()) {
+            return new Result(ImmutableList.of(rootDirectory), new long[] { rootAttributes.size() });
+        }
+
+        Walk walk = new Walk();
+        Ancestor root = new Ancestor(null, getDirectoryKey(rootPath, rootAttributes));
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            forkJoinPool.invoke(new DirectoryTask(walk, rootPath, "", new IgnoreRules(null, "", ImmutableList.of()),
+                    root));
+        }
+        finally {
+            forkJoinPool.shutdown();
+        }
+        return walk.getResult(rootDirectory);
+    }
+
+    /**
+     * Returns the files that a walk of the directory wouldn't skip, in the same order. Files outside the directory
+     * are kept.
+     */
+    public List<File> retainIncluded(File rootDirectory, Collection<File> files) {
+        Filter filter = newFilter(rootDirectory);
+        List<File> includedFiles = Lists.newArrayList();
+        for (File file : files) {
+            if (filter.isIncluded(file.toPath(), false)) {
+                includedFiles.add(file);
+            }
+        }
+        return includedFiles;
+    }
+
+    /**
+     * Returns a filter that tells which paths of the directory a walk would skip, without walking it. The ignore
+     * files are read as they are needed, and only once.
+     */
+    public Filter newFilter(File rootDirectory) {
+        return new Filter(rootDirectory.toPath());
+    }
+
+    private boolean isExcluded(IgnoreRules rules, String name, String path, boolean isDirectory) {
+        if (isDirectory && name.equals(GIT_DIRECTORY_NAME)) {
+            return true;
+        }
+        // Ignore files can't include what the exclude globs exclude
+        for (IgnorePattern excludePattern : excludePatterns) {
+            if (excludePattern.matches(name, path, isDirectory)) {
+                return true;
+            }
+        }
+        return rules.isIgnored(name, path, isDirectory);
+    }
+
+    private IgnoreRules readIgnoreFile(IgnoreRules rules, Path directory, String relativeDirectory) {
+        if (!usesIgnoreFiles) {
+            return rules;
+        }
+        Path ignoreFile = directory.resolve(IGNORE_FILE_NAME);
+        if (!Files.isRegularFile(ignoreFile)) {
+            return rules;
+        }
+        try {
+            ImmutableList.Builder<IgnorePattern> patterns = ImmutableList.builder();
+            for (String line : Files.readAllLines(ignoreFile, Charsets.UTF_8)) {
+                IgnorePattern pattern = IgnorePattern.parse(line);
+                if (pattern != null) {
+                    patterns.add(pattern);
+                }
+            }
+            return new IgnoreRules(rules, relativeDirectory, patterns.build());
+        }
+        catch (IOException e) {
+            LOGGER.warn("Could not read {}, the files it ignores will be validated", ignoreFile, e);
+            return rules;
+        }
+    }
+
+    /**
+     * Reads the attributes of a file, following links, or returns null if it doesn't exist (or can't be read).
+     */
+    private static BasicFileAttributes readAttributes(Path path, LinkOption... linkOptions) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, linkOptions);
+        }
+        catch (IOException e) {
+            LOGGER.debug("Could not read the attributes of {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * What identifies a directory, however it's reached: its file key (device and inode) where there is one, or
+     * its real path.
+     */
+    private static Object getDirectoryKey(Path directory, BasicFileAttributes attributes) {
+        if (attributes.fileKey() != null) {
+            return attributes.fileKey();
+        }
+        try {
+            return directory.toRealPath();
+        }
+        catch (IOException e) {
+            return directory.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Tells which paths of a directory a walk would skip (see {@link #newFilter(File)}).
+     */
+    public final class Filter {
+        private final Path rootPath;
+        private final Map<String, IgnoreRules> directoryRules = Maps.newHashMap();
+
+        private Filter(Path rootPath) {
+            this.rootPath = rootPath;
+            directoryRules.put("", readIgnoreFile(new IgnoreRules(null, "", ImmutableList.of()), rootPath, ""));
+        }
+
+        /**
+         * Whether a walk would get to this file or directory, i.e. whether neither it nor any of the directories it
+         * is in are excluded. Paths outside the root directory, and the root directory itself, are included.
+         */
+        public boolean isIncluded(Path path, boolean isDirectory) {
+            if (!path.startsWith(rootPath) || path.equals(rootPath)) {
+                return true;
+            }
+            Path relativePath = rootPath.relativize(path);
+            IgnoreRules rules = directoryRules.get("");
+            String directory = "";
+            for (int i = 0; i < relativePath.getNameCount(); i++) {
+                String name = relativePath.getName(i).toString();
+                String relativeName = directory.isEmpty() ? name : directory + "/" + name;
+                boolean isLast = i == relativePath.getNameCount() - 1;
+                if (isExcluded(rules, name, relativeName, !isLast || isDirectory)) {
+                    return false;
+                }
+                if (!isLast) {
+                    IgnoreRules childRules = directoryRules.get(relativeName);
+                    if (childRules == null) {
+                        childRules = readIgnoreFile(rules, rootPath.resolve(relativeName), relativeName);
+                        directoryRules.put(relativeName, childRules);
+                    }
+                    rules = childRules;
+                    directory = relativeName;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The files found by a walk, and their sizes.
+     */
+    public static final class Result {
+        private final List<File> files;
+        private final long[] sizes;
+
+        Result(List<File> files, long[] sizes) {
+            this.files = files;
+            this.sizes = sizes;
+        }
+
+        /**
+         * The files, sorted by path.
+         */
+        public List<File> getFiles() {
+            return files;
+        }
+
+        /**
+         * The size of the file at that index of {@link #getFiles()}, when it was walked.
+         */
+        public long getSize(int index) {
+            return sizes[index];
+        }
+    }
+
+    /**
+     * The files found so far, and what was skipped.
+     */
+    private static class Walk {
+        // Every directory adds its files at once
+        private final Queue<List<WalkedFile>> walkedFiles = new ConcurrentLinkedQueue<>();
+        private final LongAdder numberOfExcludedEntries = new LongAdder();
+        private final LongAdder numberOfLoops = new LongAdder();
+
+        Result getResult(File rootDirectory) {
+            List<WalkedFile> allFiles = Lists.newArrayList();
+            walkedFiles.forEach(allFiles::addAll);
+            allFiles.sort(Comparator.comparing(walkedFile -> walkedFile.file));
+
+            ImmutableList.Builder<File> files = ImmutableList.builder();
+            long[] sizes = new long[allFiles.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                files.add(allFiles.get(i).file);
+                sizes[i] = allFiles.get(i).size;
+            }
+            LOGGER.debug("Walked {}: {} files, {} excluded files and directories, {} symbolic link loops",
+                    rootDirectory, sizes.length, numberOfExcludedEntries.sum(), numberOfLoops.sum());
+            return new Result(files.build(), sizes);
+        }
+    }
+
+    private static class WalkedFile {
+        private final File file;
+        private final long size;
+
+        WalkedFile(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A directory that is being walked, and the one it's in.
+     */
+    private static class Ancestor {
+        private final Ancestor parent;
+        private final Object key;
+
+        Ancestor(Ancestor parent, Object key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        boolean contains(Object directoryKey) {
+            for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor.key.equals(directoryKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lists a directory, and walks its subdirectories in tasks of their own.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Walk walk;
+        private final Path directory;
+        private final String relativeDirectory;
+        private final IgnoreRules parentRules;
+        private final Ancestor ancestor;
+
+        DirectoryTask(Walk walk, Path directory, String relativeDirectory, IgnoreRules parentRules,
+                      Ancestor ancestor) {
+            this.walk = walk;
+            this.directory = directory;
+            this.relativeDirectory = relativeDirectory;
+            this.parentRules = parentRules;
+            this.ancestor = ancestor;
+        }
+
+        @Override
+        protected void compute() {
+            List<Path> entries = Lists.newArrayList();
+            boolean hasIgnoreFile = false;
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+                for (Path entry : directoryStream) {
+                    entries.add(entry);
+                    hasIgnoreFile |= entry.getFileName().toString().equals(IGNORE_FILE_NAME);
+                }
+            }
+            catch (IOException e) {
+                LOGGER.debug("Could not list {}", directory, e);
+                return;
+            }
+            IgnoreRules rules = hasIgnoreFile ? readIgnoreFile(parentRules, directory, relativeDirectory) : parentRules;
+
+            List<WalkedFile> files = Lists.newArrayList();
+            List<DirectoryTask> subdirectoryTasks = Lists.newArrayList();
+            for (Path entry : entries) {
+                BasicFileAttributes attributes = readAttributes(entry, LinkOption.NOFOLLOW_LINKS);
+                boolean isLink = attributes != null && attributes.isSymbolicLink();
+                if (isLink) {
+                    attributes = readAttributes(entry);
+                }
+                if (attributes == null) {
+                    continue;
+                }
+
+                String name = entry.getFileName().toString();
+                String relativePath = relativeDirectory.isEmpty() ? name : relativeDirectory + "/" + name;
+                if (isExcluded(rules, name, relativePath, attributes.isDirectory())) {
+                    walk.numberOfExcludedEntries.increment();
+                }
+                else if (attributes.isDirectory()) {
+                    Object directoryKey = getDirectoryKey(entry, attributes);
+                    if (isLink && ancestor.contains(directoryKey)) {
+                        LOGGER.debug("Not following {}, it links back to a directory that is being walked", entry);
+                        walk.numberOfLoops.increment();
+                        continue;
+                    }
+                    subdirectoryTasks.add(new DirectoryTask(walk, entry, relativePath, rules,
+                            new Ancestor(ancestor, directoryKey)));
+                }
+                else if (attributes.isRegularFile()) {
+                    files.add(new WalkedFile(entry.toFile(), attributes.size()));
+                }
+            }
+            if (!files.isEmpty()) {
+                walk.walkedFiles.add(files);
+            }
+            invokeAll(subdirectoryTasks);
+        }
+    }
+
+    /**
+     * The patterns of a ".gitignore" file, and those of the directories above.
+     */
+    private static class IgnoreRules {
+        private final IgnoreRules parent;
+        private final String directoryPrefix;
+        private final List<IgnorePattern> patterns;
+
+        IgnoreRules(IgnoreRules parent, String relativeDirectory, List<IgnorePattern> patterns) {
+            this.parent = parent;
+            this.directoryPrefix = relativeDirectory.isEmpty() ? "" : relativeDirectory + "/";
+            this.patterns = patterns;
+        }
+
+        /**
+         * Whether the entry is ignored. The deepest ignore file decides, and within a file, the last pattern that
+         * matches does, like in Git.
+         */
+        boolean isIgnored(String name, String relativePath, boolean isDirectory) {
+            for (IgnoreRules rules = this; rules != null; rules = rules.parent) {
+                String pathInDirectory = relativePath.substring(rules.directoryPrefix.length());
+                for (IgnorePattern pattern : Lists.reverse(rules.patterns)) {
+                    if (pattern.matches(name, pathInDirectory, isDirectory)) {
+                        return !pattern.isNegated;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A line of a ".gitignore" file, or an exclude glob. Patterns without a "/" (other than a trailing one) match
+     * names at any depth; other patterns match the path relative to the directory of the ignore file. A trailing
+     * "/" only matches directories, and a leading "!" includes what an earlier pattern excluded.
+     */
+    private static class IgnorePattern {
+        private final boolean isNegated;
+        private final boolean isDirectoryOnly;
+        private final boolean isAnchored;
+        // Most patterns are plain names, like "build", which don't need a matcher
+        private final String literal;
+        private final PathMatcher matcher;
+        // A leading "**/" also matches at the top
+        private final PathMatcher topMatcher;
+
+        private IgnorePattern(boolean isNegated, boolean isDirectoryOnly, boolean isAnchored, String glob) {
+            this.isNegated = isNegated;
+            this.isDirectoryOnly = isDirectoryOnly;
+            this.isAnchored = isAnchored;
+            this.literal = CharMatcher.anyOf("*?[]{}\\").matchesAnyOf(glob) ? null : glob;
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            this.topMatcher = glob.startsWith("**/") ?
+                    FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3)) : null;
+        }
+
+        /**
+         * Returns the pattern on the line, or null if it's blank or a comment.
+         */
+        static IgnorePattern parse(String line) {
+            String pattern = line.replaceAll("\\s+$", "");
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                return null;
+            }
+            boolean isNegated = pattern.startsWith("!");
+            if (isNegated) {
+                pattern = pattern.substring(1);
+            }
+            else if (pattern.startsWith("\\")) {
+                pattern = pattern.substring(1);
+            }
+            boolean isDirectoryOnly = pattern.endsWith("/");
+            while (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            boolean isAnchored = pattern.contains("/");
+            while (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            if (pattern.isEmpty()) {
+                return null;
+            }
+            return new IgnorePattern(isNegated, isDirectoryOnly, isAnchored, pattern);
+        }
+
+        boolean matches(String name, String pathInDirectory, boolean isDirectory) {
+            if (isDirectoryOnly && !isDirectory) {
+                return false;
+            }
+            if (!isAnchored) {
+                return literal != null ? literal.equals(name) : matcher.matches(Paths.get(name));
+            }
+            if (literal != null) {
+                return literal.equals(pathInDirectory);
+            }
+            Path path = Paths.get(pathInDirectory);
+            return matcher.matches(path) || (topMatcher != null && topMatcher.matches(path));
+        }
+    }
+}
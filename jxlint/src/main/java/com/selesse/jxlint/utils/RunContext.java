@@ -0,0 +1,113 @@
+package com.selesse.jxlint.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * The state of a run of jxlint that would otherwise live in static fields: the {@link
+ * com.selesse.jxlint.model.rules.LintRules}, the {@link com.selesse.jxlint.linter.Linter}, the
+ * {@link com.selesse.jxlint.settings.Profiler}, the active caches, and so on. Each of them is kept in a {@link Slot}.
+ *
+ * <p>
+ *     Normally, there is a single, global context, so slots behave exactly like static fields. The daemon (see
+ *     {@link com.selesse.jxlint.daemon.JxlintDaemon}) runs every request in a context of its own (see
+ *     {@link #run(Runnable)}), so that concurrent requests don't see each other's state. A context is inherited by
+ *     the threads that are started from within it, like the pools that validate the rules.
+ * </p>
+ */
+public final class RunContext {
+    private static final RunContext GLOBAL_CONTEXT = new RunContext();
+    private static final InheritableThreadLocal<RunContext> currentContext = new InheritableThreadLocal<>();
+
+    private final ConcurrentMap<Slot<?>, Object> values = new ConcurrentHashMap<>();
+
+    private RunContext() {
+    }
+
+    /**
+     * Creates a new, empty context. Its slots have their initial values.
+     */
+    public static RunContext create() {
+        return new RunContext();
+    }
+
+    /**
+     * Returns the context of this thread: the one that is being {@link #run(Runnable)}, or the global context.
+     */
+    public static RunContext current() {
+        RunContext context = currentContext.get();
+        return context == null ? GLOBAL_CONTEXT : context;
+    }
+
+    /**
+     * Runs the task in this context, i.e. makes it the current context of this thread (and of the threads that get
+     * started by the task) until the task is over.
+     */
+    public void run(Runnable task) {
+        RunContext previousContext = currentContext.get();
+        currentContext.set(this);
+        try {
+            task.run();
+        }
+        finally {
+            if (previousContext == null) {
+                currentContext.remove();
+            }
+            else {
+                currentContext.set(previousContext);
+            }
+        }
+    }
+
+    /**
+     * Creates a slot that is null in every new context.
+     */
+    public static <T> Slot<T> newSlot() {
+        return new Slot<>(null);
+    }
+
+    /**
+     * Creates a slot whose value is created the first time it is read, in every new context.
+     */
+    public static <T> Slot<T> newSlot(Supplier<T> initialValue) {
+        return new Slot<>(initialValue);
+    }
+
+    /**
+     * A value that every {@link RunContext} has its own copy of, like a static field per context.
+     */
+    public static final class Slot<T> {
+        private final Supplier<T> initialValue;
+
+        private Slot(Supplier<T> initialValue) {
+            this.initialValue = initialValue;
+        }
+
+        /**
+         * Returns the value in the current context.
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            ConcurrentMap<Slot<?>, Object> values = current().values;
+            Object value = values.get(this);
+            if (value == null && initialValue != null) {
+                value = values.computeIfAbsent(this, slot -> initialValue.get());
+            }
+            return (T) value;
+        }
+
+        /**
+         * Changes the value in the current context. Null goes back to the initial value.
+         */
+        public void set(T value) {
+            ConcurrentMap<Slot<?>, Object> values = current().values;
+            if (value == null) {
+                values.remove(this);
+            }
+            else {
+                values.put(this, value);
+            }
+        }
+    }
+}
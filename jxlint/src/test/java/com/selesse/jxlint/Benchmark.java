@@ -0,0 +1,156 @@
+package com.selesse.jxlint;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Files;
+import com.selesse.jxlint.model.rules.AbstractLintRules;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the benchmarks of the test tree (the <code>*Benchmark</code> classes) share. They take minutes and their
+ * results depend on the machine, so they aren't run as part of the test suite; run one by hand, with the test
+ * classpath:
+ *
+ * <pre>
+ *     java -cp ... com.selesse.jxlint.linter.LinterScalingBenchmark [arguments]
+ * </pre>
+ *
+ * Every argument is optional, and documented by the benchmark. The files a benchmark validates are generated in a
+ * temporary directory, deleted when it exits, unless it is given a path: the files are then generated there once,
+ * and reused by the following runs. Measurements follow a warm-up run, unless the benchmark says otherwise, and are
+ * printed as the rows of a table.
+ */
+public final class Benchmark {
+    /**
+     * Generates the files of a benchmark at a path.
+     */
+    public interface Generator {
+        void generate(File path) throws IOException;
+    }
+
+    private Benchmark() {
+    }
+
+    public static int getArgument(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+
+    public static long getArgument(String[] args, int index, long defaultValue) {
+        return args.length > index ? Long.parseLong(args[index]) : defaultValue;
+    }
+
+    /**
+     * Returns the directory given as the argument at this index, or a temporary one, after generating its files if
+     * it doesn't have any.
+     */
+    public static File getDirectory(String[] args, int index, Generator generator) throws IOException {
+        File directory;
+        if (args.length > index) {
+            directory = new File(args[index]);
+        }
+        else {
+            directory = Files.createTempDir();
+            deleteOnExit(directory);
+        }
+        String[] files = directory.list();
+        if (files == null || files.length == 0) {
+            System.out.printf("Generating files in %s%n", directory);
+            generator.generate(directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Returns the file given as the argument at this index, or a temporary one, after generating it if it doesn't
+     * exist.
+     */
+    public static File getFile(String[] args, int index, String name, Generator generator) throws IOException {
+        File file;
+        if (args.length > index) {
+            file = new File(args[index]);
+        }
+        else {
+            File directory = Files.createTempDir();
+            deleteOnExit(directory);
+            file = new File(directory, name);
+        }
+        if (!file.exists()) {
+            System.out.printf("Generating %s%n", file);
+            generator.generate(file);
+        }
+        return file;
+    }
+
+    private static void deleteOnExit(File directory) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                org.apache.commons.io.FileUtils.deleteDirectory(directory);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    /**
+     * Makes the directory the source directory of a program without rules of its own, since a benchmark gives the
+     * linter its rules.
+     */
+    public static void useSourceDirectory(File directory) {
+        LintRulesImpl.setInstance(new AbstractLintRules() {
+            @Override
+            public void initializeLintRules() {
+            }
+        });
+        LintRulesImpl.getInstance().setSourceDirectory(directory);
+    }
+
+    /**
+     * Generates small Java-like files, a thousand per directory, where every seventh line is a logger call with a
+     * {@link String#format(String, Object...)} in it.
+     */
+    public static void generateJavaTree(File rootDirectory, int numberOfFiles, int linesPerFile) throws IOException {
+        for (int i = 0; i < numberOfFiles; i++) {
+            File file = new File(rootDirectory, "dir" + (i / 1000) + "/File" + i + ".java");
+            Files.createParentDirs(file);
+
+            StringBuilder contents = new StringBuilder();
+            contents.append("public class File").append(i).append(" {\n");
+            for (int line = 0; line < linesPerFile; line++) {
+                if (line % 7 == 0) {
+                    contents.append("    LOGGER.info(String.format(\"%s\", ").append(line).append("));\n");
+                }
+                else {
+                    contents.append("    int value").append(line).append(" = ").append(line).append(";\n");
+                }
+            }
+            contents.append("}\n");
+            Files.write(contents, file, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Returns how many milliseconds the task took, at least 1.
+     */
+    public static long time(Runnable task) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        task.run();
+        return Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Runs the task once to warm up the JIT and the page cache, then returns how many milliseconds a second run took.
+     */
+    public static long warmUpAndTime(Runnable task) {
+        task.run();
+        return time(task);
+    }
+
+    public static double getMegabytesPerSecond(File file, long elapsedMs) {
+        return file.length() / (1024.0 * 1024.0) * 1000 / elapsedMs;
+    }
+}
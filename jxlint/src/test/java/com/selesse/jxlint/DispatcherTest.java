@@ -6,6 +6,9 @@ import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import com.selesse.jxlint.actions.JettyWebRunner;
 import com.selesse.jxlint.cli.ProgramOptionExtractor;
+import com.selesse.jxlint.daemon.JxlintDaemon;
+import com.selesse.jxlint.git.TestGitRepository;
+import com.selesse.jxlint.linter.ExecutionMode;
 import com.selesse.jxlint.linter.Linter;
 import com.selesse.jxlint.linter.LinterFactory;
 import com.selesse.jxlint.model.ExitType;
@@ -13,24 +16,34 @@ import com.selesse.jxlint.model.JxlintOption;
 import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.Category;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRules;
 import com.selesse.jxlint.model.rules.LintRulesImpl;
 import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
 import com.selesse.jxlint.settings.JxlintProgramSettings;
 import com.selesse.jxlint.settings.ProgramSettings;
+import com.selesse.jxlint.utils.VirtualThreads;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class DispatcherTest extends AbstractTestCase {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
     private File tempDirectory;
 
     @Before
@@ -55,6 +68,9 @@ public class DispatcherTest extends AbstractTestCase {
                 "                               explanation.",
                 " -b,--web <port>               Run in the background, as a website.",
                 "                               (default port: " + ProgramOptionExtractor.DEFAULT_PORT + ")",
+                " -n,--daemon <port>            Keep running in the background, validating",
+                "                               the directories sent by clients. (default",
+                "                               port: 8381)",
                 " -r,--rules                    Prints a Markdown dump of the program's",
                 "                               rules.",
                 " -s,--show <RULE[s]>           Lists a verbose rule explanation.",
@@ -62,6 +78,28 @@ public class DispatcherTest extends AbstractTestCase {
                 " -d,--disable <RULE[s]>        Disable the list of rules.",
                 " -e,--enable <RULE[s]>         Enable the list of rules.",
                 " -y,--category <CATEGORY[s]>   Run all rules of a certain category.",
+                " -f,--file-major               Read each file once, for all rules.",
+                " -m,--cache-size <size>        Memory used by each cache (file contents,",
+                "                               parsed files), i.e. 512k, 64m or 0 to",
+                "                               disable. (default: 64m)",
+                " -o,--off-heap                 Cache file contents outside of the heap.",
+                " -i,--incremental <file>       Only validate files that changed since the",
+                "                               last run, using this cache file.",
+                " -g,--changed-since <ref>      Only validate files that changed since this",
+                "                               Git revision.",
+                " -a,--staged                   Only validate the staged contents of files",
+                "                               staged in Git.",
+                " -k,--watch                    Keep running, validating files again when",
+                "                               they change.",
+                " -u,--file-timeout <time>      Stop validating a file after this long,",
+                "                               i.e. 500ms, 30s or 5m, and report it",
+                "                               instead.",
+                " -j,--rule-timeout <time>      Stop running a rule after this long, and",
+                "                               report it instead.",
+                " -z,--stream                   Report errors as they are found, in no",
+                "                               particular order, instead of keeping them",
+                "                               all in memory. Supported by the default and",
+                "                               XML reports.",
                 " -w,--nowarn                   Only check for errors; ignore warnings.",
                 " -Wall,--Wall                  Check all warnings, including those off by",
                 "                               default.",
@@ -69,6 +107,43 @@ public class DispatcherTest extends AbstractTestCase {
                 " -q,--quiet                    Don't output any progress or reports.",
                 " -t,--html <filename>          Create an HTML report.",
                 " -x,--xml <filename>           Create an XML (!!) report.",
+                " -history,--history <file>     Keep how long every rule takes in this",
+                "                               file, and start the rules expected to take",
+                "                               the longest first.",
+                " -plan,--plan                  List the rules in the order they would run,",
+                "                               with their files and estimated time,",
+                "                               without validating anything.",
+                " -threads,--threads <count>    Number of threads that run the rules.",
+                "                               (default: one per available processor)",
+                " -io,--io-threads <count>      Number of threads that read files ahead of",
+                "                               the rules and run I/O-heavy rules.",
+                "                               (default: 0)",
+                " -vt,--virtual-threads         Read files and run I/O-heavy rules on",
+                "                               virtual threads, with up to --io-threads",
+                "                               files at a time (default: 256). Needs Java",
+                "                               21 or later.",
+                " -shard,--shard <i/N>          Only validate shard i of N, a slice of the",
+                "                               files of every rule balanced by size (or",
+                "                               --history), and write its errors to",
+                "                               --partial.",
+                " -partial,--partial <file>     Write the errors of a --shard run to this",
+                "                               file, for --merge.",
+                " -merge,--merge <file[s]>      Report the errors in the --partial files of",
+                "                               every shard, instead of validating",
+                "                               anything.",
+                " -workers,--workers <count>    Run the rules in this many worker",
+                "                               processes, each with its own heap, instead",
+                "                               of threads. Idle workers take batches of",
+                "                               files from busy ones.",
+                " -sp,--spill-after <count>     Keep at most this many errors in memory for",
+                "                               the report, and spill the others to sorted",
+                "                               temporary files.",
+                " -ex,--exclude <glob[s]>       Skip the files and directories that match",
+                "                               these globs, i.e. \"build,**/*.min.js\".",
+                "                               Globs without a \"/\" match names in any",
+                "                               directory.",
+                " -ni,--no-ignore               Validate the files that .gitignore files",
+                "                               ignore too.",
                 "",
                 "<RULE[s]> should be comma separated, without spaces.",
                 "Exit Status:",
@@ -180,6 +255,277 @@ public class DispatcherTest extends AbstractTestCase {
         assertThat(linter.getLintErrors()).hasSize(8);
     }
 
+    @Test
+    public void testFileMajorFindsTheSameRules() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+
+        setupTestLinterAndRunProgramWithArgs(new String[]{"--Wall", "--file-major",
+                tempDirectory.getAbsolutePath()});
+        Linter linter = LinterFactory.getInstance();
+        assertThat(linter.getExecutionMode()).isEqualTo(ExecutionMode.FILE_MAJOR);
+        assertThat(linter.getLintErrors()).hasSize(8);
+    }
+
+    @Test
+    public void testIncrementalRunsFindTheSameErrors() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+        File cacheFile = new File(testFiles.newDirectory(), "jxlint.cache");
+
+        String[] args = new String[]{"--Wall", "--incremental", cacheFile.getAbsolutePath(),
+                tempDirectory.getAbsolutePath()};
+        setupTestLinterAndRunProgramWithArgs(args);
+        assertThat(cacheFile).exists();
+        assertThat(LinterFactory.getInstance().getLintErrors()).hasSize(8);
+
+        setupTestLinterAndRunProgramWithArgs(args);
+        assertThat(LinterFactory.getInstance().getLintErrors()).hasSize(8);
+    }
+
+    @Test
+    public void testRunsWithHistoryFindTheSameErrors() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+        File historyFile = new File(testFiles.newDirectory(), "jxlint.history");
+
+        String[] args = new String[]{"--Wall", "--history", historyFile.getAbsolutePath(),
+                tempDirectory.getAbsolutePath()};
+        setupTestLinterAndRunProgramWithArgs(args);
+        assertThat(historyFile).exists();
+        assertThat(LinterFactory.getInstance().getLintErrors()).hasSize(8);
+
+        setupTestLinterAndRunProgramWithArgs(new String[]{"--Wall", "--file-major", "--history",
+                historyFile.getAbsolutePath(), tempDirectory.getAbsolutePath()});
+        assertThat(LinterFactory.getInstance().getLintErrors()).hasSize(8);
+    }
+
+    @Test
+    public void testPlanListsTheRulesWithoutValidatingAnything() {
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+
+        // The file would fail the rule, if it were validated
+        runExitTestRegex(new String[] { "--check", "Unique attribute", "--plan" }, tempDirectory,
+                Pattern.compile("Unique attribute +1 +\\d+  no history"), ExitType.SUCCESS);
+    }
+
+    @Test
+    public void testChangedSinceOnlyValidatesChangedFiles() throws IOException {
+        assumeTrue(TestGitRepository.isGitAvailable());
+        TestGitRepository gitRepository = TestGitRepository.init(tempDirectory);
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        gitRepository.commitAll("Bad files");
+        File badVersionFile = TestFileCreator.createBadVersionFile(tempDirectory);
+        gitRepository.git("add", badVersionFile.getName());
+
+        setupTestLinterAndRunProgramWithArgs(new String[]{"--Wall", "--changed-since", "HEAD",
+                tempDirectory.getAbsolutePath()});
+        List<LintError> lintErrors = LinterFactory.getInstance().getLintErrors();
+        assertThat(lintErrors).isNotEmpty();
+        assertThat(lintErrors).extracting(LintError::getFile).containsOnly(badVersionFile);
+    }
+
+    @Test
+    public void testStagedValidatesStagedContents() throws IOException {
+        assumeTrue(TestGitRepository.isGitAvailable());
+        TestGitRepository gitRepository = TestGitRepository.init(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        gitRepository.commitAll("Bad file");
+        File badAuthorFile = TestFileCreator.createBadAuthorFile(tempDirectory);
+        gitRepository.git("add", badAuthorFile.getName());
+        // Fixed on disk, but not staged
+        gitRepository.write(badAuthorFile.getName(), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<author name=\"jxlint\"/>\n");
+
+        setupTestLinterAndRunProgramWithArgs(new String[]{"--Wall", "--staged", tempDirectory.getAbsolutePath()});
+        List<LintError> lintErrors = LinterFactory.getInstance().getLintErrors();
+        assertThat(lintErrors).hasSize(1);
+        assertThat(lintErrors.get(0).getFile()).isEqualTo(badAuthorFile);
+    }
+
+    @Test
+    public void testThreadsMustBePositive() {
+        runExitTest(new String[] { "--threads", "0" }, tempDirectory,
+                "Invalid number of threads \"0\". Try a number, 1 or more.", ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testIoThreadsFindTheSameErrors() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+
+        String[] args = new String[]{"--Wall", "--file-major", "--threads", "2", "--io-threads", "2",
+                tempDirectory.getAbsolutePath()};
+        setupTestLinterAndRunProgramWithArgs(args);
+        Linter linter = LinterFactory.getInstance();
+        assertThat(linter.getNumberOfThreads()).isEqualTo(2);
+        assertThat(linter.getNumberOfIoThreads()).isEqualTo(2);
+        assertThat(linter.getLintErrors()).hasSize(8);
+    }
+
+    @Test
+    public void testVirtualThreadsNeedJava21() {
+        assumeFalse(VirtualThreads.isSupported());
+        runExitTest(new String[] { "--virtual-threads" }, tempDirectory,
+                "Virtual threads need Java 21 or later, this is Java " + System.getProperty("java.version") + ".",
+                ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testVirtualThreadsFindTheSameErrors() {
+        assumeTrue(VirtualThreads.isSupported());
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+
+        String[] args = new String[]{"--Wall", "--virtual-threads", tempDirectory.getAbsolutePath()};
+        setupTestLinterAndRunProgramWithArgs(args);
+        Linter linter = LinterFactory.getInstance();
+        assertThat(linter.isUsingVirtualThreads()).isTrue();
+        assertThat(linter.getLintErrors()).hasSize(8);
+    }
+
+    @Test
+    public void testInvalidShardIsRejected() {
+        runExitTest(new String[] { "--shard", "3/2", "--partial", "shard3" }, tempDirectory,
+                "Invalid shard \"3/2\". Try i/N, like 3/8, with i from 1 to N.", ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testShardNeedsPartialResult() {
+        runExitTest(new String[] { "--shard", "1/2" }, tempDirectory,
+                "Error: \"shard\" needs \"partial\", the file to write the shard's errors to.",
+                ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testMergedShardsFindTheSameErrors() throws IOException {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+        File resultDirectory = testFiles.newDirectory();
+
+        File singleRunReport = new File(resultDirectory, "single.xml");
+        String[] singleRunArgs = new String[] { "--Wall", "--xml", singleRunReport.getAbsolutePath(),
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(singleRunArgs);
+
+        List<String> partialResults = Lists.newArrayList();
+        int shardErrors = 0;
+        for (int i = 1; i <= 3; i++) {
+            String partialResult = new File(resultDirectory, "shard" + i).getAbsolutePath();
+            partialResults.add(partialResult);
+            String[] shardArgs = new String[] { "--Wall", "--shard", i + "/3", "--partial", partialResult,
+                    tempDirectory.getAbsolutePath() };
+            setupTestLinterAndRunProgramWithArgs(shardArgs);
+            shardErrors += LinterFactory.getInstance().getLintErrors().size();
+        }
+        assertThat(shardErrors).isEqualTo(8);
+
+        File mergedReport = new File(resultDirectory, "merged.xml");
+        String[] mergeArgs = new String[] { "--merge", Joiner.on(',').join(partialResults), "--xml",
+                mergedReport.getAbsolutePath(), tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(mergeArgs);
+        assertThat(mergedReport).hasContentEqualTo(singleRunReport);
+    }
+
+    @Test
+    public void testMergeNeedsEveryShard() {
+        String partialResult = new File(testFiles.newDirectory(), "shard1").getAbsolutePath();
+        String[] shardArgs = new String[] { "--shard", "1/2", "--partial", partialResult,
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(shardArgs);
+
+        runExitTest(new String[] { "--merge", partialResult }, tempDirectory,
+                "Error: could not merge the partial results: Shard 2/2 is missing", ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testWorkersFindTheSameErrors() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+        File reportDirectory = testFiles.newDirectory();
+
+        File singleProcessReport = new File(reportDirectory, "single.xml");
+        String[] singleProcessArgs = new String[] { "--Wall", "--xml", singleProcessReport.getAbsolutePath(),
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(singleProcessArgs);
+
+        File workersReport = new File(reportDirectory, "workers.xml");
+        String[] workersArgs = new String[] { "--Wall", "--workers", "2", "--xml", workersReport.getAbsolutePath(),
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(workersArgs);
+        Linter linter = LinterFactory.getInstance();
+        assertThat(linter.getNumberOfWorkers()).isEqualTo(2);
+        assertThat(linter.getLintErrors()).hasSize(8);
+        assertThat(workersReport).hasContentEqualTo(singleProcessReport);
+    }
+
+    @Test
+    public void testWorkersCantRunInProcessOptions() {
+        runExitTest(new String[] { "--workers", "2", "--file-major" }, tempDirectory,
+                "Error: \"workers\" and \"file-major\" can't be used together.", ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testSpilledErrorsGetTheSameReport() {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadVersionFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        TestFileCreator.createBadAttributeFile(tempDirectory);
+        File reportDirectory = testFiles.newDirectory();
+
+        File inMemoryReport = new File(reportDirectory, "memory.xml");
+        String[] inMemoryArgs = new String[] { "--Wall", "--xml", inMemoryReport.getAbsolutePath(),
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(inMemoryArgs);
+
+        File spilledReport = new File(reportDirectory, "spilled.xml");
+        String[] spilledArgs = new String[] { "--Wall", "--spill-after", "3", "--xml", spilledReport.getAbsolutePath(),
+                tempDirectory.getAbsolutePath() };
+        setupTestLinterAndRunProgramWithArgs(spilledArgs);
+        assertThat(spilledReport).hasContentEqualTo(inMemoryReport);
+    }
+
+    @Test
+    public void testInvalidSpillThresholdIsRejected() {
+        runExitTest(new String[] { "--spill-after", "0" }, tempDirectory,
+                "Invalid number of errors \"0\". Try a number, 1 or more.", ExitType.COMMAND_LINE_ERROR);
+    }
+
+    @Test
+    public void testExcludedFilesAreNotValidated() {
+        File badVersionFile = TestFileCreator.createBadVersionFile(tempDirectory);
+        File badEncodingFile = TestFileCreator.createBadEncodingFile(tempDirectory);
+
+        setupTestLinterAndRunProgramWithArgs(new String[] { "--exclude", badEncodingFile.getName(),
+                tempDirectory.getAbsolutePath() });
+
+        List<LintError> lintErrors = LinterFactory.getInstance().getLintErrors();
+        assertThat(lintErrors).isNotEmpty();
+        assertThat(lintErrors).extracting(lintError -> lintError.getFile().getName())
+                .containsOnly(badVersionFile.getName());
+    }
+
+    @Test
+    public void testChangedSinceFailsOutsideOfGitRepository() {
+        runExitTest(new String[] { "--changed-since", "HEAD" }, tempDirectory,
+                "Error: Not a Git repository: " + tempDirectory.getAbsolutePath(), ExitType.COMMAND_LINE_ERROR);
+    }
+
     @Test
     public void testEnablingSpecificRulesEnablesThem() {
         // First, create a bad author file and assert that there are no errors
@@ -272,4 +618,24 @@ public class DispatcherTest extends AbstractTestCase {
 
         verify(jettyWebRunnerMock).start();
     }
+
+    @Test
+    public void testDaemonStartsJxlintDaemon() throws IOException {
+        ProgramOptions programOptionsMock = Mockito.mock(ProgramOptions.class);
+        ProgramSettings programSettings = new JxlintProgramSettings();
+        JxlintDaemon jxlintDaemonMock = Mockito.mock(JxlintDaemon.class);
+
+        Dispatcher dispatcherSpy = spy(new Dispatcher(programOptionsMock, programSettings));
+
+        when(programOptionsMock.hasOption(any(JxlintOption.class))).thenReturn(false);
+        when(programOptionsMock.hasOption(JxlintOption.DAEMON)).thenReturn(true);
+        when(programOptionsMock.getOption(JxlintOption.DAEMON)).thenReturn(ProgramOptionExtractor.DEFAULT_DAEMON_PORT);
+        doReturn(jxlintDaemonMock).when(dispatcherSpy).getJxlintDaemon(anyInt(), any(LintRules.class));
+
+        dispatcherSpy.dispatch();
+
+        verify(dispatcherSpy).getJxlintDaemon(Integer.parseInt(ProgramOptionExtractor.DEFAULT_DAEMON_PORT),
+                LintRulesImpl.getInstance());
+        verify(jxlintDaemonMock).run();
+    }
 }
@@ -57,4 +57,12 @@ public class ProfilerTest extends AbstractTestCase {
             assertThat(matcher.find()).isTrue();
         }
     }
+
+    @Test
+    public void testProfileReportsCaches() {
+        String profileJxlintOutput = checkLint(new String[]{"-p"}, tempDirectory, false);
+
+        assertThat(profileJxlintOutput).containsPattern("File contents cache +\\d+ hits, \\d+ misses, \\d+ evictions");
+        assertThat(profileJxlintOutput).containsPattern("Parsed files cache +\\d+ hits, \\d+ misses, \\d+ evictions");
+    }
 }
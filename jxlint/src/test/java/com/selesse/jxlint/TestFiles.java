@@ -0,0 +1,112 @@
+package com.selesse.jxlint;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.cache.ContentCache;
+import org.junit.rules.ExternalResource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A temporary directory to create the files of a test in, deleted once the test is done.
+ *
+ * <pre><code>
+ *     &#64;Rule
+ *     public final TestFiles testFiles = new TestFiles();
+ *
+ *     File file = testFiles.createFile("a/file.txt", "contents");
+ * </code></pre>
+ */
+public class TestFiles extends ExternalResource {
+    private final AtomicInteger numberOfReads = new AtomicInteger();
+    private final List<File> directories = Lists.newArrayList();
+    private File root;
+    private boolean countingReads;
+
+    @Override
+    protected void before() {
+        root = newDirectory();
+        if (countingReads) {
+            ContentCache.setContentSource(file -> {
+                numberOfReads.incrementAndGet();
+                return new FileInputStream(file);
+            });
+        }
+    }
+
+    @Override
+    protected void after() {
+        if (countingReads) {
+            ContentCache.setContentSource(null);
+        }
+        for (File directory : directories) {
+            try {
+                org.apache.commons.io.FileUtils.deleteDirectory(directory);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        directories.clear();
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Creates another temporary directory, outside of the root one, for files that mustn't be among the test's files
+     * (a cache, or a report, for instance). It is deleted along with the root.
+     */
+    public File newDirectory() {
+        File directory = Files.createTempDir();
+        directories.add(directory);
+        return directory;
+    }
+
+    /**
+     * Creates a file with these UTF-8 contents, at this path of the temporary directory.
+     */
+    public File createFile(String path, String contents) throws IOException {
+        return createFile(root, path, contents);
+    }
+
+    /**
+     * Creates a file of this many zero bytes, at this path of the temporary directory.
+     */
+    public File createFile(String path, int size) throws IOException {
+        return createFile(root, path, size);
+    }
+
+    public static File createFile(File directory, String path, String contents) throws IOException {
+        File file = new File(directory, path);
+        Files.createParentDirs(file);
+        Files.write(contents, file, Charsets.UTF_8);
+        return file;
+    }
+
+    public static File createFile(File directory, String path, int size) throws IOException {
+        File file = new File(directory, path);
+        Files.createParentDirs(file);
+        Files.write(new byte[size], file);
+        return file;
+    }
+
+    /**
+     * Makes the test read files from disk through a {@link com.selesse.jxlint.cache.ContentSource} that counts how
+     * many times they are read (see {@link #getNumberOfReads()}).
+     */
+    public TestFiles countingReads() {
+        countingReads = true;
+        return this;
+    }
+
+    public int getNumberOfReads() {
+        return numberOfReads.get();
+    }
+}
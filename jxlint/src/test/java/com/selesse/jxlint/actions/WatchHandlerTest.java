@@ -0,0 +1,135 @@
+package com.selesse.jxlint.actions;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFileCreator;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.linter.Linter;
+import com.selesse.jxlint.linter.LinterFactory;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
+import com.selesse.jxlint.settings.JxlintProgramSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WatchHandlerTest {
+    private static final long TIMEOUT_MILLISECONDS = TimeUnit.SECONDS.toMillis(30);
+
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File tempDirectory;
+    private WatchHandler watchHandler;
+
+    @Before
+    public void setup() {
+        tempDirectory = testFiles.getRoot();
+        LintRulesImpl.setInstance(new XmlLintRulesTestImpl());
+        LintRulesImpl.getInstance().setSourceDirectory(tempDirectory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (watchHandler != null) {
+            watchHandler.close();
+        }
+    }
+
+    private void startWatching() throws IOException {
+        ProgramOptions options = new ProgramOptions();
+        options.addOption(JxlintOption.OUTPUT_TYPE, "quiet");
+
+        Linter linter = LinterFactory.createNewLinter(LintRulesImpl.getInstance().getAllRules(), options);
+        linter.performLintValidations();
+        watchHandler = new WatchHandler(linter, linter.getLintErrors(), new JxlintProgramSettings(), options);
+    }
+
+    /**
+     * Processes changes until there are this many errors, since one change can be seen as several batches of events.
+     */
+    private List<LintError> waitForErrors(int numberOfErrors) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLISECONDS;
+        while (watchHandler.getLintErrors().size() != numberOfErrors && System.currentTimeMillis() < deadline) {
+            watchHandler.processChanges(1, TimeUnit.SECONDS);
+        }
+        return watchHandler.getLintErrors();
+    }
+
+    @Test
+    public void testChangedFilesAreValidatedAgain() throws Exception {
+        File file = TestFileCreator.createValidXml(tempDirectory);
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        startWatching();
+        assertThat(watchHandler.getLintErrors()).hasSize(1);
+
+        Files.write("<?xml version=\"1.0\"?>\n<empty/>\n", file, Charsets.UTF_8);
+        List<LintError> lintErrors = waitForErrors(2);
+        assertThat(lintErrors).extracting(LintError::getFile).contains(file);
+
+        Files.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<empty/>\n", file, Charsets.UTF_8);
+        lintErrors = waitForErrors(1);
+        assertThat(lintErrors).extracting(LintError::getFile).doesNotContain(file);
+    }
+
+    @Test
+    public void testCreatedDirectoriesAreWatched() throws Exception {
+        startWatching();
+        assertThat(watchHandler.getLintErrors()).isEmpty();
+
+        File directory = new File(tempDirectory, "created");
+        assertThat(directory.mkdir()).isTrue();
+        File badEncodingFile = TestFileCreator.createBadEncodingFile(directory);
+        assertThat(waitForErrors(1)).extracting(LintError::getFile).containsOnly(badEncodingFile);
+
+        File badAuthorFile = TestFileCreator.createBadAuthorFile(directory);
+        assertThat(waitForErrors(2)).extracting(LintError::getFile).containsOnly(badEncodingFile, badAuthorFile);
+    }
+
+    @Test
+    public void testSkippedDirectoriesAreNotWatched() throws Exception {
+        Files.write("ignored/\n", new File(tempDirectory, ".gitignore"), Charsets.UTF_8);
+        File ignoredDirectory = new File(tempDirectory, "ignored");
+        File keptDirectory = new File(tempDirectory, "kept");
+        assertThat(ignoredDirectory.mkdir() && keptDirectory.mkdir() && new File(tempDirectory, ".git").mkdir())
+                .isTrue();
+        startWatching();
+        assertThat(watchHandler.getWatchedDirectories()).extracting(path -> path.getFileName().toString())
+                .containsOnly(tempDirectory.getName(), "kept");
+
+        TestFileCreator.createBadEncodingFile(ignoredDirectory);
+        File ignoredFile = new File(tempDirectory, "ignored.xml");
+        Files.write("ignored.xml\n", new File(tempDirectory, ".gitignore"), Charsets.UTF_8);
+        Files.write("<?xml version=\"1.0\"?>\n<empty/>\n", ignoredFile, Charsets.UTF_8);
+        File badEncodingFile = TestFileCreator.createBadEncodingFile(keptDirectory);
+        assertThat(waitForErrors(1)).extracting(LintError::getFile).containsOnly(badEncodingFile);
+        while (watchHandler.processChanges(1, TimeUnit.SECONDS)) {
+            assertThat(watchHandler.getLintErrors()).extracting(LintError::getFile).containsOnly(badEncodingFile);
+        }
+    }
+
+    @Test
+    public void testDeletedDirectoriesLoseTheirErrors() throws Exception {
+        File directory = new File(tempDirectory, "deleted");
+        assertThat(directory.mkdir()).isTrue();
+        TestFileCreator.createBadEncodingFile(directory);
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        startWatching();
+        assertThat(watchHandler.getLintErrors()).hasSize(2);
+
+        org.apache.commons.io.FileUtils.deleteDirectory(directory);
+        assertThat(waitForErrors(1)).extracting(LintError::getFile).doesNotContain(
+                new File(directory, TestFileCreator.getBadEncodingFileName()));
+    }
+}
@@ -0,0 +1,178 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.ValidationTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ArtifactCacheTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+
+    @Before
+    public void setup() {
+        rootTempDir = testFiles.getRoot();
+    }
+
+    @After
+    public void tearDown() {
+        ArtifactCache.deactivate();
+    }
+
+    @Test
+    public void testArtifactsAreOnlyParsedOnce() throws Exception {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        CountingProvider provider = new CountingProvider("length");
+        ArtifactCache artifactCache = ArtifactCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> lengths = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            lengths.add(executorService.submit(() -> new SourceFile(file).getArtifact(provider)));
+        }
+        for (Future<Integer> length : lengths) {
+            assertThat(length.get()).isEqualTo(13);
+        }
+        executorService.shutdown();
+
+        // Threads that had to wait for the parse count as misses, but the file was only parsed once
+        assertThat(provider.parseCount.get()).isEqualTo(1);
+        assertThat(artifactCache.getStats().requestCount()).isEqualTo(100);
+    }
+
+    @Test
+    public void testArtifactsAreKeyedByProvider() throws Exception {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        CountingProvider firstProvider = new CountingProvider("first");
+        CountingProvider secondProvider = new CountingProvider("second");
+        ArtifactCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE);
+
+        new SourceFile(file).getArtifact(firstProvider);
+        new SourceFile(file).getArtifact(secondProvider);
+        new SourceFile(file).getArtifact(secondProvider);
+
+        assertThat(firstProvider.parseCount.get()).isEqualTo(1);
+        assertThat(secondProvider.parseCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNoCacheParsesEveryTime() throws Exception {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        CountingProvider provider = new CountingProvider("length");
+        assertThat(ArtifactCache.activate(0)).isNull();
+
+        new SourceFile(file).getArtifact(provider);
+        new SourceFile(file).getArtifact(provider);
+
+        assertThat(provider.parseCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testXmlDocumentsAreShared() throws Exception {
+        File file = testFiles.createFile("author.xml",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?><author name=\"me\"/>");
+        ArtifactCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE);
+
+        Document document = new SourceFile(file).getArtifact(XmlDocumentProvider.getInstance());
+
+        assertThat(document.getXmlEncoding()).isEqualTo("UTF-8");
+        assertThat(document.getDocumentElement().getAttribute("name")).isEqualTo("me");
+        assertThat(new SourceFile(file).getArtifact(XmlDocumentProvider.getInstance())).isSameAs(document);
+    }
+
+    @Test
+    public void testParseFailuresAreRethrownEveryTime() throws Exception {
+        File file = testFiles.createFile("invalid.xml", "<author name=\"me\" name=\"you\"/>");
+        ArtifactCache artifactCache = ArtifactCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                new SourceFile(file).getArtifact(XmlDocumentProvider.getInstance());
+                fail("Invalid XML should not be parsed");
+            }
+            catch (SAXException e) {
+                assertThat(e.getMessage()).contains("\"name\" was already specified");
+            }
+        }
+        assertThat(artifactCache.getStats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testTimedOutParsesAreNotCached() throws Exception {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        LintRule timedOutRule = new LintRule("Slow", "summary", "description", Severity.WARNING, Category.LINT) {
+            @Override
+            public List<LintError> getLintErrors(File file) {
+                return Lists.newArrayList();
+            }
+        };
+        AtomicBoolean hasTimedOut = new AtomicBoolean();
+        CountingProvider provider = new CountingProvider("length") {
+            @Override
+            public Integer parse(SourceFile sourceFile) throws IOException {
+                if (hasTimedOut.compareAndSet(false, true)) {
+                    throw new ValidationTimeoutException(timedOutRule, file, false, 200);
+                }
+                return super.parse(sourceFile);
+            }
+        };
+        ArtifactCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE);
+
+        try {
+            new SourceFile(file).getArtifact(provider);
+            fail("The first parse should have timed out");
+        }
+        catch (ValidationTimeoutException e) {
+            assertThat(e.getLintRule()).isSameAs(timedOutRule);
+        }
+
+        // The timeout was the first rule's, the next rule gets the file parsed again
+        assertThat(new SourceFile(file).getArtifact(provider)).isEqualTo(13);
+        assertThat(new SourceFile(file).getArtifact(provider)).isEqualTo(13);
+        assertThat(provider.parseCount.get()).isEqualTo(1);
+    }
+
+    private static class CountingProvider implements ArtifactProvider<Integer, RuntimeException> {
+        private final String id;
+        private final AtomicInteger parseCount = new AtomicInteger();
+
+        CountingProvider(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Integer parse(SourceFile sourceFile) throws IOException {
+            parseCount.incrementAndGet();
+            return sourceFile.getContents().length();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentCacheTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+
+    @Before
+    public void setup() {
+        rootTempDir = testFiles.getRoot();
+    }
+
+    @After
+    public void tearDown() {
+        ContentCache.deactivate();
+        ContentCache.setContentSource(null);
+    }
+
+    @Test
+    public void testFilesAreOnlyReadOnce() throws IOException {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        ContentCache contentCache = ContentCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE, false);
+
+        assertThat(ContentCache.readContents(file)).isEqualTo("Hello, world!");
+
+        // The file is in the cache, so changes on disk aren't seen
+        Files.write("Goodbye!", file, Charsets.UTF_8);
+        assertThat(ContentCache.readContents(file)).isEqualTo("Hello, world!");
+
+        CacheStats stats = contentCache.getStats();
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(stats.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOffHeapCacheDecodesContents() throws IOException {
+        File file = testFiles.createFile("unicode.txt", "H\u00e9llo, w\u00f6rld! \u2603");
+        ContentCache contentCache = ContentCache.activate(ContentCache.DEFAULT_MAXIMUM_SIZE, true);
+
+        assertThat(contentCache.isOffHeap()).isTrue();
+        assertThat(ContentCache.readContents(file)).isEqualTo("H\u00e9llo, w\u00f6rld! \u2603");
+        assertThat(ContentCache.readContents(file)).isEqualTo("H\u00e9llo, w\u00f6rld! \u2603");
+        assertThat(contentCache.getStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFilesAreEvicted() throws IOException {
+        String contents = Strings.repeat("x", 1000);
+        ContentCache contentCache = ContentCache.create(16 * 1024, true);
+        for (int i = 0; i < 100; i++) {
+            assertThat(contentCache.getContents(testFiles.createFile(i + ".txt", contents))).isEqualTo(contents);
+        }
+
+        CacheStats stats = contentCache.getStats();
+        assertThat(stats.missCount()).isEqualTo(100);
+        assertThat(stats.evictionCount()).isGreaterThan(80);
+    }
+
+    @Test
+    public void testNoCacheReadsFromDisk() throws IOException {
+        File file = testFiles.createFile("hello.txt", "Hello, world!");
+        assertThat(ContentCache.activate(0, false)).isNull();
+
+        assertThat(ContentCache.readContents(file)).isEqualTo("Hello, world!");
+        Files.write("Goodbye!", file, Charsets.UTF_8);
+        assertThat(ContentCache.readContents(file)).isEqualTo("Goodbye!");
+    }
+
+    @Test
+    public void testLargeFilesAreMappedAndDecodedTheSame() throws IOException {
+        // A multi-byte character split across every possible position, and a malformed byte at the end
+        String line = Strings.repeat("\u00e9\u2603x", 100) + "\n";
+        String contents = Strings.repeat(line, (int) (ContentCache.MAPPED_READ_SIZE / line.length()) + 1);
+        File file = testFiles.createFile("large.txt", contents);
+        Files.append("\u00e9", file, Charsets.ISO_8859_1);
+
+        assertThat(file.length()).isGreaterThanOrEqualTo(ContentCache.MAPPED_READ_SIZE);
+        assertThat(ContentCache.readContents(file)).isEqualTo(new String(Files.toByteArray(file), Charsets.UTF_8));
+    }
+
+    @Test
+    public void testReadsInterruptedByATimeoutAreRetriedByTheOtherReaders() throws Exception {
+        String contents = Strings.repeat("x", (int) ContentCache.MAPPED_READ_SIZE);
+        File file = testFiles.createFile("large.txt", contents);
+        CountDownLatch isReading = new CountDownLatch(1);
+        AtomicInteger numberOfReads = new AtomicInteger();
+        // The first read blocks until its thread is interrupted, like a read from a FileChannel would fail
+        ContentCache.setContentSource(readFile -> {
+            if (numberOfReads.getAndIncrement() == 0) {
+                isReading.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                }
+                catch (InterruptedException e) {
+                    throw new ClosedByInterruptException();
+                }
+            }
+            return new FileInputStream(readFile);
+        });
+        ContentCache contentCache = ContentCache.create(ContentCache.DEFAULT_MAXIMUM_SIZE, false);
+
+        AtomicReference<Throwable> timedOutFailure = new AtomicReference<>();
+        Thread timedOutRule = new Thread(() -> {
+            try {
+                contentCache.getContents(file);
+            }
+            catch (Throwable e) {
+                timedOutFailure.set(e);
+            }
+        });
+        AtomicReference<String> otherContents = new AtomicReference<>();
+        Thread otherRule = new Thread(() -> {
+            try {
+                otherContents.set(contentCache.getContents(file));
+            }
+            catch (IOException e) {
+                otherContents.set(e.toString());
+            }
+        });
+        timedOutRule.start();
+        assertThat(isReading.await(10, TimeUnit.SECONDS)).isTrue();
+        otherRule.start();
+        while (otherRule.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        // What the watchdog of a rule that timed out does
+        timedOutRule.interrupt();
+        timedOutRule.join();
+        otherRule.join();
+
+        assertThat(timedOutFailure.get()).isInstanceOf(ClosedByInterruptException.class);
+        assertThat(otherContents.get()).isEqualTo(contents);
+        assertThat(numberOfReads.get()).isEqualTo(2);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingFilesThrowIOException() throws IOException {
+        ContentCache contentCache = ContentCache.create(ContentCache.DEFAULT_MAXIMUM_SIZE, false);
+        contentCache.getContents(new File(rootTempDir, "missing.txt"));
+    }
+}
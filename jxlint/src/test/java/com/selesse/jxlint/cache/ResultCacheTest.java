@@ -0,0 +1,192 @@
+package com.selesse.jxlint.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.SourceFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultCacheTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+    private File cacheFile;
+    private CountingLintRule lintRule;
+
+    private File createFile(String name, String contents) throws IOException {
+        File file = testFiles.createFile(name, contents);
+        // Old enough for its modification time to be trusted
+        assertThat(file.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1))).isTrue();
+        return file;
+    }
+
+    @Before
+    public void setup() {
+        rootTempDir = testFiles.getRoot();
+        cacheFile = new File(testFiles.newDirectory(), "jxlint.cache");
+        lintRule = new CountingLintRule("1");
+    }
+
+    @After
+    public void tearDown() {
+        ResultCache.deactivate();
+    }
+
+    private List<LintError> validateInNewRun(LintRule lintRule, File file) throws IOException {
+        ResultCache resultCache = ResultCache.activate(cacheFile, rootTempDir);
+        List<LintError> lintErrors = lintRule.validateFile(new SourceFile(file));
+        ResultCache.deactivate();
+        resultCache.save();
+        return lintErrors;
+    }
+
+    @Test
+    public void testUnchangedFilesAreReplayed() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+
+        List<LintError> firstErrors = validateInNewRun(lintRule, file);
+        List<LintError> secondErrors = validateInNewRun(lintRule, file);
+
+        assertThat(lintRule.validationCount).isEqualTo(1);
+        assertThat(secondErrors).hasSameSizeAs(firstErrors);
+        for (int i = 0; i < firstErrors.size(); i++) {
+            assertThat(secondErrors.get(i).getFile()).isEqualTo(firstErrors.get(i).getFile());
+            assertThat(secondErrors.get(i).getLineNumber()).isEqualTo(firstErrors.get(i).getLineNumber());
+            assertThat(secondErrors.get(i).getMessage()).isEqualTo(firstErrors.get(i).getMessage());
+            assertThat(secondErrors.get(i).getSeverity()).isEqualTo(firstErrors.get(i).getSeverity());
+            assertThat(secondErrors.get(i).getViolatedRule()).isSameAs(lintRule);
+        }
+    }
+
+    @Test
+    public void testChangedFilesAreValidatedAgain() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        validateInNewRun(lintRule, file);
+
+        Files.write("Hello\nthere\nworld!", file, Charsets.UTF_8);
+        List<LintError> lintErrors = validateInNewRun(lintRule, file);
+
+        assertThat(lintRule.validationCount).isEqualTo(2);
+        assertThat(lintErrors).hasSize(3);
+    }
+
+    @Test
+    public void testChangedRuleVersionsInvalidateResults() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        validateInNewRun(lintRule, file);
+
+        CountingLintRule newLintRule = new CountingLintRule("2");
+        validateInNewRun(newLintRule, file);
+
+        assertThat(newLintRule.validationCount).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotHashedAgain() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        validateInNewRun(lintRule, file);
+
+        ResultCache resultCache = ResultCache.activate(cacheFile, rootTempDir);
+        assertThat(resultCache.getLintErrors(lintRule, file)).hasSize(2);
+        assertThat(resultCache.getHashedFileCount()).isEqualTo(0);
+        assertThat(resultCache.getStats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRecentlyModifiedFilesAreHashedAgain() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        assertThat(file.setLastModified(System.currentTimeMillis())).isTrue();
+        validateInNewRun(lintRule, file);
+
+        ResultCache resultCache = ResultCache.activate(cacheFile, rootTempDir);
+        assertThat(resultCache.getLintErrors(lintRule, file)).hasSize(2);
+        assertThat(resultCache.getHashedFileCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testResultsWithExceptionsAreNotCached() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        lintRule.exception = new IllegalStateException("Something went wrong");
+
+        validateInNewRun(lintRule, file);
+        validateInNewRun(lintRule, file);
+
+        assertThat(lintRule.validationCount).isEqualTo(2);
+    }
+
+    @Test
+    public void testResultsOfFilesThatWereNotValidatedAreDropped() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        File otherFile = createFile("other.txt", "Hello\nworld!");
+        validateInNewRun(lintRule, file);
+
+        // The first file isn't part of the second run, like a file that was deleted
+        validateInNewRun(lintRule, otherFile);
+        validateInNewRun(lintRule, file);
+
+        assertThat(lintRule.validationCount).isEqualTo(3);
+    }
+
+    @Test
+    public void testUnreadableCacheFilesAreIgnored() throws IOException {
+        File file = createFile("hello.txt", "Hello\nworld!");
+        Files.write("This is not a cache", cacheFile, Charsets.UTF_8);
+
+        assertThat(validateInNewRun(lintRule, file)).hasSize(2);
+        assertThat(validateInNewRun(lintRule, file)).hasSize(2);
+        assertThat(lintRule.validationCount).isEqualTo(1);
+    }
+
+    /**
+     * Reports every line of every file, and counts how many files it actually validated.
+     */
+    private static class CountingLintRule extends LintRule {
+        private final String version;
+        private int validationCount;
+        private Exception exception;
+
+        CountingLintRule(String version) {
+            super("Counting rule", "summary", "description", Severity.WARNING, Category.STYLE);
+            this.version = version;
+        }
+
+        @Override
+        public String getVersion() {
+            return version;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            validationCount++;
+            List<LintError> lintErrors = Lists.newArrayList();
+            try {
+                List<String> lines = Files.readLines(file, Charsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    lintErrors.add(LintError.with(this, file).andLineNumber(i + 1).andErrorMessage(lines.get(i))
+                            .andSeverity(i == 0 ? Severity.ERROR : Severity.WARNING).andException(exception)
+                            .create());
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return lintErrors;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.selesse.jxlint.daemon;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFileCreator;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.cli.CommandLineOptions;
+import com.selesse.jxlint.model.ExitType;
+import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
+import com.selesse.jxlint.settings.JxlintProgramSettings;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JxlintDaemonTest {
+    private static final int CONCURRENCY = 4;
+    private static final String BAD_FILE_NAME = "bad-attribute.xml";
+
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File badDirectory;
+    private File goodDirectory;
+    private File tokenDirectory;
+    private JxlintDaemon jxlintDaemon;
+    private Thread daemonThread;
+
+    @Before
+    public void setup() {
+        badDirectory = new File(testFiles.getRoot(), "bad");
+        goodDirectory = new File(testFiles.getRoot(), "good");
+        assertThat(badDirectory.mkdir() && goodDirectory.mkdir()).isTrue();
+        tokenDirectory = testFiles.newDirectory();
+        System.setProperty(DaemonClient.TOKEN_DIRECTORY_PROPERTY, tokenDirectory.getAbsolutePath());
+        TestFileCreator.createBadAttributeFile(badDirectory);
+        TestFileCreator.createValidXml(goodDirectory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (jxlintDaemon != null) {
+            jxlintDaemon.close();
+            daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        System.clearProperty(DaemonClient.TOKEN_DIRECTORY_PROPERTY);
+    }
+
+    private void startDaemon(long idleTimeoutMilliseconds) throws IOException {
+        jxlintDaemon = new JxlintDaemon(XmlLintRulesTestImpl::new, new JxlintProgramSettings(), 0, CONCURRENCY,
+                idleTimeoutMilliseconds);
+        daemonThread = new Thread(jxlintDaemon::run);
+        daemonThread.start();
+    }
+
+    private Response send(File workingDirectory, String... arguments) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true, Charsets.UTF_8.name());
+        int exitCode = DaemonClient.send(jxlintDaemon.getPort(), workingDirectory, Lists.newArrayList(arguments),
+                printStream);
+        return new Response(exitCode, output.toString(Charsets.UTF_8.name()));
+    }
+
+    @Test
+    public void testConcurrentRequestsAreIsolated() throws Exception {
+        startDaemon(JxlintDaemon.DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENCY * 2);
+        List<Future<Response>> badResponses = Lists.newArrayList();
+        List<Future<Response>> goodResponses = Lists.newArrayList();
+        for (int i = 0; i < CONCURRENCY * 4; i++) {
+            Callable<Response> badRequest = () -> send(badDirectory, "--check", "Unique attribute",
+                    badDirectory.getAbsolutePath());
+            Callable<Response> goodRequest = () -> send(goodDirectory, "--check", "Unique attribute",
+                    goodDirectory.getAbsolutePath());
+            badResponses.add(executorService.submit(badRequest));
+            goodResponses.add(executorService.submit(goodRequest));
+        }
+        executorService.shutdown();
+
+        for (Future<Response> badResponse : badResponses) {
+            Response response = badResponse.get(30, TimeUnit.SECONDS);
+            assertThat(response.exitCode).isEqualTo(ExitType.FAILED.getErrorCode());
+            assertThat(response.output).contains(BAD_FILE_NAME);
+        }
+        for (Future<Response> goodResponse : goodResponses) {
+            Response response = goodResponse.get(30, TimeUnit.SECONDS);
+            assertThat(response.exitCode).isEqualTo(ExitType.SUCCESS.getErrorCode());
+            assertThat(response.output).doesNotContain(BAD_FILE_NAME);
+        }
+    }
+
+    @Test
+    public void testRelativePathsAreResolvedAgainstTheWorkingDirectory() throws Exception {
+        startDaemon(JxlintDaemon.DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+
+        Response response = send(badDirectory.getParentFile(), "--check", "Unique attribute", "--xml", "report",
+                badDirectory.getName());
+
+        assertThat(response.exitCode).isEqualTo(ExitType.FAILED.getErrorCode());
+        File report = new File(badDirectory.getParentFile(), "report.xml");
+        assertThat(Files.toString(report, Charsets.UTF_8)).contains(BAD_FILE_NAME);
+    }
+
+    @Test
+    public void testPathOptionsAreMadeAbsolute() throws Exception {
+        File workingDirectory = new File("/home/user/project");
+        String[] arguments = {"--check", "Unique attribute", "--history", "history.bin", "--html", "/tmp/r", "src"};
+        CommandLine commandLine = new GnuParser().parse(CommandLineOptions.generateJxlintOptions(), arguments);
+
+        assertThat(JxlintDaemon.rewriteArguments(workingDirectory, commandLine)).containsExactly(
+                new File(workingDirectory, "src").getPath(), "--check", "Unique attribute", "--history",
+                new File(workingDirectory, "history.bin").getPath(), "--html", "/tmp/r");
+
+        arguments = new String[] {"--partial", "shard-1.bin", "src"};
+        commandLine = new GnuParser().parse(CommandLineOptions.generateJxlintOptions(), arguments);
+        assertThat(JxlintDaemon.rewriteArguments(workingDirectory, commandLine)).containsExactly(
+                new File(workingDirectory, "src").getPath(), "--partial",
+                new File(workingDirectory, "shard-1.bin").getPath());
+
+        arguments = new String[] {"--merge", "shard-1.bin, /tmp/shard-2.bin", "src"};
+        commandLine = new GnuParser().parse(CommandLineOptions.generateJxlintOptions(), arguments);
+        assertThat(JxlintDaemon.rewriteArguments(workingDirectory, commandLine)).containsExactly(
+                new File(workingDirectory, "src").getPath(), "--merge",
+                new File(workingDirectory, "shard-1.bin").getPath() + ",/tmp/shard-2.bin");
+    }
+
+    @Test
+    public void testCommandLineErrorsAreSentToTheClient() throws Exception {
+        startDaemon(JxlintDaemon.DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+
+        Response response = send(goodDirectory, "foobar");
+        assertThat(response.exitCode).isEqualTo(ExitType.COMMAND_LINE_ERROR.getErrorCode());
+        assertThat(response.output).contains("\"" + new File(goodDirectory, "foobar").getPath() + "\" is not an " +
+                "existing directory.");
+
+        response = send(goodDirectory, "--watch", goodDirectory.getAbsolutePath());
+        assertThat(response.exitCode).isEqualTo(ExitType.COMMAND_LINE_ERROR.getErrorCode());
+        assertThat(response.output).contains("\"watch\" can't be used with the daemon.");
+
+        // The daemon is still there after a request exits
+        response = send(goodDirectory, goodDirectory.getAbsolutePath());
+        assertThat(response.exitCode).isEqualTo(ExitType.SUCCESS.getErrorCode());
+    }
+
+    @Test
+    public void testRequestsWithoutTheTokenAreRejected() throws Exception {
+        startDaemon(JxlintDaemon.DEFAULT_IDLE_TIMEOUT_MILLISECONDS);
+        File tokenFile = DaemonClient.getTokenFile(jxlintDaemon.getPort());
+        assertThat(tokenFile).exists();
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertThat(PosixFilePermissions.toString(java.nio.file.Files.getPosixFilePermissions(tokenFile.toPath())))
+                    .isEqualTo("rw-------");
+        }
+
+        File reportDirectory = testFiles.newDirectory();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), jxlintDaemon.getPort())) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), Charsets.UTF_8);
+            writer.write("not the token\n" + badDirectory.getAbsolutePath() + "\n--xml\n" +
+                    new File(reportDirectory, "report.xml").getAbsolutePath() + "\n.\n\n");
+            writer.flush();
+
+            List<String> response = CharStreams.readLines(new InputStreamReader(socket.getInputStream(),
+                    Charsets.UTF_8));
+            assertThat(response).containsExactly("> Error: the request did not start with the daemon's token.",
+                    "exit " + ExitType.FAILED.getErrorCode());
+            assertThat(reportDirectory.list()).isEmpty();
+        }
+
+        // The token file goes away with the daemon
+        jxlintDaemon.close();
+        assertThat(tokenFile).doesNotExist();
+    }
+
+    @Test
+    public void testShutsDownWhenIdle() throws Exception {
+        startDaemon(TimeUnit.SECONDS.toMillis(1));
+        assertThat(send(goodDirectory, goodDirectory.getAbsolutePath()).exitCode)
+                .isEqualTo(ExitType.SUCCESS.getErrorCode());
+
+        daemonThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(daemonThread.isAlive()).isFalse();
+    }
+
+    private static class Response {
+        private final int exitCode;
+        private final String output;
+
+        Response(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.selesse.jxlint.TestFiles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class GitRepositoryTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+    private TestGitRepository testRepository;
+    private GitRepository gitRepository;
+
+    @Before
+    public void setup() throws IOException {
+        assumeTrue(TestGitRepository.isGitAvailable());
+        rootTempDir = testFiles.getRoot();
+        testRepository = TestGitRepository.init(rootTempDir);
+
+        testRepository.write("unchanged.txt", "unchanged");
+        testRepository.write("modified.txt", "before");
+        testRepository.write("deleted.txt", "deleted");
+        testRepository.write("src/nested.txt", "before");
+        testRepository.commitAll("First commit");
+        testRepository.git("tag", "-a", "-m", "First", "v1");
+
+        testRepository.write("modified.txt", "after");
+        testRepository.write("added.txt", "added");
+        testRepository.write("src/nested.txt", "after");
+        new File(rootTempDir, "deleted.txt").delete();
+        testRepository.commitAll("Second commit");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (gitRepository != null) {
+            gitRepository.close();
+        }
+    }
+
+    private GitRepository openRepository() throws IOException {
+        if (gitRepository != null) {
+            gitRepository.close();
+        }
+        gitRepository = GitRepository.find(new File(rootTempDir, "src"));
+        return gitRepository;
+    }
+
+    private File file(String path) {
+        return new File(rootTempDir, path);
+    }
+
+    @Test
+    public void testRevisionsResolveLikeGit() throws IOException {
+        GitRepository repository = openRepository();
+
+        for (String revision : new String[] { "HEAD", "HEAD~1", "HEAD^", "master~1", "v1", "v1^0", "@~" }) {
+            String expectedId = testRepository.git("rev-parse", revision + "^{commit}");
+            assertThat(repository.resolve(revision)).as(revision).isEqualTo(expectedId);
+            assertThat(repository.resolve(expectedId.substring(0, 7))).isEqualTo(expectedId);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownRevisionsFail() throws IOException {
+        openRepository().resolve("does-not-exist");
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testDirectoriesOutsideOfRepositoriesFail() throws IOException {
+        GitRepository.find(testFiles.newDirectory()).close();
+    }
+
+    @Test
+    public void testFilesChangedSinceARevision() throws IOException {
+        testRepository.write("unstaged.txt", "untracked files aren't considered");
+        testRepository.write("unchanged.txt", "modified, but not staged");
+
+        assertThat(openRepository().getFilesChangedSince("v1")).containsOnly(file("modified.txt"),
+                file("added.txt"), file("src/nested.txt"), file("unchanged.txt"));
+        assertThat(openRepository().getFilesChangedSince("HEAD")).containsOnly(file("unchanged.txt"));
+    }
+
+    @Test
+    public void testFilesChangedSinceARevisionInPackedRepository() throws IOException {
+        // Similar contents, so that some objects get stored as deltas
+        String longContents = Strings.repeat("Some line of text that repeats\n", 200);
+        testRepository.write("long.txt", longContents);
+        testRepository.commitAll("Third commit");
+        testRepository.write("long.txt", longContents + "One more line\n");
+        testRepository.commitAll("Fourth commit");
+        testRepository.git("gc", "-q", "--aggressive");
+        assertThat(new File(rootTempDir, ".git/packed-refs")).exists();
+
+        assertThat(openRepository().getFilesChangedSince("v1")).containsOnly(file("modified.txt"),
+                file("added.txt"), file("src/nested.txt"), file("long.txt"));
+        assertThat(openRepository().getFilesChangedSince("HEAD~1")).containsOnly(file("long.txt"));
+    }
+
+    @Test
+    public void testAllIndexVersionsAreRead() throws IOException {
+        for (String version : new String[] { "2", "3", "4" }) {
+            testRepository.git("update-index", "--index-version", version);
+            assertThat(openRepository().getFilesChangedSince("HEAD~1")).as("version " + version)
+                    .containsOnly(file("modified.txt"), file("added.txt"), file("src/nested.txt"));
+        }
+    }
+
+    @Test
+    public void testCrlfCheckoutsAreNotChanged() throws IOException {
+        testRepository.write("lines.txt", "one\ntwo\n");
+        testRepository.commitAll("Third commit");
+        // What a checkout with "core.autocrlf" would leave in the working tree
+        testRepository.write("lines.txt", "one\r\ntwo\r\n");
+        testRepository.write("modified.txt", "after\r\nand more\r\n");
+
+        assertThat(openRepository().getFilesChangedSince("HEAD")).containsOnly(file("lines.txt"),
+                file("modified.txt"));
+
+        testRepository.git("config", "core.autocrlf", "true");
+        assertThat(openRepository().getFilesChangedSince("HEAD")).containsOnly(file("modified.txt"));
+
+        testRepository.git("config", "core.autocrlf", "false");
+        testRepository.write(".gitattributes", "*.txt text\n");
+        testRepository.git("add", ".gitattributes");
+        assertThat(openRepository().getFilesChangedSince("HEAD")).containsOnly(file("modified.txt"),
+                file(".gitattributes"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testFilteredFilesCantBeHashed() throws IOException {
+        testRepository.write(".gitattributes", "*.bin filter=lfs diff=lfs merge=lfs -text\n");
+        testRepository.commitAll("Third commit");
+
+        openRepository().getFilesChangedSince("HEAD");
+    }
+
+    @Test
+    public void testStagedFilesAreReadFromTheIndex() throws IOException {
+        testRepository.write("modified.txt", "staged");
+        testRepository.write("new.txt", "new");
+        testRepository.git("add", "modified.txt", "new.txt");
+        testRepository.write("modified.txt", "not staged");
+
+        Map<File, String> stagedFiles = openRepository().getStagedFiles();
+        assertThat(stagedFiles).containsOnlyKeys(file("modified.txt"), file("new.txt"));
+
+        StagedContentSource contentSource = new StagedContentSource(gitRepository, stagedFiles);
+        assertThat(new String(contentSource.read(file("modified.txt")), Charsets.UTF_8)).isEqualTo("staged");
+        assertThat(new String(contentSource.read(file("unchanged.txt")), Charsets.UTF_8)).isEqualTo("unchanged");
+    }
+
+    @Test
+    public void testEverythingIsStagedBeforeTheFirstCommit() throws IOException {
+        File otherDirectory = testFiles.newDirectory();
+        TestGitRepository otherRepository = TestGitRepository.init(otherDirectory);
+        otherRepository.write("first.txt", "first");
+        otherRepository.git("add", "first.txt");
+
+        try (GitRepository repository = GitRepository.find(otherDirectory)) {
+            assertThat(repository.getStagedFiles()).containsOnlyKeys(new File(repository.getWorkTree(), "first.txt"));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.selesse.jxlint.git;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Builds Git repositories for tests, with the git executable.
+ */
+public class TestGitRepository {
+    private final File directory;
+
+    public TestGitRepository(File directory) {
+        this.directory = directory;
+    }
+
+    public static boolean isGitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        }
+        catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    public static TestGitRepository init(File directory) throws IOException {
+        TestGitRepository repository = new TestGitRepository(directory);
+        repository.git("init", "-q");
+        return repository;
+    }
+
+    public File write(String path, String contents) throws IOException {
+        File file = new File(directory, path);
+        Files.createParentDirs(file);
+        Files.write(contents, file, Charsets.UTF_8);
+        return file;
+    }
+
+    public void commitAll(String message) throws IOException {
+        git("add", "-A");
+        git("commit", "-q", "-m", message);
+    }
+
+    /**
+     * Runs a git command in the repository, and returns what it printed.
+     */
+    public String git(String... arguments) throws IOException {
+        List<String> command = Lists.newArrayList("git", "-c", "user.name=jxlint", "-c", "user.email=jxlint@localhost",
+                "-c", "commit.gpgsign=false", "-c", "core.autocrlf=false");
+        command.addAll(Lists.newArrayList(arguments));
+
+        Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start();
+        String output = new String(ByteStreams.toByteArray(process.getInputStream()), Charsets.UTF_8);
+        try {
+            assertEquals("git " + String.join(" ", arguments) + " failed: " + output, 0, process.waitFor());
+        }
+        catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        return output.trim();
+    }
+}
@@ -0,0 +1,109 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LintPlanTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private List<File> smallFiles;
+    private List<File> largeFiles;
+    private RuleCostHistory ruleCostHistory;
+
+    @Before
+    public void setup() throws IOException {
+        smallFiles = Lists.newArrayList();
+        largeFiles = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            smallFiles.add(testFiles.createFile("small" + i, 10));
+            largeFiles.add(testFiles.createFile("large" + i, 10_000));
+        }
+        ruleCostHistory = RuleCostHistory.empty();
+    }
+
+    @Test
+    public void testLongestExpectedRulesStartFirst() {
+        LintRule fastRule = new FixedFilesLintRule("fast", largeFiles);
+        LintRule slowRule = new FixedFilesLintRule("slow", smallFiles);
+        LintRule slowestRule = new FixedFilesLintRule("slowest", smallFiles.subList(0, 2));
+        ruleCostHistory.update(fastRule, 4, 4);
+        ruleCostHistory.update(slowRule, 400, 4);
+        ruleCostHistory.update(slowestRule, 1000, 2);
+
+        LintPlan lintPlan = LintPlan.create(Lists.newArrayList(fastRule, slowRule, slowestRule), ruleCostHistory,
+                new ValidationOrder());
+
+        assertThat(lintPlan.getRulePlans()).extracting(LintPlan.RulePlan::getRule)
+                .containsExactly(slowestRule, slowRule, fastRule);
+        assertThat(lintPlan.getRulePlans()).extracting(LintPlan.RulePlan::getRuleIndex).containsExactly(2, 1, 0);
+        assertThat(lintPlan.getRulePlans()).extracting(LintPlan.RulePlan::getEstimatedTimeMs)
+                .containsExactly(1000L, 400L, 4L);
+    }
+
+    @Test
+    public void testRulesWithoutHistoryStartFirstBySize() {
+        LintRule knownRule = new FixedFilesLintRule("known", largeFiles);
+        LintRule smallRule = new FixedFilesLintRule("small", smallFiles);
+        LintRule largeRule = new FixedFilesLintRule("large", largeFiles);
+        LintRule emptyRule = new FixedFilesLintRule("empty", Collections.emptyList());
+        ruleCostHistory.update(knownRule, 10_000, 4);
+
+        LintPlan lintPlan = LintPlan.create(Lists.newArrayList(knownRule, smallRule, largeRule, emptyRule),
+                ruleCostHistory, new ValidationOrder());
+
+        assertThat(lintPlan.getRulePlans()).extracting(LintPlan.RulePlan::getRule)
+                .containsExactly(largeRule, smallRule, emptyRule, knownRule);
+        assertThat(lintPlan.getRulePlans().get(0).getNumberOfBytes()).isEqualTo(40_000);
+        assertThat(lintPlan.getRulePlans().get(0).hasHistory()).isFalse();
+    }
+
+    @Test
+    public void testReportListsRulesFilesAndTimes() {
+        LintRule knownRule = new FixedFilesLintRule("known", largeFiles);
+        LintRule unknownRule = new FixedFilesLintRule("unknown", smallFiles);
+        ruleCostHistory.update(knownRule, 2500, 4);
+
+        String report = LintPlan.create(Lists.newArrayList(knownRule, unknownRule), ruleCostHistory,
+                new ValidationOrder()).getReport();
+
+        assertThat(report).containsPattern("unknown +4 +40  no history");
+        assertThat(report).containsPattern("known +4 +40000  2\\.500 seconds");
+        assertThat(report).contains("2 rules, 8 files to validate, 40040 bytes, 2.500 seconds of work " +
+                "(not counting 1 rules with no history).");
+    }
+
+    static class FixedFilesLintRule extends LintRule {
+        private final List<File> files;
+
+        FixedFilesLintRule(String name, List<File> files) {
+            super(name, "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            return Lists.newArrayList();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.Benchmark;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how {@link Linter} scales with the number of threads when there is a single, expensive rule (see
+ * {@link Benchmark} for how to run it):
+ *
+ * <pre>
+ *     LinterScalingBenchmark [numberOfFiles] [maxThreads] [directory]
+ * </pre>
+ *
+ * The rule validates <code>numberOfFiles</code> (default 100,000) small Java-like files with 1, 2, 4, ... up to
+ * <code>maxThreads</code> (default: number of cores) threads.
+ */
+public class LinterScalingBenchmark {
+    public static void main(String[] args) throws IOException {
+        int numberOfFiles = Benchmark.getArgument(args, 0, 100_000);
+        int maxThreads = Benchmark.getArgument(args, 1, Runtime.getRuntime().availableProcessors());
+
+        Benchmark.Generator generator = directory -> Benchmark.generateJavaTree(directory, numberOfFiles, 20);
+        File rootDirectory = Benchmark.getDirectory(args, 2, generator);
+        Benchmark.useSourceDirectory(rootDirectory);
+        LintRule lintRule = new StringFormatLintRule(FileUtils.allFiles(rootDirectory));
+
+        long singleThreadedMs = 0;
+        System.out.printf("%8s %12s %8s%n", "threads", "time (ms)", "speedup");
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            int numberOfThreads = threads;
+            Runnable run = () -> new Linter(Lists.newArrayList(lintRule), numberOfThreads).performLintValidations();
+            long elapsedMs = Benchmark.warmUpAndTime(run);
+            if (threads == 1) {
+                singleThreadedMs = elapsedMs;
+            }
+            System.out.printf("%8d %12d %8.2f%n", threads, elapsedMs, singleThreadedMs / (double) elapsedMs);
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+
+    /**
+     * A rule similar to jxlint-impl's SLF4J rule: it reads the file and runs a regex over every line.
+     */
+    private static class StringFormatLintRule extends LintRule {
+        private static final Pattern STRING_FORMAT =
+                Pattern.compile("\\b(\\w+)\\.(info|debug|warn|error)\\(String\\.format\\(");
+
+        private final List<File> files;
+
+        StringFormatLintRule(List<File> files) {
+            super("String.format in logger", "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            try {
+                List<String> lines = Files.readLines(file, Charsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    Matcher matcher = STRING_FORMAT.matcher(lines.get(i));
+                    if (matcher.find()) {
+                        lintErrors.add(LintError.with(this, file).andLineNumber(i + 1).create());
+                    }
+                }
+            }
+            catch (IOException e) {
+                lintErrors.add(LintError.with(this, file).andException(e).create());
+            }
+            return lintErrors;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.selesse.jxlint.model.rules.AbstractLintRules;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.settings.Profiler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a lot of tiny rules on a lot of threads, to make sure that no result gets lost or duplicated along the way.
+ */
+public class LinterStressTest {
+    private static final int NUMBER_OF_RULES = 2000;
+    private static final int FILES_PER_RULE = 10;
+    private static final int NUMBER_OF_THREADS = 16;
+    private static final int NUMBER_OF_ROUNDS = 3;
+
+    private List<File> files;
+
+    @Before
+    public void setup() {
+        files = Lists.newArrayList();
+        for (int i = 0; i < FILES_PER_RULE * 4; i++) {
+            files.add(new File("file" + i));
+        }
+
+        AbstractLintRules lintRules = new AbstractLintRules() {
+            @Override
+            public void initializeLintRules() {
+            }
+        };
+        lintRules.setSourceDirectory(new File("."));
+        LintRulesImpl.setInstance(lintRules);
+    }
+
+    private List<LintRule> createTinyRules() {
+        List<LintRule> rules = Lists.newArrayList();
+        for (int ruleIndex = 0; ruleIndex < NUMBER_OF_RULES; ruleIndex++) {
+            int firstFile = ruleIndex % (files.size() - FILES_PER_RULE);
+            rules.add(new TinyLintRule("rule" + ruleIndex, files.subList(firstFile, firstFile + FILES_PER_RULE)));
+        }
+        return rules;
+    }
+
+    @Test
+    public void testRuleMajorNeitherLosesNorDuplicatesErrors() {
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+            assertEveryErrorIsFoundOnce(ExecutionMode.RULE_MAJOR);
+        }
+    }
+
+    @Test
+    public void testFileMajorNeitherLosesNorDuplicatesErrors() {
+        for (int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+            assertEveryErrorIsFoundOnce(ExecutionMode.FILE_MAJOR);
+        }
+    }
+
+    @Test
+    public void testRuleMajorKeepsTheErrorsInTheOrderOfTheRules() {
+        List<LintRule> rules = createTinyRules();
+        Linter linter = new Linter(rules, NUMBER_OF_THREADS, ExecutionMode.RULE_MAJOR);
+        linter.performLintValidations();
+
+        List<LintError> lintErrors = linter.getLintErrors();
+        assertThat(lintErrors).hasSize(NUMBER_OF_RULES * FILES_PER_RULE);
+        for (int i = 0; i < lintErrors.size(); i++) {
+            assertThat(lintErrors.get(i).getViolatedRule()).isSameAs(rules.get(i / FILES_PER_RULE));
+        }
+    }
+
+    @Test
+    public void testProfilerRecordsEveryRule() {
+        Profiler.beginProgramProfiling();
+        Linter linter = new Linter(createTinyRules(), NUMBER_OF_THREADS, ExecutionMode.RULE_MAJOR);
+        linter.performLintValidations();
+        Profiler.endProgramProfiling();
+
+        // Every other line is highlighted, so the lines don't all start with the rule's name
+        Matcher matcher = Pattern.compile("rule\\d+ +\\d").matcher(Profiler.getGeneratedProfileReport());
+        int numberOfProfiledRules = 0;
+        while (matcher.find()) {
+            numberOfProfiledRules++;
+        }
+        assertThat(numberOfProfiledRules).isEqualTo(NUMBER_OF_RULES);
+    }
+
+    @Test
+    public void testProfilerAddsUpConcurrentCacheStats() throws Exception {
+        int numberOfUpdates = 10_000;
+        ExecutorService executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        for (int i = 0; i < numberOfUpdates; i++) {
+            executorService.submit(() -> Profiler.addCacheStats("Stress cache", new CacheStats(1, 2, 0, 0, 0, 0)));
+        }
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        Profiler.beginProgramProfiling();
+        Profiler.endProgramProfiling();
+        assertThat(Profiler.getGeneratedProfileReport())
+                .contains(numberOfUpdates + " hits, " + 2 * numberOfUpdates + " misses");
+    }
+
+    private void assertEveryErrorIsFoundOnce(ExecutionMode executionMode) {
+        Linter linter = new Linter(createTinyRules(), NUMBER_OF_THREADS, executionMode);
+        linter.performLintValidations();
+
+        List<LintError> lintErrors = linter.getLintErrors();
+        Set<String> distinctErrors = Sets.newHashSet();
+        for (LintError lintError : lintErrors) {
+            distinctErrors.add(lintError.getViolatedRule().getName() + ":" + lintError.getFile().getName());
+        }
+        assertThat(lintErrors).hasSize(NUMBER_OF_RULES * FILES_PER_RULE);
+        assertThat(distinctErrors).hasSize(NUMBER_OF_RULES * FILES_PER_RULE);
+    }
+
+    private static class TinyLintRule extends LintRule {
+        private final List<File> files;
+
+        TinyLintRule(String name, List<File> files) {
+            super(name, "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            return Lists.newArrayList(LintError.with(this, file).create());
+        }
+    }
+}
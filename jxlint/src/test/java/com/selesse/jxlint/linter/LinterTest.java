@@ -0,0 +1,540 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.cache.ContentCache;
+import com.selesse.jxlint.cache.ContentSource;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.AbstractLintRules;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.Deadline;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.Workload;
+import com.selesse.jxlint.settings.JxlintProgramSettings;
+import com.selesse.jxlint.settings.Profiler;
+import com.selesse.jxlint.utils.VirtualThreads;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class LinterTest {
+    private static final int NUMBER_OF_FILES = 500;
+
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private List<File> files;
+
+    @Before
+    public void setup() {
+        files = Lists.newArrayList();
+        for (int i = 0; i < NUMBER_OF_FILES; i++) {
+            files.add(new File("file" + i));
+        }
+
+        AbstractLintRules lintRules = new AbstractLintRules() {
+            @Override
+            public void initializeLintRules() {
+            }
+        };
+        lintRules.setSourceDirectory(new File("."));
+        LintRulesImpl.setInstance(lintRules);
+    }
+
+    @Test
+    public void testSingleRuleIsSpreadOverSeveralThreads() {
+        ThreadRecordingLintRule lintRule = new ThreadRecordingLintRule("slow rule", files, 2);
+
+        Linter linter = new Linter(Lists.newArrayList(lintRule), 4);
+        linter.performLintValidations();
+
+        assertThat(linter.getLintErrors()).hasSize(NUMBER_OF_FILES);
+        assertThat(lintRule.threadNames.size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testParallelValidationKeepsFileOrder() throws Exception {
+        ThreadRecordingLintRule parallelRule = new ThreadRecordingLintRule("parallel", files, 0);
+        ThreadRecordingLintRule sequentialRule = new ThreadRecordingLintRule("sequential", files, 0);
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        forkJoinPool.submit(parallelRule::validate).get();
+        forkJoinPool.shutdown();
+        sequentialRule.validate();
+
+        List<LintError> parallelErrors = parallelRule.getLintErrors();
+        List<LintError> sequentialErrors = sequentialRule.getLintErrors();
+
+        assertThat(parallelErrors).hasSameSizeAs(sequentialErrors);
+        for (int i = 0; i < parallelErrors.size(); i++) {
+            assertThat(parallelErrors.get(i).getFile()).isEqualTo(sequentialErrors.get(i).getFile());
+            assertThat(parallelErrors.get(i).getLineNumber()).isEqualTo(sequentialErrors.get(i).getLineNumber());
+        }
+    }
+
+    @Test
+    public void testFileMajorFindsTheSameErrorsAsRuleMajor() {
+        List<LintRule> ruleMajorRules = Lists.newArrayList(
+                new ThreadRecordingLintRule("first", files, 0),
+                new ThreadRecordingLintRule("second", files.subList(100, 300), 0));
+        List<LintRule> fileMajorRules = Lists.newArrayList(
+                new ThreadRecordingLintRule("first", files, 0),
+                new ThreadRecordingLintRule("second", files.subList(100, 300), 0));
+
+        Linter ruleMajorLinter = new Linter(ruleMajorRules, 4, ExecutionMode.RULE_MAJOR);
+        ruleMajorLinter.performLintValidations();
+        Linter fileMajorLinter = new Linter(fileMajorRules, 4, ExecutionMode.FILE_MAJOR);
+        fileMajorLinter.performLintValidations();
+
+        assertThat(fileMajorLinter.getLintErrors()).hasSize(NUMBER_OF_FILES + 200);
+        assertThat(fileMajorLinter.getLintErrors()).hasSameSizeAs(ruleMajorLinter.getLintErrors());
+        for (int i = 0; i < ruleMajorRules.size(); i++) {
+            List<LintError> ruleMajorErrors = ruleMajorRules.get(i).getLintErrors();
+            List<LintError> fileMajorErrors = fileMajorRules.get(i).getLintErrors();
+
+            assertThat(fileMajorErrors).hasSameSizeAs(ruleMajorErrors);
+            for (int j = 0; j < ruleMajorErrors.size(); j++) {
+                assertThat(fileMajorErrors.get(j).getFile()).isEqualTo(ruleMajorErrors.get(j).getFile());
+                assertThat(fileMajorErrors.get(j).getLineNumber()).isEqualTo(ruleMajorErrors.get(j).getLineNumber());
+            }
+        }
+    }
+
+    @Test
+    public void testFileMajorSharesOneSourceFileBetweenRules() {
+        Map<SourceFile, Boolean> sourceFiles = new IdentityHashMap<>();
+        List<LintRule> rules = Lists.newArrayList(
+                new SourceFileRecordingLintRule("first", files, sourceFiles),
+                new SourceFileRecordingLintRule("second", files, sourceFiles),
+                new SourceFileRecordingLintRule("third", files.subList(0, 10), sourceFiles));
+
+        Linter linter = new Linter(rules, 4, ExecutionMode.FILE_MAJOR);
+        linter.performLintValidations();
+
+        assertThat(linter.getLintErrors()).hasSize(2 * NUMBER_OF_FILES + 10);
+        assertThat(sourceFiles).hasSize(NUMBER_OF_FILES);
+    }
+
+    @Test
+    public void testFileMajorDropsTheErrorsOfAFailingRule() {
+        ThreadRecordingLintRule workingRule = new ThreadRecordingLintRule("working", files, 0);
+        LintRule failingRule = new ThreadRecordingLintRule("failing", files, 0) {
+            @Override
+            public List<LintError> getLintErrors(File file) {
+                if (file.getName().equals("file42")) {
+                    throw new IllegalStateException("Can't validate " + file);
+                }
+                return super.getLintErrors(file);
+            }
+        };
+
+        Linter linter = new Linter(Lists.newArrayList(workingRule, failingRule), 4, ExecutionMode.FILE_MAJOR);
+        linter.performLintValidations();
+
+        assertThat(linter.getLintErrors()).hasSize(NUMBER_OF_FILES);
+        assertThat(workingRule.getLintErrors()).hasSize(NUMBER_OF_FILES);
+        assertThat(failingRule.getLintErrors()).isEmpty();
+    }
+
+    @Test
+    public void testFileMajorReportsTheFilesTheIoThreadsCouldNotRead() {
+        ThreadRecordingLintRule cpuRule = new ThreadRecordingLintRule("cpu", files, 0);
+        ThreadRecordingLintRule ioRule = new ThreadRecordingLintRule("io", files, 0) {
+            @Override
+            public Workload getWorkload() {
+                return Workload.IO;
+            }
+        };
+        ProgramOptions options = new ProgramOptions();
+        options.addOption(JxlintOption.FILE_MAJOR);
+        options.addOption(JxlintOption.IO_THREADS, "2");
+
+        // Not an IOException, so the read fails outside of the rules
+        ContentCache.setContentSource(file -> {
+            if (file.getName().equals("file42")) {
+                throw new IllegalStateException("Can't read " + file);
+            }
+            return ContentSource.FILE_SYSTEM.openStream(file);
+        });
+        Linter linter = new Linter(Lists.newArrayList(cpuRule, ioRule), 2, options);
+        try {
+            linter.performLintValidations();
+        }
+        finally {
+            ContentCache.setContentSource(null);
+        }
+
+        assertThat(linter.getLintErrors()).hasSize(2 * NUMBER_OF_FILES);
+        for (LintRule rule : Lists.newArrayList(cpuRule, ioRule)) {
+            assertThat(rule.getLintErrors()).hasSize(NUMBER_OF_FILES);
+            LintError unreadFileError = rule.getLintErrors().stream()
+                    .filter(lintError -> lintError.getFile().getName().equals("file42")).findFirst().get();
+            assertThat(unreadFileError.getMessage()).isEqualTo("Could not read file");
+            assertThat(unreadFileError.getException()).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Test
+    public void testSinkGetsTheErrorsInsteadOfTheLinter() {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            ThreadRecordingLintRule firstRule = new ThreadRecordingLintRule("first", files, 0);
+            ThreadRecordingLintRule secondRule = new ThreadRecordingLintRule("second", files.subList(0, 100), 0);
+            Set<LintError> sinkErrors = ConcurrentHashMap.newKeySet();
+            LintErrorSink lintErrorSink = new LintErrorSink() {
+                @Override
+                public void accept(LintError lintError) {
+                    assertThat(sinkErrors.add(lintError)).isTrue();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+
+            Linter linter = new Linter(Lists.newArrayList(firstRule, secondRule), 4, executionMode);
+            linter.performLintValidations(null, lintErrorSink);
+
+            assertThat(sinkErrors).hasSize(NUMBER_OF_FILES + 100);
+            assertThat(linter.getLintErrors()).isEmpty();
+            assertThat(firstRule.getLintErrors()).isEmpty();
+            assertThat(secondRule.getLintErrors()).isEmpty();
+        }
+    }
+
+    @Test
+    public void testFileTimeoutStopsARuleThatChecksTheDeadline() {
+        ThreadRecordingLintRule workingRule = new ThreadRecordingLintRule("working", files, 0);
+        LintRule spinningRule = new ThreadRecordingLintRule("spinning", files, 0) {
+            @Override
+            public List<LintError> getLintErrors(File file) {
+                if (file.getName().equals("file42")) {
+                    // Spins well past the timeout, unless the deadline stops it
+                    long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                    while (System.nanoTime() - endNanos < 0) {
+                        Deadline.check();
+                    }
+                }
+                return super.getLintErrors(file);
+            }
+        };
+
+        ProgramOptions options = new ProgramOptions();
+        options.addOption(JxlintOption.FILE_TIMEOUT, "200ms");
+        Linter linter = new Linter(Lists.newArrayList(workingRule, spinningRule), options);
+        Profiler.beginProgramProfiling();
+        linter.performLintValidations();
+        Profiler.endProgramProfiling();
+
+        assertThat(workingRule.getLintErrors()).hasSize(NUMBER_OF_FILES);
+        List<LintError> spinningErrors = spinningRule.getLintErrors();
+        assertThat(spinningErrors).hasSize(NUMBER_OF_FILES);
+        LintError timeoutError = spinningErrors.stream()
+                .filter(lintError -> lintError.getSeverity() == Severity.WARNING).findFirst().get();
+        assertThat(timeoutError.getFile().getName()).isEqualTo("file42");
+        assertThat(timeoutError.getMessage()).isEqualTo("Validation timed out after 200 ms");
+        assertThat(Profiler.getGeneratedProfileReport()).contains("Timeouts:").contains("spinning");
+    }
+
+    @Test
+    public void testRuleTimeoutSkipsTheRemainingFiles() {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            ThreadRecordingLintRule slowRule = new ThreadRecordingLintRule("slow", files, 20);
+
+            ProgramOptions options = new ProgramOptions();
+            options.addOption(JxlintOption.RULE_TIMEOUT, "200ms");
+            if (executionMode == ExecutionMode.FILE_MAJOR) {
+                options.addOption(JxlintOption.FILE_MAJOR);
+            }
+            Linter linter = new Linter(Lists.newArrayList(slowRule), options);
+            linter.performLintValidations();
+
+            List<LintError> lintErrors = slowRule.getLintErrors();
+            assertThat(lintErrors.size()).isLessThan(NUMBER_OF_FILES);
+            List<LintError> warnings = lintErrors.stream()
+                    .filter(lintError -> lintError.getSeverity() == Severity.WARNING).collect(Collectors.toList());
+            assertThat(warnings).hasSize(1);
+            int skippedFiles = NUMBER_OF_FILES - (lintErrors.size() - 1);
+            assertThat(warnings.get(0).getMessage())
+                    .isEqualTo("Rule timed out after 200 ms, " + skippedFiles + " files were not validated");
+        }
+    }
+
+    @Test
+    public void testHistoryValidatesTheLargestFilesFirst() throws IOException {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            File directory = new File(testFiles.getRoot(), executionMode.name());
+            List<File> sizedFiles = Lists.newArrayList(TestFiles.createFile(directory, "a-small", 10),
+                    TestFiles.createFile(directory, "b-large", 100_000),
+                    TestFiles.createFile(directory, "c-medium", 1000));
+            File historyFile = new File(directory, "jxlint.history");
+            ProgramOptions options = new ProgramOptions();
+            options.addOption(JxlintOption.HISTORY, historyFile.getPath());
+            if (executionMode == ExecutionMode.FILE_MAJOR) {
+                options.addOption(JxlintOption.FILE_MAJOR);
+            }
+            OrderRecordingLintRule lintRule = new OrderRecordingLintRule("ordered", sizedFiles);
+
+            // A single thread, so that the files are validated one after the other
+            Linter linter = new Linter(Lists.newArrayList(lintRule), 1, options);
+            linter.performLintValidations();
+
+            // The files are validated from the largest to the smallest, but the errors are still in file order
+            assertThat(lintRule.validatedFiles).extracting(File::getName)
+                    .containsExactly("b-large", "c-medium", "a-small");
+            assertThat(linter.getLintErrors()).extracting(LintError::getFile).containsExactlyElementsOf(sizedFiles);
+            assertThat(historyFile).exists();
+        }
+    }
+
+    @Test
+    public void testThreadCountsComeFromTheOptionsThenTheSettings() {
+        JxlintProgramSettings settings = new JxlintProgramSettings() {
+            @Override
+            public int getNumberOfThreads() {
+                return 3;
+            }
+
+            @Override
+            public int getNumberOfIoThreads() {
+                return 5;
+            }
+        };
+        ProgramOptions options = new ProgramOptions();
+
+        Linter linter = new Linter(Lists.newArrayList(), options, settings);
+        assertThat(linter.getNumberOfThreads()).isEqualTo(3);
+        assertThat(linter.getNumberOfIoThreads()).isEqualTo(5);
+
+        options.addOption(JxlintOption.THREADS, "2");
+        options.addOption(JxlintOption.IO_THREADS, "0");
+        linter = new Linter(Lists.newArrayList(), options, settings);
+        assertThat(linter.getNumberOfThreads()).isEqualTo(2);
+        assertThat(linter.getNumberOfIoThreads()).isEqualTo(0);
+    }
+
+    @Test
+    public void testIoHeavyRulesRunOnTheIoThreads() {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            ThreadRecordingLintRule cpuRule = new ThreadRecordingLintRule("cpu", files, 0);
+            ThreadRecordingLintRule ioRule = new ThreadRecordingLintRule("io", files, 0) {
+                @Override
+                public Workload getWorkload() {
+                    return Workload.IO;
+                }
+            };
+            ProgramOptions options = new ProgramOptions();
+            options.addOption(JxlintOption.IO_THREADS, "2");
+            if (executionMode == ExecutionMode.FILE_MAJOR) {
+                options.addOption(JxlintOption.FILE_MAJOR);
+            }
+
+            Linter linter = new Linter(Lists.newArrayList(cpuRule, ioRule), 2, options);
+            linter.performLintValidations();
+
+            assertThat(linter.getLintErrors()).hasSize(2 * NUMBER_OF_FILES);
+            assertThat(cpuRule.threadNames).doesNotContainAnyElementsOf(ioRule.threadNames);
+        }
+    }
+
+    @Test
+    public void testIoHeavyRulesRunOnVirtualThreads() {
+        assumeTrue(VirtualThreads.isSupported());
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            ThreadRecordingLintRule cpuRule = new ThreadRecordingLintRule("cpu", files, 0);
+            ThreadRecordingLintRule ioRule = new ThreadRecordingLintRule("io", files, 0) {
+                @Override
+                public Workload getWorkload() {
+                    return Workload.IO;
+                }
+            };
+            ProgramOptions options = new ProgramOptions();
+            options.addOption(JxlintOption.VIRTUAL_THREADS);
+            if (executionMode == ExecutionMode.FILE_MAJOR) {
+                options.addOption(JxlintOption.FILE_MAJOR);
+            }
+
+            Linter linter = new Linter(Lists.newArrayList(cpuRule, ioRule), 2, options);
+            linter.performLintValidations();
+
+            assertThat(linter.getNumberOfIoThreads()).isEqualTo(256);
+            assertThat(linter.getLintErrors()).hasSize(2 * NUMBER_OF_FILES);
+            Predicate<String> isVirtualThread = threadName -> threadName.startsWith("jxlint-virtual-");
+            assertThat(ioRule.threadNames).allMatch(isVirtualThread);
+            assertThat(cpuRule.threadNames).filteredOn(isVirtualThread).isEmpty();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsValidateMoreFilesAtOnceThanThereAreThreads() {
+        assumeTrue(VirtualThreads.isSupported());
+        ConcurrencyRecordingLintRule lintRule = new ConcurrencyRecordingLintRule(files.subList(0, 100), 0) {
+            @Override
+            public Workload getWorkload() {
+                return Workload.IO;
+            }
+        };
+        ProgramOptions options = new ProgramOptions();
+        options.addOption(JxlintOption.VIRTUAL_THREADS);
+        options.addOption(JxlintOption.IO_THREADS, "10");
+
+        Linter linter = new Linter(Lists.newArrayList(lintRule), 1, options);
+        linter.performLintValidations();
+
+        assertThat(linter.getLintErrors()).hasSize(100);
+        assertThat(lintRule.maxConcurrency.get()).isBetween(2, 10);
+    }
+
+    @Test
+    public void testMaxConcurrencyIsRespected() {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            ConcurrencyRecordingLintRule lintRule = new ConcurrencyRecordingLintRule(files.subList(0, 100), 2);
+
+            Linter linter = new Linter(Lists.newArrayList(lintRule), 8, executionMode);
+            linter.performLintValidations();
+
+            assertThat(linter.getLintErrors()).hasSize(100);
+            assertThat(lintRule.maxConcurrency.get()).isBetween(1, 2);
+        }
+    }
+
+    private static class SourceFileRecordingLintRule extends LintRule {
+        private final List<File> files;
+        private final Map<SourceFile, Boolean> sourceFiles;
+
+        SourceFileRecordingLintRule(String name, List<File> files, Map<SourceFile, Boolean> sourceFiles) {
+            super(name, "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+            this.sourceFiles = sourceFiles;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(SourceFile sourceFile) {
+            synchronized (sourceFiles) {
+                sourceFiles.put(sourceFile, true);
+            }
+            return getLintErrors(sourceFile.getFile());
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            return Lists.newArrayList(LintError.with(this, file).create());
+        }
+    }
+
+    private static class OrderRecordingLintRule extends LintRule {
+        private final List<File> files;
+        private final List<File> validatedFiles = Collections.synchronizedList(Lists.newArrayList());
+
+        OrderRecordingLintRule(String name, List<File> files) {
+            super(name, "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            validatedFiles.add(file);
+            return Lists.newArrayList(LintError.with(this, file).create());
+        }
+    }
+
+    private static class ConcurrencyRecordingLintRule extends LintRule {
+        private final List<File> files;
+        private final int allowedConcurrency;
+        private final AtomicInteger concurrency = new AtomicInteger();
+        private final AtomicInteger maxConcurrency = new AtomicInteger();
+
+        ConcurrencyRecordingLintRule(List<File> files, int allowedConcurrency) {
+            super("limited", "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+            this.allowedConcurrency = allowedConcurrency;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return allowedConcurrency;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            maxConcurrency.accumulateAndGet(concurrency.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrency.decrementAndGet();
+            return Lists.newArrayList(LintError.with(this, file).create());
+        }
+    }
+
+    private static class ThreadRecordingLintRule extends LintRule {
+        private final List<File> files;
+        private final long sleepMs;
+        private final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+        ThreadRecordingLintRule(String name, List<File> files, long sleepMs) {
+            super(name, "summary", "description", Severity.ERROR, Category.CORRECTNESS);
+            this.files = files;
+            this.sleepMs = sleepMs;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            threadNames.add(Thread.currentThread().getName());
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int lineNumber = Integer.parseInt(file.getName().substring("file".length())) + 1;
+            return Lists.newArrayList(LintError.with(this, file).andLineNumber(lineNumber).create());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.Benchmark;
+import com.selesse.jxlint.cache.ContentCache;
+import com.selesse.jxlint.cache.ContentSource;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.SourceFileLintRule;
+import com.selesse.jxlint.utils.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the ways the {@link Linter} can spread its work over threads: rule-major, file-major, and file-major with
+ * I/O threads reading the files ahead of the rules (see {@link Benchmark} for how to run it):
+ *
+ * <pre>
+ *     LinterTopologyBenchmark [numberOfFiles] [threads] [ioThreads] [readMs] [directory]
+ * </pre>
+ *
+ * The rules validate <code>numberOfFiles</code> (default 20,000) small Java-like files. Every topology is measured
+ * twice: with a warm cache, where the files come straight from the page cache, and with a cold cache. Dropping the
+ * page cache needs root, so a cold cache is simulated instead: every read of a file waits <code>readMs</code>
+ * milliseconds (default 1) first, like a read from a disk or a network file system would.
+ */
+public class LinterTopologyBenchmark {
+    private static final int NUMBER_OF_RULES = 4;
+
+    public static void main(String[] args) throws IOException {
+        int numberOfFiles = Benchmark.getArgument(args, 0, 20_000);
+        int threads = Benchmark.getArgument(args, 1, Runtime.getRuntime().availableProcessors());
+        int ioThreads = Benchmark.getArgument(args, 2, 4 * threads);
+        long readMs = Benchmark.getArgument(args, 3, 1L);
+
+        Benchmark.Generator generator = directory -> Benchmark.generateJavaTree(directory, numberOfFiles, 50);
+        File rootDirectory = Benchmark.getDirectory(args, 4, generator);
+        Benchmark.useSourceDirectory(rootDirectory);
+        List<File> files = FileUtils.allFiles(rootDirectory);
+        List<LintRule> rules = Lists.newArrayList();
+        for (int i = 0; i < NUMBER_OF_RULES; i++) {
+            rules.add(new LoggerCallLintRule("Logger calls " + i, files));
+        }
+
+        System.out.printf("%-40s %14s %14s%n", "topology", "warm (ms)", "cold (ms)");
+        printTimes("rule-major, " + threads + " threads", rules, threads,
+                createOptions(ExecutionMode.RULE_MAJOR, 0), readMs);
+        printTimes("file-major, " + threads + " threads", rules, threads,
+                createOptions(ExecutionMode.FILE_MAJOR, 0), readMs);
+        printTimes("file-major, " + threads + " + " + ioThreads + " I/O threads", rules, threads,
+                createOptions(ExecutionMode.FILE_MAJOR, ioThreads), readMs);
+    }
+
+    private static ProgramOptions createOptions(ExecutionMode executionMode, int ioThreads) {
+        ProgramOptions options = new ProgramOptions();
+        if (executionMode == ExecutionMode.FILE_MAJOR) {
+            options.addOption(JxlintOption.FILE_MAJOR);
+        }
+        options.addOption(JxlintOption.IO_THREADS, String.valueOf(ioThreads));
+        return options;
+    }
+
+    private static void printTimes(String topology, List<LintRule> rules, int threads, ProgramOptions options,
+                                   long readMs) {
+        long warmMs = Benchmark.warmUpAndTime(() -> run(rules, threads, options, null));
+        long coldMs = Benchmark.time(() -> run(rules, threads, options, new SlowContentSource(readMs)));
+        System.out.printf("%-40s %14d %14d%n", topology, warmMs, coldMs);
+    }
+
+    private static void run(List<LintRule> rules, int threads, ProgramOptions options, ContentSource contentSource) {
+        ContentCache.setContentSource(contentSource);
+        try {
+            new Linter(rules, threads, options).performLintValidations();
+        }
+        finally {
+            // Back to the file system
+            ContentCache.setContentSource(null);
+        }
+    }
+
+    /**
+     * Waits before every read, like a disk that has to seek would.
+     */
+    static class SlowContentSource implements ContentSource {
+        private final long readMs;
+
+        SlowContentSource(long readMs) {
+            this.readMs = readMs;
+        }
+
+        @Override
+        public InputStream openStream(File file) throws IOException {
+            try {
+                Thread.sleep(readMs);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new FileInputStream(file);
+        }
+    }
+
+    /**
+     * Runs a regex over the contents of every file, which it gets from its {@link SourceFile}.
+     */
+    private static class LoggerCallLintRule extends SourceFileLintRule {
+        private static final Pattern LOGGER_CALL = Pattern.compile("\\b(\\w+)\\.(info|debug|warn|error)\\(");
+
+        private final List<File> files;
+
+        LoggerCallLintRule(String name, List<File> files) {
+            super(name, "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(SourceFile sourceFile) throws IOException {
+            List<LintError> lintErrors = Lists.newArrayList();
+            Matcher matcher = LOGGER_CALL.matcher(sourceFile.getContents());
+            while (matcher.find()) {
+                lintErrors.add(LintError.with(this, sourceFile.getFile()).create());
+            }
+            return lintErrors;
+        }
+    }
+}
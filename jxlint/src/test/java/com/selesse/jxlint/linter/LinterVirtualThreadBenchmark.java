@@ -0,0 +1,121 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.selesse.jxlint.Benchmark;
+import com.selesse.jxlint.cache.ContentCache;
+import com.selesse.jxlint.model.JxlintOption;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.SourceFile;
+import com.selesse.jxlint.model.rules.SourceFileLintRule;
+import com.selesse.jxlint.model.rules.Workload;
+import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.utils.VirtualThreads;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Compares I/O-heavy rules running on a pool of platform threads with the same rules running on virtual threads,
+ * when the files are slow to read, like on a network file system. Needs Java 21 or later (see {@link Benchmark} for
+ * how to run it):
+ *
+ * <pre>
+ *     LinterVirtualThreadBenchmark [numberOfFiles] [ioThreads] [readMs] [directory]
+ * </pre>
+ *
+ * Every rule opens its own stream on every file, like a parser that detects the encoding itself would, so every rule
+ * waits <code>readMs</code> milliseconds (default 5) per file (see {@link LinterTopologyBenchmark.SlowContentSource}).
+ * The platform pool has <code>ioThreads</code> threads (default 16); virtual threads validate up to 256 files at the
+ * same time. Since the reads are simulated, there is no warm-up run.
+ */
+public class LinterVirtualThreadBenchmark {
+    private static final int NUMBER_OF_RULES = 4;
+
+    public static void main(String[] args) throws IOException {
+        if (!VirtualThreads.isSupported()) {
+            System.err.println("Virtual threads need Java 21 or later");
+            return;
+        }
+        int numberOfFiles = Benchmark.getArgument(args, 0, 5000);
+        int ioThreads = Benchmark.getArgument(args, 1, 16);
+        long readMs = Benchmark.getArgument(args, 2, 5L);
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        Benchmark.Generator generator = directory -> Benchmark.generateJavaTree(directory, numberOfFiles, 50);
+        File rootDirectory = Benchmark.getDirectory(args, 3, generator);
+        Benchmark.useSourceDirectory(rootDirectory);
+        List<File> files = FileUtils.allFiles(rootDirectory);
+        List<LintRule> rules = Lists.newArrayList();
+        for (int i = 0; i < NUMBER_OF_RULES; i++) {
+            rules.add(new StreamingLintRule("Streaming " + i, files));
+        }
+
+        ContentCache.setContentSource(new LinterTopologyBenchmark.SlowContentSource(readMs));
+        System.out.printf("%-40s %14s%n", "executor", "time (ms)");
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            String mode = executionMode == ExecutionMode.FILE_MAJOR ? "file-major" : "rule-major";
+            Linter platformLinter = new Linter(rules, threads, createOptions(executionMode, ioThreads, false));
+            long platformMs = Benchmark.time(platformLinter::performLintValidations);
+            System.out.printf("%-40s %14d%n", mode + ", " + ioThreads + " platform I/O threads", platformMs);
+            Linter virtualLinter = new Linter(rules, threads, createOptions(executionMode, 0, true));
+            long virtualMs = Benchmark.time(virtualLinter::performLintValidations);
+            System.out.printf("%-40s %14d%n", mode + ", virtual I/O threads", virtualMs);
+        }
+        ContentCache.setContentSource(null);
+    }
+
+    private static ProgramOptions createOptions(ExecutionMode executionMode, int ioThreads,
+                                                boolean isUsingVirtualThreads) {
+        ProgramOptions options = new ProgramOptions();
+        if (executionMode == ExecutionMode.FILE_MAJOR) {
+            options.addOption(JxlintOption.FILE_MAJOR);
+        }
+        if (isUsingVirtualThreads) {
+            options.addOption(JxlintOption.VIRTUAL_THREADS);
+        }
+        else {
+            options.addOption(JxlintOption.IO_THREADS, String.valueOf(ioThreads));
+        }
+        return options;
+    }
+
+    /**
+     * Reads the raw bytes of every file, and reports the files that aren't empty.
+     */
+    private static class StreamingLintRule extends SourceFileLintRule {
+        private final List<File> files;
+
+        StreamingLintRule(String name, List<File> files) {
+            super(name, "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            this.files = files;
+        }
+
+        @Override
+        public List<File> getFilesToValidate() {
+            return files;
+        }
+
+        @Override
+        public Workload getWorkload() {
+            return Workload.IO;
+        }
+
+        @Override
+        public List<LintError> getLintErrors(SourceFile sourceFile) throws IOException {
+            List<LintError> lintErrors = Lists.newArrayList();
+            try (InputStream inputStream = sourceFile.openStream()) {
+                if (ByteStreams.toByteArray(inputStream).length > 0) {
+                    lintErrors.add(LintError.with(this, sourceFile.getFile()).create());
+                }
+            }
+            return lintErrors;
+        }
+    }
+}
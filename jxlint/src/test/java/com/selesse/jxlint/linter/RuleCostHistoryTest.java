@@ -0,0 +1,77 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.samplerules.xml.rules.XmlEncodingRule;
+import com.selesse.jxlint.samplerules.xml.rules.XmlVersionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class RuleCostHistoryTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File historyFile;
+    private LintRule encodingRule;
+    private LintRule versionRule;
+
+    @Before
+    public void setup() {
+        historyFile = new File(testFiles.getRoot(), "jxlint.history");
+        encodingRule = new XmlEncodingRule();
+        versionRule = new XmlVersionRule();
+    }
+
+    @Test
+    public void testMissingFileIsAnEmptyHistory() {
+        RuleCostHistory ruleCostHistory = RuleCostHistory.load(historyFile);
+
+        assertThat(ruleCostHistory.getMillisecondsPerFile(encodingRule)).isNull();
+    }
+
+    @Test
+    public void testEveryRunCountsForHalfOfTheCost() {
+        RuleCostHistory ruleCostHistory = RuleCostHistory.load(historyFile);
+
+        ruleCostHistory.update(encodingRule, 100, 10);
+        assertThat(ruleCostHistory.getMillisecondsPerFile(encodingRule)).isCloseTo(10.0, within(0.001));
+
+        ruleCostHistory.update(encodingRule, 60, 2);
+        assertThat(ruleCostHistory.getMillisecondsPerFile(encodingRule)).isCloseTo(20.0, within(0.001));
+
+        // A run without files doesn't say anything about the cost of a file
+        ruleCostHistory.update(encodingRule, 5, 0);
+        assertThat(ruleCostHistory.getMillisecondsPerFile(encodingRule)).isCloseTo(20.0, within(0.001));
+    }
+
+    @Test
+    public void testHistoryIsKeptBetweenRuns() throws IOException {
+        RuleCostHistory ruleCostHistory = RuleCostHistory.load(historyFile);
+        ruleCostHistory.update(encodingRule, 300, 4);
+        ruleCostHistory.update(versionRule, 1, 100);
+        ruleCostHistory.save();
+
+        RuleCostHistory loadedHistory = RuleCostHistory.load(historyFile);
+        assertThat(loadedHistory.getMillisecondsPerFile(encodingRule)).isCloseTo(75.0, within(0.001));
+        assertThat(loadedHistory.getMillisecondsPerFile(versionRule)).isCloseTo(0.01, within(0.001));
+    }
+
+    @Test
+    public void testCostsThatArentNumbersAreIgnored() throws IOException {
+        Files.write(encodingRule.getName().replace(" ", "\\ ") + "=slow\n" +
+                versionRule.getName().replace(" ", "\\ ") + "=2.5\n", historyFile, Charsets.UTF_8);
+
+        RuleCostHistory ruleCostHistory = RuleCostHistory.load(historyFile);
+        assertThat(ruleCostHistory.getMillisecondsPerFile(encodingRule)).isNull();
+        assertThat(ruleCostHistory.getMillisecondsPerFile(versionRule)).isCloseTo(2.5, within(0.001));
+    }
+}
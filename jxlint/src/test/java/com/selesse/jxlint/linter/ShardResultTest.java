@@ -0,0 +1,128 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRules;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ShardResultTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File directory;
+    private LintRules lintRules;
+    private LintRule rule;
+
+    @Before
+    public void setup() {
+        directory = testFiles.getRoot();
+        lintRules = new XmlLintRulesTestImpl();
+        rule = lintRules.getAllRules().get(0);
+    }
+
+    @Test
+    public void testErrorsAreKeptWhenSaved() throws IOException {
+        File otherDirectory = testFiles.newDirectory();
+        List<LintError> lintErrors = Lists.newArrayList(
+                LintError.with(rule, new File(new File(directory, "sub"), "a.xml")).andLineNumber(3)
+                        .andErrorMessage("message").create(),
+                LintError.with(rule, new File(directory, "b.xml")).andSeverity(Severity.FATAL)
+                        .andException(new IOException("unreadable")).create());
+
+        File resultFile = new File(directory, "shard1");
+        createResult(1, 2, "split", lintErrors).save(resultFile, directory);
+        ShardResult shardResult = ShardResult.load(resultFile, lintRules, otherDirectory);
+
+        assertThat(shardResult.getShard()).isEqualTo("1/2");
+        List<LintError> loadedErrors = shardResult.getLintErrors();
+        assertThat(loadedErrors).hasSize(2);
+        assertThat(loadedErrors.get(0).getViolatedRule()).isSameAs(rule);
+        assertThat(loadedErrors.get(0).getFile()).isEqualTo(new File(otherDirectory, "sub/a.xml"));
+        assertThat(loadedErrors.get(0).getLineNumber()).isEqualTo(3);
+        assertThat(loadedErrors.get(0).getMessage()).isEqualTo("message");
+        assertThat(loadedErrors.get(0).getSeverity()).isEqualTo(rule.getSeverity());
+        assertThat(loadedErrors.get(1).getSeverity()).isEqualTo(Severity.FATAL);
+        assertThat(loadedErrors.get(1).getException().toString()).isEqualTo("java.io.IOException: unreadable");
+    }
+
+    @Test
+    public void testOtherFilesAreNotLoaded() throws IOException {
+        File resultFile = new File(directory, "shard1");
+        Files.write("not a partial result".getBytes(), resultFile);
+
+        try {
+            ShardResult.load(resultFile, lintRules, directory);
+            fail("Expected the file to be rejected");
+        }
+        catch (IOException e) {
+            // Not gzipped
+        }
+    }
+
+    @Test
+    public void testShardsAreMergedInOrder() throws IOException {
+        LintError firstError = LintError.with(rule, new File(directory, "a.xml")).create();
+        LintError secondError = LintError.with(rule, new File(directory, "b.xml")).create();
+
+        List<LintError> lintErrors = ShardResult.merge(Lists.newArrayList(
+                createResult(2, 2, "split", Collections.singletonList(secondError)),
+                createResult(1, 2, "split", Collections.singletonList(firstError))));
+
+        assertThat(lintErrors).containsExactly(firstError, secondError);
+    }
+
+    @Test
+    public void testMissingShardsAreRejected() {
+        assertMergeFails("Shard 2/3 is missing", createResult(1, 3, "split"), createResult(3, 3, "split"));
+    }
+
+    @Test
+    public void testDuplicateShardsAreRejected() {
+        assertMergeFails("Shard 1/2 is there more than once", createResult(1, 2, "split"),
+                createResult(1, 2, "split"));
+    }
+
+    @Test
+    public void testShardsSplitDifferentlyAreRejected() {
+        assertMergeFails("Shard 2/2 was not split like shard 1/2: they saw different rules, files or histories",
+                createResult(1, 2, "split"), createResult(2, 2, "another split"));
+        assertMergeFails("Shard 2/3 was not split like shard 1/2: they saw different rules, files or histories",
+                createResult(1, 2, "split"), createResult(2, 3, "split"));
+    }
+
+    private void assertMergeFails(String expectedMessage, ShardResult... shardResults) {
+        try {
+            ShardResult.merge(Lists.newArrayList(shardResults));
+            fail("Expected the merge to fail");
+        }
+        catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo(expectedMessage);
+        }
+    }
+
+    private static ShardResult createResult(int shardIndex, int numberOfShards, String fingerprint) {
+        return createResult(shardIndex, numberOfShards, fingerprint, Collections.emptyList());
+    }
+
+    private static ShardResult createResult(int shardIndex, int numberOfShards, String fingerprint,
+                                            List<LintError> lintErrors) {
+        return ShardResult.of(new ShardAssignment(shardIndex, numberOfShards, fingerprint,
+                Collections.emptyMap()), lintErrors);
+    }
+}
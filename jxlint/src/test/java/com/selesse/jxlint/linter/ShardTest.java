@@ -0,0 +1,129 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.ShardAssignment;
+import com.selesse.jxlint.model.rules.ValidationOrder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ShardTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File directory;
+    private List<File> files;
+    private List<LintRule> rules;
+
+    @Before
+    public void setup() throws IOException {
+        directory = testFiles.getRoot();
+        files = Lists.newArrayList();
+        for (int i = 0; i < 12; i++) {
+            files.add(testFiles.createFile("file" + i, 1000 * (i + 1)));
+        }
+        rules = Lists.newArrayList(new LintPlanTest.FixedFilesLintRule("first", files),
+                new LintPlanTest.FixedFilesLintRule("second", files.subList(0, 6)));
+    }
+
+    @Test
+    public void testShardsAreParsed() {
+        Shard shard = Shard.parse("3/8");
+
+        assertThat(shard.getIndex()).isEqualTo(3);
+        assertThat(shard.getCount()).isEqualTo(8);
+        assertThat(shard.toString()).isEqualTo("3/8");
+    }
+
+    @Test
+    public void testInvalidShardsAreRejected() {
+        for (String invalidShard : new String[] { "0/2", "3/2", "1", "a/2", "1/2/3", "" }) {
+            try {
+                Shard.parse(invalidShard);
+                fail("Expected \"" + invalidShard + "\" to be rejected");
+            }
+            catch (IllegalArgumentException e) {
+                assertThat(e.getMessage()).isEqualTo("Invalid shard \"" + invalidShard + "\". Try i/N, like 3/8, " +
+                        "with i from 1 to N.");
+            }
+        }
+    }
+
+    @Test
+    public void testEveryFileOfEveryRuleIsInExactlyOneShard() {
+        List<ShardAssignment> shardAssignments = assignAll(3);
+
+        for (LintRule rule : rules) {
+            List<File> shardedFiles = Lists.newArrayList();
+            for (ShardAssignment shardAssignment : shardAssignments) {
+                shardedFiles.addAll(shardAssignment.getFiles(rule));
+            }
+            assertThat(shardedFiles).containsOnlyElementsOf(rule.getFilesToValidate());
+            assertThat(shardedFiles).hasSameSizeAs(rule.getFilesToValidate());
+        }
+    }
+
+    @Test
+    public void testShardsGetAsMuchWork() {
+        List<ShardAssignment> shardAssignments = assignAll(3);
+
+        // 78000 bytes for the first rule and 21000 for the second, plus 4096 bytes for each of their 18 files: 57576
+        // bytes per shard
+        for (ShardAssignment shardAssignment : shardAssignments) {
+            long cost = 0;
+            for (LintRule rule : rules) {
+                for (File file : shardAssignment.getFiles(rule)) {
+                    cost += file.length() + 4096;
+                }
+            }
+            assertThat(cost).isBetween(55_000L, 60_000L);
+        }
+    }
+
+    @Test
+    public void testFilesAreValidatedInTheOrderOfTheRule() {
+        for (ShardAssignment shardAssignment : assignAll(2)) {
+            List<File> shardFiles = shardAssignment.getFiles(rules.get(0));
+            List<File> expectedOrder = Lists.newArrayList(files);
+            expectedOrder.retainAll(shardFiles);
+            assertThat(shardFiles).containsExactlyElementsOf(expectedOrder);
+        }
+    }
+
+    @Test
+    public void testEveryShardHasTheSameFingerprint() {
+        List<ShardAssignment> shardAssignments = assignAll(4);
+        for (ShardAssignment shardAssignment : shardAssignments) {
+            assertThat(shardAssignment.getFingerprint()).isEqualTo(shardAssignments.get(0).getFingerprint());
+        }
+
+        // Another file changes the split
+        rules.add(new LintPlanTest.FixedFilesLintRule("third", files.subList(0, 1)));
+        assertThat(assignAll(4).get(0).getFingerprint()).isNotEqualTo(shardAssignments.get(0).getFingerprint());
+    }
+
+    @Test
+    public void testPathsAreRelativeToTheSourceDirectory() {
+        File file = new File(new File(directory, "sub"), "file.xml");
+
+        assertThat(Shard.getPortablePath(directory, file)).isEqualTo("sub/file.xml");
+    }
+
+    private List<ShardAssignment> assignAll(int numberOfShards) {
+        List<ShardAssignment> shardAssignments = Lists.newArrayList();
+        for (int i = 1; i <= numberOfShards; i++) {
+            shardAssignments.add(Shard.parse(i + "/" + numberOfShards).assign(rules, directory,
+                    RuleCostHistory.empty(), new ValidationOrder()));
+        }
+        return shardAssignments;
+    }
+}
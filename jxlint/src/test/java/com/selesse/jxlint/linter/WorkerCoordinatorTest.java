@@ -0,0 +1,163 @@
+package com.selesse.jxlint.linter;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.rules.AbstractLintRules;
+import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.utils.FileSelector;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkerCoordinatorTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File sourceDirectory;
+    private List<LintRule> rules;
+
+    @Before
+    public void setup() throws IOException {
+        sourceDirectory = testFiles.getRoot();
+        for (String name : new String[] { "a.xml", "b.xml", "crash.xml", "d.xml", "e.xml" }) {
+            testFiles.createFile(name, "<a/>");
+        }
+
+        LintRulesImpl.setInstance(new WorkerLintRules());
+        LintRulesImpl.getInstance().setSourceDirectory(sourceDirectory);
+        rules = Lists.newArrayList(LintRulesImpl.getInstance().getAllRules());
+    }
+
+    @Test
+    public void testWorkersFindTheSameErrorsAsThisProcess() throws Exception {
+        // Nothing crashes
+        new File(sourceDirectory, CrashOnceRule.CRASHED_MARKER).createNewFile();
+        List<LintError> expectedErrors = Lists.newArrayList();
+        for (LintRule rule : rules) {
+            expectedErrors.addAll(new ValidationThread(rule).call());
+        }
+
+        WorkerCoordinator workerCoordinator = createCoordinator();
+        List<LintError> lintErrors = workerCoordinator.validate(rules, new int[] { 0, 1 }, null);
+
+        assertThat(workerCoordinator.getNumberOfDeadWorkers()).isEqualTo(0);
+        assertSameErrors(lintErrors, expectedErrors);
+    }
+
+    @Test
+    public void testFilesOfDeadWorkersAreValidatedByTheOthers() {
+        WorkerCoordinator workerCoordinator = createCoordinator();
+        List<LintError> lintErrors = workerCoordinator.validate(rules, new int[] { 1, 0 }, null);
+
+        assertThat(new File(sourceDirectory, CrashOnceRule.CRASHED_MARKER)).exists();
+        assertThat(workerCoordinator.getNumberOfDeadWorkers()).isEqualTo(1);
+        assertThat(lintErrors).hasSize(10);
+        assertThat(lintErrors).extracting(lintError -> lintError.getViolatedRule().getName())
+                .containsExactly("Crash once", "Crash once", "Crash once", "Crash once", "Crash once",
+                        "Every file", "Every file", "Every file", "Every file", "Every file");
+        assertThat(lintErrors).extracting(lintError -> lintError.getFile().getName())
+                .containsExactly("a.xml", "b.xml", "crash.xml", "d.xml", "e.xml",
+                        "a.xml", "b.xml", "crash.xml", "d.xml", "e.xml");
+    }
+
+    @Test
+    public void testFilesAreValidatedInThisProcessWithoutWorkers() throws IOException {
+        new File(sourceDirectory, CrashOnceRule.CRASHED_MARKER).createNewFile();
+
+        // The workers can't create the rules, and exit before connecting
+        WorkerCoordinator workerCoordinator = new WorkerCoordinator(1, "com.selesse.jxlint.NoSuchLintRules", 0, 0);
+        List<LintError> lintErrors = workerCoordinator.validate(rules, new int[] { 0, 1 }, null);
+
+        assertThat(workerCoordinator.getNumberOfDeadWorkers()).isEqualTo(1);
+        assertThat(lintErrors).hasSize(10);
+    }
+
+    private static WorkerCoordinator createCoordinator() {
+        return new WorkerCoordinator(2, WorkerLintRules.class.getName(), 0, 0);
+    }
+
+    private static void assertSameErrors(List<LintError> lintErrors, List<LintError> expectedErrors) {
+        assertThat(lintErrors).hasSameSizeAs(expectedErrors);
+        for (int i = 0; i < lintErrors.size(); i++) {
+            LintError lintError = lintErrors.get(i);
+            LintError expectedError = expectedErrors.get(i);
+            assertThat(lintError.getViolatedRule()).isSameAs(expectedError.getViolatedRule());
+            assertThat(lintError.getFile()).isEqualTo(expectedError.getFile());
+            assertThat(lintError.getLineNumber()).isEqualTo(expectedError.getLineNumber());
+            assertThat(lintError.getMessage()).isEqualTo(expectedError.getMessage());
+            assertThat(lintError.getSeverity()).isEqualTo(expectedError.getSeverity());
+        }
+    }
+
+    /**
+     * The rules the workers create.
+     */
+    public static class WorkerLintRules extends AbstractLintRules {
+        @Override
+        public void initializeLintRules() {
+            lintRules.add(new CrashOnceRule());
+            lintRules.add(new EveryFileRule());
+        }
+    }
+
+    /**
+     * Reports every XML file.
+     */
+    private static class EveryFileRule extends LintRule {
+        EveryFileRule() {
+            this("Every file");
+        }
+
+        EveryFileRule(String name) {
+            super(name, "summary", "description", Severity.WARNING, Category.CORRECTNESS);
+        }
+
+        @Override
+        public FileSelector getFileSelector() {
+            return FileSelector.withExtension("xml");
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            return Lists.newArrayList(LintError.with(this, file).andLineNumber(1)
+                    .andErrorMessage("Found " + file.getName()).create());
+        }
+    }
+
+    /**
+     * Reports every XML file, but kills the process the first time it sees "crash.xml".
+     */
+    private static class CrashOnceRule extends EveryFileRule {
+        static final String CRASHED_MARKER = "crashed";
+
+        CrashOnceRule() {
+            super("Crash once");
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            File crashedMarker = new File(file.getParentFile(), CRASHED_MARKER);
+            if (file.getName().equals("crash.xml") && !crashedMarker.exists()) {
+                try {
+                    Files.touch(crashedMarker);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                Runtime.getRuntime().halt(1);
+            }
+            return super.getLintErrors(file);
+        }
+    }
+}
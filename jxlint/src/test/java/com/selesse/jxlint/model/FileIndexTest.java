@@ -0,0 +1,103 @@
+package com.selesse.jxlint.model;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.utils.FileIndex;
+import com.selesse.jxlint.utils.FileSelector;
+import com.selesse.jxlint.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileIndexTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+
+    @Before
+    public void setup() throws IOException {
+        rootTempDir = testFiles.getRoot();
+        testFiles.createFile("a/1.xml", 0);
+        testFiles.createFile("a/2.txt", 0);
+        testFiles.createFile("b/3.xml", 0);
+    }
+
+    @After
+    public void tearDown() {
+        FileIndex.deactivate();
+    }
+
+    @Test
+    public void testActiveIndexOnlyWalksOnce() throws IOException {
+        FileIndex.activate(rootTempDir);
+        assertThat(FileUtils.allFilesWithExtension(rootTempDir, "xml")).hasSize(2);
+
+        testFiles.createFile("b/4.xml", 0);
+
+        // The index was built during the first lookup, so it doesn't know about the new file
+        assertThat(FileUtils.allFilesWithExtension(rootTempDir, "xml")).hasSize(2);
+
+        FileIndex.deactivate();
+        assertThat(FileUtils.allFilesWithExtension(rootTempDir, "xml")).hasSize(3);
+    }
+
+    @Test
+    public void testActiveIndexAnswersForSubdirectories() {
+        FileIndex.activate(rootTempDir);
+
+        assertThat(FileUtils.allFiles(new File(rootTempDir, "a"))).extracting(File::getName)
+                .containsOnly("1.xml", "2.txt");
+        assertThat(FileUtils.allFilesMatchingGlob(new File(rootTempDir, "b"), "*.xml")).extracting(File::getName)
+                .containsOnly("3.xml");
+    }
+
+    @Test
+    public void testSelectorsShareTheSameIndex() {
+        FileIndex fileIndex = FileIndex.of(rootTempDir);
+
+        assertThat(fileIndex.getFiles()).hasSize(3);
+        assertThat(fileIndex.select(FileSelector.withExtension("XML"))).hasSize(2);
+        assertThat(fileIndex.select(FileSelector.withFilename("2.txt"))).hasSize(1);
+        assertThat(fileIndex.select(FileSelector.matching("[0-9]\\.xml"))).hasSize(2);
+        assertThat(fileIndex.select(FileSelector.matchingGlob("a/*"))).hasSize(2);
+        assertThat(fileIndex.select(FileSelector.containing("3"))).hasSize(1);
+    }
+
+    @Test
+    public void testActiveIndexKnowsTheSizeOfItsFiles() throws IOException {
+        File file = testFiles.createFile("c/5.txt", 0);
+        Files.write("five", file, Charsets.UTF_8);
+        FileIndex.activate(rootTempDir);
+        assertThat(FileUtils.allFiles(rootTempDir)).hasSize(4);
+
+        Files.append(" and more", file, Charsets.UTF_8);
+
+        // The size the walk saw, not the size on disk
+        assertThat(FileIndex.getKnownSize(FileUtils.normalizeFile(file))).isEqualTo(4);
+        assertThat(FileIndex.getKnownSize(new File(rootTempDir, "missing.txt"))).isEqualTo(-1);
+    }
+
+    @Test
+    public void testIgnoredFilesAreLeftOutOfTheActiveIndexOnly() throws IOException {
+        Files.write("b/\n", new File(rootTempDir, ".gitignore"), Charsets.UTF_8);
+        File gitDirectory = new File(rootTempDir, ".git");
+        assertThat(gitDirectory.mkdir()).isTrue();
+        Files.write("ref: refs/heads/master\n", new File(gitDirectory, "HEAD"), Charsets.UTF_8);
+
+        // Outside of a run, every file is listed, like it always was
+        assertThat(FileUtils.allFiles(rootTempDir)).extracting(File::getName)
+                .containsOnly(".gitignore", "HEAD", "1.xml", "2.txt", "3.xml");
+
+        FileIndex.activate(rootTempDir);
+        assertThat(FileUtils.allFiles(rootTempDir)).extracting(File::getName)
+                .containsOnly(".gitignore", "1.xml", "2.txt");
+    }
+}
@@ -89,4 +89,16 @@ public class FileUtilsTest {
         List<File> files = FileUtils.allFilesContaining(rootTempDir, "test");
         assertItemsEqualInAnyOrder(files, "test.xml", "test.xml");
     }
+
+    @Test
+    public void testGetFilesMatchingGlob() {
+        List<File> files = FileUtils.allFilesMatchingGlob(rootTempDir, "w/**.xml");
+        assertItemsEqualInAnyOrder(files, "test.xml", "test.xml");
+    }
+
+    @Test
+    public void testGetFilesMatchingGlobWithoutDirectoryMatchesFilename() {
+        List<File> files = FileUtils.allFilesMatchingGlob(rootTempDir, "*.{java,txt}");
+        assertItemsEqualInAnyOrder(files, "Test.java", "Test.txt");
+    }
 }
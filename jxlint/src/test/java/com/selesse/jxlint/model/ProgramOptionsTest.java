@@ -53,4 +53,44 @@ public class ProgramOptionsTest extends AbstractTestCase {
 
         assertThat(categoryList).hasSize(4);
     }
+
+    @Test
+    public void testGettingByteSizesUnderstandsUnits() {
+        assertThat(ProgramOptions.getByteSizeFromOptionString("0")).isEqualTo(0);
+        assertThat(ProgramOptions.getByteSizeFromOptionString("1000")).isEqualTo(1000);
+        assertThat(ProgramOptions.getByteSizeFromOptionString("512k")).isEqualTo(512 * 1024);
+        assertThat(ProgramOptions.getByteSizeFromOptionString("64M")).isEqualTo(64 * 1024 * 1024);
+        assertThat(ProgramOptions.getByteSizeFromOptionString("2g")).isEqualTo(2L * 1024 * 1024 * 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGettingInvalidByteSizeThrowsAnException() {
+        ProgramOptions.getByteSizeFromOptionString("64mb");
+    }
+
+    @Test
+    public void testGettingDurationsUnderstandsUnits() {
+        assertThat(ProgramOptions.getDurationFromOptionString("0")).isEqualTo(0);
+        assertThat(ProgramOptions.getDurationFromOptionString("30")).isEqualTo(30 * 1000);
+        assertThat(ProgramOptions.getDurationFromOptionString("500ms")).isEqualTo(500);
+        assertThat(ProgramOptions.getDurationFromOptionString("30s")).isEqualTo(30 * 1000);
+        assertThat(ProgramOptions.getDurationFromOptionString("5M")).isEqualTo(5 * 60 * 1000);
+        assertThat(ProgramOptions.getDurationFromOptionString("1h")).isEqualTo(60 * 60 * 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGettingInvalidDurationThrowsAnException() {
+        ProgramOptions.getDurationFromOptionString("5 minutes");
+    }
+
+    @Test
+    public void testGettingThreadCounts() {
+        assertThat(ProgramOptions.getThreadCountFromOptionString("8", 1)).isEqualTo(8);
+        assertThat(ProgramOptions.getThreadCountFromOptionString(" 0 ", 0)).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGettingThreadCountUnderTheMinimumThrowsAnException() {
+        ProgramOptions.getThreadCountFromOptionString("0", 1);
+    }
 }
@@ -0,0 +1,83 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Strings;
+import com.google.common.io.CharStreams;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.samplerules.xml.rules.AuthorTagRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineIndexTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private SourceFile createSourceFile(String contents) throws IOException {
+        return new SourceFile(testFiles.createFile("file.txt", contents));
+    }
+
+    @Test
+    public void testOffsetsAreTurnedIntoLinesAndColumns() {
+        LineIndex lineIndex = LineIndex.of("first\nsecond\r\nthird\rfourth");
+
+        assertThat(lineIndex.getLineCount()).isEqualTo(4);
+        assertThat(lineIndex.getLineNumber(0)).isEqualTo(1);
+        assertThat(lineIndex.getLineNumber(5)).isEqualTo(1);
+        assertThat(lineIndex.getLineNumber(6)).isEqualTo(2);
+        assertThat(lineIndex.getLineNumber(13)).isEqualTo(2);
+        assertThat(lineIndex.getLineNumber(14)).isEqualTo(3);
+        assertThat(lineIndex.getLineNumber(20)).isEqualTo(4);
+        assertThat(lineIndex.getLineNumber(26)).isEqualTo(4);
+        assertThat(lineIndex.getColumnNumber(0)).isEqualTo(1);
+        assertThat(lineIndex.getColumnNumber(9)).isEqualTo(4);
+        assertThat(lineIndex.getNextLineStart(2)).isEqualTo(14);
+    }
+
+    @Test
+    public void testLinesAreCountedLikeReadLines() throws IOException {
+        String[] contents = { "", "\n", "\n\n", "one", "one\n", "one\r\n", "one\r\ntwo\r", "\r\n\r\n", "a\n\rb" };
+        for (String content : contents) {
+            assertThat(LineIndex.of(content).getLineCount()).as(content)
+                    .isEqualTo(CharStreams.readLines(new StringReader(content)).size());
+            assertThat(createSourceFile(content).getLines()).as(content)
+                    .isEqualTo(CharStreams.readLines(new StringReader(content)));
+        }
+    }
+
+    @Test
+    public void testLinesAreViewsOfTheContents() throws IOException {
+        SourceFile sourceFile = createSourceFile(Strings.repeat("line\r\n", 1000) + "last line");
+
+        assertThat(sourceFile.getLineIndex().getLineCount()).isEqualTo(1001);
+        assertThat(sourceFile.getLine(500).toString()).isEqualTo("line");
+        assertThat(sourceFile.getLine(1001).toString()).isEqualTo("last line");
+        assertThat(sourceFile.getLineIndex()).isSameAs(sourceFile.getLineIndex());
+    }
+
+    @Test
+    public void testErrorsCanBePlacedWithAnOffset() throws IOException {
+        String contents = "<a>\n  <b/>\n  <c/>\n</a>\n";
+        SourceFile sourceFile = createSourceFile(contents);
+
+        LintError lintError = LintError.with(new AuthorTagRule(), sourceFile).andOffset(contents.indexOf("<c/>"))
+                .create();
+
+        assertThat(lintError.getLineNumber()).isEqualTo(3);
+        assertThat(lintError.getFile().getName()).isEqualTo("file.txt");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffsetsNeedASourceFile() throws IOException {
+        LintError.with(new AuthorTagRule(), new File(testFiles.getRoot(), "file.txt")).andOffset(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOffsetsPastTheEndAreRejected() {
+        LineIndex.of("abc").getLineNumber(4);
+    }
+}
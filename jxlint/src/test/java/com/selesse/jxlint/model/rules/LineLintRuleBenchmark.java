@@ -0,0 +1,158 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.Benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares a rule that reads its file with {@link Files#readLines(File, java.nio.charset.Charset)}, like the example
+ * of {@link LintRule} does, with {@link LineLintRule}s, on a single large file of generated SQL (see
+ * {@link Benchmark} for how to run it, with <code>-Xmx1g</code>):
+ *
+ * <pre>
+ *     LineLintRuleBenchmark [sizeInMegabytes] [file]
+ * </pre>
+ *
+ * The file is 2048 MB by default. Three line rules run once with a read each, and once sharing a single read. There
+ * is no warm-up run, since reading the file dwarfs the compilation. The peak heap is the peak of every heap pool
+ * while the rule ran, so it is only a rough measure.
+ */
+public class LineLintRuleBenchmark {
+    private static final int MAXIMUM_LINE_LENGTH = 100;
+
+    public static void main(String[] args) throws IOException {
+        long sizeInMegabytes = Benchmark.getArgument(args, 0, 2048L);
+        File file = Benchmark.getFile(args, 1, "lines.sql", path -> generateFile(path, sizeInMegabytes * 1024 * 1024));
+
+        System.out.printf("%-36s %10s %10s %12s %14s%n", "rule", "errors", "time (ms)", "MB/s", "peak heap (MB)");
+        run("readLines", file, () -> new ReadLinesRule().getLintErrors(file));
+        run("LineLintRule", file, () -> new LongLineRule(MAXIMUM_LINE_LENGTH).getLintErrors(file));
+
+        List<LintRule> rules = Lists.newArrayList(new LongLineRule(MAXIMUM_LINE_LENGTH),
+                new LongLineRule(MAXIMUM_LINE_LENGTH / 2), new LongLineRule(MAXIMUM_LINE_LENGTH * 2));
+        run("3 LineLintRules, 3 reads", file, () -> {
+            List<LintError> lintErrors = Lists.newArrayList();
+            for (LintRule rule : rules) {
+                lintErrors.addAll(rule.validateFile(new SourceFile(file)));
+            }
+            return lintErrors;
+        });
+        run("3 LineLintRules, 1 shared read", file, () -> {
+            SourceFile sourceFile = new SourceFile(file);
+            sourceFile.shareLinePass(rules);
+            List<LintError> lintErrors = Lists.newArrayList();
+            for (LintRule rule : rules) {
+                lintErrors.addAll(rule.validateFile(sourceFile));
+            }
+            return lintErrors;
+        });
+    }
+
+    private static void run(String name, File file, Supplier<List<LintError>> validation) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = Lists.newArrayList();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+                heapPools.add(memoryPool);
+            }
+        }
+
+        String[] errors = new String[1];
+        long elapsedMs = Benchmark.time(() -> {
+            try {
+                errors[0] = String.valueOf(validation.get().size());
+            }
+            catch (OutOfMemoryError e) {
+                errors[0] = "OOM";
+            }
+        });
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean memoryPool : heapPools) {
+            peakHeap += memoryPool.getPeakUsage().getUsed();
+        }
+        System.out.printf("%-36s %10s %10d %12.1f %14d%n", name, errors[0], elapsedMs,
+                Benchmark.getMegabytesPerSecond(file, elapsedMs), peakHeap / (1024 * 1024));
+    }
+
+    private static void generateFile(File file, long size) throws IOException {
+        long written = 0;
+        try (Writer writer = new BufferedWriter(Files.newWriter(file, Charsets.UTF_8), 1024 * 1024)) {
+            for (int i = 0; written < size; i++) {
+                String line = "INSERT INTO events (id, name, payload) VALUES (" + i + ", 'event " + i + "', '" +
+                        (i % 10 == 0 ? "a much longer payload that goes well past the usual length of a line, " +
+                                "like generated files tend to have now and then" : "short") + "');\n";
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+
+    /**
+     * Reports the lines that are too long, after reading every line of the file into memory.
+     */
+    private static class ReadLinesRule extends LintRule {
+        ReadLinesRule() {
+            super("readLines", "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+        }
+
+        @Override
+        public List<LintError> getLintErrors(File file) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            try {
+                List<String> lines = Files.readLines(file, Charsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    if (lines.get(i).length() > MAXIMUM_LINE_LENGTH) {
+                        lintErrors.add(LintError.with(this, file).andLineNumber(i + 1).create());
+                    }
+                }
+            }
+            catch (IOException e) {
+                lintErrors.add(LintError.with(this, file).andException(e).create());
+            }
+            return lintErrors;
+        }
+    }
+
+    /**
+     * Reports the lines that are too long, one line at a time.
+     */
+    private static class LongLineRule extends LineLintRule {
+        private final int maximumLength;
+
+        LongLineRule(int maximumLength) {
+            super("Longer than " + maximumLength, "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            this.maximumLength = maximumLength;
+        }
+
+        @Override
+        public LineVisitor visitFile(File file) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            return new LineVisitor() {
+                @Override
+                public void visitLine(int lineNumber, CharSequence line) {
+                    if (line.length() > maximumLength) {
+                        lintErrors.add(LintError.with(LongLineRule.this, file).andLineNumber(lineNumber).create());
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return lintErrors;
+                }
+            };
+        }
+    }
+}
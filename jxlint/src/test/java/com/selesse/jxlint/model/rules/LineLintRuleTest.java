@@ -0,0 +1,224 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+import com.selesse.jxlint.TestFiles;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class LineLintRuleTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles().countingReads();
+
+    @Test
+    public void testLinesAreSplitLikeReadLines() throws IOException {
+        Random random = new Random(42);
+        String characters = "ab\r\n";
+        for (int i = 0; i < 500; i++) {
+            StringBuilder contents = new StringBuilder();
+            for (int j = random.nextInt(40); j > 0; j--) {
+                contents.append(characters.charAt(random.nextInt(characters.length())));
+            }
+
+            // A tiny buffer, so that lines and "\r\n"s get split across reads
+            List<String> lines = Lists.newArrayList();
+            try (LineReader lineReader = new LineReader(new StringReader(contents.toString()), 2)) {
+                while (lineReader.next()) {
+                    assertThat(lineReader.getLineNumber()).isEqualTo(lines.size() + 1);
+                    lines.add(lineReader.getLine().toString());
+                }
+            }
+            assertThat(lines).as(contents.toString())
+                    .isEqualTo(CharStreams.readLines(new StringReader(contents.toString())));
+        }
+    }
+
+    @Test
+    public void testRuleStreamsItsFiles() throws IOException {
+        File file = testFiles.createFile("file.txt", "short\n" + Strings.repeat("x", 100) + "\r\nshort");
+        LongLineRule longLineRule = new LongLineRule(10);
+
+        List<LintError> lintErrors = longLineRule.getLintErrors(file);
+
+        assertThat(lintErrors).extracting(LintError::getLineNumber).containsExactly(2);
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRulesHandedTheSameFileShareOneRead() throws IOException {
+        String contents = "a\n" + Strings.repeat("y", 20) + "\n" + Strings.repeat("z", 50) + "\n";
+        File file = testFiles.createFile("file.txt", contents);
+        LongLineRule longerThan10 = new LongLineRule(10);
+        LongLineRule longerThan30 = new LongLineRule(30);
+        LineLintRule failingRule = new FailingRule();
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareLinePass(Lists.newArrayList(longerThan10, failingRule, longerThan30));
+
+        assertThat(longerThan10.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(2, 3);
+        assertThat(longerThan30.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(3);
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(1);
+        assertThat(longerThan10.numberOfVisitedFiles.get()).isEqualTo(1);
+
+        // The failing rule doesn't fail the others, but still fails on its own
+        try {
+            failingRule.validateFile(sourceFile);
+            fail("The failing rule should have thrown an exception");
+        }
+        catch (RuntimeException e) {
+            assertThat(e.getCause()).hasMessage("Line 2 is too much");
+        }
+    }
+
+    @Test
+    public void testRulesSharingAReadAreOnlyChargedForTheirOwnVisitors() throws IOException {
+        String contents = "a\n" + Strings.repeat("y", 20) + "\n" + Strings.repeat("z", 50) + "\n";
+        File file = testFiles.createFile("file.txt", contents);
+        LongLineRule longerThan10 = new LongLineRule(10);
+        LineLintRule spinningRule = new SpinningRule(TimeUnit.MILLISECONDS.toNanos(400));
+        LongLineRule longerThan30 = new LongLineRule(30);
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareLinePass(Lists.newArrayList(longerThan10, spinningRule, longerThan30));
+
+        ValidationTimeouts.activate(200, 0);
+        try {
+            // The rule that reads the file for the others doesn't time out because of the spinning one
+            assertThat(longerThan10.validateFile(sourceFile)).extracting(LintError::getLineNumber)
+                    .containsExactly(2, 3);
+            assertThat(spinningRule.validateFile(sourceFile)).extracting(LintError::getMessage)
+                    .containsExactly("Validation timed out after 200 ms");
+            assertThat(longerThan30.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(3);
+        }
+        finally {
+            ValidationTimeouts.deactivate();
+        }
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(1);
+        assertThat(longerThan30.numberOfVisitedFiles.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFilesAreOnlyReadUntilTheVisitorsAreDone() throws IOException {
+        File file = testFiles.createFile("file.txt", "one\n@author someone\n" + Strings.repeat("line\n", 100000));
+        AtomicInteger visitedLines = new AtomicInteger();
+
+        LineLintRule authorRule = new LineLintRule("Author", "summary", "description", Severity.WARNING,
+                Category.STYLE) {
+            @Override
+            public LineVisitor visitFile(File file) {
+                return new LineVisitor() {
+                    private boolean hasAuthor;
+
+                    @Override
+                    public void visitLine(int lineNumber, CharSequence line) {
+                        visitedLines.incrementAndGet();
+                        hasAuthor = line.toString().startsWith("@author");
+                    }
+
+                    @Override
+                    public boolean isDone() {
+                        return hasAuthor;
+                    }
+
+                    @Override
+                    public List<LintError> endFile() {
+                        return Lists.newArrayList();
+                    }
+                };
+            }
+        };
+
+        assertThat(authorRule.getLintErrors(file)).isEmpty();
+        assertThat(visitedLines.get()).isEqualTo(2);
+    }
+
+    private static class LongLineRule extends LineLintRule {
+        private final int maximumLength;
+        private final AtomicInteger numberOfVisitedFiles = new AtomicInteger();
+
+        LongLineRule(int maximumLength) {
+            super("Longer than " + maximumLength, "summary", "description", Severity.WARNING, Category.STYLE);
+            this.maximumLength = maximumLength;
+        }
+
+        @Override
+        public LineVisitor visitFile(File file) {
+            numberOfVisitedFiles.incrementAndGet();
+            List<LintError> lintErrors = Lists.newArrayList();
+            return new LineVisitor() {
+                @Override
+                public void visitLine(int lineNumber, CharSequence line) {
+                    if (line.length() > maximumLength) {
+                        lintErrors.add(LintError.with(LongLineRule.this, file).andLineNumber(lineNumber).create());
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return lintErrors;
+                }
+            };
+        }
+    }
+
+    private static class FailingRule extends LineLintRule {
+        FailingRule() {
+            super("Failing", "summary", "description", Severity.WARNING, Category.STYLE);
+        }
+
+        @Override
+        public LineVisitor visitFile(File file) {
+            return new LineVisitor() {
+                @Override
+                public void visitLine(int lineNumber, CharSequence line) {
+                    if (lineNumber == 2) {
+                        throw new IllegalStateException("Line 2 is too much");
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return Lists.newArrayList();
+                }
+            };
+        }
+    }
+
+    private static class SpinningRule extends LineLintRule {
+        private final long spinNanos;
+
+        SpinningRule(long spinNanos) {
+            super("Spinning", "summary", "description", Severity.WARNING, Category.STYLE);
+            this.spinNanos = spinNanos;
+        }
+
+        @Override
+        public LineVisitor visitFile(File file) {
+            return new LineVisitor() {
+                @Override
+                public void visitLine(int lineNumber, CharSequence line) {
+                    // Without checking the deadline, like a rule that doesn't know about timeouts
+                    long endNanos = System.nanoTime() + spinNanos;
+                    while (System.nanoTime() - endNanos < 0) {
+                        Thread.yield();
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return Lists.newArrayList();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.samplerules.xml.rules.AuthorTagRule;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how much heap errors take, the way JOL would on a 64-bit JVM with compressed references: 12-byte object
+ * headers, 16-byte array headers, 4-byte references, and sizes rounded up to 8 bytes. Rules and severities are
+ * shared by every run, so they don't count.
+ */
+public class LintErrorFootprintTest {
+    private static final int NUMBER_OF_ERRORS = 10000;
+
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private final LintRule rule = new AuthorTagRule();
+
+    @After
+    public void tearDown() {
+        LintErrorInterner.deactivate();
+    }
+
+    @Test
+    public void testLineNumberAndSeverityShareAField() {
+        assertThat(getShallowSize(LintError.class)).isEqualTo(32);
+
+        LintError lintError = LintError.with(rule, new File(testFiles.getRoot(), "a.xml")).andLineNumber(-42)
+                .andSeverity(Severity.FATAL).create();
+        assertThat(lintError.getLineNumber()).isEqualTo(-42);
+        assertThat(lintError.getSeverity()).isEqualTo(Severity.FATAL);
+
+        lintError.setLineNumber(LintError.MAX_LINE_NUMBER);
+        lintError.setSeverity(null);
+        assertThat(lintError.getLineNumber()).isEqualTo(LintError.MAX_LINE_NUMBER);
+        assertThat(lintError.getSeverity()).isEqualTo(rule.getSeverity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineNumbersThatDontFitAreRejected() {
+        LintError.with(rule, new File(testFiles.getRoot(), "a.xml")).andLineNumber(LintError.MAX_LINE_NUMBER + 1);
+    }
+
+    @Test
+    public void testInternedErrorsTakeLessHeap() {
+        long bytesPerError = getBytesPerError(createErrors());
+
+        LintErrorInterner.activate();
+        List<LintError> internedErrors = createErrors();
+        long bytesPerInternedError = getBytesPerError(internedErrors);
+
+        // An error and a share of its file and message, against an error with a copy of each
+        assertThat(bytesPerInternedError).isLessThanOrEqualTo(40);
+        assertThat(bytesPerInternedError).isLessThan(bytesPerError / 4);
+        assertThat(internedErrors.get(0).getFile()).isSameAs(internedErrors.get(100).getFile());
+        assertThat(internedErrors.get(0).getMessage()).isSameAs(internedErrors.get(10).getMessage());
+    }
+
+    /**
+     * Errors in 100 files, with 10 different messages, every one with its own file and message, like rules create
+     * them.
+     */
+    private List<LintError> createErrors() {
+        List<LintError> lintErrors = Lists.newArrayList();
+        String directory = testFiles.getRoot().getPath();
+        for (int i = 0; i < NUMBER_OF_ERRORS; i++) {
+            File file = new File(directory + "/src/main/resources/layout/file" + (i % 100) + ".xml");
+            String message = new StringBuilder("Missing author tag in section ").append(i % 10).toString();
+            lintErrors.add(LintError.with(rule, file).andLineNumber(i).andErrorMessage(message).create());
+        }
+        return lintErrors;
+    }
+
+    private static long getBytesPerError(List<LintError> lintErrors) {
+        Set<Object> seen = Sets.newIdentityHashSet();
+        long totalSize = 0;
+        for (LintError lintError : lintErrors) {
+            totalSize += getDeepSize(lintError, seen);
+        }
+        return totalSize / lintErrors.size();
+    }
+
+    private static long getDeepSize(Object object, Set<Object> seen) {
+        if (object == null || object instanceof LintRule || object instanceof Enum || !seen.add(object)) {
+            return 0;
+        }
+        if (object instanceof String) {
+            // A header, the char array and the hash
+            return align(12 + 4 + 4) + align(16 + 2 * ((String) object).length());
+        }
+        if (object instanceof File) {
+            // A header, the path, the prefix length, and two fields that are only set once the file is used
+            return align(12 + 4 + 4 + 4 + 4) + getDeepSize(((File) object).getPath(), seen);
+        }
+
+        long size = getShallowSize(object.getClass());
+        for (Class<?> type = object.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                    field.setAccessible(true);
+                    try {
+                        size += getDeepSize(field.get(object), seen);
+                    }
+                    catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long getShallowSize(Class<?> objectClass) {
+        long size = 12;
+        for (Class<?> type = objectClass; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += getFieldSize(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static int getFieldSize(Class<?> fieldType) {
+        if (fieldType == long.class || fieldType == double.class) {
+            return 8;
+        }
+        if (fieldType == short.class || fieldType == char.class) {
+            return 2;
+        }
+        if (fieldType == byte.class || fieldType == boolean.class) {
+            return 1;
+        }
+        return 4;
+    }
+
+    private static long align(long size) {
+        return (size + 7) / 8 * 8;
+    }
+}
@@ -0,0 +1,165 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.Benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link PatternLintRule}s, whose patterns are all found in a single scan of every line, with a rule that
+ * looks for every pattern on every line one after the other, on a single file of generated text. Both read the file
+ * once (see {@link Benchmark} for how to run it):
+ *
+ * <pre>
+ *     PatternLintRuleBenchmark [sizeInMegabytes] [file]
+ * </pre>
+ *
+ * The file is 32 MB by default. There is a rule per pattern, with 1, 50 and 500 patterns: 70% of them are literals,
+ * and the others are regular expressions. One pattern in fifty is an expression that doesn't contain a literal, which
+ * has to be tried on every line either way.
+ */
+public class PatternLintRuleBenchmark {
+    private static final int NUMBER_OF_WORDS = 5000;
+    private static final int[] NUMBERS_OF_PATTERNS = { 1, 50, 500 };
+
+    public static void main(String[] args) throws IOException {
+        long sizeInMegabytes = Benchmark.getArgument(args, 0, 32L);
+        long size = sizeInMegabytes * 1024 * 1024;
+        File file = Benchmark.getFile(args, 1, "patterns.txt", path -> generateFile(path, size));
+
+        System.out.printf("%-40s %10s %10s %12s%n", "rules", "errors", "time (ms)", "MB/s");
+        for (int numberOfPatterns : NUMBERS_OF_PATTERNS) {
+            List<String> literals = Lists.newArrayList();
+            List<String> regexes = Lists.newArrayList();
+            for (int i = 0; i < numberOfPatterns; i++) {
+                String word = "tok" + (i * 37 % NUMBER_OF_WORDS);
+                if (i % 10 < 7) {
+                    literals.add(word + " ");
+                }
+                else if (i % 50 != 49) {
+                    regexes.add(word + " = \\d+;");
+                }
+                else {
+                    // No number in the file is that long
+                    regexes.add("\\d{" + (6 + i % 3) + "}");
+                }
+            }
+
+            LintRule sequential = new SequentialPatternsRule(literals, regexes);
+            run(numberOfPatterns + " patterns, one after the other", file, () -> sequential.getLintErrors(file));
+
+            List<LintRule> rules = Lists.newArrayList();
+            for (String literal : literals) {
+                rules.add(new SinglePatternRule(literal, true));
+            }
+            for (String regex : regexes) {
+                rules.add(new SinglePatternRule(regex, false));
+            }
+            run(numberOfPatterns + " PatternLintRules, single scan", file, () -> {
+                SourceFile sourceFile = new SourceFile(file);
+                sourceFile.shareLinePass(rules);
+                List<LintError> lintErrors = Lists.newArrayList();
+                for (LintRule rule : rules) {
+                    lintErrors.addAll(rule.validateFile(sourceFile));
+                }
+                return lintErrors;
+            });
+        }
+    }
+
+    private static void run(String name, File file, Supplier<List<LintError>> validation) {
+        int[] errors = new int[1];
+        long elapsedMs = Benchmark.warmUpAndTime(() -> errors[0] = validation.get().size());
+        System.out.printf("%-40s %10d %10d %12.1f%n", name, errors[0], elapsedMs,
+                Benchmark.getMegabytesPerSecond(file, elapsedMs));
+    }
+
+    /**
+     * Writes lines that look like assignments, made of words out of a few thousand, and numbers.
+     */
+    private static void generateFile(File file, long size) throws IOException {
+        Random random = new Random(42);
+        long written = 0;
+        try (Writer writer = new BufferedWriter(Files.newWriter(file, Charsets.UTF_8), 1024 * 1024)) {
+            while (written < size) {
+                StringBuilder line = new StringBuilder("    ");
+                for (int i = random.nextInt(6); i >= 0; i--) {
+                    line.append("tok").append(random.nextInt(NUMBER_OF_WORDS)).append(' ');
+                }
+                line.append("= ").append(random.nextInt(100000)).append(";\n");
+                writer.write(line.toString());
+                written += line.length();
+            }
+        }
+    }
+
+    /**
+     * Reports the lines that contain a literal or match an expression, looking for each of them in turn.
+     */
+    private static class SequentialPatternsRule extends LineLintRule {
+        private final List<String> literals;
+        private final List<Pattern> regexes = Lists.newArrayList();
+
+        SequentialPatternsRule(List<String> literals, List<String> regexes) {
+            super("Sequential", "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            this.literals = literals;
+            for (String regex : regexes) {
+                this.regexes.add(Pattern.compile(regex));
+            }
+        }
+
+        @Override
+        public LineVisitor visitFile(File file) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            List<Matcher> matchers = Lists.newArrayList();
+            for (Pattern regex : regexes) {
+                matchers.add(regex.matcher(""));
+            }
+            return new LineVisitor() {
+                @Override
+                public void visitLine(int lineNumber, CharSequence line) {
+                    String lineString = line.toString();
+                    for (String literal : literals) {
+                        if (lineString.contains(literal)) {
+                            lintErrors.add(LintError.with(SequentialPatternsRule.this, file)
+                                    .andLineNumber(lineNumber).create());
+                        }
+                    }
+                    for (Matcher matcher : matchers) {
+                        if (matcher.reset(lineString).find()) {
+                            lintErrors.add(LintError.with(SequentialPatternsRule.this, file)
+                                    .andLineNumber(lineNumber).create());
+                        }
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return lintErrors;
+                }
+            };
+        }
+    }
+
+    private static class SinglePatternRule extends PatternLintRule {
+        SinglePatternRule(String pattern, boolean isLiteral) {
+            super(pattern, "summary", "description", Severity.WARNING, Category.PERFORMANCE);
+            if (isLiteral) {
+                flagLinesContaining(pattern, "Found");
+            }
+            else {
+                flagLinesMatching(pattern, "Found");
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.TestFiles;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PatternLintRuleTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles().countingReads();
+
+    @Test
+    public void testAutomatonFindsEveryOccurrenceOfEveryLiteral() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            List<String> literals = Lists.newArrayList();
+            for (int j = random.nextInt(10) + 1; j > 0; j--) {
+                literals.add(randomString(random, "abc", random.nextInt(4) + 1));
+            }
+            // A character that no literal has, so that the automaton goes back to its initial state
+            String text = randomString(random, "abcx", random.nextInt(100));
+            AhoCorasick automaton = new AhoCorasick(literals);
+
+            List<String> occurrences = Lists.newArrayList();
+            int state = automaton.getInitialState();
+            for (int end = 1; end <= text.length(); end++) {
+                state = automaton.next(state, text.charAt(end - 1));
+                for (int literalIndex : automaton.getOutputs(state)) {
+                    occurrences.add(literalIndex + "@" + end);
+                }
+            }
+
+            List<String> expectedOccurrences = Lists.newArrayList();
+            for (int literalIndex = 0; literalIndex < literals.size(); literalIndex++) {
+                String literal = literals.get(literalIndex);
+                for (int start = text.indexOf(literal); start >= 0; start = text.indexOf(literal, start + 1)) {
+                    expectedOccurrences.add(literalIndex + "@" + (start + literal.length()));
+                }
+            }
+            assertThat(occurrences).as(literals + " in " + text).containsOnlyElementsOf(expectedOccurrences)
+                    .hasSameSizeAs(expectedOccurrences);
+        }
+    }
+
+    private static String randomString(Random random, String characters, int length) {
+        // Few different characters, so that literals overlap a lot
+        StringBuilder string = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            string.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return string.toString();
+    }
+
+    @Test
+    public void testRequiredLiteralsOfExpressions() {
+        assertThat(requiredLiteral("System\\.out\\.println")).isEqualTo("System.out.println");
+        assertThat(requiredLiteral("catch \\(\\w+ e\\) \\{\\s*\\}")).isEqualTo("catch (");
+        assertThat(requiredLiteral("import [a-z.]+\\*;")).isEqualTo("import ");
+        assertThat(requiredLiteral("colou?r")).isEqualTo("colo");
+        assertThat(requiredLiteral("(foo)+barbaz")).isEqualTo("barbaz");
+        assertThat(requiredLiteral("a{2,}")).isNull();
+        assertThat(requiredLiteral("ab{2,3}cd")).isEqualTo("cd");
+        assertThat(requiredLiteral("foo|bar")).isNull();
+        assertThat(requiredLiteral("(?i)password")).isNull();
+        assertThat(requiredLiteral("\\d+")).isNull();
+    }
+
+    private static String requiredLiteral(String regex) {
+        return TextPattern.getRequiredLiteral(Pattern.compile(regex));
+    }
+
+    @Test
+    public void testEveryMatchIsReportedForItsRule() throws IOException {
+        File file = testFiles.createFile("file.txt",
+                "TODO: print\nSystem.out.println(\"TODO TODO\");\nnothing\n  FIXME\n");
+        ForbiddenPatternRule todoRule = new ForbiddenPatternRule("TODO", "TODO", "System\\.out\\.print");
+        ForbiddenPatternRule fixmeRule = new ForbiddenPatternRule("FIXME", "FIXME", "^\\s+\\w");
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareLinePass(Lists.newArrayList(todoRule, fixmeRule));
+
+        assertThat(todoRule.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(1, 2, 2);
+        assertThat(fixmeRule.validateFile(sourceFile)).extracting(LintError::getMessage)
+                .containsExactly("Found FIXME", "Found ^\\s+\\w");
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(1);
+
+        // Alone, the rules find the same things
+        assertThat(new ForbiddenPatternRule("TODO", "TODO", "System\\.out\\.print").getLintErrors(file))
+                .extracting(LintError::getLineNumber).containsExactly(1, 2, 2);
+    }
+
+    @Test
+    public void testFilesWithoutRequiredPatternsAreReported() throws IOException {
+        File file = testFiles.createFile("file.txt",
+                "/* Copyright */\n" + Strings.repeat("line\n", 100000) + "package foo;\n");
+        RequiredPatternRule copyrightRule = new RequiredPatternRule("Copyright", "Copyright", "^package \\w+;");
+        RequiredPatternRule licenseRule = new RequiredPatternRule("License", "License", "\\d{4}");
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareLinePass(Lists.newArrayList(copyrightRule, licenseRule));
+
+        assertThat(copyrightRule.validateFile(sourceFile)).isEmpty();
+        assertThat(licenseRule.validateFile(sourceFile)).extracting(LintError::getMessage)
+                .containsExactly("Missing License", "Missing \\d{4}");
+        assertThat(licenseRule.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsOnly(0);
+    }
+
+    @Test
+    public void testScanStopsOnceEveryRequiredPatternIsFound() throws IOException {
+        File file = testFiles.createFile("file.txt",
+                "package foo;\n/* Copyright */\n" + Strings.repeat("line\n", 100000));
+        RequiredPatternRule copyrightRule = new RequiredPatternRule("Copyright", "Copyright", "^package \\w+;");
+        PatternMatcher.Scan scan = PatternMatcher.forRule(copyrightRule).startScan(file);
+        LineVisitor visitor = scan.getVisitor(copyrightRule);
+
+        List<String> lines = Files.readLines(file, Charsets.UTF_8);
+        List<Integer> visitedLines = Lists.newArrayList();
+        for (int lineNumber = 1; lineNumber <= lines.size() && !visitor.isDone(); lineNumber++) {
+            visitor.visitLine(lineNumber, lines.get(lineNumber - 1));
+            visitedLines.add(lineNumber);
+        }
+
+        assertThat(visitedLines).containsExactly(1, 2);
+        assertThat(visitor.endFile()).isEmpty();
+    }
+
+    private static class ForbiddenPatternRule extends PatternLintRule {
+        ForbiddenPatternRule(String name, String literal, String regex) {
+            super(name, "summary", "description", Severity.WARNING, Category.STYLE);
+            flagLinesContaining(literal, "Found " + literal);
+            flagLinesMatching(regex, "Found " + regex);
+        }
+    }
+
+    private static class RequiredPatternRule extends PatternLintRule {
+        RequiredPatternRule(String name, String literal, String regex) {
+            super(name, "summary", "description", Severity.WARNING, Category.STYLE);
+            requireLiteral(literal, "Missing " + literal);
+            requireMatch(regex, "Missing " + regex);
+        }
+    }
+}
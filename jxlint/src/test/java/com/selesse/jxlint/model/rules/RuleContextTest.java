@@ -0,0 +1,128 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.utils.RunContext;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RuleContextTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    @Test
+    public void testContextsAreReusedWithTheirResources() {
+        AtomicInteger numberOfParsers = new AtomicInteger();
+        RuleContext.Resource<Object> parser = RuleContext.newResource(() -> {
+            numberOfParsers.incrementAndGet();
+            return new Object();
+        });
+
+        RunContext.create().run(() -> {
+            Object firstParser;
+            try (RuleContext ruleContext = RuleContext.open()) {
+                assertThat(RuleContext.current()).isSameAs(ruleContext);
+                firstParser = ruleContext.get(parser);
+                assertThat(ruleContext.get(parser)).isSameAs(firstParser);
+            }
+            try (RuleContext ruleContext = RuleContext.open()) {
+                assertThat(RuleContext.current().get(parser)).isSameAs(firstParser);
+
+                // A context opened within another one is a different context, which goes away when it is closed
+                try (RuleContext nestedContext = RuleContext.open()) {
+                    assertThat(nestedContext).isNotSameAs(ruleContext);
+                    assertThat(RuleContext.current().get(parser)).isNotSameAs(firstParser);
+                }
+                assertThat(RuleContext.current()).isSameAs(ruleContext);
+            }
+        });
+        assertThat(numberOfParsers.get()).isEqualTo(2);
+
+        // Every run has contexts of its own, and there is no reuse outside of a validation
+        RunContext.create().run(() -> {
+            try (RuleContext ruleContext = RuleContext.open()) {
+                ruleContext.get(parser);
+            }
+        });
+        RuleContext.current().get(parser);
+        RuleContext.current().get(parser);
+        assertThat(numberOfParsers.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void testBuffersAreNotLentTwice() {
+        try (RuleContext ruleContext = RuleContext.open()) {
+            char[] buffer = ruleContext.borrowCharBuffer(16);
+            char[] otherBuffer = ruleContext.borrowCharBuffer(16);
+            assertThat(otherBuffer).isNotSameAs(buffer);
+            ruleContext.releaseCharBuffer(otherBuffer);
+            ruleContext.releaseCharBuffer(buffer);
+            assertThat(ruleContext.borrowCharBuffer(8)).isIn(buffer, otherBuffer);
+            assertThat(ruleContext.borrowCharBuffer(32)).hasSize(32);
+
+            byte[] bytes = ruleContext.borrowByteBuffer(16);
+            ruleContext.releaseByteBuffer(bytes);
+            assertThat(ruleContext.borrowByteBuffer(16)).isSameAs(bytes);
+            ruleContext.releaseByteBuffer(new byte[RuleContext.MAX_RETAINED_BUFFER_SIZE + 1]);
+            assertThat(ruleContext.borrowByteBuffer(16)).hasSize(16);
+
+            StringBuilder builder = ruleContext.borrowStringBuilder().append("text");
+            ruleContext.releaseStringBuilder(builder);
+            StringBuilder sameBuilder = ruleContext.borrowStringBuilder();
+            assertThat(sameBuilder).isSameAs(builder);
+            assertThat(sameBuilder.length()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testLineRulesReuseTheBufferOfTheirContext() throws IOException {
+        List<File> files = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            // Longer than the buffer, so that it has to grow
+            String contents = Strings.repeat("x", LineReader.BUFFER_SIZE * 2) + "\nline\n";
+            files.add(testFiles.createFile("file" + i + ".txt", contents));
+        }
+        List<String> lines = Lists.newArrayList();
+        LineLintRule rule = new LineLintRule("Line", "summary", "description", Severity.WARNING, Category.STYLE) {
+            @Override
+            public LineVisitor visitFile(File file) {
+                return new LineVisitor() {
+                    @Override
+                    public void visitLine(int lineNumber, CharSequence line) {
+                        if (lineNumber == 2) {
+                            lines.add(line.toString());
+                        }
+                    }
+
+                    @Override
+                    public List<LintError> endFile() {
+                        return Lists.newArrayList();
+                    }
+                };
+            }
+        };
+
+        RunContext.create().run(() -> {
+            rule.validateFile(new SourceFile(files.get(0)));
+            char[] grownBuffer;
+            try (RuleContext ruleContext = RuleContext.open()) {
+                grownBuffer = ruleContext.borrowCharBuffer(0);
+                assertThat(grownBuffer.length).isGreaterThan(LineReader.BUFFER_SIZE * 2);
+                ruleContext.releaseCharBuffer(grownBuffer);
+            }
+            rule.validateFile(new SourceFile(files.get(1)));
+            try (RuleContext ruleContext = RuleContext.open()) {
+                assertThat(ruleContext.borrowCharBuffer(0)).isSameAs(grownBuffer);
+            }
+        });
+        assertThat(lines).containsExactly("line", "line");
+    }
+}
@@ -0,0 +1,53 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValidationOrderTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    @Test
+    public void testLargestFilesComeFirst() throws IOException {
+        List<File> files = Lists.newArrayList(testFiles.createFile("tiny", 1), testFiles.createFile("large", 5000),
+                testFiles.createFile("empty", 0), testFiles.createFile("medium", 300));
+
+        int[] validationOrder = new ValidationOrder().getValidationOrder(files);
+
+        assertThat(validationOrder).containsExactly(1, 3, 0, 2);
+    }
+
+    @Test
+    public void testFilesOfTheSameSizeAreGroupedByDirectory() throws IOException {
+        List<File> files = Lists.newArrayList(testFiles.createFile("b/one", 600), testFiles.createFile("a/one", 700),
+                testFiles.createFile("b/two", 900), testFiles.createFile("a/two", 1000));
+
+        int[] validationOrder = new ValidationOrder().getValidationOrder(files);
+
+        // All of them are between 512 and 1023 bytes
+        assertThat(validationOrder).containsExactly(1, 3, 0, 2);
+    }
+
+    @Test
+    public void testSizeGroupsArePowersOfTwo() {
+        assertThat(ValidationOrder.getSizeGroup(0)).isEqualTo(0);
+        assertThat(ValidationOrder.getSizeGroup(1)).isEqualTo(1);
+        assertThat(ValidationOrder.getSizeGroup(1023)).isEqualTo(10);
+        assertThat(ValidationOrder.getSizeGroup(1024)).isEqualTo(11);
+    }
+
+    @Test
+    public void testMissingFilesAreEmpty() {
+        ValidationOrder validationOrder = new ValidationOrder();
+
+        assertThat(validationOrder.getTotalSize(Lists.newArrayList(new File("does-not-exist")))).isEqualTo(0);
+    }
+}
@@ -0,0 +1,250 @@
+package com.selesse.jxlint.model.rules;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class XmlLintRuleTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles().countingReads();
+
+    @Test
+    public void testEventsAreVisitedInOrder() throws IOException {
+        File file = testFiles.createFile("file.xml",
+                "<?xml version=\"1.0\"?>\n<root a=\"1\">\n  <child\n    b=\"2\" c=\"3\"/>\n</root>\n");
+        List<String> events = Lists.newArrayList();
+        XmlLintRule rule = new RecordingRule(events);
+
+        assertThat(rule.getLintErrors(file)).isEmpty();
+        assertThat(events).containsExactly("prolog 1.0 null", "start root depth 1 line 2", "attribute a=1",
+                "start child depth 2 line 4", "attribute b=2", "attribute c=3", "end child", "end root");
+    }
+
+    @Test
+    public void testRulesHandedTheSameFileShareOneParse() throws IOException {
+        File file = testFiles.createFile("file.xml",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>\n  <bean/>\n  <bean id=\"a\"/>\n" +
+                        "</root>\n");
+        BeanIdRule beanIdRule = new BeanIdRule();
+        List<String> events = Lists.newArrayList();
+        RecordingRule recordingRule = new RecordingRule(events);
+        XmlLintRule failingRule = new XmlLintRule("Failing", "summary", "description", Severity.WARNING,
+                Category.STYLE) {
+            @Override
+            public XmlVisitor visitFile(File file) {
+                return new XmlVisitor() {
+                    @Override
+                    public void visitStartElement(XmlElement element) {
+                        throw new IllegalStateException(element.getName() + " is too much");
+                    }
+
+                    @Override
+                    public List<LintError> endFile() {
+                        return Lists.newArrayList();
+                    }
+                };
+            }
+        };
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareXmlPass(Lists.newArrayList(beanIdRule, failingRule, recordingRule));
+
+        assertThat(beanIdRule.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(3);
+        assertThat(recordingRule.validateFile(sourceFile)).isEmpty();
+        assertThat(events).hasSize(8);
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(1);
+
+        // The failing rule doesn't fail the others, but still fails on its own
+        try {
+            failingRule.validateFile(sourceFile);
+            fail("The failing rule should have thrown an exception");
+        }
+        catch (RuntimeException e) {
+            assertThat(e.getCause()).hasMessage("root is too much");
+        }
+    }
+
+    @Test
+    public void testRulesAtTheirConcurrencyLimitAreLeftOutOfTheSharedParse() throws IOException {
+        File file = testFiles.createFile("file.xml", "<root>\n  <bean/>\n</root>\n");
+        BeanIdRule beanIdRule = new BeanIdRule();
+        List<String> events = Lists.newArrayList();
+        RecordingRule limitedRule = new RecordingRule(events) {
+            @Override
+            public int getMaxConcurrency() {
+                return 1;
+            }
+        };
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareXmlPass(Lists.newArrayList(beanIdRule, limitedRule));
+
+        // Another file is being validated by the limited rule
+        limitedRule.getConcurrencyLimit().acquire();
+        try {
+            assertThat(beanIdRule.validateFile(sourceFile)).extracting(LintError::getLineNumber).containsExactly(2);
+            assertThat(events).isEmpty();
+        }
+        finally {
+            limitedRule.getConcurrencyLimit().release();
+        }
+
+        assertThat(limitedRule.validateFile(sourceFile)).isEmpty();
+        assertThat(events).containsExactly("prolog null null", "start root depth 1 line 1",
+                "start bean depth 2 line 2", "end bean", "end root");
+        assertThat(testFiles.getNumberOfReads()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFilesThatAreNotWellFormedAreReportedByTheRulesThatWereNotDone() throws IOException {
+        File file = testFiles.createFile("file.xml", "<root>\n  <bean/>\n  <bean id=\"a\" id=\"b\"/>\n</root>\n");
+        BeanIdRule beanIdRule = new BeanIdRule();
+        XmlLintRule rootRule = new XmlLintRule("Root", "summary", "description", Severity.WARNING, Category.STYLE) {
+            @Override
+            public XmlVisitor visitFile(File file) {
+                return new XmlVisitor() {
+                    private boolean hasRoot;
+
+                    @Override
+                    public void visitStartElement(XmlElement element) {
+                        hasRoot = true;
+                    }
+
+                    @Override
+                    public boolean isDone() {
+                        return hasRoot;
+                    }
+
+                    @Override
+                    public List<LintError> endFile() {
+                        return Lists.newArrayList();
+                    }
+                };
+            }
+        };
+        SourceFile sourceFile = new SourceFile(file);
+        sourceFile.shareXmlPass(Lists.newArrayList(beanIdRule, rootRule));
+
+        List<LintError> lintErrors = beanIdRule.validateFile(sourceFile);
+        assertThat(lintErrors).extracting(LintError::getMessage).containsExactly("Could not parse XML");
+        assertThat(lintErrors).extracting(LintError::getLineNumber).containsExactly(3);
+        XMLStreamException parseError = (XMLStreamException) lintErrors.get(0).getException();
+        assertThat(XmlLintRule.getParseErrorMessage(parseError))
+                .isEqualTo("Attribute \"id\" was already specified for element \"bean\".");
+        // The root rule was done before the error
+        assertThat(rootRule.validateFile(sourceFile)).isEmpty();
+    }
+
+    @Test
+    public void testFilesAreOnlyParsedUntilTheVisitorsAreDone() throws IOException {
+        File file = testFiles.createFile("file.xml",
+                "<root>\n" + Strings.repeat("  <element/>\n", 100000) + "</root>\n");
+        AtomicInteger visitedElements = new AtomicInteger();
+
+        XmlLintRule rootRule = new XmlLintRule("Root", "summary", "description", Severity.WARNING, Category.STYLE) {
+            @Override
+            public XmlVisitor visitFile(File file) {
+                return new XmlVisitor() {
+                    @Override
+                    public void visitStartElement(XmlElement element) {
+                        visitedElements.incrementAndGet();
+                    }
+
+                    @Override
+                    public boolean isDone() {
+                        return visitedElements.get() == 2;
+                    }
+
+                    @Override
+                    public List<LintError> endFile() {
+                        return Lists.newArrayList();
+                    }
+                };
+            }
+        };
+
+        assertThat(rootRule.getLintErrors(file)).isEmpty();
+        assertThat(visitedElements.get()).isEqualTo(2);
+    }
+
+    /**
+     * Reports the beans without an id.
+     */
+    private static class BeanIdRule extends XmlLintRule {
+        BeanIdRule() {
+            super("Bean id", "summary", "description", Severity.WARNING, Category.STYLE);
+        }
+
+        @Override
+        public XmlVisitor visitFile(File file) {
+            List<LintError> lintErrors = Lists.newArrayList();
+            return new XmlVisitor() {
+                @Override
+                public void visitStartElement(XmlElement element) {
+                    if (element.getName().equals("bean") && element.getAttributeValue("id") == null) {
+                        lintErrors.add(LintError.with(BeanIdRule.this, file).andLineNumber(element.getLineNumber())
+                                .create());
+                    }
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return lintErrors;
+                }
+            };
+        }
+    }
+
+    /**
+     * Writes down every event it sees.
+     */
+    private static class RecordingRule extends XmlLintRule {
+        private final List<String> events;
+
+        RecordingRule(List<String> events) {
+            super("Recording", "summary", "description", Severity.WARNING, Category.STYLE);
+            this.events = events;
+        }
+
+        @Override
+        public XmlVisitor visitFile(File file) {
+            return new XmlVisitor() {
+                @Override
+                public void visitProlog(String version, String encoding) {
+                    events.add("prolog " + version + " " + encoding);
+                }
+
+                @Override
+                public void visitStartElement(XmlElement element) {
+                    events.add("start " + element.getName() + " depth " + element.getDepth() + " line " +
+                            element.getLineNumber());
+                }
+
+                @Override
+                public void visitAttribute(XmlElement element, int index) {
+                    events.add("attribute " + element.getAttributeName(index) + "=" +
+                            element.getAttributeValue(index));
+                }
+
+                @Override
+                public void visitEndElement(XmlElement element) {
+                    events.add("end " + element.getName());
+                }
+
+                @Override
+                public List<LintError> endFile() {
+                    return Lists.newArrayList();
+                }
+            };
+        }
+    }
+}
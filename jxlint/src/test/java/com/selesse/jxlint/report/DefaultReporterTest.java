@@ -2,9 +2,11 @@ package com.selesse.jxlint.report;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import com.selesse.jxlint.model.JxlintOption;
 import com.selesse.jxlint.model.ProgramOptions;
 import com.selesse.jxlint.model.rules.Category;
 import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
 import com.selesse.jxlint.model.rules.LintRulesImpl;
 import com.selesse.jxlint.model.rules.Severity;
 import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
@@ -18,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -112,6 +115,28 @@ public class DefaultReporterTest {
         System.out.println(reportOutput);
     }
 
+    @Test
+    public void testStreamingCountsTheErrorsItPrinted() throws Exception {
+        setupSourceDirectory();
+        ProgramOptions options = new ProgramOptions();
+        options.addOption(JxlintOption.STREAM);
+        List<LintError> lintErrorList = Lists.newArrayList();
+        reporter = new DefaultReporter(out, new JxlintProgramSettings(), options, lintErrorList);
+        assertThat(reporter.isStreaming()).isTrue();
+
+        try (LintErrorSink lintErrorSink = reporter.createSink()) {
+            lintErrorSink.accept(LintError.with(new XmlEncodingRule(), new File("abc")).create());
+            lintErrorSink.acceptAll(Lists.newArrayList(
+                    LintError.with(new XmlEncodingRule(), new File("def")).create(),
+                    LintError.with(new XmlEncodingRule(), new File("ghi")).create()));
+        }
+
+        String reportOutput = output.toString(Charsets.UTF_8.displayName());
+        assertThat(reportOutput).contains("in abc").contains("in def").contains("in ghi");
+        assertThat(reportOutput).contains("There are 3 warnings, 0 errors, and 0 fatal errors (3 total).");
+        assertThat(lintErrorList).isEmpty();
+    }
+
     private File setupSourceDirectory() {
         // Need to set up the LintRulesImpl before the reporter can print the error. This is because the
         // reporter relativizes paths from the source directory. This is definitely a code smell, it doesn't make
@@ -0,0 +1,177 @@
+package com.selesse.jxlint.report;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import com.selesse.jxlint.model.LintErrorOrderings;
+import com.selesse.jxlint.model.ProgramOptions;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintRule;
+import com.selesse.jxlint.model.rules.LintRulesImpl;
+import com.selesse.jxlint.model.rules.Severity;
+import com.selesse.jxlint.samplerules.xml.XmlLintRulesTestImpl;
+import com.selesse.jxlint.samplerules.xml.rules.AuthorTagRule;
+import com.selesse.jxlint.samplerules.xml.rules.UniqueAttributeRule;
+import com.selesse.jxlint.samplerules.xml.rules.XmlEncodingRule;
+import com.selesse.jxlint.samplerules.xml.rules.XmlVersionRule;
+import com.selesse.jxlint.settings.JxlintProgramSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class LintErrorStoreTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File spillDirectory;
+    private LintErrorStore lintErrorStore;
+    private List<LintError> lintErrors;
+
+    @Before
+    public void setup() {
+        spillDirectory = testFiles.getRoot();
+        lintErrorStore = new LintErrorStore(7, spillDirectory,
+                LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+
+        List<LintRule> rules = Lists.newArrayList(new XmlEncodingRule(), new AuthorTagRule(),
+                new UniqueAttributeRule(), new XmlVersionRule());
+        Random random = new Random(42);
+        lintErrors = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            // Few enough files and lines that a lot of errors are equal, to check that they stay in order
+            LintRule rule = rules.get(random.nextInt(rules.size()));
+            File file = new File("file" + random.nextInt(5));
+            lintErrors.add(LintError.with(rule, file).andLineNumber(random.nextInt(4)).andErrorMessage("error " + i)
+                    .create());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        lintErrorStore.close();
+    }
+
+    @Test
+    public void testSpilledErrorsAreMergedInOrder() {
+        lintErrorStore.addAll(lintErrors);
+
+        assertThat(lintErrorStore.getNumberOfRuns()).isEqualTo(14);
+        assertThat(spillDirectory.listFiles()).hasSize(14);
+        assertThat(lintErrorStore).hasSize(100);
+
+        Collections.sort(lintErrors, LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+        assertSameErrors(lintErrorStore, lintErrors);
+        assertThat(lintErrorStore.get(42).getMessage()).isEqualTo(lintErrors.get(42).getMessage());
+    }
+
+    @Test
+    public void testSortingIsStable() {
+        lintErrorStore.addAll(lintErrors);
+
+        // The runs were written in another order, so they have to be sorted again
+        Collections.sort(lintErrorStore, LintErrorOrderings.getFileThenLineNumberOrdering());
+        Collections.sort(lintErrors, LintErrorOrderings.getCategoryNameFileLineNumberOrdering());
+        Collections.sort(lintErrors, LintErrorOrderings.getFileThenLineNumberOrdering());
+        assertSameErrors(lintErrorStore, lintErrors);
+
+        Collections.sort(lintErrorStore, LintErrorOrderings.getCategoryThenNameOrdering());
+        Collections.sort(lintErrors, LintErrorOrderings.getCategoryThenNameOrdering());
+        assertSameErrors(lintErrorStore, lintErrors);
+    }
+
+    @Test
+    public void testErrorsKeepEverythingReportsPrint() {
+        Exception exception = new IllegalStateException("could not parse");
+        LintError lintError = LintError.with(new XmlEncodingRule(), new File("file\u00e9"))
+                .andLineNumber(-1)
+                .andErrorMessage("Encoding is \u201cwrong\u201d")
+                .andSeverity(Severity.FATAL)
+                .andException(exception)
+                .create();
+        lintErrorStore.add(lintError);
+        lintErrorStore.addAll(lintErrors);
+
+        LintError spilledError = lintErrorStore.stream()
+                .filter(error -> error.getException() != null)
+                .findFirst().get();
+        assertThat(spilledError.getViolatedRule()).isInstanceOf(XmlEncodingRule.class);
+        assertThat(spilledError.getFile()).isEqualTo(lintError.getFile());
+        assertThat(spilledError.getLineNumber()).isEqualTo(-1);
+        assertThat(spilledError.getMessage()).isEqualTo(lintError.getMessage());
+        assertThat(spilledError.getSeverity()).isEqualTo(Severity.FATAL);
+        assertThat(spilledError.getException()).isSameAs(exception);
+    }
+
+    @Test
+    public void testReportIsTheSameAsWithoutSpilling() throws Exception {
+        lintErrorStore.addAll(lintErrors);
+
+        assertThat(writeDefaultReport(lintErrorStore)).isEqualTo(writeDefaultReport(lintErrors));
+    }
+
+    @Test
+    public void testClosingDeletesTheRuns() {
+        lintErrorStore.addAll(lintErrors);
+        lintErrorStore.close();
+
+        assertThat(spillDirectory.listFiles()).isEmpty();
+        assertThat(lintErrorStore).isEmpty();
+    }
+
+    @Test
+    public void testRunsThatCanNotBeWrittenAreDeleted() {
+        LintRule failingRule = new XmlEncodingRule() {
+            @Override
+            public Severity getSeverity() {
+                throw new IllegalStateException("No severity");
+            }
+        };
+        try {
+            for (int i = 0; i < 7; i++) {
+                lintErrorStore.add(LintError.with(failingRule, new File("file")).andLineNumber(i).create());
+            }
+            fail("Spilling should have failed");
+        }
+        catch (IllegalStateException e) {
+            assertThat(e).hasMessage("No severity");
+        }
+
+        assertThat(spillDirectory.listFiles()).isEmpty();
+    }
+
+    private static String writeDefaultReport(List<LintError> lintErrors) throws Exception {
+        // The reporter prints paths relative to the source directory
+        LintRulesImpl.setInstance(new XmlLintRulesTestImpl());
+        LintRulesImpl.getInstance().setSourceDirectory(new File("."));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, true, Charsets.UTF_8.displayName());
+        Reporter reporter = new DefaultReporter(out, new JxlintProgramSettings(), new ProgramOptions(), lintErrors);
+        // Like LintHandler, which hands the errors to the sink
+        reporter.createSink().close();
+        return output.toString(Charsets.UTF_8.displayName());
+    }
+
+    private static void assertSameErrors(List<LintError> lintErrors, List<LintError> expectedErrors) {
+        List<String> messages = Lists.newArrayList();
+        for (LintError lintError : lintErrors) {
+            messages.add(lintError.getMessage());
+        }
+        List<String> expectedMessages = Lists.newArrayList();
+        for (LintError lintError : expectedErrors) {
+            expectedMessages.add(lintError.getMessage());
+        }
+        assertThat(messages).isEqualTo(expectedMessages);
+    }
+}
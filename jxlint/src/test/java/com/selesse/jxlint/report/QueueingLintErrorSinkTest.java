@@ -0,0 +1,118 @@
+package com.selesse.jxlint.report;
+
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.model.rules.LintError;
+import com.selesse.jxlint.model.rules.LintErrorSink;
+import com.selesse.jxlint.samplerules.xml.rules.XmlEncodingRule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueueingLintErrorSinkTest {
+    private static LintError createLintError(int fileNumber) {
+        return LintError.with(new XmlEncodingRule(), new File("file" + fileNumber)).create();
+    }
+
+    @Test
+    public void testEveryErrorIsHandedOverInOrder() {
+        RecordingSink recordingSink = new RecordingSink(new CountDownLatch(0));
+        List<LintError> lintErrors = Lists.newArrayList();
+
+        try (QueueingLintErrorSink queueingSink = new QueueingLintErrorSink(recordingSink, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                LintError lintError = createLintError(i);
+                lintErrors.add(lintError);
+                queueingSink.accept(lintError);
+            }
+        }
+
+        assertThat(recordingSink.lintErrors).containsExactlyElementsOf(lintErrors);
+        assertThat(recordingSink.isClosed).isTrue();
+    }
+
+    @Test
+    public void testProducersWaitWhenTheSinkFallsBehind() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingSink recordingSink = new RecordingSink(gate);
+        QueueingLintErrorSink queueingSink = new QueueingLintErrorSink(recordingSink, 2);
+
+        CountDownLatch producerDone = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                queueingSink.accept(createLintError(i));
+            }
+            producerDone.countDown();
+        });
+        producer.start();
+
+        // The sink is stuck on the first error, and only 2 more fit in the queue
+        assertThat(producerDone.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(producer.getState()).isEqualTo(Thread.State.WAITING);
+
+        gate.countDown();
+        assertThat(producerDone.await(10, TimeUnit.SECONDS)).isTrue();
+        queueingSink.close();
+        assertThat(recordingSink.lintErrors).hasSize(10);
+    }
+
+    @Test
+    public void testFailureIsThrownWhenClosing() {
+        LintErrorSink failingSink = new LintErrorSink() {
+            @Override
+            public void accept(LintError lintError) {
+                throw new IllegalStateException("Disk full");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        QueueingLintErrorSink queueingSink = new QueueingLintErrorSink(failingSink, 2);
+        // More errors than the queue can hold: they are dropped rather than blocking forever
+        for (int i = 0; i < 10; i++) {
+            queueingSink.accept(createLintError(i));
+        }
+
+        try {
+            queueingSink.close();
+        }
+        catch (IllegalStateException e) {
+            assertThat(e).hasMessage("Disk full");
+            return;
+        }
+        throw new AssertionError("The failure of the sink should have been thrown");
+    }
+
+    private static class RecordingSink implements LintErrorSink {
+        private final CountDownLatch gate;
+        private final List<LintError> lintErrors = Collections.synchronizedList(Lists.newArrayList());
+        private volatile boolean isClosed = false;
+
+        RecordingSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void accept(LintError lintError) {
+            try {
+                gate.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lintErrors.add(lintError);
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+    }
+}
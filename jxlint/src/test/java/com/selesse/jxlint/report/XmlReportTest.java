@@ -1,6 +1,7 @@
 package com.selesse.jxlint.report;
 
 import com.selesse.jxlint.TestFileCreator;
+import com.selesse.jxlint.TestFiles;
 import com.selesse.jxlint.linter.Linter;
 import com.selesse.jxlint.linter.LinterFactory;
 import com.selesse.jxlint.model.OutputType;
@@ -8,6 +9,7 @@ import com.selesse.jxlint.model.rules.LintError;
 import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.samplerules.xml.rules.AuthorTagRule;
 import com.selesse.jxlint.samplerules.xml.rules.XmlEncodingRule;
+import org.junit.Rule;
 import org.junit.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -24,6 +26,9 @@ import java.io.IOException;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class XmlReportTest extends AbstractReportTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
     @Test
     public void makeSureXmlReportGetsCreated() throws IOException, ParserConfigurationException, SAXException {
         File createdFile = ensureReportGetsCreatedFor2Errors(OutputType.XML);
@@ -77,6 +82,22 @@ public class XmlReportTest extends AbstractReportTest {
         }
     }
 
+    @Test
+    public void testStreamedXmlReportHasEveryIssue() throws Exception {
+        TestFileCreator.createBadAuthorFile(tempDirectory);
+        TestFileCreator.createBadEncodingFile(tempDirectory);
+        // Outside of the validated directory, since it gets written while the files are validated
+        File reportFile = new File(testFiles.newDirectory(), "streamed.xml");
+
+        setupTestLinterAndRunProgramWithArgs(new String[]{"--Wall", "--stream", "--xml",
+                reportFile.getAbsolutePath(), tempDirectory.getAbsolutePath()});
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(reportFile);
+        assertThat(document.getElementsByTagName("issue").getLength()).isEqualTo(2);
+        // The errors went straight to the report
+        assertThat(LinterFactory.getInstance().getLintErrors()).isEmpty();
+    }
+
     private String getAttributeValue(NamedNodeMap namedNodeMap, String attribute) {
         Node node = namedNodeMap.getNamedItem(attribute);
         if (node != null) {
@@ -1,19 +1,20 @@
 package com.selesse.jxlint.samplerules.textfiles.rules;
 
-import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import com.selesse.jxlint.model.rules.Category;
+import com.selesse.jxlint.model.rules.LineLintRule;
+import com.selesse.jxlint.model.rules.LineVisitor;
 import com.selesse.jxlint.model.rules.LintError;
-import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.model.rules.Severity;
-import com.selesse.jxlint.utils.FileUtils;
+import com.selesse.jxlint.utils.FileSelector;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
+import java.util.regex.Pattern;
+
+public class MustHaveAuthor extends LineLintRule {
+    private static final Pattern AUTHOR_TAG = Pattern.compile("@author");
 
-public class MustHaveAuthor extends LintRule {
     public MustHaveAuthor() {
         super("Author tag required", "Every file must have an @author tag.",
                 "Every file in this project requires an \"@author\" tag.",
@@ -21,26 +22,34 @@ public class MustHaveAuthor extends LintRule {
     }
 
     @Override
-    public List<File> getFilesToValidate() {
-        return FileUtils.allFiles(getSourceDirectory());
+    public FileSelector getFileSelector() {
+        return FileSelector.allFiles();
     }
 
     @Override
-    public List<LintError> getLintErrors(File file) {
-        List<LintError> lintErrorList = Lists.newArrayList();
-        try {
-            List<String> fileContents = Files.readLines(file, Charsets.UTF_8);
-            for (String line : fileContents) {
-                if (line.contains("@author")) {
-                    return lintErrorList;
-                }
+    public LineVisitor visitFile(File file) {
+        return new LineVisitor() {
+            private boolean hasAuthor = false;
+
+            @Override
+            public void visitLine(int lineNumber, CharSequence line) {
+                hasAuthor = AUTHOR_TAG.matcher(line).find();
             }
-            lintErrorList.add(LintError.with(this, file).create());
-        }
-        catch (IOException e) {
-            lintErrorList.add(LintError.with(this, file).andException(e).create());
-        }
 
-        return lintErrorList;
+            @Override
+            public boolean isDone() {
+                // The rest of the file doesn't matter
+                return hasAuthor;
+            }
+
+            @Override
+            public List<LintError> endFile() {
+                List<LintError> lintErrorList = Lists.newArrayList();
+                if (!hasAuthor) {
+                    lintErrorList.add(LintError.with(MustHaveAuthor.this, file).create());
+                }
+                return lintErrorList;
+            }
+        };
     }
 }
@@ -3,19 +3,16 @@ package com.selesse.jxlint.samplerules.xml.rules;
 import com.google.common.collect.Lists;
 import com.selesse.jxlint.model.rules.Category;
 import com.selesse.jxlint.model.rules.LintError;
-import com.selesse.jxlint.model.rules.LintRule;
 import com.selesse.jxlint.model.rules.Severity;
-import com.selesse.jxlint.utils.FileUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
+import com.selesse.jxlint.model.rules.XmlElement;
+import com.selesse.jxlint.model.rules.XmlLintRule;
+import com.selesse.jxlint.model.rules.XmlVisitor;
+import com.selesse.jxlint.utils.FileSelector;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.util.List;
 
-public class AuthorTagRule extends LintRule {
+public class AuthorTagRule extends XmlLintRule {
     public AuthorTagRule() {
         super("Author tag specified", "author.xml files must contain a valid root-element <author> tag.", "",
                 Severity.WARNING, Category.STYLE, false);
@@ -23,32 +20,31 @@ public class AuthorTagRule extends LintRule {
     }
 
     @Override
-    public List<File> getFilesToValidate() {
-        return FileUtils.allFilesWithFilename(getSourceDirectory(), "author.xml");
+    public FileSelector getFileSelector() {
+        return FileSelector.withFilename("author.xml");
     }
 
     @Override
-    public List<LintError> getLintErrors(File file) {
+    public XmlVisitor visitFile(File file) {
         List<LintError> lintErrorList = Lists.newArrayList();
-
-        try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            documentBuilder.setErrorHandler(null); // shut up!
-            Document document = documentBuilder.parse(file);
-
-            document.getDocumentElement().normalize();
-
-            Node node = document.getFirstChild();
-            if (node.getNodeName().equals("author")) {
-                NamedNodeMap namedNodeMap = node.getAttributes();
-                if (namedNodeMap.getNamedItem("name") == null || namedNodeMap.getNamedItem("creationDate") == null) {
+        return new XmlVisitor() {
+            @Override
+            public void visitStartElement(XmlElement element) {
+                if (element.getDepth() > 1) {
+                    return;
+                }
+                if (!element.getName().equals("author")) {
+                    lintErrorList.add(LintError.with(AuthorTagRule.this, file).andLineNumber(element.getLineNumber())
+                            .andErrorMessage("Author element was not root element").create());
+                }
+                else if (element.getAttributeValue("name") == null ||
+                        element.getAttributeValue("creationDate") == null) {
                     // report that "name", "creationDate", or both attributes are missing
                     String failedRuleString = "";
-                    if (namedNodeMap.getNamedItem("name") == null) {
+                    if (element.getAttributeValue("name") == null) {
                         failedRuleString += "Author element does not contain \"name\" attribute";
                     }
-                    if (namedNodeMap.getNamedItem("creationDate") == null) {
+                    if (element.getAttributeValue("creationDate") == null) {
                         if (failedRuleString.length() > 0) {
                             failedRuleString += ". Also, author ";
                         }
@@ -57,21 +53,15 @@ public class AuthorTagRule extends LintRule {
                         }
                         failedRuleString += "element does not contain \"creationDate\" attribute";
                     }
-                    lintErrorList.add(LintError.with(this, file).andErrorMessage(failedRuleString).create());
-                    return lintErrorList;
+                    lintErrorList.add(LintError.with(AuthorTagRule.this, file).andLineNumber(element.getLineNumber())
+                            .andErrorMessage(failedRuleString).create());
                 }
-                // If we make it to this path, we've passed the rule: return the empty list
-                return lintErrorList;
             }
-        }
-        catch (Exception e) {
-            // this will catch parser configuration errors, XML parse errors, as well as I/O exceptions
-            lintErrorList.add(LintError.with(this, file).andErrorMessage("Error checking rule, could not parse XML")
-                    .andException(e).create());
-            return lintErrorList;
-        }
 
-        lintErrorList.add(LintError.with(this, file).andErrorMessage("Author element was not root element").create());
-        return lintErrorList;
+            @Override
+            public List<LintError> endFile() {
+                return lintErrorList;
+            }
+        };
     }
 }
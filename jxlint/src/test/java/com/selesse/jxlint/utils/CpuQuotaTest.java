@@ -0,0 +1,35 @@
+package com.selesse.jxlint.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class CpuQuotaTest {
+    @Test
+    public void testQuotaLimitsTheProcessors() {
+        assertThat(CpuQuota.getAvailableProcessors(16, 2.0)).isEqualTo(2);
+        // A quota of a processor and a half still gets two threads
+        assertThat(CpuQuota.getAvailableProcessors(16, 1.5)).isEqualTo(2);
+        assertThat(CpuQuota.getAvailableProcessors(16, 0.1)).isEqualTo(1);
+        assertThat(CpuQuota.getAvailableProcessors(4, 32.0)).isEqualTo(4);
+        assertThat(CpuQuota.getAvailableProcessors(4, 0)).isEqualTo(4);
+    }
+
+    @Test
+    public void testParsingCgroupV2CpuMax() {
+        assertThat(CpuQuota.parseCpuMax("max 100000\n")).isEqualTo(0);
+        assertThat(CpuQuota.parseCpuMax("250000 100000\n")).isCloseTo(2.5, within(0.001));
+    }
+
+    @Test
+    public void testParsingCgroupV1Quota() {
+        assertThat(CpuQuota.parseQuota("-1\n", "100000\n")).isEqualTo(0);
+        assertThat(CpuQuota.parseQuota("50000\n", "100000\n")).isCloseTo(0.5, within(0.001));
+    }
+
+    @Test
+    public void testAvailableProcessorsIsPositive() {
+        assertThat(CpuQuota.getAvailableProcessors()).isPositive();
+    }
+}
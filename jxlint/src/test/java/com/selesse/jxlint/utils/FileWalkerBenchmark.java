@@ -0,0 +1,93 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.selesse.jxlint.Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compares listing a large tree the way {@link FileIndex} used to, with Guava's tree traverser and a
+ * {@link File#isFile()} and a {@link File#length()} per file, with a {@link FileWalker} (see {@link Benchmark} for how
+ * to run it):
+ *
+ * <pre>
+ *     FileWalkerBenchmark [numberOfEntries] [directory]
+ * </pre>
+ *
+ * The tree has <code>numberOfEntries</code> files and directories (default 1,000,000), 100 per directory, a tenth of
+ * them in a "node_modules" directory that the root ".gitignore" ignores. There is no warm-up run: the walks are
+ * repeated three times instead, so that the cache can be dropped before the benchmark runs to measure a cold walk
+ * first.
+ */
+public class FileWalkerBenchmark {
+    private static final int ENTRIES_PER_DIRECTORY = 100;
+
+    public static void main(String[] args) throws IOException {
+        int numberOfEntries = Benchmark.getArgument(args, 0, 1000000);
+        File rootDirectory = Benchmark.getDirectory(args, 1, directory -> generateTree(directory, numberOfEntries));
+
+        System.out.printf("%-40s %10s %14s%n", "walker", "files", "time (ms)");
+        for (int i = 0; i < 3; i++) {
+            int[] numberOfFiles = new int[1];
+            long elapsedMs = Benchmark.time(() -> numberOfFiles[0] = traverse(rootDirectory).size());
+            System.out.printf("%-40s %10d %14d%n", "tree traverser", numberOfFiles[0], elapsedMs);
+
+            FileWalker fileWalker = new FileWalker(ImmutableList.of(), false);
+            elapsedMs = Benchmark.time(() -> numberOfFiles[0] = fileWalker.walk(rootDirectory).getFiles().size());
+            System.out.printf("%-40s %10d %14d%n", "file walker", numberOfFiles[0], elapsedMs);
+
+            FileWalker defaultWalker = FileWalker.getDefault();
+            elapsedMs = Benchmark.time(() -> numberOfFiles[0] = defaultWalker.walk(rootDirectory).getFiles().size());
+            System.out.printf("%-40s %10d %14d%n", "file walker, .gitignore", numberOfFiles[0], elapsedMs);
+        }
+    }
+
+    private static List<File> traverse(File rootDirectory) {
+        List<File> files = Lists.newArrayList();
+        List<Long> sizes = Lists.newArrayList();
+        for (File file : Files.fileTreeTraverser().preOrderTraversal(rootDirectory)) {
+            if (file.isFile()) {
+                files.add(file);
+                sizes.add(file.length());
+            }
+        }
+        return files;
+    }
+
+    private static void generateTree(File rootDirectory, int numberOfEntries) throws IOException {
+        int ignoredEntries = numberOfEntries / 10;
+        generateDirectory(new File(rootDirectory, "node_modules"), ignoredEntries);
+        generateDirectory(new File(rootDirectory, "src"), numberOfEntries - ignoredEntries);
+        Files.write("node_modules/\n*.tmp\n", new File(rootDirectory, FileWalker.IGNORE_FILE_NAME), Charsets.UTF_8);
+    }
+
+    /**
+     * Fills the directory with files, and subdirectories when there are too many files for one directory.
+     */
+    private static void generateDirectory(File directory, int numberOfEntries) throws IOException {
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create " + directory);
+        }
+        if (numberOfEntries <= ENTRIES_PER_DIRECTORY) {
+            for (int i = 0; i < numberOfEntries; i++) {
+                Files.write("<file" + i + "/>\n", new File(directory, "file" + i + (i % 20 == 0 ? ".tmp" : ".xml")),
+                        Charsets.UTF_8);
+            }
+            return;
+        }
+        // One entry per subdirectory, the rest split evenly between them
+        int numberOfSubdirectories = Math.min(ENTRIES_PER_DIRECTORY, (numberOfEntries + ENTRIES_PER_DIRECTORY - 1) /
+                ENTRIES_PER_DIRECTORY);
+        int remainingEntries = numberOfEntries - numberOfSubdirectories;
+        for (int i = 0; i < numberOfSubdirectories; i++) {
+            int entries = remainingEntries / (numberOfSubdirectories - i);
+            generateDirectory(new File(directory, "dir" + i), entries);
+            remainingEntries -= entries;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.selesse.jxlint.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.selesse.jxlint.TestFiles;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileWalkerTest {
+    @Rule
+    public final TestFiles testFiles = new TestFiles();
+
+    private File rootTempDir;
+
+    @Before
+    public void setup() throws IOException {
+        rootTempDir = testFiles.getRoot();
+        testFiles.createFile("a/1.xml", "<a/>");
+        testFiles.createFile("a/2.txt", "two");
+        testFiles.createFile("b/3.xml", "<b/>");
+        testFiles.createFile("build/4.xml", "<c/>");
+        testFiles.createFile(".git/config", "[core]");
+    }
+
+    private List<String> walk(FileWalker fileWalker) {
+        return getRelativePaths(fileWalker.walk(rootTempDir).getFiles());
+    }
+
+    private List<String> getRelativePaths(List<File> files) {
+        return files.stream()
+                .map(file -> rootTempDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testWalkListsFilesInOrderWithTheirSizes() throws IOException {
+        FileWalker.Result result = new FileWalker(ImmutableList.of(), true, 4).walk(rootTempDir);
+
+        assertThat(getRelativePaths(result.getFiles())).containsExactly("a/1.xml", "a/2.txt", "b/3.xml",
+                "build/4.xml");
+        assertThat(result.getSize(1)).isEqualTo(3);
+    }
+
+    @Test
+    public void testIgnoreFilesPruneTheTree() throws IOException {
+        testFiles.createFile(".gitignore", "# Build output\nbuild/\n*.txt\n!keep.txt\n");
+        testFiles.createFile("a/keep.txt", "kept");
+        testFiles.createFile("b/.gitignore", "/3.xml\n");
+        testFiles.createFile("b/c/3.xml", "<d/>");
+
+        assertThat(walk(FileWalker.getDefault())).containsExactly(".gitignore", "a/1.xml", "a/keep.txt",
+                "b/.gitignore", "b/c/3.xml");
+        assertThat(walk(new FileWalker(ImmutableList.of(), false))).contains("a/2.txt", "b/3.xml", "build/4.xml");
+    }
+
+    @Test
+    public void testExcludeGlobsWinOverIgnoreFiles() throws IOException {
+        testFiles.createFile(".gitignore", "!*.xml\n");
+
+        FileWalker fileWalker = new FileWalker(Lists.newArrayList("build", "a/*.xml"), true);
+
+        assertThat(walk(fileWalker)).containsExactly(".gitignore", "a/2.txt", "b/3.xml");
+    }
+
+    @Test
+    public void testSymbolicLinkLoopsAreOnlyWalkedOnce() throws IOException {
+        try {
+            java.nio.file.Files.createSymbolicLink(new File(rootTempDir, "a/loop").toPath(), rootTempDir.toPath());
+            java.nio.file.Files.createSymbolicLink(new File(rootTempDir, "b/a").toPath(),
+                    new File(rootTempDir, "a").toPath());
+        }
+        catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException(e);
+        }
+
+        // The link to another directory is followed, the link to a parent isn't
+        assertThat(walk(FileWalker.getDefault())).containsExactly("a/1.xml", "a/2.txt", "b/3.xml", "b/a/1.xml",
+                "b/a/2.txt", "build/4.xml");
+    }
+
+    @Test
+    public void testRetainIncludedSkipsWhatTheWalkWould() throws IOException {
+        testFiles.createFile(".gitignore", "build/\n");
+        List<File> files = Lists.newArrayList(new File(rootTempDir, "a/1.xml"), new File(rootTempDir, "build/4.xml"),
+                new File(rootTempDir, ".git/config"), new File(rootTempDir, "b/3.xml"));
+
+        FileWalker fileWalker = new FileWalker(Lists.newArrayList("b"), true);
+
+        assertThat(getRelativePaths(fileWalker.retainIncluded(rootTempDir, files))).containsExactly("a/1.xml");
+    }
+}